@@ -0,0 +1,115 @@
+//
+// The contents of this file are subject to the Mozilla Public
+// License Version 1.1 (the "License"); you may not use this file
+// except in compliance with the License. You may obtain a copy
+// of the License at http://www.mozilla.org/MPL/
+//
+// Software distributed under the License is distributed on an
+// "AS IS" basis, WITHOUT WARRANTY OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// rights and limitations under the License.
+//
+// The Original Code is  State Machine Compiler(SMC).
+//
+// The Initial Developer of the Original Code is Charles W. Rapp.
+// Portions created by Charles W. Rapp are
+// Copyright (C) 2014. Charles W. Rapp.
+// All Rights Reserved.
+//
+// Contributor(s):
+//
+// statemap.java --
+//
+//  This package defines the BatchDispatchException class
+//  thrown when a batch dispatched transition fails.
+//
+// RCS ID
+// $Id$
+//
+
+package statemap;
+
+/**
+ * A {@code BatchDispatchException} is thrown by the
+ * SMC-generated {@code dispatch(int[], Object[][], int)} batch
+ * method when one of the batch's transitions fails. The
+ * exception reports the number of transitions completed before
+ * the failure and the failed transition's throwable is the
+ * exception cause.
+ * <p>
+ * This exception is only thrown when the state machine is
+ * generated with {@code -java7 -nocatch}. Otherwise the failed
+ * transition's method writes the failure to the debug stream
+ * and the batch continues.
+ * </p>
+ *
+ * @author <a href="mailto:rapp@acm.org">Charles Rapp</a>
+ */
+
+public final class BatchDispatchException
+    extends RuntimeException
+{
+//---------------------------------------------------------------
+// Member methods.
+//
+
+    //-----------------------------------------------------------
+    // Constructors.
+    //
+
+    /**
+     * Constructs a {@code BatchDispatchException} for the given
+     * number of completed transitions and the failed
+     * transition's throwable.
+     * @param consumed the number of completed transitions.
+     * @param cause the throwable thrown by the failed
+     * transition.
+     */
+    public BatchDispatchException(final int consumed,
+                                  final Throwable cause)
+    {
+        super("batch dispatch failed after " +
+              Integer.toString(consumed) +
+              " transitions",
+              cause);
+
+        _consumed = consumed;
+    } // end of BatchDispatchException(int, Throwable)
+
+    //
+    // end of Constructors.
+    //-----------------------------------------------------------
+
+    //-----------------------------------------------------------
+    // Get methods.
+    //
+
+    /**
+     * Returns the number of transitions completed before the
+     * failure. This is also the failed transition's index in
+     * the batch.
+     * @return the number of completed transitions.
+     */
+    public int getConsumed()
+    {
+        return (_consumed);
+    } // end of getConsumed()
+
+    //
+    // end of Get methods.
+    //-----------------------------------------------------------
+
+//---------------------------------------------------------------
+// Member data.
+//
+
+    /**
+     * The number of completed transitions.
+     */
+    private final int _consumed;
+
+    //-----------------------------------------------------------
+    // Constants.
+    //
+    private static final long serialVersionUID = 0x070000L;
+} // end of class BatchDispatchException
@@ -0,0 +1,264 @@
+//
+// The contents of this file are subject to the Mozilla Public
+// License Version 1.1 (the "License"); you may not use this file
+// except in compliance with the License. You may obtain a copy
+// of the License at http://www.mozilla.org/MPL/
+//
+// Software distributed under the License is distributed on an
+// "AS IS" basis, WITHOUT WARRANTY OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// rights and limitations under the License.
+//
+// The Original Code is  State Machine Compiler(SMC).
+//
+// The Initial Developer of the Original Code is Charles W. Rapp.
+// Portions created by Charles W. Rapp are
+// Copyright (C) 2014. Charles W. Rapp.
+// All Rights Reserved.
+//
+// Contributor(s):
+//
+// statemap.java --
+//
+//  This package defines the ContextPool class which recycles
+//  SMC-generated finite state machine contexts.
+//
+// RCS ID
+// $Id$
+//
+
+package statemap;
+
+/**
+ * A bounded pool of finite state machine contexts. Applications
+ * which create and discard a large number of short-lived
+ * contexts (one per network session, for example) use a
+ * {@code ContextPool} to reuse released contexts rather than
+ * construct new ones. A context is obtained with
+ * {@link #acquire(Object)} and returned with
+ * {@link #release(Object)}.
+ * <p>
+ * The pool does not know how to construct or reset a context.
+ * That is delegated to the {@link ContextFactory} given to the
+ * pool constructor. A factory for an SMC-generated context
+ * {@code FooContext} owned by class {@code Foo} is:
+ * </p>
+ * <pre><code>
+ * new ContextPool.ContextFactory&lt;Foo, FooContext&gt;()
+ * {
+ *     public FooContext newContext(Foo owner)
+ *     {
+ *         return (new FooContext(owner));
+ *     }
+ *
+ *     public void resetContext(FooContext context, Foo owner)
+ *     {
+ *         context.reset(owner);
+ *     }
+ * }</code></pre>
+ * <p>
+ * A {@code ContextPool} is thread-safe. A context must not be
+ * used after it is released.
+ * </p>
+ *
+ * @param <O> the context owner class.
+ * @param <C> the finite state machine context class.
+ *
+ * @see FSMContext#reset(State)
+ * @see FSMContext7#reset(State7)
+ *
+ * @author <a href="mailto:rapp@acm.org">Charles Rapp</a>
+ */
+
+public final class ContextPool<O, C>
+{
+//---------------------------------------------------------------
+// Member methods.
+//
+
+    //-----------------------------------------------------------
+    // Constructors.
+    //
+
+    /**
+     * Creates an empty context pool which retains at most
+     * {@code capacity} released contexts.
+     * @param capacity the maximum number of pooled contexts.
+     * @param factory creates and resets the pooled contexts.
+     * @exception IllegalArgumentException
+     * if {@code capacity} is &lt; 1.
+     * @exception NullPointerException
+     * if {@code factory} is {@code null}.
+     */
+    public ContextPool(final int capacity,
+                       final ContextFactory<O, C> factory)
+    {
+        if (capacity < 1)
+        {
+            throw (
+                new IllegalArgumentException(
+                    "invalid capacity (" +
+                    Integer.toString(capacity) +
+                    ")"));
+        }
+        else if (factory == null)
+        {
+            throw (new NullPointerException("null factory"));
+        }
+
+        _contexts = new Object[capacity];
+        _size = 0;
+        _factory = factory;
+    } // end of ContextPool(int, ContextFactory)
+
+    //
+    // end of Constructors.
+    //-----------------------------------------------------------
+
+    //-----------------------------------------------------------
+    // Get methods.
+    //
+
+    /**
+     * Returns the maximum number of pooled contexts.
+     * @return the maximum number of pooled contexts.
+     */
+    public int capacity()
+    {
+        return (_contexts.length);
+    } // end of capacity()
+
+    /**
+     * Returns the number of contexts currently in the pool.
+     * @return the number of pooled contexts.
+     */
+    public synchronized int size()
+    {
+        return (_size);
+    } // end of size()
+
+    //
+    // end of Get methods.
+    //-----------------------------------------------------------
+
+    /**
+     * Returns a context for the given owner. If the pool is not
+     * empty, then the most recently released context is reset
+     * for {@code owner} and returned. Otherwise a new context
+     * is created.
+     * @param owner the context owner.
+     * @return a context in its start state.
+     */
+    @SuppressWarnings("unchecked")
+    public C acquire(final O owner)
+    {
+        C retval = null;
+
+        synchronized (this)
+        {
+            if (_size > 0)
+            {
+                --_size;
+                retval = (C) _contexts[_size];
+                _contexts[_size] = null;
+            }
+        }
+
+        // Create or reset the context outside the lock.
+        if (retval == null)
+        {
+            retval = _factory.newContext(owner);
+        }
+        else
+        {
+            _factory.resetContext(retval, owner);
+        }
+
+        return (retval);
+    } // end of acquire(O)
+
+    /**
+     * Returns {@code context} to the pool. If the pool is full,
+     * then {@code context} is discarded.
+     * @param context the released context.
+     * @return {@code true} if {@code context} was placed in the
+     * pool and {@code false} if it was discarded.
+     */
+    public synchronized boolean release(final C context)
+    {
+        boolean retcode = false;
+
+        if (context != null && _size < _contexts.length)
+        {
+            _contexts[_size] = context;
+            ++_size;
+            retcode = true;
+        }
+
+        return (retcode);
+    } // end of release(C)
+
+    /**
+     * Discards all the pooled contexts.
+     */
+    public synchronized void clear()
+    {
+        while (_size > 0)
+        {
+            --_size;
+            _contexts[_size] = null;
+        }
+
+        return;
+    } // end of clear()
+
+//---------------------------------------------------------------
+// Inner classes.
+//
+
+    /**
+     * Creates and resets the contexts managed by a
+     * {@link ContextPool}.
+     *
+     * @param <O> the context owner class.
+     * @param <C> the finite state machine context class.
+     */
+    public interface ContextFactory<O, C>
+    {
+        /**
+         * Returns a new context for the given owner.
+         * @param owner the context owner.
+         * @return a new context.
+         */
+        C newContext(O owner);
+
+        /**
+         * Resets a pooled context for a new owner. This is
+         * usually done by calling the SMC-generated
+         * {@code reset(owner)} method.
+         * @param context a previously released context.
+         * @param owner the context's new owner.
+         */
+        void resetContext(C context, O owner);
+    } // end of interface ContextFactory
+
+//---------------------------------------------------------------
+// Member data.
+//
+
+    /**
+     * The released contexts are stored here as a stack so that
+     * the most recently used context is reused first.
+     */
+    private final Object[] _contexts;
+
+    /**
+     * The number of contexts in {@link #_contexts}.
+     */
+    private int _size;
+
+    /**
+     * Creates and resets contexts.
+     */
+    private final ContextFactory<O, C> _factory;
+} // end of class ContextPool
@@ -39,6 +39,7 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.PrintStream;
 import java.io.Serializable;
+import java.util.Arrays;
 import java.util.EmptyStackException;
 
 /**
@@ -68,15 +69,56 @@ public abstract class FSMContext
      */
     protected FSMContext(State initState)
     {
+        this (initState, 0);
+    } // end of FSMContext(State)
+
+    /**
+     * Creates a finite state machine context for the given
+     * initial state and state stack size. If
+     * {@code stackSize} is &gt; zero, then the state stack is
+     * allocated now with that fixed size and a push transition
+     * on a full stack throws
+     * {@link PushOnFullStateStackException}. If
+     * {@code stackSize} is zero, then the state stack is
+     * allocated on the first push and grows as needed.
+     * <p>
+     * In both cases the state stack array is retained when the
+     * stack is emptied and reused by later push transitions.
+     * </p>
+     * @param initState the finite state machine's start state.
+     * @param stackSize the fixed state stack size or zero for
+     * an unbounded state stack.
+     * @exception IllegalArgumentException
+     * if {@code stackSize} is &lt; zero.
+     */
+    protected FSMContext(final State initState,
+                         final int stackSize)
+    {
+        if (stackSize < 0)
+        {
+            throw (
+                new IllegalArgumentException(
+                    "invalid stack size (" +
+                    Integer.toString(stackSize) +
+                    ")"));
+        }
+
         _name = "FSMContext";
         _state = initState;
         _transition = "";
         _previousState = null;
-        _stateStack = null;
+        _stateStack =
+            (stackSize == 0 ? null : new State[stackSize]);
+        _stateStackDepth = 0;
+        _stateStackSize = stackSize;
         _debugFlag = false;
         _debugStream = System.err;
-        _listeners = new PropertyChangeSupport(this);
-    } // end of FSMContext(State)
+        _tracer = null;
+        _machineId = 0;
+        _transitionQueue = null;
+        _listeners = null;
+        _stateListeners = NO_LISTENERS;
+    } // end of FSMContext(State, int)
 
     //
     // end of Constructors.
@@ -106,8 +148,9 @@ public abstract class FSMContext
     {
         istream.defaultReadObject();
 
-        // Create an empty listeners list.
-        _listeners = new PropertyChangeSupport(this);
+        // The listeners lists are created empty.
+        _listeners = null;
+        _stateListeners = NO_LISTENERS;
 
         return;
     } // end of readObject(ObjectInputStream)
@@ -150,6 +193,37 @@ public abstract class FSMContext
                 _debugStream);
     } // end of getDebugStream()
 
+    /**
+     * Returns the tracer recording this context's events. May
+     * be {@code null}.
+     * @return the tracer.
+     */
+    public FsmTracer getTracer()
+    {
+        return (_tracer);
+    } // end of getTracer()
+
+    /**
+     * Returns this context's machine identifier in the trace
+     * records.
+     * @return the machine identifier.
+     */
+    public int getMachineId()
+    {
+        return (_machineId);
+    } // end of getMachineId()
+
+    /**
+     * Returns the queue holding the transitions issued while
+     * this context runs a transition. Returns {@code null} if
+     * the context was not generated with {@code -queue}.
+     * @return the transition queue.
+     */
+    public TransitionQueue getTransitionQueue()
+    {
+        return (_transitionQueue);
+    } // end of getTransitionQueue()
+
     /**
      * Returns {@code true} if this FSM is in a transition and
      * {@code false} otherwise.
@@ -186,6 +260,15 @@ public abstract class FSMContext
         return(_transition);
     } // end of getTransition()
 
+    /**
+     * Returns the number of states on the state stack.
+     * @return the state stack depth.
+     */
+    public int getStateStackDepth()
+    {
+        return (_stateStackDepth);
+    } // end of getStateStackDepth()
+
     //
     // end of Get methods.
     //-----------------------------------------------------------
@@ -232,6 +315,23 @@ public abstract class FSMContext
         return;
     } // end of setDebugStream(PrintStream)
 
+    /**
+     * Records this context's events in {@code tracer}, which
+     * may be shared by many contexts. The records are tagged
+     * with {@code machineId}. Tracing is turned off if
+     * {@code tracer} is {@code null}. Tracing is independent of
+     * the debug flag.
+     * @param tracer record events in this tracer.
+     * @param machineId this context's machine identifier.
+     */
+    public void setTracer(final FsmTracer tracer,
+                          final int machineId)
+    {
+        _tracer = tracer;
+        _machineId = machineId;
+        return;
+    } // end of setTracer(FsmTracer, int)
+
     /**
      * Sets the current state to the given value.
      * @param state The current state.
@@ -244,6 +344,14 @@ public abstract class FSMContext
                                      state.getName());
         }
 
+        if (_tracer != null)
+        {
+            _tracer.record(_machineId,
+                           state.getId(),
+                           FsmTracer.NO_ID,
+                           FsmTracer.STATE_SET);
+        }
+
         // clearState() is not called when a transition has
         // no actions, so set _previousState to _state in
         // that situation. We know clearState() was not
@@ -257,8 +365,7 @@ public abstract class FSMContext
 
         // Inform any and all listeners about this state
         // change.
-        _listeners.firePropertyChange(
-            STATE_PROPERTY, _previousState, _state);
+        fireStateChange();
 
         return;
     } // end of setState(State)
@@ -281,6 +388,8 @@ public abstract class FSMContext
      * @param state The new current state.
      * @exception NullPointerException
      * if {@code state} is {@code null}.
+     * @exception PushOnFullStateStackException
+     * if the state stack has a fixed size and is full.
      */
     public void pushState(State state)
     {
@@ -295,19 +404,41 @@ public abstract class FSMContext
                                      state.getName());
         }
 
+        if (_tracer != null)
+        {
+            _tracer.record(_machineId,
+                           state.getId(),
+                           FsmTracer.NO_ID,
+                           FsmTracer.STATE_PUSH);
+        }
+
         if (_stateStack == null)
         {
-            _stateStack = new java.util.Stack<State>();
+            _stateStack = new State[DEFAULT_STACK_SIZE];
+        }
+        else if (_stateStackDepth == _stateStack.length)
+        {
+            // A fixed-size stack does not grow.
+            if (_stateStackSize > 0)
+            {
+                throw (
+                    new PushOnFullStateStackException(
+                        _stateStackSize));
+            }
+
+            _stateStack =
+                Arrays.copyOf(
+                    _stateStack, (2 * _stateStack.length));
         }
 
         _previousState = _state;
-        _stateStack.push(_state);
+        _stateStack[_stateStackDepth] = _state;
+        ++_stateStackDepth;
         _state = state;
 
         // Inform any and all listeners about this state
         // change.
-        _listeners.firePropertyChange(
-            STATE_PROPERTY, _previousState, _state);
+        fireStateChange();
 
         return;
     } // end of pushState(State)
@@ -322,8 +453,7 @@ public abstract class FSMContext
     public void popState()
         throws EmptyStackException
     {
-        if (_stateStack == null ||
-            _stateStack.isEmpty() == true)
+        if (_stateStackDepth == 0)
         {
             if (getDebugFlag() == true)
             {
@@ -344,14 +474,12 @@ public abstract class FSMContext
                 _previousState = _state;
             }
 
-            // The pop method removes the top element
-            // from the stack and returns it.
-            _state = _stateStack.pop();
-
-            if (_stateStack.isEmpty() == true)
-            {
-                _stateStack = null;
-            }
+            // Remove the top state from the stack, clearing
+            // the array slot so the stack does not retain the
+            // state.
+            --_stateStackDepth;
+            _state = _stateStack[_stateStackDepth];
+            _stateStack[_stateStackDepth] = null;
 
             if (getDebugFlag() == true)
             {
@@ -359,29 +487,101 @@ public abstract class FSMContext
                                       _state.getName());
             }
 
+            if (_tracer != null)
+            {
+                _tracer.record(_machineId,
+                               _state.getId(),
+                               FsmTracer.NO_ID,
+                               FsmTracer.STATE_POP);
+            }
+
             // Inform any and all listeners about this state
             // change.
-            _listeners.firePropertyChange(
-                STATE_PROPERTY, _previousState, _state);
+            fireStateChange();
         }
 
         return;
     } // end of popState()
 
     /**
-     * Empties the state stack.
+     * Empties the state stack. The state stack array is
+     * retained for reuse.
      */
     public void emptyStateStack()
     {
-        if (_stateStack != null)
+        if (_stateStackDepth > 0)
         {
-            _stateStack.clear();
-            _stateStack = null;
+            Arrays.fill(_stateStack, 0, _stateStackDepth, null);
+            _stateStackDepth = 0;
         }
 
         return;
     } // end of emptyStateStack()
 
+    /**
+     * Sets the state stack depth to {@code depth} and allocates
+     * a state stack array large enough to hold that many
+     * states. The caller is responsible for placing the states
+     * into {@code _stateStack[0]} (bottom) through
+     * {@code _stateStack[depth - 1]} (top). This method is
+     * used by SMC-generated {@code readObject} methods and
+     * should not otherwise be called.
+     * @param depth the restored state stack depth.
+     * @exception PushOnFullStateStackException
+     * if the state stack has a fixed size less than
+     * {@code depth}.
+     */
+    protected void initStateStack(final int depth)
+    {
+        if (_stateStackSize > 0 && depth > _stateStackSize)
+        {
+            throw (
+                new PushOnFullStateStackException(
+                    _stateStackSize));
+        }
+
+        _stateStackDepth = depth;
+        _stateStack =
+            (depth == 0 && _stateStackSize == 0 ?
+             null :
+             new State[Math.max(depth, _stateStackSize)]);
+
+        return;
+    } // end of initStateStack(int)
+
+    /**
+     * Returns this finite state machine context to the condition
+     * it was in when constructed with {@code initState}, so
+     * that the context may be reused rather than discarded.
+     * The previous state and transition name are cleared, the
+     * state stack is emptied and all property change and state
+     * change listeners are removed. The FSM name, debug flag
+     * and debug stream are retained.
+     * <p>
+     * The initial state's entry actions are <em>not</em>
+     * executed. As with a newly constructed context, call
+     * {@link #enterStartState()} to do so. This method must not
+     * be called from within a transition.
+     * </p>
+     * <p>
+     * Subclasses call this method from their
+     * {@code reset(owner, initState)} method which also resets
+     * the owner reference.
+     * </p>
+     * @param initState the finite state machine's start state.
+     */
+    protected void reset(final State initState)
+    {
+        _state = initState;
+        _transition = "";
+        _previousState = null;
+        emptyStateStack();
+        _listeners = null;
+        _stateListeners = NO_LISTENERS;
+
+        return;
+    } // end of reset(State)
+
     //
     // end of Set methods.
     //-----------------------------------------------------------
@@ -400,13 +600,21 @@ public abstract class FSMContext
      * no exception is thrown and no action is taken.
      * @param listener The PropertyChangeListener to be added.
      */
-    public void
+    public synchronized void
         addStateChangeListener(PropertyChangeListener listener)
     {
+        // The property change support is created on demand
+        // so that state changes cost nothing when there are
+        // no property change listeners.
+        if (_listeners == null)
+        {
+            _listeners = new PropertyChangeSupport(this);
+        }
+
         _listeners.addPropertyChangeListener(
             STATE_PROPERTY, listener);
         return;
-    }
+    } // end of addStateChangeListener(PropertyChangeListener)
 
     /**
      * Removes a PropertyChangeListener for the state change
@@ -417,15 +625,117 @@ public abstract class FSMContext
      * and no action is taken.
      * @param listener The PropertyChangeListener to be removed.
      */
-    public void
+    public synchronized void
         removeStateChangeListener(
             PropertyChangeListener listener)
     {
-        _listeners.removePropertyChangeListener(
-            STATE_PROPERTY, listener);
+        if (_listeners != null)
+        {
+            _listeners.removePropertyChangeListener(
+                STATE_PROPERTY, listener);
+        }
+
         return;
     } // end of removeStateChangeListener(PropertyChangeListener)
 
+    /**
+     * Adds a typed state change listener. The same listener may
+     * be added more than once. For each state change, the
+     * listener will be invoked the number of times it was
+     * added. If {@code listener} is {@code null}, no exception
+     * is thrown and no action is taken.
+     * <p>
+     * The listeners are stored in a copy-on-write array, so
+     * adding and removing a listener allocates a new array but
+     * notifying the listeners allocates nothing.
+     * </p>
+     * @param listener the state change listener to be added.
+     */
+    public synchronized void
+        addStateChangeListener(final StateChangeListener listener)
+    {
+        if (listener != null)
+        {
+            final int size = _stateListeners.length;
+            final StateChangeListener[] listeners =
+                Arrays.copyOf(_stateListeners, size + 1);
+
+            listeners[size] = listener;
+            _stateListeners = listeners;
+        }
+
+        return;
+    } // end of addStateChangeListener(StateChangeListener)
+
+    /**
+     * Removes a typed state change listener. If
+     * {@code listener} was added more than once, it will be
+     * notified one less time after being removed. If
+     * {@code listener} is {@code null} or was never added, no
+     * exception is thrown and no action is taken.
+     * @param listener the state change listener to be removed.
+     */
+    public synchronized void
+        removeStateChangeListener(final StateChangeListener listener)
+    {
+        final int size = _stateListeners.length;
+        int index;
+
+        for (index = 0;
+             index < size &&
+                 _stateListeners[index] != listener;
+             ++index)
+            ;
+
+        if (index < size)
+        {
+            final StateChangeListener[] listeners =
+                new StateChangeListener[size - 1];
+
+            System.arraycopy(
+                _stateListeners, 0, listeners, 0, index);
+            System.arraycopy(_stateListeners,
+                             (index + 1),
+                             listeners,
+                             index,
+                             (size - index - 1));
+            _stateListeners =
+                (listeners.length == 0 ?
+                 NO_LISTENERS :
+                 listeners);
+        }
+
+        return;
+    } // end of removeStateChangeListener(StateChangeListener)
+
+    /**
+     * Informs the typed state change listeners and the property
+     * change listeners that the state changed from
+     * {@code _previousState} to {@code _state}. Does nothing
+     * if there are no listeners.
+     */
+    private void fireStateChange()
+    {
+        final StateChangeListener[] listeners = _stateListeners;
+        final int size = listeners.length;
+        final PropertyChangeSupport support = _listeners;
+        int index;
+
+        for (index = 0; index < size; ++index)
+        {
+            listeners[index].stateChanged(
+                this, _previousState, _state, _transition);
+        }
+
+        if (support != null)
+        {
+            support.firePropertyChange(
+                STATE_PROPERTY, _previousState, _state);
+        }
+
+        return;
+    } // end of fireStateChange()
+
 //---------------------------------------------------------------
 // Member data
 //
@@ -455,9 +765,22 @@ public abstract class FSMContext
 
     /**
      * This stack is used to store the current state when a push
-     * transition is taken.
+     * transition is taken. {@code _stateStack[0]} is the bottom
+     * of the stack. May be {@code null} if there has been no
+     * push transition.
+     */
+    transient protected State[] _stateStack;
+
+    /**
+     * The number of states on the state stack.
      */
-    transient protected java.util.Stack<State> _stateStack;
+    transient protected int _stateStackDepth;
+
+    /**
+     * The fixed state stack size. Zero means that the state
+     * stack grows as needed.
+     */
+    private final int _stateStackSize;
 
     /**
      * When this flag is set to {@code true}, this class will
@@ -470,14 +793,43 @@ public abstract class FSMContext
      */
     transient protected PrintStream _debugStream;
 
-    // Stores the property change listeners here.
-    transient private PropertyChangeSupport _listeners;
+    /**
+     * Record events in this tracer. May be {@code null}.
+     */
+    transient protected FsmTracer _tracer;
+
+    /**
+     * This context's machine identifier in trace records.
+     */
+    transient protected int _machineId;
+
+    /**
+     * Transitions issued while a transition is running are
+     * queued here. {@code null} unless the context was
+     * generated with {@code -queue}.
+     */
+    transient protected TransitionQueue _transitionQueue;
+
+    // Stores the property change listeners here. Created when
+    // the first property change listener is added.
+    transient private volatile PropertyChangeSupport _listeners;
+
+    // The typed state change listeners. Replaced rather than
+    // modified when a listener is added or removed.
+    transient private volatile StateChangeListener[] _stateListeners;
 
     //-----------------------------------------------------------
     // Constants.
     //
     private static final long serialVersionUID = 0x060000L;
     private static final String STATE_PROPERTY = "State";
+
+    // A growable state stack's initial size.
+    private static final int DEFAULT_STACK_SIZE = 4;
+
+    // The shared, empty state change listener array.
+    private static final StateChangeListener[] NO_LISTENERS =
+        new StateChangeListener[0];
 } // end of class FSMContext
 
 //
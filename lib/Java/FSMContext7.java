@@ -37,11 +37,12 @@ import java.io.ObjectInputStream;
 import java.io.PrintStream;
 import java.io.Serializable;
 import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
 import java.lang.invoke.MethodHandles.Lookup;
 import java.lang.invoke.MethodType;
-import java.util.ArrayDeque;
-import java.util.Deque;
+import java.util.Arrays;
 import java.util.EmptyStackException;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Base class for all SMC-generated application context classes.
@@ -70,15 +71,58 @@ public abstract class FSMContext7
      */
     protected FSMContext7(State7 initState)
     {
+        this (initState, 0);
+    } // end of FSMContext7(State7)
+
+    /**
+     * Creates a finite state machine context for the given
+     * initial state and state stack size. If
+     * {@code stackSize} is &gt; zero, then the state stack is
+     * allocated now with that fixed size and a push transition
+     * on a full stack throws
+     * {@link PushOnFullStateStackException}. If
+     * {@code stackSize} is zero, then the state stack is
+     * allocated on the first push and grows as needed.
+     * <p>
+     * In both cases the state stack array is retained when the
+     * stack is emptied and reused by later push transitions.
+     * </p>
+     * @param initState the finite state machine's start state.
+     * @param stackSize the fixed state stack size or zero for
+     * an unbounded state stack.
+     * @exception IllegalArgumentException
+     * if {@code stackSize} is &lt; zero.
+     */
+    protected FSMContext7(final State7 initState,
+                          final int stackSize)
+    {
+        if (stackSize < 0)
+        {
+            throw (
+                new IllegalArgumentException(
+                    "invalid stack size (" +
+                    Integer.toString(stackSize) +
+                    ")"));
+        }
+
         _name = "FSMContext";
         _state = initState;
         _transition = "";
         _previousState = null;
-        _stateStack = null;
+        _stateStack =
+            (stackSize == 0 ? null : new State7[stackSize]);
+        _stateStackDepth = 0;
+        _stateStackSize = stackSize;
         _debugFlag = false;
         _debugStream = System.err;
-        _listeners = new PropertyChangeSupport(this);
-    } // end of FSMContext7(State7)
+        _tracer = null;
+        _machineId = 0;
+        _transitionQueue = null;
+        _timerWheel = null;
+        _stateTimer = null;
+        _listeners = null;
+        _stateListeners = NO_LISTENERS;
+    } // end of FSMContext7(State7, int)
 
     //
     // end of Constructors.
@@ -116,8 +160,9 @@ public abstract class FSMContext7
     {
         istream.defaultReadObject();
 
-        // Create an empty listeners list.
-        _listeners = new PropertyChangeSupport(this);
+        // The listeners lists are created empty.
+        _listeners = null;
+        _stateListeners = NO_LISTENERS;
 
         return;
     } // end of readObject(ObjectInputStream)
@@ -160,6 +205,58 @@ public abstract class FSMContext7
                 _debugStream);
     } // end of getDebugStream()
 
+    /**
+     * Returns the tracer recording this context's events. May
+     * be {@code null}.
+     * @return the tracer.
+     */
+    public FsmTracer getTracer()
+    {
+        return (_tracer);
+    } // end of getTracer()
+
+    /**
+     * Returns this context's machine identifier in the trace
+     * records.
+     * @return the machine identifier.
+     */
+    public int getMachineId()
+    {
+        return (_machineId);
+    } // end of getMachineId()
+
+    /**
+     * Returns the queue holding the transitions issued while
+     * this context runs a transition. Returns {@code null} if
+     * the context was not generated with {@code -queue}.
+     * @return the transition queue.
+     */
+    public TransitionQueue getTransitionQueue()
+    {
+        return (_transitionQueue);
+    } // end of getTransitionQueue()
+
+    /**
+     * Returns the timer wheel running this context's state
+     * timer. May be {@code null}.
+     * @return the timer wheel.
+     */
+    public TimerWheel getTimerWheel()
+    {
+        return (_timerWheel);
+    } // end of getTimerWheel()
+
+    /**
+     * Returns {@code true} if the state timer is running and
+     * {@code false} otherwise.
+     * @return {@code true} if the state timer is running.
+     */
+    public boolean isStateTimerRunning()
+    {
+        return (_stateTimer != null &&
+                _stateTimer.isScheduled() == true);
+    } // end of isStateTimerRunning()
+
     /**
      * Returns {@code true} if this FSM is in a transition and
      * {@code false} otherwise.
@@ -187,6 +284,43 @@ public abstract class FSMContext7
 
         return (_state);
     } // end of getState()
+
+    /**
+     * Returns the current state's unique identifier. This is
+     * the same value as the SMC-generated
+     * {@code map_state_STATE_ID} constant and may be stored or
+     * compared in place of the {@link State7} instance.
+     * @return the current state identifier.
+     * @throws StateUndefinedException
+     * if the FSM is in transition.
+     * @see #isInState(int)
+     */
+    public int getStateId()
+        throws StateUndefinedException
+    {
+        if (_state == null)
+        {
+            throw (new StateUndefinedException());
+        }
+
+        return (_state.getId());
+    } // end of getStateId()
+
+    /**
+     * Returns {@code true} if the current state identifier is
+     * {@code stateId} and {@code false} otherwise. Returns
+     * {@code false} when the FSM is in transition rather than
+     * throwing an exception.
+     * @param stateId a state identifier.
+     * @return {@code true} if the FSM is in the given state.
+     * @see #getStateId()
+     */
+    public boolean isInState(final int stateId)
+    {
+        final State7 state = _state;
+
+        return (state != null && state.getId() == stateId);
+    } // end of isInState(int)
     
     /**
      * If this FSM is in transition, then returns the previous
@@ -210,6 +344,15 @@ public abstract class FSMContext7
         return (_transition);
     } // end of getTransition()
 
+    /**
+     * Returns the number of states on the state stack.
+     * @return the state stack depth.
+     */
+    public int getStateStackDepth()
+    {
+        return (_stateStackDepth);
+    } // end of getStateStackDepth()
+
     //
     // end of Get methods.
     //-----------------------------------------------------------
@@ -256,6 +399,141 @@ public abstract class FSMContext7
         return;
     } // end of setDebugStream(PrintStream)
 
+    /**
+     * Records this context's events in {@code tracer}, which
+     * may be shared by many contexts. The records are tagged
+     * with {@code machineId}. Tracing is turned off if
+     * {@code tracer} is {@code null}. Tracing is independent of
+     * the debug flag.
+     * @param tracer record events in this tracer.
+     * @param machineId this context's machine identifier.
+     */
+    public void setTracer(final FsmTracer tracer,
+                          final int machineId)
+    {
+        _tracer = tracer;
+        _machineId = machineId;
+        return;
+    } // end of setTracer(FsmTracer, int)
+
+    /**
+     * Runs this context's state timer on {@code wheel}, which
+     * may be shared by many contexts. A running state timer is
+     * stopped.
+     * @param wheel the timer wheel. May be {@code null}.
+     */
+    public void setTimerWheel(final TimerWheel wheel)
+    {
+        stopStateTimer();
+        _timerWheel = wheel;
+        return;
+    } // end of setTimerWheel(TimerWheel)
+
+    /**
+     * Starts the state timer. When the timer expires, the
+     * transition {@code transitionId} is issued by
+     * {@link #dispatch(int[], Object[][], int)} just as if the
+     * application had called the transition method. The
+     * transition must not take arguments. The timer is stopped
+     * when the context exits the current state, at the same
+     * point the state's exit actions run, so a state typically
+     * starts the timer in its entry actions. A running state
+     * timer is restarted.
+     * <p>
+     * The transition identifier is the generated
+     * {@code <transition><n>_TRANSITION_ID} constant.
+     * </p>
+     * @param transitionId the timeout transition identifier.
+     * @param delay the timeout delay.
+     * @param unit the delay unit.
+     * @exception IllegalArgumentException
+     * if {@code transitionId} is the default transition or
+     * {@code delay} is &lt; zero.
+     * @exception IllegalStateException
+     * if the timer wheel is not set.
+     * @exception UnsupportedOperationException
+     * if this context does not override
+     * {@link #dispatch(int[], Object[][], int)}.
+     * @see #setTimerWheel(TimerWheel)
+     * @see #stopStateTimer()
+     */
+    public void startStateTimer(final int transitionId,
+                                final long delay,
+                                final TimeUnit unit)
+    {
+        if (transitionId <= DEFAULT_TRANSITION_ID)
+        {
+            throw (
+                new IllegalArgumentException(
+                    "invalid transition identifier (" +
+                    Integer.toString(transitionId) +
+                    ")"));
+        }
+        else if (_timerWheel == null)
+        {
+            throw (new IllegalStateException("timer wheel not set"));
+        }
+
+        // The timeout is issued through dispatch. Check that it
+        // is overridden now rather than fail when the timer
+        // expires.
+        if (_stateTimer == null)
+        {
+            if (overridesDispatch() == false)
+            {
+                throw (
+                    new UnsupportedOperationException(
+                        getClass().getName() +
+                        " does not override dispatch"));
+            }
+
+            _stateTimer = new StateTimer();
+        }
+
+        _stateTimer._transitionIds[0] = transitionId;
+        _timerWheel.schedule(_stateTimer, delay, unit);
+
+        return;
+    } // end of startStateTimer(int, long, TimeUnit)
+
+    // Returns true if this context's class overrides the batch
+    // dispatch method.
+    private boolean overridesDispatch()
+    {
+        boolean retcode;
+
+        try
+        {
+            retcode =
+                ((getClass().getMethod(
+                      "dispatch",
+                      int[].class,
+                      Object[][].class,
+                      int.class)).getDeclaringClass() !=
+                 FSMContext7.class);
+        }
+        catch (NoSuchMethodException methodex)
+        {
+            retcode = false;
+        }
+
+        return (retcode);
+    } // end of overridesDispatch()
+
+    /**
+     * Stops the state timer. Does nothing if the state timer is
+     * not running.
+     */
+    public void stopStateTimer()
+    {
+        if (_stateTimer != null && _timerWheel != null)
+        {
+            _timerWheel.cancel(_stateTimer);
+        }
+
+        return;
+    } // end of stopStateTimer()
+
     /**
      * Sets the current state to the given value.
      * @param state The current state.
@@ -268,6 +546,14 @@ public abstract class FSMContext7
                 "ENTERING STATE  : " + state.getName());
         }
 
+        if (_tracer != null)
+        {
+            _tracer.record(_machineId,
+                           state.getId(),
+                           FsmTracer.NO_ID,
+                           FsmTracer.STATE_SET);
+        }
+
         // clearState() is not called when a transition has
         // no actions, so set _previousState to _state in
         // that situation. We know clearState() was not
@@ -281,8 +567,7 @@ public abstract class FSMContext7
 
         // Inform any and all listeners about this state
         // change.
-        _listeners.firePropertyChange(
-            STATE_PROPERTY, _previousState, _state);
+        fireStateChange();
 
         return;
     } // end of setState(State7)
@@ -305,6 +590,8 @@ public abstract class FSMContext7
      * @param state The new current state.
      * @exception NullPointerException
      * if {@code state} is {@code null}.
+     * @exception PushOnFullStateStackException
+     * if the state stack has a fixed size and is full.
      */
     public void pushState(State7 state)
     {
@@ -319,19 +606,41 @@ public abstract class FSMContext7
                 "PUSH TO STATE   : " + state.getName());
         }
 
+        if (_tracer != null)
+        {
+            _tracer.record(_machineId,
+                           state.getId(),
+                           FsmTracer.NO_ID,
+                           FsmTracer.STATE_PUSH);
+        }
+
         if (_stateStack == null)
         {
-            _stateStack = new ArrayDeque<>();
+            _stateStack = new State7[DEFAULT_STACK_SIZE];
+        }
+        else if (_stateStackDepth == _stateStack.length)
+        {
+            // A fixed-size stack does not grow.
+            if (_stateStackSize > 0)
+            {
+                throw (
+                    new PushOnFullStateStackException(
+                        _stateStackSize));
+            }
+
+            _stateStack =
+                Arrays.copyOf(
+                    _stateStack, (2 * _stateStack.length));
         }
 
         _previousState = _state;
-        _stateStack.push(_state);
+        _stateStack[_stateStackDepth] = _state;
+        ++_stateStackDepth;
         _state = state;
 
         // Inform any and all listeners about this state
         // change.
-        _listeners.firePropertyChange(
-            STATE_PROPERTY, _previousState, _state);
+        fireStateChange();
 
         return;
     } // end of pushState(State7)
@@ -346,8 +655,7 @@ public abstract class FSMContext7
     public void popState()
         throws EmptyStackException
     {
-        if (_stateStack == null ||
-            _stateStack.isEmpty() == true)
+        if (_stateStackDepth == 0)
         {
             if (_debugFlag == true)
             {
@@ -368,14 +676,12 @@ public abstract class FSMContext7
                 _previousState = _state;
             }
 
-            // The pop method removes the top element
-            // from the stack and returns it.
-            _state = _stateStack.pop();
-
-            if (_stateStack.isEmpty() == true)
-            {
-                _stateStack = null;
-            }
+            // Remove the top state from the stack, clearing
+            // the array slot so the stack does not retain the
+            // state.
+            --_stateStackDepth;
+            _state = _stateStack[_stateStackDepth];
+            _stateStack[_stateStackDepth] = null;
 
             if (_debugFlag == true)
             {
@@ -383,29 +689,102 @@ public abstract class FSMContext7
                     "POP TO STATE    : " + _state.getName());
             }
 
+            if (_tracer != null)
+            {
+                _tracer.record(_machineId,
+                               _state.getId(),
+                               FsmTracer.NO_ID,
+                               FsmTracer.STATE_POP);
+            }
+
             // Inform any and all listeners about this state
             // change.
-            _listeners.firePropertyChange(
-                STATE_PROPERTY, _previousState, _state);
+            fireStateChange();
         }
 
         return;
     } // end of popState()
 
     /**
-     * Empties the state stack.
+     * Empties the state stack. The state stack array is
+     * retained for reuse.
      */
     public void emptyStateStack()
     {
-        if (_stateStack != null)
+        if (_stateStackDepth > 0)
         {
-            _stateStack.clear();
-            _stateStack = null;
+            Arrays.fill(_stateStack, 0, _stateStackDepth, null);
+            _stateStackDepth = 0;
         }
 
         return;
     } // end of emptyStateStack()
 
+    /**
+     * Sets the state stack depth to {@code depth} and allocates
+     * a state stack array large enough to hold that many
+     * states. The caller is responsible for placing the states
+     * into {@code _stateStack[0]} (bottom) through
+     * {@code _stateStack[depth - 1]} (top). This method is
+     * used by SMC-generated {@code readObject} methods and
+     * should not otherwise be called.
+     * @param depth the restored state stack depth.
+     * @exception PushOnFullStateStackException
+     * if the state stack has a fixed size less than
+     * {@code depth}.
+     */
+    protected void initStateStack(final int depth)
+    {
+        if (_stateStackSize > 0 && depth > _stateStackSize)
+        {
+            throw (
+                new PushOnFullStateStackException(
+                    _stateStackSize));
+        }
+
+        _stateStackDepth = depth;
+        _stateStack =
+            (depth == 0 && _stateStackSize == 0 ?
+             null :
+             new State7[Math.max(depth, _stateStackSize)]);
+
+        return;
+    } // end of initStateStack(int)
+
+    /**
+     * Returns this finite state machine context to the condition
+     * it was in when constructed with {@code initState}, so
+     * that the context may be reused rather than discarded.
+     * The previous state and transition name are cleared, the
+     * state stack is emptied and all property change and state
+     * change listeners are removed. The FSM name, debug flag
+     * and debug stream are retained.
+     * <p>
+     * The initial state's entry actions are <em>not</em>
+     * executed. As with a newly constructed context, call
+     * {@link #enterStartState()} to do so. This method must not
+     * be called from within a transition.
+     * </p>
+     * <p>
+     * Subclasses call this method from their
+     * {@code reset(owner, initState)} method which also resets
+     * the owner reference.
+     * </p>
+     * @param initState the finite state machine's start state.
+     */
+    protected void reset(final State7 initState)
+    {
+        _state = initState;
+        _transition = "";
+        _previousState = null;
+        emptyStateStack();
+        stopStateTimer();
+        _listeners = null;
+        _stateListeners = NO_LISTENERS;
+
+        return;
+    } // end of reset(State7)
+
     /**
      * Executes the current state entry action. This method is
      * redundant with {@link #enterState} and is provided for
@@ -436,13 +815,21 @@ public abstract class FSMContext7
      * no exception is thrown and no action is taken.
      * @param listener The PropertyChangeListener to be added.
      */
-    public void
+    public synchronized void
         addStateChangeListener(PropertyChangeListener listener)
     {
+        // The property change support is created on demand
+        // so that state changes cost nothing when there are
+        // no property change listeners.
+        if (_listeners == null)
+        {
+            _listeners = new PropertyChangeSupport(this);
+        }
+
         _listeners.addPropertyChangeListener(
             STATE_PROPERTY, listener);
         return;
-    }
+    } // end of addStateChangeListener(PropertyChangeListener)
 
     /**
      * Removes a PropertyChangeListener for the state change
@@ -453,15 +840,138 @@ public abstract class FSMContext7
      * and no action is taken.
      * @param listener The PropertyChangeListener to be removed.
      */
-    public void
+    public synchronized void
         removeStateChangeListener(
             PropertyChangeListener listener)
     {
-        _listeners.removePropertyChangeListener(
-            STATE_PROPERTY, listener);
+        if (_listeners != null)
+        {
+            _listeners.removePropertyChangeListener(
+                STATE_PROPERTY, listener);
+        }
+
         return;
     } // end of removeStateChangeListener(PropertyChangeListener)
 
+    /**
+     * Adds a typed state change listener. The same listener may
+     * be added more than once. For each state change, the
+     * listener will be invoked the number of times it was
+     * added. If {@code listener} is {@code null}, no exception
+     * is thrown and no action is taken.
+     * <p>
+     * The listeners are stored in a copy-on-write array, so
+     * adding and removing a listener allocates a new array but
+     * notifying the listeners allocates nothing.
+     * </p>
+     * @param listener the state change listener to be added.
+     */
+    public synchronized void
+        addStateChangeListener(final StateChangeListener7 listener)
+    {
+        if (listener != null)
+        {
+            final int size = _stateListeners.length;
+            final StateChangeListener7[] listeners =
+                Arrays.copyOf(_stateListeners, size + 1);
+
+            listeners[size] = listener;
+            _stateListeners = listeners;
+        }
+
+        return;
+    } // end of addStateChangeListener(StateChangeListener7)
+
+    /**
+     * Removes a typed state change listener. If
+     * {@code listener} was added more than once, it will be
+     * notified one less time after being removed. If
+     * {@code listener} is {@code null} or was never added, no
+     * exception is thrown and no action is taken.
+     * @param listener the state change listener to be removed.
+     */
+    public synchronized void
+        removeStateChangeListener(final StateChangeListener7 listener)
+    {
+        final int size = _stateListeners.length;
+        int index;
+
+        for (index = 0;
+             index < size &&
+                 _stateListeners[index] != listener;
+             ++index)
+            ;
+
+        if (index < size)
+        {
+            final StateChangeListener7[] listeners =
+                new StateChangeListener7[size - 1];
+
+            System.arraycopy(
+                _stateListeners, 0, listeners, 0, index);
+            System.arraycopy(_stateListeners,
+                             (index + 1),
+                             listeners,
+                             index,
+                             (size - index - 1));
+            _stateListeners =
+                (listeners.length == 0 ?
+                 NO_LISTENERS :
+                 listeners);
+        }
+
+        return;
+    } // end of removeStateChangeListener(StateChangeListener7)
+
+    /**
+     * Informs the typed state change listeners and the property
+     * change listeners that the state changed from
+     * {@code _previousState} to {@code _state}. Does nothing
+     * if there are no listeners.
+     */
+    private void fireStateChange()
+    {
+        final StateChangeListener7[] listeners = _stateListeners;
+        final int size = listeners.length;
+        final PropertyChangeSupport support = _listeners;
+        int index;
+
+        for (index = 0; index < size; ++index)
+        {
+            listeners[index].stateChanged(
+                this, _previousState, _state, _transition);
+        }
+
+        if (support != null)
+        {
+            support.firePropertyChange(
+                STATE_PROPERTY, _previousState, _state);
+        }
+
+        return;
+    } // end of fireStateChange()
+
+    /**
+     * Issues {@code count} transitions given by transition
+     * identifier and arguments array. Generated contexts
+     * override this method. The state timer issues its timeout
+     * transition through this method.
+     * @param transitionIds the transition identifiers.
+     * @param args the transition arguments.
+     * @param count the number of transitions to issue.
+     * @return the number of transitions dispatched.
+     * @exception UnsupportedOperationException
+     * if not overridden.
+     */
+    public int dispatch(final int[] transitionIds,
+                        final Object[][] args,
+                        final int count)
+    {
+        throw (
+            new UnsupportedOperationException(
+                "batch dispatch not supported"));
+    } // end of dispatch(int[], Object[][], int)
+
     /**
      * The default Default state/Default transition definition is
      * to throw a {@link TransitionUndefinedException} which
@@ -475,6 +985,11 @@ public abstract class FSMContext7
             _debugStream.println("TRANSITION      : Default");
         }
 
+        if (_tracer != null)
+        {
+            trace(FsmTracer.NO_ID, FsmTracer.DEFAULT_TRANSITION);
+        }
+
         throw (
             new TransitionUndefinedException(
                 "State: " +
@@ -483,6 +998,53 @@ public abstract class FSMContext7
                 getTransition()));
     } // end of defaultTransition()
 
+    /**
+     * Returns the exception thrown when an action invoked by a
+     * {@code -nocatch} transition or
+     * {@link #executeAction(MethodHandle)} throws {@code t}.
+     * A {@code RuntimeException} is returned as is so that it
+     * is wrapped no more than once even when transitions are
+     * nested. An {@code Error} is thrown from this method.
+     * Any other throwable is wrapped in a
+     * {@link TransitionFailedException} reporting the current
+     * state and transition. The in-progress transition name is
+     * cleared since the transition will not complete.
+     * <p>
+     * Generated code uses this method as
+     * {@code throw (transitionFailed(tex));}
+     * </p>
+     * @param t the throwable thrown by the action.
+     * @return the runtime exception to be thrown.
+     */
+    protected RuntimeException transitionFailed(final Throwable t)
+    {
+        final String transition = _transition;
+        final RuntimeException retval;
+
+        _transition = "";
+
+        if (t instanceof Error)
+        {
+            throw ((Error) t);
+        }
+        else if (t instanceof RuntimeException)
+        {
+            retval = (RuntimeException) t;
+        }
+        else
+        {
+            retval =
+                new TransitionFailedException(
+                    "State: " +
+                    stateName() +
+                    ", Transition: " +
+                    transition,
+                    t);
+        }
+
+        return (retval);
+    } // end of transitionFailed(Throwable)
+
     /**
      * Returns the name of the current state or previous state
      * if in transition. If there is no current or previous state
@@ -498,6 +1060,28 @@ public abstract class FSMContext7
                  "(state unknown)"));
     } // end of stateName()
 
+    /**
+     * Records a transition event in the tracer. The state is
+     * the current state or, if in transition, the previous
+     * state. Generated code calls this method only if
+     * {@code _tracer} is not {@code null}.
+     * @param transitionId the transition identifier.
+     * @param kind the {@link FsmTracer} event kind.
+     */
+    protected void trace(final int transitionId, final int kind)
+    {
+        final State7 state =
+            (_state != null ? _state : _previousState);
+
+        _tracer.record(_machineId,
+                       (state == null ?
+                        FsmTracer.NO_ID :
+                        state.getId()),
+                       transitionId,
+                       kind);
+        return;
+    } // end of trace(int, int)
+
     /**
      * Executes the current state entry action, if defined.
      */
@@ -514,12 +1098,18 @@ public abstract class FSMContext7
     } // end of enterState()
 
     /**
-     * Executes the current state exit action, if defined.
+     * Stops the state timer and executes the current state exit
+     * action, if defined.
      */
     protected void exitState()
     {
         final MethodHandle mh = _state.exitState();
 
+        if (_stateTimer != null)
+        {
+            stopStateTimer();
+        }
+
         if (mh != null)
         {
             executeAction(mh);
@@ -658,6 +1248,66 @@ public abstract class FSMContext7
         return (new TransitionHandle(isDefault, mh));
     } // end of lookupTransition(...)
 
+    /**
+     * Returns the transition handle's method handle adapted to
+     * the transition method signature {@code mt}. A default
+     * transition takes no arguments, so the transition
+     * arguments are dropped before the default transition is
+     * invoked. This allows every state's transition method to
+     * be invoked with the same signature and removes the
+     * {@link TransitionHandle#isDefault()} test from the
+     * transition dispatch.
+     * @param th the transition handle returned by
+     * {@link #lookupTransition}.
+     * @param mt the transition method signature.
+     * @return the transition method handle with signature
+     * {@code mt}.
+     */
+    protected static MethodHandle
+        transitionHandle(final TransitionHandle th,
+                         final MethodType mt)
+    {
+        MethodHandle retval = th.handle();
+
+        if (th.isDefault() == true && mt.parameterCount() > 0)
+        {
+            retval =
+                MethodHandles.dropArguments(
+                    retval, 1, mt.parameterList());
+        }
+
+        return (retval);
+    } // end of transitionHandle(TransitionHandle, MethodType)
+
+//---------------------------------------------------------------
+// Inner classes.
+//
+
+    // The state timer issues the timeout transition when it
+    // expires.
+    private final class StateTimer
+        extends TimerWheel.Timer
+    {
+        private StateTimer()
+        {
+            _transitionIds = new int[] {DEFAULT_TRANSITION_ID};
+        } // end of StateTimer()
+
+        // The same array is passed on every expiration. A
+        // -concurrency mailbox context copies the array before
+        // posting the transition, so restarting the timer does
+        // not change a transition which has yet to run.
+        @Override
+        protected void expired()
+        {
+            dispatch(_transitionIds, TIMEOUT_ARGS, 1);
+            return;
+        } // end of expired()
+
+        // The one element timeout transition identifier array.
+        private final int[] _transitionIds;
+    } // end of class StateTimer
+
 //---------------------------------------------------------------
 // Member data
 //
@@ -687,9 +1337,22 @@ public abstract class FSMContext7
 
     /**
      * This stack is used to store the current state when a push
-     * transition is taken.
+     * transition is taken. {@code _stateStack[0]} is the bottom
+     * of the stack. May be {@code null} if there has been no
+     * push transition.
      */
-    transient protected Deque<State7> _stateStack;
+    transient protected State7[] _stateStack;
+
+    /**
+     * The number of states on the state stack.
+     */
+    transient protected int _stateStackDepth;
+
+    /**
+     * The fixed state stack size. Zero means that the state
+     * stack grows as needed.
+     */
+    private final int _stateStackSize;
 
     /**
      * When this flag is set to {@code true}, this class will
@@ -703,9 +1366,44 @@ public abstract class FSMContext7
     transient protected PrintStream _debugStream;
 
     /**
-     * Store the property change listeners here.
+     * Record events in this tracer. May be {@code null}.
+     */
+    transient protected FsmTracer _tracer;
+
+    /**
+     * This context's machine identifier in trace records.
+     */
+    transient protected int _machineId;
+
+    /**
+     * Transitions issued while a transition is running are
+     * queued here. {@code null} unless the context was
+     * generated with {@code -queue}.
      */
-    transient private PropertyChangeSupport _listeners;
+    transient protected TransitionQueue _transitionQueue;
+
+    /**
+     * The state timer runs on this timer wheel. May be
+     * {@code null}.
+     */
+    transient private TimerWheel _timerWheel;
+
+    /**
+     * The state timer. Created when first started.
+     */
+    transient private StateTimer _stateTimer;
+
+    /**
+     * Store the property change listeners here. Created when the
+     * first property change listener is added.
+     */
+    transient private volatile PropertyChangeSupport _listeners;
+
+    /**
+     * The typed state change listeners. Replaced rather than
+     * modified when a listener is added or removed.
+     */
+    transient private volatile StateChangeListener7[] _stateListeners;
 
     //-----------------------------------------------------------
     // Constants.
@@ -769,6 +1467,20 @@ public abstract class FSMContext7
     protected static final MethodType NO_ARGS_TYPE =
         MethodType.methodType(void.class);
 
+    /**
+     * A growable state stack's initial size.
+     */
+    private static final int DEFAULT_STACK_SIZE = 4;
+
+    /**
+     * The shared, empty state change listener array.
+     */
+    private static final StateChangeListener7[] NO_LISTENERS =
+        new StateChangeListener7[0];
+
+    // The state timer transition takes no arguments.
+    private static final Object[][] TIMEOUT_ARGS = new Object[1][];
+
     /**
      * The SMC version for Java serialization purposes.
      */
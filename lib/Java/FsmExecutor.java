@@ -0,0 +1,424 @@
+//
+// The contents of this file are subject to the Mozilla Public
+// License Version 1.1 (the "License"); you may not use this file
+// except in compliance with the License. You may obtain a copy
+// of the License at http://www.mozilla.org/MPL/
+//
+// Software distributed under the License is distributed on an
+// "AS IS" basis, WITHOUT WARRANTY OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// rights and limitations under the License.
+//
+// The Original Code is  State Machine Compiler(SMC).
+//
+// The Initial Developer of the Original Code is Charles W. Rapp.
+// Portions created by Charles W. Rapp are
+// Copyright (C) 2014. Charles W. Rapp.
+// All Rights Reserved.
+//
+// Contributor(s):
+//
+// statemap.java --
+//
+//  This package defines the FsmExecutor class which runs the
+//  tasks for a key on a fixed shard thread.
+//
+// RCS ID
+// $Id$
+//
+
+package statemap;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs tasks for many keyed state machines on a fixed number
+ * of shards. Each shard has a lock-free multiple-producer,
+ * single-consumer queue and one thread which runs the shard's
+ * tasks in the order they were queued. A key always maps to
+ * the same shard, so the tasks for a key run one at a time and
+ * in order, on the same thread. When each context is only
+ * touched by the tasks for its key, the context needs neither
+ * {@code -sync} nor {@code -concurrency mailbox}, and the
+ * generated code takes no locks.
+ * <p>
+ * A typical application keeps one context per key and issues
+ * each transition as a task:
+ * </p>
+ * <pre>
+ *   executor.execute(
+ *       connectionId,
+ *       new Runnable()
+ *       {
+ *           public void run()
+ *           {
+ *               connection.getFsm().Receive(segment);
+ *           }
+ *       });
+ * </pre>
+ * <p>
+ * The shard threads are created by the given thread factory.
+ * On Java 21 and later, pass {@code Thread.ofVirtual().factory()}
+ * to run each shard on a virtual thread. An idle shard thread
+ * is parked and is unparked by the next queued task.
+ * </p>
+ * <p>
+ * A task which throws an exception or error does not stop its
+ * shard, since the tasks queued behind it for other keys would
+ * never run. The throwable is passed to the shard thread's
+ * uncaught exception handler.
+ * </p>
+ *
+ * @author <a href="mailto:rapp@acm.org">Charles Rapp</a>
+ */
+
+public final class FsmExecutor
+{
+//---------------------------------------------------------------
+// Member methods.
+//
+
+    //-----------------------------------------------------------
+    // Constructors.
+    //
+
+    /**
+     * Creates an executor with {@code shardCount} shards whose
+     * threads are created by
+     * {@link Executors#defaultThreadFactory()}.
+     * @param shardCount the number of shards.
+     * @exception IllegalArgumentException
+     * if {@code shardCount} is &lt; 1.
+     */
+    public FsmExecutor(final int shardCount)
+    {
+        this (shardCount, Executors.defaultThreadFactory());
+    } // end of FsmExecutor(int)
+
+    /**
+     * Creates an executor with {@code shardCount} shards whose
+     * threads are created by {@code threadFactory}. The shard
+     * threads are started now.
+     * @param shardCount the number of shards.
+     * @param threadFactory creates the shard threads.
+     * @exception IllegalArgumentException
+     * if {@code shardCount} is &lt; 1.
+     * @exception NullPointerException
+     * if {@code threadFactory} is {@code null}.
+     */
+    public FsmExecutor(final int shardCount,
+                       final ThreadFactory threadFactory)
+    {
+        int index;
+
+        if (shardCount < 1)
+        {
+            throw (
+                new IllegalArgumentException(
+                    "invalid shard count (" +
+                    Integer.toString(shardCount) +
+                    ")"));
+        }
+        else if (threadFactory == null)
+        {
+            throw (new NullPointerException("null thread factory"));
+        }
+
+        _shards = new Shard[shardCount];
+        _terminated = new CountDownLatch(shardCount);
+        _shutdown = false;
+
+        for (index = 0; index < shardCount; ++index)
+        {
+            _shards[index] = new Shard(threadFactory);
+        }
+
+        // Start the threads after every shard is in place.
+        for (Shard shard : _shards)
+        {
+            shard.start();
+        }
+    } // end of FsmExecutor(int, ThreadFactory)
+
+    //
+    // end of Constructors.
+    //-----------------------------------------------------------
+
+    //-----------------------------------------------------------
+    // Get methods.
+    //
+
+    /**
+     * Returns the number of shards.
+     * @return the number of shards.
+     */
+    public int getShardCount()
+    {
+        return (_shards.length);
+    } // end of getShardCount()
+
+    /**
+     * Returns the shard running the tasks for {@code key}.
+     * @param key the task key.
+     * @return the shard index.
+     * @exception NullPointerException
+     * if {@code key} is {@code null}.
+     */
+    public int shardOf(final Object key)
+    {
+        int hash = key.hashCode();
+
+        // Spread the high bits down so that keys differing only
+        // in their high bits use different shards.
+        hash ^= (hash >>> 16);
+
+        return ((hash & Integer.MAX_VALUE) % _shards.length);
+    } // end of shardOf(Object)
+
+    /**
+     * Returns {@code true} if {@link #shutdown()} was called.
+     * @return {@code true} if this executor is shut down.
+     */
+    public boolean isShutdown()
+    {
+        return (_shutdown);
+    } // end of isShutdown()
+
+    /**
+     * Returns {@code true} if this executor is shut down and
+     * every shard thread has finished.
+     * @return {@code true} if this executor is terminated.
+     */
+    public boolean isTerminated()
+    {
+        return (_terminated.getCount() == 0L);
+    } // end of isTerminated()
+
+    //
+    // end of Get methods.
+    //-----------------------------------------------------------
+
+    /**
+     * Queues {@code task} on the shard for {@code key}. The
+     * task runs after the tasks previously queued for the same
+     * key. This method does not block.
+     * @param key the task key.
+     * @param task the task.
+     * @exception NullPointerException
+     * if {@code key} or {@code task} is {@code null}.
+     * @exception RejectedExecutionException
+     * if this executor is shut down.
+     */
+    public void execute(final Object key, final Runnable task)
+    {
+        if (task == null)
+        {
+            throw (new NullPointerException("null task"));
+        }
+
+        _shards[shardOf(key)].offer(task);
+
+        return;
+    } // end of execute(Object, Runnable)
+
+    /**
+     * Stops accepting tasks. The tasks already queued are run
+     * before the shard threads finish. Does not wait for the
+     * shard threads.
+     * @see #awaitTermination(long, TimeUnit)
+     */
+    public void shutdown()
+    {
+        _shutdown = true;
+
+        for (Shard shard : _shards)
+        {
+            shard.wake();
+        }
+
+        return;
+    } // end of shutdown()
+
+    /**
+     * Waits until every shard thread finishes after
+     * {@link #shutdown()} or the timeout expires.
+     * @param timeout the maximum time to wait.
+     * @param unit the timeout unit.
+     * @return {@code true} if this executor terminated and
+     * {@code false} if the timeout expired.
+     * @exception InterruptedException
+     * if the calling thread is interrupted while waiting.
+     */
+    public boolean awaitTermination(final long timeout,
+                                    final TimeUnit unit)
+        throws InterruptedException
+    {
+        return (_terminated.await(timeout, unit));
+    } // end of awaitTermination(long, TimeUnit)
+
+//---------------------------------------------------------------
+// Inner classes.
+//
+
+    // A shard's task queue and the thread running its tasks.
+    private final class Shard
+        implements Runnable
+    {
+    //-----------------------------------------------------------
+    // Member methods.
+    //
+
+        private Shard(final ThreadFactory threadFactory)
+        {
+            _tasks = new ConcurrentLinkedQueue<Runnable>();
+            _parked = new AtomicBoolean(false);
+            _thread = threadFactory.newThread(this);
+        } // end of Shard(ThreadFactory)
+
+        // Starts the shard thread.
+        private void start()
+        {
+            _thread.start();
+            return;
+        } // end of start()
+
+        // Queues the task and unparks the shard thread if it is
+        // waiting for a task.
+        private void offer(final Runnable task)
+        {
+            if (_shutdown == true)
+            {
+                throw (
+                    new RejectedExecutionException(
+                        "executor shut down"));
+            }
+
+            _tasks.offer(task);
+
+            // The shard thread may have seen the shutdown and
+            // an empty queue before the task was queued. If the
+            // task is still queued, then take it back.
+            if (_shutdown == true && _tasks.remove(task) == true)
+            {
+                throw (
+                    new RejectedExecutionException(
+                        "executor shut down"));
+            }
+
+            wake();
+
+            return;
+        } // end of offer(Runnable)
+
+        // Unparks the shard thread if it is parked. Only the
+        // thread which clears the parked flag unparks it.
+        private void wake()
+        {
+            if (_parked.get() == true &&
+                _parked.compareAndSet(true, false) == true)
+            {
+                LockSupport.unpark(_thread);
+            }
+
+            return;
+        } // end of wake()
+
+        // Runs the queued tasks until the executor is shut down
+        // and the queue is empty.
+        @Override
+        public void run()
+        {
+            try
+            {
+                while (true)
+                {
+                    runTasks();
+
+                    if (_shutdown == true)
+                    {
+                        break;
+                    }
+
+                    // Set the parked flag before checking the
+                    // queue again. A task queued after the check
+                    // sees the flag and unparks this thread.
+                    _parked.set(true);
+                    if (_tasks.isEmpty() == true &&
+                        _shutdown == false)
+                    {
+                        LockSupport.park(this);
+                    }
+                    _parked.set(false);
+                }
+
+                // Run any task queued before the shutdown was
+                // seen.
+                runTasks();
+            }
+            finally
+            {
+                _terminated.countDown();
+            }
+
+            return;
+        } // end of run()
+
+        // Runs the queued tasks until the queue is empty. A
+        // task's exception or error is reported and the next
+        // task is run.
+        private void runTasks()
+        {
+            Runnable task;
+
+            while ((task = _tasks.poll()) != null)
+            {
+                try
+                {
+                    task.run();
+                }
+                catch (Throwable tex)
+                {
+                    (_thread.getUncaughtExceptionHandler())
+                        .uncaughtException(_thread, tex);
+                }
+            }
+
+            return;
+        } // end of runTasks()
+
+    //-----------------------------------------------------------
+    // Member data.
+    //
+
+        // The queued tasks.
+        private final Queue<Runnable> _tasks;
+
+        // Set to true while the shard thread is parked or about
+        // to park.
+        private final AtomicBoolean _parked;
+
+        // The shard thread.
+        private final Thread _thread;
+    } // end of class Shard
+
+//---------------------------------------------------------------
+// Member data.
+//
+
+    // The shards.
+    private final Shard[] _shards;
+
+    // Counted down as each shard thread finishes.
+    private final CountDownLatch _terminated;
+
+    // Set to true by shutdown().
+    private volatile boolean _shutdown;
+} // end of class FsmExecutor
@@ -0,0 +1,577 @@
+//
+// The contents of this file are subject to the Mozilla Public
+// License Version 1.1 (the "License"); you may not use this file
+// except in compliance with the License. You may obtain a copy
+// of the License at http://www.mozilla.org/MPL/
+//
+// Software distributed under the License is distributed on an
+// "AS IS" basis, WITHOUT WARRANTY OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// rights and limitations under the License.
+//
+// The Original Code is  State Machine Compiler(SMC).
+//
+// The Initial Developer of the Original Code is Charles W. Rapp.
+// Portions created by Charles W. Rapp are
+// Copyright (C) 2014. Charles W. Rapp.
+// All Rights Reserved.
+//
+// Contributor(s):
+//
+// statemap.java --
+//
+//  This package defines the FsmMetrics class which counts the
+//  transitions taken by every instance of a generated context
+//  class.
+//
+// RCS ID
+// $Id$
+//
+
+package statemap;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts the transitions issued in each state by all instances
+ * of an SMC-generated context class. Java and Java 7 contexts
+ * generated with {@code -metrics} have a class-level
+ * {@code FsmMetrics} instance returned by the static
+ * {@code getMetrics()} method. Each transition method calls
+ * {@link #start()} before the transition and
+ * {@link #record(int, int, long)} after, passing the state
+ * and transition identifiers. A transition which throws an
+ * exception out of the transition method is not recorded.
+ * <p>
+ * The counters are a flat {@code long} array indexed by state
+ * and transition identifier. So recording a transition is one
+ * atomic increment with no allocation and no lock. The array
+ * is striped: a thread increments the copy selected by its
+ * thread identifier, so that threads running different
+ * instances of the same context class do not contend on the
+ * same counter. {@link #snapshot()} sums the stripes.
+ * </p>
+ * <p>
+ * Transition latency timing is off by default. When enabled by
+ * {@link #setTimingEnabled(boolean)}, each transition,
+ * including its state exit, transition and state entry
+ * actions, is timed with {@code System.nanoTime} and added to
+ * that transition's base 2 logarithmic histogram.
+ * </p>
+ *
+ * @author <a href="mailto:rapp@acm.org">Charles Rapp</a>
+ */
+
+public final class FsmMetrics
+{
+//---------------------------------------------------------------
+// Member methods.
+//
+
+    //-----------------------------------------------------------
+    // Constructors.
+    //
+
+    /**
+     * Creates the metrics for a context class with the given
+     * state and transition names. The state and transition
+     * identifiers are the indices into these arrays.
+     * @param name the context class name.
+     * @param stateNames the state names indexed by state
+     * identifier.
+     * @param transitionNames the transition names indexed by
+     * transition identifier.
+     */
+    public FsmMetrics(final String name,
+                      final String[] stateNames,
+                      final String[] transitionNames)
+    {
+        final int cellCount =
+            stateNames.length * transitionNames.length;
+
+        _name = name;
+        _stateNames = stateNames.clone();
+        _transitionNames = transitionNames.clone();
+        _stripeMask =
+            (cellCount > MAX_STRIPED_CELLS ? 0 : STRIPE_COUNT - 1);
+        _stripeSize = cellCount + STRIPE_PADDING;
+        _counts =
+            new AtomicLongArray((_stripeMask + 1) * _stripeSize);
+        _latencies =
+            new AtomicLongArray(
+                transitionNames.length * LATENCY_BUCKETS);
+        _latencyTotals =
+            new AtomicLongArray(transitionNames.length);
+        _timingEnabled = false;
+    } // end of FsmMetrics(String, String[], String[])
+
+    //
+    // end of Constructors.
+    //-----------------------------------------------------------
+
+    //-----------------------------------------------------------
+    // Get methods.
+    //
+
+    /**
+     * Returns the context class name.
+     * @return the context class name.
+     */
+    public String getName()
+    {
+        return (_name);
+    } // end of getName()
+
+    /**
+     * Returns the number of states.
+     * @return the number of states.
+     */
+    public int getStateCount()
+    {
+        return (_stateNames.length);
+    } // end of getStateCount()
+
+    /**
+     * Returns the number of transitions, including the
+     * Default transition.
+     * @return the number of transitions.
+     */
+    public int getTransitionCount()
+    {
+        return (_transitionNames.length);
+    } // end of getTransitionCount()
+
+    /**
+     * Returns {@code true} if transition latencies are timed.
+     * @return {@code true} if transition latencies are timed.
+     */
+    public boolean isTimingEnabled()
+    {
+        return (_timingEnabled);
+    } // end of isTimingEnabled()
+
+    //
+    // end of Get methods.
+    //-----------------------------------------------------------
+
+    //-----------------------------------------------------------
+    // Set methods.
+    //
+
+    /**
+     * Turns transition latency timing on or off. Timing adds
+     * two {@code System.nanoTime} calls to each transition.
+     * @param flag {@code true} to time transitions.
+     */
+    public void setTimingEnabled(final boolean flag)
+    {
+        _timingEnabled = flag;
+        return;
+    } // end of setTimingEnabled(boolean)
+
+    //
+    // end of Set methods.
+    //-----------------------------------------------------------
+
+    /**
+     * Returns the transition start time if timing is enabled
+     * and zero otherwise. Pass the returned value to
+     * {@link #record(int, int, long)}.
+     * @return the transition start time in nanoseconds.
+     */
+    public long start()
+    {
+        return (_timingEnabled == true ? System.nanoTime() : 0L);
+    } // end of start()
+
+    /**
+     * Counts a transition issued in the given state. If
+     * {@code startTime} is not zero, then the time since
+     * {@code startTime} is also added to the transition's
+     * latency histogram.
+     * @param stateId the state identifier when the transition
+     * was issued.
+     * @param transitionId the transition identifier.
+     * @param startTime the value returned by {@link #start()}.
+     */
+    public void record(final int stateId,
+                       final int transitionId,
+                       final long startTime)
+    {
+        final int stripe =
+            (int) Thread.currentThread().getId() & _stripeMask;
+        long elapsed;
+
+        _counts.incrementAndGet(
+            (stripe * _stripeSize) +
+            (stateId * _transitionNames.length) +
+            transitionId);
+
+        if (startTime != 0L)
+        {
+            elapsed = System.nanoTime() - startTime;
+            if (elapsed < 0L)
+            {
+                elapsed = 0L;
+            }
+
+            _latencies.incrementAndGet(
+                (transitionId * LATENCY_BUCKETS) +
+                Long.SIZE -
+                Long.numberOfLeadingZeros(elapsed));
+            _latencyTotals.addAndGet(transitionId, elapsed);
+        }
+
+        return;
+    } // end of record(int, int, long)
+
+    /**
+     * Returns the current counts and latency histograms. The
+     * snapshot is not atomic: transitions recorded while the
+     * snapshot is taken may or may not be included.
+     * @return the current metrics.
+     */
+    public Snapshot snapshot()
+    {
+        final int stateCount = _stateNames.length;
+        final int transitionCount = _transitionNames.length;
+        final long[][] counts = new long[stateCount][transitionCount];
+        final long[][] latencies =
+            new long[transitionCount][LATENCY_BUCKETS];
+        final long[] latencyTotals = new long[transitionCount];
+        int stripe;
+        int stateId;
+        int transitionId;
+        int bucket;
+        int index;
+
+        for (stripe = 0; stripe <= _stripeMask; ++stripe)
+        {
+            index = stripe * _stripeSize;
+
+            for (stateId = 0; stateId < stateCount; ++stateId)
+            {
+                for (transitionId = 0;
+                     transitionId < transitionCount;
+                     ++transitionId, ++index)
+                {
+                    counts[stateId][transitionId] +=
+                        _counts.get(index);
+                }
+            }
+        }
+
+        for (transitionId = 0, index = 0;
+             transitionId < transitionCount;
+             ++transitionId)
+        {
+            for (bucket = 0;
+                 bucket < LATENCY_BUCKETS;
+                 ++bucket, ++index)
+            {
+                latencies[transitionId][bucket] =
+                    _latencies.get(index);
+            }
+
+            latencyTotals[transitionId] =
+                _latencyTotals.get(transitionId);
+        }
+
+        return (new Snapshot(_name,
+                             _stateNames,
+                             _transitionNames,
+                             counts,
+                             latencies,
+                             latencyTotals));
+    } // end of snapshot()
+
+    /**
+     * Sets all counts and latency histograms to zero.
+     * Transitions recorded while resetting may or may not be
+     * cleared.
+     */
+    public void reset()
+    {
+        int index;
+
+        for (index = 0; index < _counts.length(); ++index)
+        {
+            _counts.set(index, 0L);
+        }
+
+        for (index = 0; index < _latencies.length(); ++index)
+        {
+            _latencies.set(index, 0L);
+        }
+
+        for (index = 0; index < _latencyTotals.length(); ++index)
+        {
+            _latencyTotals.set(index, 0L);
+        }
+
+        return;
+    } // end of reset()
+
+    // Returns the number of counter stripes: the number of
+    // processors rounded down to a power of two, no more than
+    // MAX_STRIPES.
+    private static int stripeCount()
+    {
+        final int processors =
+            Math.min(
+                Runtime.getRuntime().availableProcessors(),
+                MAX_STRIPES);
+
+        return (Integer.highestOneBit(Math.max(processors, 1)));
+    } // end of stripeCount()
+
+//---------------------------------------------------------------
+// Inner classes.
+//
+
+    /**
+     * An immutable copy of a context class's metrics at the
+     * time {@link FsmMetrics#snapshot()} was called.
+     */
+    public static final class Snapshot
+    {
+    //-----------------------------------------------------------
+    // Member methods.
+    //
+
+        //-------------------------------------------------------
+        // Constructors.
+        //
+
+        private Snapshot(final String name,
+                         final String[] stateNames,
+                         final String[] transitionNames,
+                         final long[][] counts,
+                         final long[][] latencies,
+                         final long[] latencyTotals)
+        {
+            _name = name;
+            _stateNames = stateNames;
+            _transitionNames = transitionNames;
+            _counts = counts;
+            _latencies = latencies;
+            _latencyTotals = latencyTotals;
+        } // end of Snapshot(...)
+
+        //
+        // end of Constructors.
+        //-------------------------------------------------------
+
+        //-------------------------------------------------------
+        // Get methods.
+        //
+
+        /**
+         * Returns the context class name.
+         * @return the context class name.
+         */
+        public String getName()
+        {
+            return (_name);
+        } // end of getName()
+
+        /**
+         * Returns the name of the given state.
+         * @param stateId the state identifier.
+         * @return the state name.
+         */
+        public String getStateName(final int stateId)
+        {
+            return (_stateNames[stateId]);
+        } // end of getStateName(int)
+
+        /**
+         * Returns the name of the given transition.
+         * @param transitionId the transition identifier.
+         * @return the transition name.
+         */
+        public String getTransitionName(final int transitionId)
+        {
+            return (_transitionNames[transitionId]);
+        } // end of getTransitionName(int)
+
+        /**
+         * Returns the number of times the transition was
+         * issued in the given state.
+         * @param stateId the state identifier.
+         * @param transitionId the transition identifier.
+         * @return the transition count.
+         */
+        public long getCount(final int stateId,
+                             final int transitionId)
+        {
+            return (_counts[stateId][transitionId]);
+        } // end of getCount(int, int)
+
+        /**
+         * Returns the number of times the transition was
+         * issued in any state.
+         * @param transitionId the transition identifier.
+         * @return the transition count.
+         */
+        public long getCount(final int transitionId)
+        {
+            long retval = 0L;
+
+            for (long[] stateCounts : _counts)
+            {
+                retval += stateCounts[transitionId];
+            }
+
+            return (retval);
+        } // end of getCount(int)
+
+        /**
+         * Returns the transition's latency histogram. Element
+         * {@code i} is the number of timed transitions which
+         * took at least 2<sup>i-1</sup> and less than
+         * 2<sup>i</sup> nanoseconds. Element zero counts the
+         * transitions which took less than one nanosecond.
+         * @param transitionId the transition identifier.
+         * @return a copy of the latency histogram.
+         */
+        public long[] getLatencyHistogram(final int transitionId)
+        {
+            return (_latencies[transitionId].clone());
+        } // end of getLatencyHistogram(int)
+
+        /**
+         * Returns the transition's mean latency in nanoseconds.
+         * Returns zero if the transition was not timed.
+         * @param transitionId the transition identifier.
+         * @return the mean latency in nanoseconds.
+         */
+        public long getMeanLatency(final int transitionId)
+        {
+            long timed = 0L;
+
+            for (long count : _latencies[transitionId])
+            {
+                timed += count;
+            }
+
+            return (timed == 0L ?
+                    0L :
+                    _latencyTotals[transitionId] / timed);
+        } // end of getMeanLatency(int)
+
+        //
+        // end of Get methods.
+        //-------------------------------------------------------
+
+        /**
+         * Returns the non-zero counts, one "state.transition
+         * count" per line.
+         * @return the non-zero counts.
+         */
+        @Override
+        public String toString()
+        {
+            final StringBuilder retval = new StringBuilder();
+            int stateId;
+            int transitionId;
+
+            retval.append(_name);
+
+            for (stateId = 0;
+                 stateId < _stateNames.length;
+                 ++stateId)
+            {
+                for (transitionId = 0;
+                     transitionId < _transitionNames.length;
+                     ++transitionId)
+                {
+                    if (_counts[stateId][transitionId] != 0L)
+                    {
+                        retval.append('\n')
+                              .append(_stateNames[stateId])
+                              .append('.')
+                              .append(_transitionNames[transitionId])
+                              .append(' ')
+                              .append(_counts[stateId][transitionId]);
+                    }
+                }
+            }
+
+            return (retval.toString());
+        } // end of toString()
+
+    //-----------------------------------------------------------
+    // Member data.
+    //
+
+        private final String _name;
+        private final String[] _stateNames;
+        private final String[] _transitionNames;
+
+        // Counts indexed by state and transition identifier.
+        private final long[][] _counts;
+
+        // Latency histograms indexed by transition identifier.
+        private final long[][] _latencies;
+
+        // Total timed latency indexed by transition identifier.
+        private final long[] _latencyTotals;
+    } // end of class Snapshot
+
+//---------------------------------------------------------------
+// Member data.
+//
+
+    // The context class name.
+    private final String _name;
+
+    // The state and transition names indexed by identifier.
+    private final String[] _stateNames;
+    private final String[] _transitionNames;
+
+    // A thread's stripe is its thread identifier masked by this
+    // value. Zero if the counters are not striped.
+    private final int _stripeMask;
+
+    // The number of counters in each stripe, including padding.
+    private final int _stripeSize;
+
+    // The transition counters. Stripe s, state i, transition j
+    // is at index (s * _stripeSize) + (i * transition count) + j.
+    private final AtomicLongArray _counts;
+
+    // The latency histograms. Transition j, bucket b is at index
+    // (j * LATENCY_BUCKETS) + b.
+    private final AtomicLongArray _latencies;
+
+    // The total timed latency for each transition.
+    private final AtomicLongArray _latencyTotals;
+
+    // Set to true to time transitions.
+    private volatile boolean _timingEnabled;
+
+    //-----------------------------------------------------------
+    // Constants.
+    //
+
+    /**
+     * Each transition latency histogram has this many base 2
+     * logarithmic buckets.
+     */
+    public static final int LATENCY_BUCKETS = 64;
+
+    // Never use more than this many stripes.
+    private static final int MAX_STRIPES = 8;
+
+    // Machines with more state, transition pairs than this are
+    // not striped.
+    private static final int MAX_STRIPED_CELLS = 65536;
+
+    // Pad each stripe by one cache line so that the end of one
+    // stripe and the start of the next do not share a line.
+    private static final int STRIPE_PADDING = 8;
+
+    // The number of counter stripes.
+    private static final int STRIPE_COUNT = stripeCount();
+} // end of class FsmMetrics
@@ -0,0 +1,414 @@
+//
+// The contents of this file are subject to the Mozilla Public
+// License Version 1.1 (the "License"); you may not use this file
+// except in compliance with the License. You may obtain a copy
+// of the License at http://www.mozilla.org/MPL/
+//
+// Software distributed under the License is distributed on an
+// "AS IS" basis, WITHOUT WARRANTY OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// rights and limitations under the License.
+//
+// The Original Code is  State Machine Compiler(SMC).
+//
+// The Initial Developer of the Original Code is Charles W. Rapp.
+// Portions created by Charles W. Rapp are
+// Copyright (C) 2014. Charles W. Rapp.
+// All Rights Reserved.
+//
+// Contributor(s):
+//
+// statemap.java --
+//
+//  This package defines the FsmTraceDecoder class which renders
+//  an FsmTracer trace as text.
+//
+// RCS ID
+// $Id$
+//
+
+package statemap;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Renders a trace written by {@link FsmTracer#write} as text,
+ * one line per record in time stamp order. The state and
+ * transition identifiers are replaced by their names. The
+ * names are passed to the constructor or are read from a
+ * {@code -java7} generated context class's {@code MAP_NAMES},
+ * {@code STATE_NAMES} and {@code TRANSITION_NAMES} tables by
+ * {@link #forContext(Class)}. The decoder is also run from the
+ * command line:
+ * <pre>
+ *   java -cp app.jar:statemap.jar statemap.FsmTraceDecoder context-class trace-file
+ * </pre>
+ * Identifiers without a name are output as numbers.
+ *
+ * @see FsmTracer
+ *
+ * @author <a href="mailto:rapp@acm.org">Charles Rapp</a>
+ */
+
+public final class FsmTraceDecoder
+{
+//---------------------------------------------------------------
+// Member methods.
+//
+
+    //-----------------------------------------------------------
+    // Main method.
+    //
+
+    /**
+     * Decodes a trace file to standard output. The arguments
+     * are the generated context class name and the trace file
+     * name.
+     * @param args the command line arguments.
+     */
+    public static void main(final String[] args)
+    {
+        int retcode = 0;
+
+        if (args.length != 2)
+        {
+            retcode = 1;
+            System.err.println(
+                "usage: FsmTraceDecoder context-class trace-file");
+        }
+        else
+        {
+            FsmTraceDecoder decoder;
+
+            try
+            {
+                decoder = forContext(Class.forName(args[0]));
+            }
+            catch (ClassNotFoundException classex)
+            {
+                System.err.print("FsmTraceDecoder: ");
+                System.err.print(args[0]);
+                System.err.println(" not found, names not used");
+
+                decoder = new FsmTraceDecoder(null, null);
+            }
+
+            try (InputStream in = new FileInputStream(args[1]))
+            {
+                decoder.decode(in, System.out);
+            }
+            catch (IOException ioex)
+            {
+                retcode = 1;
+                System.err.print("FsmTraceDecoder: ");
+                System.err.println(ioex.getMessage());
+            }
+        }
+
+        System.exit(retcode);
+    } // end of main(String[])
+
+    //
+    // end of Main method.
+    //-----------------------------------------------------------
+
+    //-----------------------------------------------------------
+    // Constructors.
+    //
+
+    /**
+     * Creates a decoder using the given state and transition
+     * names.
+     * @param stateNames the state names indexed by state
+     * identifier. May be {@code null}.
+     * @param transitionNames the transition names indexed by
+     * transition identifier. May be {@code null}.
+     */
+    public FsmTraceDecoder(final String[] stateNames,
+                           final String[] transitionNames)
+    {
+        _stateNames =
+            (stateNames == null ? NO_NAMES : stateNames.clone());
+        _transitionNames =
+            (transitionNames == null ?
+             NO_NAMES :
+             transitionNames.clone());
+    } // end of FsmTraceDecoder(String[], String[])
+
+    /**
+     * Returns a decoder which uses the names in a
+     * {@code -java7} generated context class. The state names
+     * are "map.state". If the class does not have the name
+     * tables, then the decoder outputs the identifiers as
+     * numbers.
+     * @param contextClass the generated context class.
+     * @return the context class trace decoder.
+     */
+    public static FsmTraceDecoder forContext(final Class<?> contextClass)
+    {
+        final List<String> stateNames = new ArrayList<String>();
+        String[] transitionNames = null;
+
+        try
+        {
+            final String[] mapNames =
+                (String[]) staticField(contextClass, "MAP_NAMES");
+            final String[][] mapStateNames =
+                (String[][]) staticField(contextClass, "STATE_NAMES");
+            int mapIndex;
+
+            for (mapIndex = 0;
+                 mapIndex < mapNames.length;
+                 ++mapIndex)
+            {
+                for (String stateName : mapStateNames[mapIndex])
+                {
+                    stateNames.add(
+                        mapNames[mapIndex] + "." + stateName);
+                }
+            }
+
+            transitionNames =
+                (String[])
+                    staticField(contextClass, "TRANSITION_NAMES");
+        }
+        catch (ReflectiveOperationException |
+               ClassCastException |
+               SecurityException jex)
+        {
+            stateNames.clear();
+        }
+
+        return (
+            new FsmTraceDecoder(
+                stateNames.toArray(new String[stateNames.size()]),
+                transitionNames));
+    } // end of forContext(Class<?>)
+
+    //
+    // end of Constructors.
+    //-----------------------------------------------------------
+
+    /**
+     * Reads the trace from {@code in} and writes one line per
+     * record to {@code out}. The time is output in microseconds
+     * since the first record. {@code in} is not closed.
+     * @param in read the trace from this stream.
+     * @param out write the decoded trace to this stream.
+     * @exception IOException
+     * if {@code in} is not a trace or reading fails.
+     */
+    public void decode(final InputStream in,
+                       final PrintStream out)
+        throws IOException
+    {
+        final DataInputStream input =
+            new DataInputStream(new BufferedInputStream(in));
+        final List<Record> records = new ArrayList<Record>();
+        final long startTime;
+        int ringCount;
+        String threadName;
+        long count;
+        int size;
+
+        if (input.readInt() != FsmTracer.MAGIC)
+        {
+            throw (new IOException("not an FsmTracer trace"));
+        }
+        else if (input.readInt() != FsmTracer.VERSION)
+        {
+            throw (new IOException("unsupported trace version"));
+        }
+
+        for (ringCount = input.readInt();
+             ringCount > 0;
+             --ringCount)
+        {
+            input.readLong();
+            threadName = input.readUTF();
+            count = input.readLong();
+            size = input.readInt();
+
+            out.print("THREAD ");
+            out.print(threadName);
+            out.print(": ");
+            out.print(size);
+            out.print(" records");
+            if (count > size)
+            {
+                out.print(", ");
+                out.print(count - size);
+                out.print(" overwritten");
+            }
+            out.println();
+
+            for (; size > 0; --size)
+            {
+                records.add(
+                    new Record(threadName,
+                               input.readLong(),
+                               input.readInt(),
+                               input.readInt(),
+                               input.readInt(),
+                               input.readInt()));
+            }
+        }
+
+        // Each thread's records are in time order. Merge the
+        // threads.
+        Collections.sort(records, TIME_ORDER);
+
+        startTime = (records.isEmpty() ? 0L : records.get(0)._time);
+        for (Record record : records)
+        {
+            out.format("%12.3f %s #%d %s%s%n",
+                       (record._time - startTime) / 1000.0,
+                       record._threadName,
+                       record._machineId,
+                       kindName(record._kind),
+                       recordName(record));
+        }
+
+        out.flush();
+
+        return;
+    } // end of decode(InputStream, PrintStream)
+
+    // Returns the record's "state", "state.transition" or
+    // "transition" name.
+    private String recordName(final Record record)
+    {
+        final StringBuilder retval = new StringBuilder();
+
+        if (record._stateId != FsmTracer.NO_ID)
+        {
+            retval.append(name(_stateNames, record._stateId));
+        }
+
+        if (record._transitionId != FsmTracer.NO_ID)
+        {
+            if (retval.length() > 0)
+            {
+                retval.append('.');
+            }
+
+            retval.append(
+                name(_transitionNames, record._transitionId));
+        }
+
+        return (retval.toString());
+    } // end of recordName(Record)
+
+    // Returns the name for the given identifier. If there is no
+    // such name, then returns the identifier.
+    private static String name(final String[] names,
+                               final int id)
+    {
+        return (id >= 0 && id < names.length ?
+                names[id] :
+                Integer.toString(id));
+    } // end of name(String[], int)
+
+    // Returns the event kind's debug output prefix.
+    private static String kindName(final int kind)
+    {
+        return (kind >= 0 && kind < KIND_NAMES.length ?
+                KIND_NAMES[kind] :
+                String.format("%-16s: ", "KIND " + kind));
+    } // end of kindName(int)
+
+    // Returns the value of the class's private static field.
+    private static Object staticField(final Class<?> clazz,
+                                      final String name)
+        throws ReflectiveOperationException
+    {
+        final Field field = clazz.getDeclaredField(name);
+
+        field.setAccessible(true);
+
+        return (field.get(null));
+    } // end of staticField(Class<?>, String)
+
+//---------------------------------------------------------------
+// Inner classes.
+//
+
+    // A decoded trace record.
+    private static final class Record
+    {
+        private Record(final String threadName,
+                       final long time,
+                       final int machineId,
+                       final int stateId,
+                       final int transitionId,
+                       final int kind)
+        {
+            _threadName = threadName;
+            _time = time;
+            _machineId = machineId;
+            _stateId = stateId;
+            _transitionId = transitionId;
+            _kind = kind;
+        } // end of Record(...)
+
+        private final String _threadName;
+        private final long _time;
+        private final int _machineId;
+        private final int _stateId;
+        private final int _transitionId;
+        private final int _kind;
+    } // end of class Record
+
+//---------------------------------------------------------------
+// Member data.
+//
+
+    // The state names indexed by state identifier.
+    private final String[] _stateNames;
+
+    // The transition names indexed by transition identifier.
+    private final String[] _transitionNames;
+
+    //-----------------------------------------------------------
+    // Constants.
+    //
+
+    private static final String[] NO_NAMES = new String[0];
+
+    // The event kind names indexed by FsmTracer kind. These
+    // match the debug stream output.
+    private static final String[] KIND_NAMES =
+    {
+        "LEAVING STATE   : ",
+        "ENTER TRANSITION: ",
+        "EXIT TRANSITION : ",
+        "ENTERING STATE  : ",
+        "PUSH TO STATE   : ",
+        "POP TO STATE    : ",
+        "TRANSITION      : Default "
+    };
+
+    // Sorts records by time stamp. nanoTime values are compared
+    // by difference since they may wrap.
+    private static final Comparator<Record> TIME_ORDER =
+        new Comparator<Record>()
+        {
+            @Override
+            public int compare(final Record r1, final Record r2)
+            {
+                final long diff = r1._time - r2._time;
+
+                return (diff < 0L ? -1 : (diff > 0L ? 1 : 0));
+            }
+        };
+} // end of class FsmTraceDecoder
@@ -0,0 +1,424 @@
+//
+// The contents of this file are subject to the Mozilla Public
+// License Version 1.1 (the "License"); you may not use this file
+// except in compliance with the License. You may obtain a copy
+// of the License at http://www.mozilla.org/MPL/
+//
+// Software distributed under the License is distributed on an
+// "AS IS" basis, WITHOUT WARRANTY OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// rights and limitations under the License.
+//
+// The Original Code is  State Machine Compiler(SMC).
+//
+// The Initial Developer of the Original Code is Charles W. Rapp.
+// Portions created by Charles W. Rapp are
+// Copyright (C) 2014. Charles W. Rapp.
+// All Rights Reserved.
+//
+// Contributor(s):
+//
+// statemap.java --
+//
+//  This package defines the FsmTracer class which records FSM
+//  trace events as binary records in per-thread ring buffers.
+//
+// RCS ID
+// $Id$
+//
+
+package statemap;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Records FSM trace events as fixed-size binary records rather
+ * than debug stream text. A context writes to a tracer after
+ * {@code FSMContext.setTracer} or {@code FSMContext7.setTracer}
+ * is called. The context records its state changes and Java 7
+ * contexts generated with {@code -g} also record their
+ * transitions and state exits. These are the same events
+ * written to the debug stream, but a record is only a time
+ * stamp and four integers: the machine identifier, state
+ * identifier, transition identifier and event kind.
+ * <p>
+ * Each thread writes to its own ring buffer, allocated when
+ * the thread records its first event. So recording an event
+ * takes no lock and allocates nothing. When a ring buffer is
+ * full, the thread's oldest records are overwritten. A ring
+ * buffer refers to its thread weakly. When a thread records
+ * its first event, the ring buffers of threads which have
+ * since terminated are dropped along with their records. So
+ * a tracer used by short-lived threads does not grow without
+ * bound.
+ * </p>
+ * <p>
+ * {@link #write(OutputStream)} writes every thread's records
+ * in a binary format read by {@link FsmTraceDecoder}, which
+ * renders them as text offline. The ring buffers are not
+ * synchronized with the writing thread, so records made while
+ * {@code write} runs may be incomplete. Write the trace after
+ * the traced threads have stopped or after an error is
+ * detected.
+ * </p>
+ *
+ * @see FsmTraceDecoder
+ *
+ * @author <a href="mailto:rapp@acm.org">Charles Rapp</a>
+ */
+
+public final class FsmTracer
+{
+//---------------------------------------------------------------
+// Member methods.
+//
+
+    //-----------------------------------------------------------
+    // Constructors.
+    //
+
+    /**
+     * Creates a tracer which keeps the last {@code capacity}
+     * records made by each thread. {@code capacity} is rounded
+     * up to a power of two.
+     * @param capacity the number of records kept per thread.
+     * @exception IllegalArgumentException
+     * if {@code capacity} is &lt; 1 or &gt; 2<sup>26</sup>.
+     */
+    public FsmTracer(final int capacity)
+    {
+        if (capacity < 1 || capacity > MAX_CAPACITY)
+        {
+            throw (
+                new IllegalArgumentException(
+                    "invalid capacity (" +
+                    Integer.toString(capacity) +
+                    ")"));
+        }
+
+        _capacity =
+            (capacity == 1 ?
+             1 :
+             Integer.highestOneBit(capacity - 1) << 1);
+        _rings = new ArrayList<Ring>();
+        _threadRing =
+            new ThreadLocal<Ring>()
+            {
+                @Override
+                protected Ring initialValue()
+                {
+                    return (newRing());
+                }
+            };
+    } // end of FsmTracer(int)
+
+    //
+    // end of Constructors.
+    //-----------------------------------------------------------
+
+    //-----------------------------------------------------------
+    // Get methods.
+    //
+
+    /**
+     * Returns the number of records kept per thread.
+     * @return the number of records kept per thread.
+     */
+    public int getCapacity()
+    {
+        return (_capacity);
+    } // end of getCapacity()
+
+    //
+    // end of Get methods.
+    //-----------------------------------------------------------
+
+    /**
+     * Records an event in the calling thread's ring buffer.
+     * @param machineId the traced context's machine identifier.
+     * @param stateId the state identifier or
+     * {@link #NO_ID}.
+     * @param transitionId the transition identifier or
+     * {@link #NO_ID}.
+     * @param kind the event kind.
+     */
+    public void record(final int machineId,
+                       final int stateId,
+                       final int transitionId,
+                       final int kind)
+    {
+        (_threadRing.get()).add(
+            System.nanoTime(), machineId, stateId, transitionId, kind);
+        return;
+    } // end of record(int, int, int, int)
+
+    /**
+     * Writes every thread's records to {@code out} in the
+     * format read by {@link FsmTraceDecoder}. {@code out} is
+     * flushed but not closed.
+     * @param out write the trace to this stream.
+     * @exception IOException
+     * if writing the trace fails.
+     */
+    public void write(final OutputStream out)
+        throws IOException
+    {
+        final DataOutputStream output =
+            new DataOutputStream(new BufferedOutputStream(out));
+        final List<Ring> rings;
+
+        synchronized (_rings)
+        {
+            rings = new ArrayList<Ring>(_rings);
+        }
+
+        output.writeInt(MAGIC);
+        output.writeInt(VERSION);
+        output.writeInt(rings.size());
+
+        for (Ring ring : rings)
+        {
+            ring.write(output);
+        }
+
+        output.flush();
+
+        return;
+    } // end of write(OutputStream)
+
+    /**
+     * Discards every thread's records. Records made while
+     * clearing may or may not be discarded.
+     */
+    public void clear()
+    {
+        synchronized (_rings)
+        {
+            for (Ring ring : _rings)
+            {
+                ring.clear();
+            }
+        }
+
+        return;
+    } // end of clear()
+
+    // Creates and registers the calling thread's ring buffer.
+    // The ring buffers of terminated threads are unregistered.
+    private Ring newRing()
+    {
+        final Ring retval =
+            new Ring(Thread.currentThread(), _capacity);
+        Iterator<Ring> rit;
+
+        synchronized (_rings)
+        {
+            for (rit = _rings.iterator(); rit.hasNext() == true; )
+            {
+                if ((rit.next()).isThreadAlive() == false)
+                {
+                    rit.remove();
+                }
+            }
+
+            _rings.add(retval);
+        }
+
+        return (retval);
+    } // end of newRing()
+
+//---------------------------------------------------------------
+// Inner classes.
+//
+
+    // A thread's ring buffer. Each record is RECORD_SIZE longs:
+    // the time stamp, the machine identifier and kind, and the
+    // state and transition identifiers.
+    private static final class Ring
+    {
+    //-----------------------------------------------------------
+    // Member methods.
+    //
+
+        private Ring(final Thread thread, final int capacity)
+        {
+            _thread = new WeakReference<Thread>(thread);
+            _threadId = thread.getId();
+            _threadName = thread.getName();
+            _records = new long[capacity * RECORD_SIZE];
+            _mask = capacity - 1;
+            _count = 0L;
+        } // end of Ring(Thread, int)
+
+        // Returns true if the ring's thread has not terminated.
+        private boolean isThreadAlive()
+        {
+            final Thread thread = _thread.get();
+
+            return (thread != null && thread.isAlive() == true);
+        } // end of isThreadAlive()
+
+        // Adds a record, overwriting the oldest record if the
+        // ring is full.
+        private void add(final long time,
+                         final int machineId,
+                         final int stateId,
+                         final int transitionId,
+                         final int kind)
+        {
+            final int index = ((int) _count & _mask) * RECORD_SIZE;
+
+            _records[index] = time;
+            _records[index + 1] =
+                ((long) machineId << 32) | (kind & INT_MASK);
+            _records[index + 2] =
+                ((long) stateId << 32) | (transitionId & INT_MASK);
+            ++_count;
+
+            return;
+        } // end of add(long, int, int, int, int)
+
+        // Writes this ring's header and records, oldest first.
+        private void write(final DataOutputStream output)
+            throws IOException
+        {
+            final long count = _count;
+            final int size =
+                (int) Math.min(count, (long) (_mask + 1));
+            long position;
+            int index;
+
+            output.writeLong(_threadId);
+            output.writeUTF(_threadName);
+            output.writeLong(count);
+            output.writeInt(size);
+
+            for (position = count - size;
+                 position < count;
+                 ++position)
+            {
+                index = ((int) position & _mask) * RECORD_SIZE;
+
+                output.writeLong(_records[index]);
+                output.writeInt((int) (_records[index + 1] >>> 32));
+                output.writeInt((int) (_records[index + 2] >>> 32));
+                output.writeInt((int) _records[index + 2]);
+                output.writeInt((int) _records[index + 1]);
+            }
+
+            return;
+        } // end of write(DataOutputStream)
+
+        private void clear()
+        {
+            _count = 0L;
+            return;
+        } // end of clear()
+
+    //-----------------------------------------------------------
+    // Member data.
+    //
+
+        // The ring's thread. Does not keep the thread from
+        // being collected.
+        private final WeakReference<Thread> _thread;
+
+        private final long _threadId;
+        private final String _threadName;
+        private final long[] _records;
+        private final int _mask;
+
+        // The number of records added since the ring was
+        // created or cleared.
+        private long _count;
+    } // end of class Ring
+
+//---------------------------------------------------------------
+// Member data.
+//
+
+    // The number of records kept per thread. A power of two.
+    private final int _capacity;
+
+    // Every live thread's ring buffer, in creation order.
+    private final List<Ring> _rings;
+
+    // The calling thread's ring buffer.
+    private final ThreadLocal<Ring> _threadRing;
+
+    //-----------------------------------------------------------
+    // Constants.
+    //
+
+    /**
+     * A state or transition identifier which is not known.
+     */
+    public static final int NO_ID = -1;
+
+    /**
+     * The transition is leaving the state. This is the
+     * "LEAVING STATE" debug output.
+     */
+    public static final int STATE_EXIT = 0;
+
+    /**
+     * The transition actions are starting. This is the
+     * "ENTER TRANSITION" debug output.
+     */
+    public static final int TRANSITION_ENTER = 1;
+
+    /**
+     * The transition actions completed. This is the
+     * "EXIT TRANSITION" debug output.
+     */
+    public static final int TRANSITION_EXIT = 2;
+
+    /**
+     * The context was set to the state. This is the
+     * "ENTERING STATE" debug output.
+     */
+    public static final int STATE_SET = 3;
+
+    /**
+     * The state was pushed. This is the "PUSH TO STATE"
+     * debug output.
+     */
+    public static final int STATE_PUSH = 4;
+
+    /**
+     * The context popped to the state. This is the
+     * "POP TO STATE" debug output.
+     */
+    public static final int STATE_POP = 5;
+
+    /**
+     * The transition is not defined in the state. This is the
+     * "TRANSITION : Default" debug output.
+     */
+    public static final int DEFAULT_TRANSITION = 6;
+
+    /**
+     * The trace stream begins with this value.
+     */
+    /* package */ static final int MAGIC = 0x534d4354;
+
+    /**
+     * The trace stream format version.
+     */
+    /* package */ static final int VERSION = 1;
+
+    // The largest per-thread capacity.
+    private static final int MAX_CAPACITY = 1 << 26;
+
+    // Each record is this many longs.
+    private static final int RECORD_SIZE = 3;
+
+    private static final long INT_MASK = 0xffffffffL;
+} // end of class FsmTracer
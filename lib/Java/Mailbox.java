@@ -0,0 +1,202 @@
+//
+// The contents of this file are subject to the Mozilla Public
+// License Version 1.1 (the "License"); you may not use this file
+// except in compliance with the License. You may obtain a copy
+// of the License at http://www.mozilla.org/MPL/
+//
+// Software distributed under the License is distributed on an
+// "AS IS" basis, WITHOUT WARRANTY OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// rights and limitations under the License.
+//
+// The Original Code is  State Machine Compiler(SMC).
+//
+// The Initial Developer of the Original Code is Charles W. Rapp.
+// Portions created by Charles W. Rapp are
+// Copyright (C) 2014. Charles W. Rapp.
+// All Rights Reserved.
+//
+// Contributor(s):
+//
+// statemap.java --
+//
+//  This package defines the Mailbox class which serializes
+//  transitions issued from multiple threads without locking.
+//
+// RCS ID
+// $Id$
+//
+
+package statemap;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A {@code Mailbox} runs tasks posted from any number of
+ * threads one at a time, in post order, without blocking the
+ * posting threads. SMC-generated Java code uses a mailbox when
+ * generated with {@code -concurrency mailbox}: each transition
+ * method posts the transition as a task rather than acquiring
+ * the context's monitor as {@code -sync} does.
+ * <p>
+ * Posted tasks are placed on a lock-free multiple-producer,
+ * single-consumer queue. The posting thread then tries to
+ * become the mailbox's executing thread by setting the
+ * executing flag with compare-and-set. The winning thread runs
+ * the queued tasks until the queue is empty, including tasks
+ * posted by other threads and by the tasks themselves. The
+ * losing threads return immediately. So a transition issued
+ * from within a transition action runs after the current
+ * transition completes, preserving SMC's run-to-completion
+ * semantics.
+ * </p>
+ * <p>
+ * A task which throws a {@code RuntimeException} does not
+ * stop the executing thread from running the remaining tasks.
+ * The first such exception is re-thrown to the executing
+ * thread after the queue is emptied. Note that this thread may
+ * not be the thread which posted the failed task.
+ * </p>
+ *
+ * @author <a href="mailto:rapp@acm.org">Charles Rapp</a>
+ */
+
+public final class Mailbox
+{
+//---------------------------------------------------------------
+// Member methods.
+//
+
+    //-----------------------------------------------------------
+    // Constructors.
+    //
+
+    /**
+     * Creates an empty mailbox.
+     */
+    public Mailbox()
+    {
+        _tasks = new ConcurrentLinkedQueue<Runnable>();
+        _executing = new AtomicBoolean(false);
+    } // end of Mailbox()
+
+    //
+    // end of Constructors.
+    //-----------------------------------------------------------
+
+    //-----------------------------------------------------------
+    // Get methods.
+    //
+
+    /**
+     * Returns {@code true} if a thread is currently running
+     * this mailbox's tasks.
+     * @return {@code true} if a thread is currently running
+     * this mailbox's tasks.
+     */
+    public boolean isExecuting()
+    {
+        return (_executing.get());
+    } // end of isExecuting()
+
+    /**
+     * Returns {@code true} if there are no queued tasks.
+     * @return {@code true} if there are no queued tasks.
+     */
+    public boolean isEmpty()
+    {
+        return (_tasks.isEmpty());
+    } // end of isEmpty()
+
+    //
+    // end of Get methods.
+    //-----------------------------------------------------------
+
+    /**
+     * Queues {@code task} and then runs the queued tasks if no
+     * other thread is doing so.
+     * @param task post this task.
+     * @exception NullPointerException
+     * if {@code task} is {@code null}.
+     * @exception RuntimeException
+     * the first runtime exception thrown by a task run by this
+     * thread.
+     */
+    public void post(final Runnable task)
+    {
+        if (task == null)
+        {
+            throw (new NullPointerException("null task"));
+        }
+
+        _tasks.offer(task);
+        drain();
+
+        return;
+    } // end of post(Runnable)
+
+    /**
+     * Runs the queued tasks until the queue is empty. Returns
+     * immediately if another thread is running the tasks.
+     */
+    private void drain()
+    {
+        RuntimeException failure = null;
+        Runnable task;
+
+        // After releasing the executing flag, check the queue
+        // again. A task may have been posted after the last
+        // poll but before the flag was released. That thread
+        // lost the compare-and-set and is relying on this
+        // thread to run the task.
+        while (_tasks.isEmpty() == false &&
+               _executing.compareAndSet(false, true) == true)
+        {
+            try
+            {
+                while ((task = _tasks.poll()) != null)
+                {
+                    try
+                    {
+                        task.run();
+                    }
+                    catch (RuntimeException jex)
+                    {
+                        if (failure == null)
+                        {
+                            failure = jex;
+                        }
+                    }
+                }
+            }
+            finally
+            {
+                _executing.set(false);
+            }
+        }
+
+        if (failure != null)
+        {
+            throw (failure);
+        }
+
+        return;
+    } // end of drain()
+
+//---------------------------------------------------------------
+// Member data.
+//
+
+    /**
+     * The posted tasks waiting to be run.
+     */
+    private final Queue<Runnable> _tasks;
+
+    /**
+     * Set to {@code true} while a thread is running the posted
+     * tasks.
+     */
+    private final AtomicBoolean _executing;
+} // end of class Mailbox
@@ -0,0 +1,105 @@
+//
+// The contents of this file are subject to the Mozilla Public
+// License Version 1.1 (the "License"); you may not use this file
+// except in compliance with the License. You may obtain a copy
+// of the License at http://www.mozilla.org/MPL/
+//
+// Software distributed under the License is distributed on an
+// "AS IS" basis, WITHOUT WARRANTY OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// rights and limitations under the License.
+//
+// The Original Code is  State Machine Compiler(SMC).
+//
+// The Initial Developer of the Original Code is Charles W. Rapp.
+// Portions created by Charles W. Rapp are
+// Copyright (C) 2014. Charles W. Rapp.
+// All Rights Reserved.
+//
+// Contributor(s):
+//
+// statemap.java --
+//
+//  This package defines the PushOnFullStateStackException class
+//  thrown when a fixed-size state stack overflows.
+//
+// RCS ID
+// $Id$
+//
+
+package statemap;
+
+/**
+ * A {@code PushOnFullStateStackException} is thrown by an
+ * SMC-generated state machine when a push transition is taken
+ * and the fixed-size state stack is full. A state machine has a
+ * fixed-size state stack when generated with the
+ * {@code -stack max-stack-depth} option. The push transition is
+ * not taken and the current state is unchanged.
+ *
+ * @see FSMContext#pushState(State)
+ * @see FSMContext7#pushState(State7)
+ *
+ * @author <a href="mailto:rapp@acm.org">Charles Rapp</a>
+ */
+
+public final class PushOnFullStateStackException
+    extends RuntimeException
+{
+//---------------------------------------------------------------
+// Member methods.
+//
+
+    //-----------------------------------------------------------
+    // Constructors.
+    //
+
+    /**
+     * Constructs a {@code PushOnFullStateStackException} for a
+     * state stack of the given maximum depth.
+     * @param maxDepth the state stack's fixed size.
+     */
+    public PushOnFullStateStackException(final int maxDepth)
+    {
+        super("state stack is full (max depth " +
+              Integer.toString(maxDepth) +
+              ")");
+
+        _maxDepth = maxDepth;
+    } // end of PushOnFullStateStackException(int)
+
+    //
+    // end of Constructors.
+    //-----------------------------------------------------------
+
+    //-----------------------------------------------------------
+    // Get methods.
+    //
+
+    /**
+     * Returns the state stack's fixed size.
+     * @return the state stack's fixed size.
+     */
+    public int getMaxDepth()
+    {
+        return (_maxDepth);
+    } // end of getMaxDepth()
+
+    //
+    // end of Get methods.
+    //-----------------------------------------------------------
+
+//---------------------------------------------------------------
+// Member data.
+//
+
+    /**
+     * The full state stack's fixed size.
+     */
+    private final int _maxDepth;
+
+    //-----------------------------------------------------------
+    // Constants.
+    //
+    private static final long serialVersionUID = 0x070000L;
+} // end of class PushOnFullStateStackException
@@ -0,0 +1,67 @@
+//
+// The contents of this file are subject to the Mozilla Public
+// License Version 1.1 (the "License"); you may not use this file
+// except in compliance with the License. You may obtain a copy
+// of the License at http://www.mozilla.org/MPL/
+//
+// Software distributed under the License is distributed on an
+// "AS IS" basis, WITHOUT WARRANTY OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// rights and limitations under the License.
+//
+// The Original Code is  State Machine Compiler(SMC).
+//
+// The Initial Developer of the Original Code is Charles W. Rapp.
+// Portions created by Charles W. Rapp are
+// Copyright (C) 2000 - 2009. Charles W. Rapp.
+// All Rights Reserved.
+//
+// Contributor(s):
+//
+// statemap.java --
+//
+//  This package defines the StateChangeListener interface
+//  which is told of each FSMContext state change.
+//
+// RCS ID
+// $Id$
+//
+
+package statemap;
+
+/**
+ * Receives {@link FSMContext} state changes. Unlike a
+ * {@link java.beans.PropertyChangeListener}, no event object is
+ * created for a state change: the finite state machine, the
+ * previous and current states and the transition name are
+ * passed directly to {@link #stateChanged}.
+ * <p>
+ * A listener is called from within the transition causing the
+ * state change and on the thread issuing that transition. A
+ * listener should not issue a transition on the finite state
+ * machine.
+ * </p>
+ *
+ * @see FSMContext#addStateChangeListener(StateChangeListener)
+ * @see StateChangeListener7
+ *
+ * @author <a href="mailto:rapp@acm.org">Charles Rapp</a>
+ */
+
+public interface StateChangeListener
+{
+    /**
+     * The finite state machine {@code fsm} changed state from
+     * {@code from} to {@code to}.
+     * @param fsm the finite state machine changing state.
+     * @param from the previous state. May be {@code null}.
+     * @param to the current state.
+     * @param transition the transition causing the state
+     * change. Will be an empty string if the state was set
+     * outside of a transition.
+     */
+    void stateChanged(FSMContext fsm,
+                      State from,
+                      State to,
+                      String transition);
+} // end of interface StateChangeListener
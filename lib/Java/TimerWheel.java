@@ -0,0 +1,483 @@
+//
+// The contents of this file are subject to the Mozilla Public
+// License Version 1.1 (the "License"); you may not use this file
+// except in compliance with the License. You may obtain a copy
+// of the License at http://www.mozilla.org/MPL/
+//
+// Software distributed under the License is distributed on an
+// "AS IS" basis, WITHOUT WARRANTY OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// rights and limitations under the License.
+//
+// The Original Code is  State Machine Compiler(SMC).
+//
+// The Initial Developer of the Original Code is Charles W. Rapp.
+// Portions created by Charles W. Rapp are
+// Copyright (C) 2014. Charles W. Rapp.
+// All Rights Reserved.
+//
+// Contributor(s):
+//
+// statemap.java --
+//
+//  This package defines the TimerWheel class which runs a large
+//  number of timers on a hashed hierarchical timing wheel.
+//
+// RCS ID
+// $Id$
+//
+
+package statemap;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs timers on a hashed hierarchical timing wheel. Time is
+ * divided into ticks of a fixed duration. A timer is placed in
+ * one of {@link #LEVEL_COUNT} wheels of {@link #SLOT_COUNT}
+ * slots according to how many ticks remain until it expires:
+ * the first wheel holds the timers expiring in the next
+ * {@code SLOT_COUNT} ticks, the second wheel those expiring in
+ * the next {@code SLOT_COUNT}<sup>2</sup> ticks and so on. When
+ * a higher wheel's slot comes due, its timers are moved down to
+ * the lower wheels. Timers too far away for the last wheel stay
+ * in it until they are close enough.
+ * <p>
+ * Each slot is a doubly-linked list threaded through the
+ * {@link Timer} objects themselves, so scheduling and
+ * cancelling a timer takes constant time and allocates nothing.
+ * A timer may be rescheduled any number of times.
+ * </p>
+ * <p>
+ * The wheel does not have its own thread. The application
+ * calls {@link #expire()} regularly, typically once per tick
+ * from the thread running the state machines. {@code expire}
+ * calls {@link Timer#expired()} for every timer that is due,
+ * slot by slot. A timer expires no earlier than its delay and
+ * no later than the first {@code expire} call a tick after
+ * that. A timer wheel is not thread-safe and must be used by
+ * one thread at a time.
+ * </p>
+ * <p>
+ * {@link FSMContext7#startStateTimer(int, long, TimeUnit)}
+ * uses the context's timer wheel to issue a transition when a
+ * state times out.
+ * </p>
+ *
+ * @see FSMContext7#setTimerWheel(TimerWheel)
+ *
+ * @author <a href="mailto:rapp@acm.org">Charles Rapp</a>
+ */
+
+public final class TimerWheel
+{
+//---------------------------------------------------------------
+// Member methods.
+//
+
+    //-----------------------------------------------------------
+    // Constructors.
+    //
+
+    /**
+     * Creates an empty timer wheel whose tick is the given
+     * duration. Time starts now.
+     * @param tickDuration the tick duration.
+     * @param unit the tick duration unit.
+     * @exception IllegalArgumentException
+     * if {@code tickDuration} is less than one nanosecond.
+     */
+    public TimerWheel(final long tickDuration,
+                      final TimeUnit unit)
+    {
+        final long tickNanos = unit.toNanos(tickDuration);
+
+        if (tickNanos < 1L)
+        {
+            throw (
+                new IllegalArgumentException(
+                    "invalid tick duration (" +
+                    Long.toString(tickDuration) +
+                    " " +
+                    unit +
+                    ")"));
+        }
+
+        _tickNanos = tickNanos;
+        _startTime = System.nanoTime();
+        _slots = new Timer[LEVEL_COUNT * SLOT_COUNT];
+        _currentTick = 0L;
+        _size = 0;
+    } // end of TimerWheel(long, TimeUnit)
+
+    //
+    // end of Constructors.
+    //-----------------------------------------------------------
+
+    //-----------------------------------------------------------
+    // Get methods.
+    //
+
+    /**
+     * Returns the tick duration in the given unit.
+     * @param unit the returned duration unit.
+     * @return the tick duration.
+     */
+    public long getTickDuration(final TimeUnit unit)
+    {
+        return (unit.convert(_tickNanos, TimeUnit.NANOSECONDS));
+    } // end of getTickDuration(TimeUnit)
+
+    /**
+     * Returns the number of scheduled timers.
+     * @return the number of scheduled timers.
+     */
+    public int size()
+    {
+        return (_size);
+    } // end of size()
+
+    /**
+     * Returns {@code true} if no timers are scheduled.
+     * @return {@code true} if no timers are scheduled.
+     */
+    public boolean isEmpty()
+    {
+        return (_size == 0);
+    } // end of isEmpty()
+
+    //
+    // end of Get methods.
+    //-----------------------------------------------------------
+
+    /**
+     * Schedules {@code timer} to expire after {@code delay}.
+     * The delay is rounded up to a whole number of ticks and is
+     * at least one tick. If {@code timer} is already scheduled,
+     * then it is first cancelled.
+     * @param timer the timer.
+     * @param delay the timer delay.
+     * @param unit the delay unit.
+     * @exception IllegalArgumentException
+     * if {@code delay} is &lt; zero.
+     * @exception IllegalStateException
+     * if {@code timer} is scheduled on another timer wheel.
+     */
+    public void schedule(final Timer timer,
+                         final long delay,
+                         final TimeUnit unit)
+    {
+        final long delayNanos = unit.toNanos(delay);
+        long deadline;
+
+        if (delay < 0L)
+        {
+            throw (
+                new IllegalArgumentException(
+                    "invalid delay (" + Long.toString(delay) + ")"));
+        }
+        else if (timer._wheel != null && timer._wheel != this)
+        {
+            throw (
+                new IllegalStateException(
+                    "timer scheduled on another wheel"));
+        }
+
+        cancel(timer);
+
+        // The deadline is measured from now rather than from the
+        // current tick since expire() may not have been called
+        // for a while.
+        deadline =
+            (System.nanoTime() - _startTime + delayNanos +
+             _tickNanos - 1L) /
+            _tickNanos;
+        if (deadline <= _currentTick)
+        {
+            deadline = _currentTick + 1L;
+        }
+
+        timer._deadline = deadline;
+        timer._wheel = this;
+        insert(timer);
+        ++_size;
+
+        return;
+    } // end of schedule(Timer, long, TimeUnit)
+
+    /**
+     * Cancels {@code timer}. Does nothing if {@code timer} is
+     * not scheduled on this timer wheel.
+     * @param timer the timer.
+     * @return {@code true} if {@code timer} was scheduled and
+     * {@code false} otherwise.
+     */
+    public boolean cancel(final Timer timer)
+    {
+        boolean retcode = false;
+
+        if (timer._wheel == this)
+        {
+            unlink(timer);
+            timer._wheel = null;
+            --_size;
+            retcode = true;
+        }
+
+        return (retcode);
+    } // end of cancel(Timer)
+
+    /**
+     * Expires the timers which are due now.
+     * @return the number of expired timers.
+     * @see #expire(long)
+     */
+    public int expire()
+    {
+        return (expire(System.nanoTime()));
+    } // end of expire()
+
+    /**
+     * Expires the timers which are due at {@code time}. The
+     * wheel advances one tick at a time up to {@code time},
+     * calling {@link Timer#expired()} for each timer in the
+     * tick's slot. If {@code expired} throws an exception, then
+     * the exception is passed to the caller and the timers
+     * still due are expired by the next call.
+     * @param time a {@link System#nanoTime()} value.
+     * @return the number of expired timers.
+     */
+    public int expire(final long time)
+    {
+        final long tick = (time - _startTime) / _tickNanos;
+        int retval = expireSlot();
+
+        // An empty wheel skips straight to the tick.
+        if (_size == 0 && tick > _currentTick)
+        {
+            _currentTick = tick;
+        }
+
+        while (_currentTick < tick)
+        {
+            ++_currentTick;
+            cascade();
+            retval += expireSlot();
+        }
+
+        return (retval);
+    } // end of expire(long)
+
+    // Puts the timer into the slot for its deadline.
+    private void insert(final Timer timer)
+    {
+        final long ticks = timer._deadline - _currentTick;
+        int level =
+            (Long.SIZE - 1 - Long.numberOfLeadingZeros(ticks)) /
+            SLOT_BITS;
+        final int index;
+        final Timer head;
+
+        if (level >= LEVEL_COUNT)
+        {
+            level = LEVEL_COUNT - 1;
+        }
+
+        index =
+            (level * SLOT_COUNT) +
+            (int) ((timer._deadline >>> (level * SLOT_BITS)) &
+                   SLOT_MASK);
+        head = _slots[index];
+
+        timer._slot = index;
+        timer._prev = null;
+        timer._next = head;
+        if (head != null)
+        {
+            head._prev = timer;
+        }
+        _slots[index] = timer;
+
+        return;
+    } // end of insert(Timer)
+
+    // Removes the timer from its slot.
+    private void unlink(final Timer timer)
+    {
+        if (timer._prev == null)
+        {
+            _slots[timer._slot] = timer._next;
+        }
+        else
+        {
+            timer._prev._next = timer._next;
+        }
+
+        if (timer._next != null)
+        {
+            timer._next._prev = timer._prev;
+        }
+
+        timer._next = null;
+        timer._prev = null;
+
+        return;
+    } // end of unlink(Timer)
+
+    // Moves the timers in the higher wheel slots which came due
+    // at the current tick down to the lower wheels. The highest
+    // wheel goes first since its timers may move into a lower
+    // slot which is also due.
+    private void cascade()
+    {
+        int level;
+        int index;
+        Timer timer;
+        Timer next;
+
+        for (level = LEVEL_COUNT - 1; level > 0; --level)
+        {
+            if ((_currentTick &
+                 ((1L << (level * SLOT_BITS)) - 1L)) == 0L)
+            {
+                index =
+                    (level * SLOT_COUNT) +
+                    (int) ((_currentTick >>> (level * SLOT_BITS)) &
+                           SLOT_MASK);
+                timer = _slots[index];
+                _slots[index] = null;
+
+                for (; timer != null; timer = next)
+                {
+                    next = timer._next;
+                    insert(timer);
+                }
+            }
+        }
+
+        return;
+    } // end of cascade()
+
+    // Expires every timer in the current tick's slot. These are
+    // all due now.
+    private int expireSlot()
+    {
+        final int index = (int) (_currentTick & SLOT_MASK);
+        int retval = 0;
+        Timer timer;
+
+        while ((timer = _slots[index]) != null)
+        {
+            unlink(timer);
+            timer._wheel = null;
+            --_size;
+            ++retval;
+
+            timer.expired();
+        }
+
+        return (retval);
+    } // end of expireSlot()
+
+//---------------------------------------------------------------
+// Inner classes.
+//
+
+    /**
+     * A timer scheduled on a {@link TimerWheel}. Subclasses
+     * define what happens when the timer expires. A timer is
+     * scheduled on at most one wheel at a time.
+     */
+    public abstract static class Timer
+    {
+    //-----------------------------------------------------------
+    // Member methods.
+    //
+
+        /**
+         * Creates an unscheduled timer.
+         */
+        protected Timer()
+        {
+            _wheel = null;
+            _next = null;
+            _prev = null;
+            _deadline = 0L;
+            _slot = 0;
+        } // end of Timer()
+
+        /**
+         * Returns {@code true} if this timer is scheduled.
+         * @return {@code true} if this timer is scheduled.
+         */
+        public final boolean isScheduled()
+        {
+            return (_wheel != null);
+        } // end of isScheduled()
+
+        /**
+         * Called by {@link TimerWheel#expire(long)} when this
+         * timer expires. The timer is no longer scheduled and
+         * may be scheduled again.
+         */
+        protected abstract void expired();
+
+    //-----------------------------------------------------------
+    // Member data.
+    //
+
+        // The wheel this timer is scheduled on. null when not
+        // scheduled.
+        private TimerWheel _wheel;
+
+        // The slot list links.
+        private Timer _next;
+        private Timer _prev;
+
+        // The tick at which this timer expires.
+        private long _deadline;
+
+        // The slot index.
+        private int _slot;
+    } // end of class Timer
+
+//---------------------------------------------------------------
+// Member data.
+//
+
+    // The tick duration in nanoseconds.
+    private final long _tickNanos;
+
+    // Tick zero starts at this System.nanoTime() value.
+    private final long _startTime;
+
+    // The slot list heads. Wheel n's slots start at
+    // n * SLOT_COUNT.
+    private final Timer[] _slots;
+
+    // Every timer due at or before this tick has expired.
+    private long _currentTick;
+
+    // The number of scheduled timers.
+    private int _size;
+
+    //-----------------------------------------------------------
+    // Constants.
+    //
+
+    // Each wheel's slot index is this many bits of the deadline.
+    private static final int SLOT_BITS = 8;
+
+    /**
+     * The number of slots in each wheel.
+     */
+    public static final int SLOT_COUNT = 1 << SLOT_BITS;
+
+    /**
+     * The number of wheels. The last wheel covers
+     * 2<sup>32</sup> ticks.
+     */
+    public static final int LEVEL_COUNT = 4;
+
+    private static final long SLOT_MASK = SLOT_COUNT - 1;
+} // end of class TimerWheel
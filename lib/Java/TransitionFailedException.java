@@ -0,0 +1,86 @@
+//
+// The contents of this file are subject to the Mozilla Public
+// License Version 1.1 (the "License"); you may not use this file
+// except in compliance with the License. You may obtain a copy
+// of the License at http://www.mozilla.org/MPL/
+//
+// Software distributed under the License is distributed on an
+// "AS IS" basis, WITHOUT WARRANTY OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// rights and limitations under the License.
+//
+// The Original Code is  State Machine Compiler(SMC).
+//
+// The Initial Developer of the Original Code is Charles W. Rapp.
+// Portions created by Charles W. Rapp are
+// Copyright (C) 2014. Charles W. Rapp.
+// All Rights Reserved.
+//
+// Contributor(s):
+//
+// statemap.java --
+//
+//  This package defines the TransitionFailedException class
+//  which reports a checked exception thrown by an action of an
+//  smc-generated state machine.
+//
+// RCS ID
+// $Id$
+//
+
+package statemap;
+
+/**
+ * A {@code TransitionFailedException} is thrown by an
+ * SMC-generated {@link FSMContext7} state machine when a
+ * transition, entry or exit action throws a checked exception
+ * or other non-runtime {@code Throwable}. The original
+ * throwable is the exception cause. Runtime exceptions and
+ * errors thrown by an action are propagated as is.
+ * <p>
+ * This exception is only thrown when the state machine is
+ * generated with {@code -java7 -nocatch}. Otherwise action
+ * exceptions are caught and written to the debug stream.
+ * </p>
+ *
+ * @see FSMContext7#transitionFailed(Throwable)
+ *
+ * @author <a href="mailto:rapp@acm.org">Charles Rapp</a>
+ */
+
+public final class TransitionFailedException
+    extends RuntimeException
+{
+//---------------------------------------------------------------
+// Member methods.
+//
+
+    //-----------------------------------------------------------
+    // Constructors.
+    //
+
+    /**
+     * Constructs a {@code TransitionFailedException} with a
+     * detail message and the action's throwable.
+     * @param reason the detail message.
+     * @param cause the throwable thrown by the action.
+     */
+    public TransitionFailedException(final String reason,
+                                     final Throwable cause)
+    {
+        super(reason, cause);
+    } // end of TransitionFailedException(String, Throwable)
+
+    //
+    // end of Constructors.
+    //-----------------------------------------------------------
+
+//---------------------------------------------------------------
+// Member data.
+//
+
+    //-----------------------------------------------------------
+    // Constants.
+    //
+    private static final long serialVersionUID = 0x070000L;
+} // end of class TransitionFailedException
@@ -0,0 +1,364 @@
+//
+// The contents of this file are subject to the Mozilla Public
+// License Version 1.1 (the "License"); you may not use this file
+// except in compliance with the License. You may obtain a copy
+// of the License at http://www.mozilla.org/MPL/
+//
+// Software distributed under the License is distributed on an
+// "AS IS" basis, WITHOUT WARRANTY OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// rights and limitations under the License.
+//
+// The Original Code is  State Machine Compiler(SMC).
+//
+// The Initial Developer of the Original Code is Charles W. Rapp.
+// Portions created by Charles W. Rapp are
+// Copyright (C) 2014. Charles W. Rapp.
+// All Rights Reserved.
+//
+// Contributor(s):
+//
+// statemap.java --
+//
+//  This package defines the TransitionQueue class which defers
+//  the transitions issued while a transition is running.
+//
+// RCS ID
+// $Id$
+//
+
+package statemap;
+
+/**
+ * Run-to-completion queue for transitions issued by a context's
+ * own actions. Contexts generated with {@code -queue} hold a
+ * transition queue. When a transition method is called while
+ * the context is running a transition, the transition
+ * identifier and arguments are added to the queue and the
+ * method returns. The outermost transition method then takes
+ * the queued transitions in order and runs each to completion
+ * before the next one starts.
+ * <p>
+ * The queue is a ring of transition identifiers and a ring of
+ * argument slots, {@link #getArgumentCount()} slots per
+ * transition. Both are allocated when the queue is created and
+ * replaced by rings twice the size only when the queue is full,
+ * so adding and taking transitions does not allocate. Primitive
+ * arguments are boxed when stored in an argument slot.
+ * </p>
+ * <p>
+ * A transition queue is not thread-safe. It is used by one
+ * thread at a time, either because the context is only used by
+ * one thread or because the transition methods are
+ * {@code synchronized} ({@code -sync}).
+ * </p>
+ *
+ * @author <a href="mailto:rapp@acm.org">Charles Rapp</a>
+ */
+
+public final class TransitionQueue
+{
+//---------------------------------------------------------------
+// Member methods.
+//
+
+    //-----------------------------------------------------------
+    // Constructors.
+    //
+
+    /**
+     * Creates an empty transition queue with room for
+     * {@code capacity} transitions, each with
+     * {@code argumentCount} arguments.
+     * @param capacity the initial queue capacity.
+     * @param argumentCount the largest number of arguments
+     * taken by a transition.
+     * @exception IllegalArgumentException
+     * if {@code capacity} is &lt; 1 or {@code argumentCount}
+     * is &lt; zero.
+     */
+    public TransitionQueue(final int capacity,
+                           final int argumentCount)
+    {
+        if (capacity < 1)
+        {
+            throw (
+                new IllegalArgumentException(
+                    "invalid capacity (" +
+                    Integer.toString(capacity) +
+                    ")"));
+        }
+        else if (argumentCount < 0)
+        {
+            throw (
+                new IllegalArgumentException(
+                    "invalid argument count (" +
+                    Integer.toString(argumentCount) +
+                    ")"));
+        }
+
+        _argumentCount = argumentCount;
+        _transitionIds = new int[capacity];
+        _arguments = new Object[capacity * argumentCount];
+        _current = new Object[argumentCount];
+        _head = 0;
+        _size = 0;
+        _running = false;
+    } // end of TransitionQueue(int, int)
+
+    //
+    // end of Constructors.
+    //-----------------------------------------------------------
+
+    //-----------------------------------------------------------
+    // Get methods.
+    //
+
+    /**
+     * Returns {@code true} if the context is running a
+     * transition and {@code false} otherwise.
+     * @return {@code true} if the context is running a
+     * transition.
+     */
+    public boolean isRunning()
+    {
+        return (_running);
+    } // end of isRunning()
+
+    /**
+     * Returns {@code true} if there are no queued transitions.
+     * @return {@code true} if the queue is empty.
+     */
+    public boolean isEmpty()
+    {
+        return (_size == 0);
+    } // end of isEmpty()
+
+    /**
+     * Returns the number of queued transitions.
+     * @return the number of queued transitions.
+     */
+    public int size()
+    {
+        return (_size);
+    } // end of size()
+
+    /**
+     * Returns the number of transitions the queue holds before
+     * it grows.
+     * @return the queue capacity.
+     */
+    public int getCapacity()
+    {
+        return (_transitionIds.length);
+    } // end of getCapacity()
+
+    /**
+     * Returns the number of argument slots per transition.
+     * @return the number of argument slots per transition.
+     */
+    public int getArgumentCount()
+    {
+        return (_argumentCount);
+    } // end of getArgumentCount()
+
+    /**
+     * Returns the argument of the transition last returned by
+     * {@link #next()}. The argument remains available until
+     * {@code next()} or {@link #stop()} is called.
+     * @param index the argument index.
+     * @return the argument.
+     */
+    public Object getArgument(final int index)
+    {
+        return (_current[index]);
+    } // end of getArgument(int)
+
+    //
+    // end of Get methods.
+    //-----------------------------------------------------------
+
+    //-----------------------------------------------------------
+    // Set methods.
+    //
+
+    /**
+     * Sets a queued transition's argument. {@code index} is the
+     * value returned by {@link #add(int)} plus the argument
+     * index.
+     * @param index the argument slot index.
+     * @param arg the argument.
+     */
+    public void setArgument(final int index, final Object arg)
+    {
+        _arguments[index] = arg;
+        return;
+    } // end of setArgument(int, Object)
+
+    //
+    // end of Set methods.
+    //-----------------------------------------------------------
+
+    /**
+     * Marks the context as running a transition. Transitions
+     * issued until {@link #stop()} is called are queued.
+     */
+    public void start()
+    {
+        _running = true;
+        return;
+    } // end of start()
+
+    /**
+     * Marks the context as no longer running a transition.
+     * Transitions still queued are discarded. This happens
+     * only when a transition fails with an exception.
+     */
+    public void stop()
+    {
+        int index;
+
+        while (_size > 0)
+        {
+            next();
+        }
+
+        for (index = 0; index < _argumentCount; ++index)
+        {
+            _current[index] = null;
+        }
+
+        _running = false;
+
+        return;
+    } // end of stop()
+
+    /**
+     * Adds a transition to the end of the queue and returns the
+     * index of its first argument slot. If the queue is full,
+     * then its capacity is doubled.
+     * @param transitionId the transition identifier.
+     * @return the first argument slot index.
+     */
+    public int add(final int transitionId)
+    {
+        final int slot;
+
+        if (_size == _transitionIds.length)
+        {
+            grow();
+        }
+
+        slot = (_head + _size) % _transitionIds.length;
+        _transitionIds[slot] = transitionId;
+        ++_size;
+
+        return (slot * _argumentCount);
+    } // end of add(int)
+
+    /**
+     * Removes the transition at the head of the queue and
+     * returns its identifier. Its arguments are then returned
+     * by {@link #getArgument(int)}.
+     * @return the transition identifier.
+     * @exception IllegalStateException
+     * if the queue is empty.
+     */
+    public int next()
+    {
+        final int retval;
+        final int base;
+        int index;
+
+        if (_size == 0)
+        {
+            throw (
+                new IllegalStateException(
+                    "transition queue is empty"));
+        }
+
+        retval = _transitionIds[_head];
+
+        // Move the arguments out of the ring so that the slots
+        // may be reused by transitions queued while this one
+        // runs.
+        base = _head * _argumentCount;
+        for (index = 0; index < _argumentCount; ++index)
+        {
+            _current[index] = _arguments[base + index];
+            _arguments[base + index] = null;
+        }
+
+        _head = (_head + 1) % _transitionIds.length;
+        --_size;
+
+        return (retval);
+    } // end of next()
+
+    // Doubles the queue capacity, moving the queued transitions
+    // to the front of the new rings.
+    private void grow()
+    {
+        final int capacity = _transitionIds.length;
+        final int[] transitionIds = new int[capacity * 2];
+        final Object[] arguments =
+            new Object[transitionIds.length * _argumentCount];
+        final int first = capacity - _head;
+
+        System.arraycopy(
+            _transitionIds, _head, transitionIds, 0, first);
+        System.arraycopy(
+            _transitionIds, 0, transitionIds, first, _head);
+        System.arraycopy(_arguments,
+                         _head * _argumentCount,
+                         arguments,
+                         0,
+                         first * _argumentCount);
+        System.arraycopy(_arguments,
+                         0,
+                         arguments,
+                         first * _argumentCount,
+                         _head * _argumentCount);
+
+        _transitionIds = transitionIds;
+        _arguments = arguments;
+        _head = 0;
+
+        return;
+    } // end of grow()
+
+//---------------------------------------------------------------
+// Member data.
+//
+
+    // The number of argument slots per transition.
+    private final int _argumentCount;
+
+    // The queued transition identifiers.
+    private int[] _transitionIds;
+
+    // The queued transition arguments. Transition i's arguments
+    // are at i * _argumentCount.
+    private Object[] _arguments;
+
+    // The arguments of the transition last returned by next().
+    private final Object[] _current;
+
+    // The head transition's ring index.
+    private int _head;
+
+    // The number of queued transitions.
+    private int _size;
+
+    // Set to true while the context runs a transition.
+    private boolean _running;
+
+    //-----------------------------------------------------------
+    // Constants.
+    //
+
+    /**
+     * The initial capacity used by generated contexts.
+     */
+    public static final int DEFAULT_CAPACITY = 16;
+} // end of class TransitionQueue
@@ -47,13 +47,14 @@
 
 package net.sf.smc;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
 import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -63,6 +64,10 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import net.sf.smc.generator.SmcCGenerator;
 import net.sf.smc.generator.SmcCodeGenerator;
@@ -75,6 +80,7 @@ import net.sf.smc.generator.SmcHeaderCGenerator;
 import net.sf.smc.generator.SmcHeaderObjCGenerator;
 import net.sf.smc.generator.SmcJavaGenerator;
 import net.sf.smc.generator.SmcJava7Generator;
+import net.sf.smc.generator.SmcJava7FleetGenerator;
 import net.sf.smc.generator.SmcJSGenerator;
 import net.sf.smc.generator.SmcLuaGenerator;
 import net.sf.smc.generator.SmcObjCGenerator;
@@ -114,14 +120,103 @@ public final class Smc
     //
 
     /**
-     * The state machine compiler main method.
+     * The state machine compiler main method. If the first
+     * argument is {@code -server}, then SMC runs as a compile
+     * daemon.
      * @param args command line arguments.
+     * @see SmcServer
      */
     public static void main(final String[] args)
+    {
+        int retcode;
+
+        if (args.length > 0 &&
+            args[0].equals(SERVER_FLAG) == true)
+        {
+            retcode = SmcServer.serve(args);
+            _return = false;
+        }
+        else
+        {
+            retcode = compile(args, null);
+        }
+
+        // Need to return the appropriate exit code in case SMC
+        // is called by make. Just doing a return always results
+        // in a zero return code.
+        // v. 4.0.0: But calling exit when SMC is an ANT task is
+        // problematic. ANT is a Java program and calls Smc.main
+        // directly and not as a forked process. So when Smc.main
+        // exits, it exits the JVM for everyone including ANT.
+        if (_return == false)
+        {
+            System.exit(retcode);
+        }
+        else
+        {
+            return;
+        }
+    } // end of main(String[])
+
+    //
+    // end of Main method.
+    //-----------------------------------------------------------
+
+    /**
+     * Compiles the .sm files given on the command line and
+     * returns the exit code: 0 on success and 1 on failure.
+     * Relative file and directory names on the command line are
+     * resolved against {@code baseDirectory}. If
+     * {@code baseDirectory} is {@code null}, then they are
+     * resolved against the current working directory. Output is
+     * written to {@code System.out} and {@code System.err}.
+     * @param args command line arguments.
+     * @param baseDirectory resolve relative file names against
+     * this directory. May be {@code null}.
+     * @return the exit code.
+     */
+    /* package */ static int compile(final String[] args,
+                                     final File baseDirectory)
+    {
+        return (
+            compile(
+                args, baseDirectory, System.out, System.err, null));
+    } // end of compile(String[], File)
+
+    /**
+     * Compiles the .sm files given on the command line and
+     * returns the exit code: 0 on success and 1 on failure.
+     * -verbose output is written to {@code out} and compiler
+     * messages to {@code err}. If {@code messages} is not
+     * {@code null}, then the compiler messages are also added to
+     * that list in source file order.
+     * <p>
+     * Since the options are stored in static fields, calls to
+     * this method are serialized.
+     * </p>
+     * @param args command line arguments.
+     * @param baseDirectory resolve relative file names against
+     * this directory. May be {@code null}.
+     * @param out -verbose output stream.
+     * @param err compiler message stream.
+     * @param messages add compiler messages to this list. May be
+     * {@code null}.
+     * @return the exit code.
+     */
+    /* package */ static synchronized int compile(
+        final String[] args,
+        final File baseDirectory,
+        final PrintStream out,
+        final PrintStream err,
+        final List<SmcMessage> messages)
     {
         int retcode = 0;
 
         _errorMsg = new String();
+        _baseDirectory = baseDirectory;
+        _out = out;
+        _err = err;
+        _messages = messages;
 
         // The default smc output level is 1.
         _targetLanguage = null;
@@ -149,193 +244,601 @@ public final class Smc
         _generic = false;
         _java7Flag = false;
         _protocol = false;
+        _dispatch = SmcCodeGenerator.TABLE_DISPATCH;
+        _fleet = false;
+        _keepUnchanged = false;
+        _mailbox = false;
+        _metrics = false;
+        _queue = false;
+        _jobCount = 1;
+        _cacheDirectory = null;
+        _cache = null;
 
         // Process the command line.
         if (parseArgs(args) == false)
         {
             retcode = 1;
-            System.err.println(APP_NAME + ": " + _errorMsg);
+            _err.println(APP_NAME + ": " + _errorMsg);
+
+            if (_messages != null)
+            {
+                _messages.add(
+                    new SmcMessage(
+                        APP_NAME, 0, SmcMessage.ERROR, _errorMsg));
+            }
         }
         // Arguments check out - start compiling..
         else
         {
-            SmcParser parser;
-            SmcFSM fsm;
-            Iterator<String> sit;
-            boolean checkFlag;
-            long startTime = 0;
-            long finishTime;
             long totalStartTime = 0;
             long totalFinishTime;
 
+            _resolveOptions();
+
             if (_verbose == true)
             {
                 totalStartTime = System.currentTimeMillis();
             }
 
-            try
+            if (_jobCount > 1)
             {
-                for (sit = _sourceFileList.iterator();
-                     sit.hasNext() == true;
-                    )
-                {
-                    _sourceFileName = (String) sit.next();
+                retcode = _compileParallel();
+            }
+            else
+            {
+                retcode = _compileSequential();
+            }
 
-                    if (_verbose == true)
-                    {
-                        System.out.print("[parsing started ");
-                        System.out.print(_sourceFileName);
-                        System.out.println("]");
+            if (_verbose == true && _cache != null)
+            {
+                _out.print("[cache ");
+                _out.print(_cache.hitCount());
+                _out.print(" hits, ");
+                _out.print(_cache.missCount());
+                _out.print(" misses, saved ");
+                _out.print(_cache.savedTime());
+                _out.println("ms]");
+            }
 
-                        startTime = System.currentTimeMillis();
-                    }
+            if (_verbose == true)
+            {
+                totalFinishTime = System.currentTimeMillis();
 
-                    parser =
-                        new SmcParser(
-                            _getFileName(_sourceFileName),
-                            new FileInputStream(_sourceFileName),
-                            _targetLanguage.language(),
-                            _fsmVerbose);
+                _out.print("[total ");
+                _out.print(
+                    totalFinishTime - totalStartTime);
+                _out.println("ms]");
+            }
+        }
 
-                    // First - do the parsing
-                    fsm = parser.parse();
+        return (retcode);
+    } // end of compile(String[], File, PrintStream, ...)
 
-                    if (_verbose == true)
-                    {
-                        finishTime = System.currentTimeMillis();
+    // Fills in the option defaults which depend on other options.
+    // Done once before compiling so that the options are not
+    // modified while the source files are being compiled.
+    private static void _resolveOptions()
+    {
+        if (_accessLevel == null)
+        {
+            _accessLevel = "public";
+        }
+        else if (_accessLevel.equals(PACKAGE_LEVEL) == true)
+        {
+            _accessLevel = "/* package */";
+        }
 
-                        System.out.print("[parsing completed ");
-                        System.out.print(finishTime - startTime);
-                        System.out.println("ms]");
-                    }
+        // If the target language is Java7, then turn on
+        // the java7 flag. Note: there is no target language
+        // when -help or -version is given.
+        _java7Flag =
+            (_targetLanguage != null &&
+             _targetLanguage.language() == TargetLanguage.JAVA7);
 
-                    if ( parser.getMessages().size() > 0 )
-                    {
-                        // Output the parser's messages.
-                        _outputMessages(_sourceFileName,
-                                        System.err,
-                                        parser.getMessages());
-                    }
+        if (_cacheDirectory != null && _targetLanguage != null)
+        {
+            _cache =
+                new SmcBuildCache(
+                    _resolveFile(_cacheDirectory), _baseDirectory);
+            _cacheOptions = _cacheOptions();
+        }
 
-                    if (fsm == null)
-                    {
-                        retcode = 1;
-                    }
-                    else
-                    {
-                        SmcSyntaxChecker checker =
-                            new SmcSyntaxChecker(
-                                _sourceFileName,
-                                _targetLanguage.language());
+        return;
+    } // end of _resolveOptions()
+
+    // Returns the target language and the options which affect
+    // the generated code. Used as part of the -cache key. Note
+    // that -d and -headerd are included since the generated
+    // files are restored to those directories. They are relative
+    // to the base directory so that the key does not depend on
+    // where the source tree is checked out.
+    private static String _cacheOptions()
+    {
+        final StringBuilder retval = new StringBuilder();
+
+        retval.append(VERSION)
+              .append('\n').append(_targetLanguage.optionFlag())
+              .append('\n').append(_suffix)
+              .append('\n').append(_hsuffix)
+              .append('\n').append(_cacheDirectoryName(_outputDirectory))
+              .append('\n').append(_cacheDirectoryName(_headerDirectory))
+              .append('\n').append(_castType)
+              .append('\n').append(_graphLevel)
+              .append('\n').append(_serial)
+              .append('\n').append(_debugLevel)
+              .append('\n').append(_noex)
+              .append('\n').append(_nocatch)
+              .append('\n').append(_nostreams)
+              .append('\n').append(_crtp)
+              .append('\n').append(_stateStackSize)
+              .append('\n').append(_reflection)
+              .append('\n').append(_sync)
+              .append('\n').append(_generic)
+              .append('\n').append(_java7Flag)
+              .append('\n').append(_accessLevel)
+              .append('\n').append(_protocol)
+              .append('\n').append(_dispatch)
+              .append('\n').append(_mailbox)
+              .append('\n').append(_metrics)
+              .append('\n').append(_queue)
+              .append('\n').append(_fleet);
+
+        return (retval.toString());
+    } // end of _cacheOptions()
+
+    // Returns the directory name relative to the base directory
+    // or null if the directory is not set.
+    private static String _cacheDirectoryName(final String name)
+    {
+        return (name == null ? null : _cache.relativeName(name));
+    } // end of _cacheDirectoryName(String)
 
-                        if (_verbose == true)
-                        {
-                            System.out.print("[checking ");
-                            System.out.print(_sourceFileName);
-                            System.out.println("]");
-                        }
+    // Compiles the source files one after the other on this
+    // thread. Stops at the first file which throws an exception.
+    private static int _compileSequential()
+    {
+        String sourceFileName = null;
+        Iterator<String> sit;
+        int retcode = 0;
 
-                        // Second - do the semantic check.
-                        fsm.accept(checker);
-                        if (checker.getMessages().size() > 0)
-                        {
-                            _outputMessages(
-                                _sourceFileName,
-                                System.err,
-                                checker.getMessages());
-                        }
-                        if (checker.isValid() == false)
-                        {
-                            retcode = 1;
-                        }
-                        else
-                        {
-                            // Third - do the code generation.
-                            _generateCode(fsm);
-                        }
-                    }
+        try
+        {
+            for (sit = _sourceFileList.iterator();
+                 sit.hasNext() == true;
+                )
+            {
+                sourceFileName = sit.next();
+
+                if (_compile(sourceFileName,
+                             _out,
+                             _err,
+                             _messages) == false)
+                {
+                    retcode = 1;
                 }
             }
-            // Report an unknown file exception.
-            catch (FileNotFoundException filex)
+        }
+        catch (Exception jex)
+        {
+            if (_reportException(
+                    sourceFileName, jex, _err, _messages) == false)
+            {
+                retcode = 1;
+            }
+        }
+
+        return (retcode);
+    } // end of _compileSequential()
+
+    // Compiles the source files on a fork/join pool of
+    // _jobCount threads. Each file's console output is collected
+    // separately and written out in source file order after all
+    // files are compiled. So the output does not depend on the
+    // order in which the files complete. Unlike
+    // _compileSequential(), a file throwing an exception does not
+    // stop the remaining files from being compiled.
+    private static int _compileParallel()
+    {
+        final ForkJoinPool pool = new ForkJoinPool(_jobCount);
+        final List<CompileTask> tasks =
+            new ArrayList<>(_sourceFileList.size());
+        List<Future<Boolean>> results;
+        CompileTask task;
+        boolean success;
+        Throwable failure;
+        long startTime = System.currentTimeMillis();
+        long finishTime;
+        long compileTime = 0L;
+        int index;
+        int retcode = 0;
+
+        for (String sourceFileName: _sourceFileList)
+        {
+            tasks.add(new CompileTask(sourceFileName));
+        }
+
+        try
+        {
+            results = pool.invokeAll(tasks);
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+
+        finishTime = System.currentTimeMillis();
+
+        for (index = 0; index < tasks.size(); ++index)
+        {
+            task = tasks.get(index);
+            failure = null;
+
+            try
+            {
+                success = results.get(index).get();
+            }
+            // CompileTask.call() catches all exceptions. This
+            // is an error thrown while compiling the file.
+            catch (ExecutionException jex)
+            {
+                success = false;
+                failure = jex.getCause();
+            }
+            catch (InterruptedException interrupt)
             {
-                System.err.print(_sourceFileName);
-                System.err.print(": error - ");
-                System.err.println(filex.getMessage());
+                success = false;
+                Thread.currentThread().interrupt();
             }
-            // A parse exception may be thrown by generateCode().
-            // This is not a problem.
-            catch (ParseException parsex)
+
+            task.writeOutput();
+
+            if (failure != null)
             {
-                System.err.print(_sourceFileName);
-                System.err.print(":");
-                System.err.print(parsex.getErrorOffset());
-                System.err.print(": error - ");
-                System.err.println(parsex.getMessage());
+                _reportFailure(
+                    task.sourceFileName(), failure.toString());
             }
-            catch (Exception e)
+
+            if (success == false)
             {
                 retcode = 1;
+            }
+
+            compileTime += task.compileTime();
+        }
+
+        // Compare the parallel wall time with the sum of the
+        // per-file compile times. That sum estimates the time it
+        // takes to compile the files one after the other.
+        if (_verbose == true)
+        {
+            _out.print("[parallel ");
+            _out.print(finishTime - startTime);
+            _out.print("ms, per-file sum ");
+            _out.print(compileTime);
+            _out.print("ms, ");
+            _out.print(tasks.size());
+            _out.print(" files, ");
+            _out.print(_jobCount);
+            _out.println(" jobs]");
+        }
+
+        return (retcode);
+    } // end of _compileParallel()
+
+    // Compiles the named source file. If -cache is specified,
+    // then the generated files are restored from the cache if
+    // possible. Otherwise the file is compiled and the generated
+    // files stored in the cache. Compiler messages are written
+    // to err and, if not null, added to messageList. -verbose
+    // output is written to out. Returns true if the file is
+    // successfully compiled.
+    private static boolean _compile(
+        final String sourceFileName,
+        final PrintStream out,
+        final PrintStream err,
+        final List<SmcMessage> messageList)
+        throws FileNotFoundException,
+               IOException,
+               IllegalAccessException,
+               InvocationTargetException,
+               ParseException
+    {
+        final long startTime = System.currentTimeMillis();
+        final List<String> files = new ArrayList<>();
+        String cacheKey;
+        List<SmcMessage> cachedMessages;
+        List<SmcMessage> fileMessages;
+        boolean retcode;
+
+        if (_cache == null)
+        {
+            retcode =
+                _compileSource(
+                    sourceFileName,
+                    out,
+                    err,
+                    messageList,
+                    files);
+        }
+        else
+        {
+            cacheKey = _cache.key(sourceFileName, _cacheOptions);
+            cachedMessages = _cache.restore(cacheKey);
+
+            // Were the generated files restored from the cache?
+            if (cachedMessages != null)
+            {
+                // Yes. Output the messages reported when the
+                // files were generated.
+                if (_verbose == true)
+                {
+                    out.print("[cache hit ");
+                    out.print(sourceFileName);
+                    out.println("]");
+                }
+
+                _outputMessages(sourceFileName, err, cachedMessages);
+                retcode = true;
+
+                if (messageList != null)
+                {
+                    messageList.addAll(cachedMessages);
+                }
+            }
+            else
+            {
+                // No. Compile the file and store the generated
+                // files along with the compiler messages.
+                fileMessages = new ArrayList<>();
+                retcode =
+                    _compileSource(
+                        sourceFileName,
+                        out,
+                        err,
+                        fileMessages,
+                        files);
+
+                if (messageList != null)
+                {
+                    messageList.addAll(fileMessages);
+                }
+
+                if (retcode == true)
+                {
+                    _cache.store(
+                        cacheKey,
+                        files,
+                        fileMessages,
+                        System.currentTimeMillis() - startTime);
+                }
+            }
+        }
+
+        return (retcode);
+    } // end of _compile(String, PrintStream, PrintStream, List<>)
+
+    // Parses, checks and generates code for the named source
+    // file. Compiler messages are written to err and, if not
+    // null, added to messageList. -verbose output is
+    // written to out. The generated file names are added to
+    // files. Returns true if the file is successfully compiled.
+    private static boolean _compileSource(
+        final String sourceFileName,
+        final PrintStream out,
+        final PrintStream err,
+        final List<SmcMessage> messageList,
+        final List<String> files)
+        throws FileNotFoundException,
+               IOException,
+               IllegalAccessException,
+               InvocationTargetException,
+               ParseException
+    {
+        FileInputStream istream;
+        SmcParser parser;
+        SmcFSM fsm;
+        long startTime = 0;
+        long finishTime;
+        boolean retcode = true;
+
+        if (_verbose == true)
+        {
+            out.print("[parsing started ");
+            out.print(sourceFileName);
+            out.println("]");
+
+            startTime = System.currentTimeMillis();
+        }
+
+        istream = new FileInputStream(_resolveFile(sourceFileName));
+
+        try
+        {
+            parser =
+                new SmcParser(
+                    _getFileName(sourceFileName),
+                    istream,
+                    _targetLanguage.language(),
+                    _fsmVerbose);
+
+            // First - do the parsing
+            fsm = parser.parse();
+        }
+        finally
+        {
+            istream.close();
+        }
+
+        if (_verbose == true)
+        {
+            finishTime = System.currentTimeMillis();
+
+            out.print("[parsing completed ");
+            out.print(finishTime - startTime);
+            out.println("ms]");
+        }
+
+        if ( parser.getMessages().size() > 0 )
+        {
+            // Output the parser's messages.
+            _outputMessages(sourceFileName,
+                            err,
+                            parser.getMessages());
 
-                System.err.println(
-                    "SMC has experienced a fatal error. Please e-mail the following error output to rapp@acm.org. Thank you.\n");
-                System.err.println(
-                    "--------------------------------------------------------------------------------");
-                System.err.println("SMC version: " + _version);
-                System.err.println(
-                    "JRE version: v. " +
-                    System.getProperty("java.version"));
-                System.err.println(
-                    "JRE vender: " +
-                    System.getProperty("java.vendor") +
-                    " (" +
-                    System.getProperty("java.vendor.url") +
-                    ")");
-                System.err.println(
-                    "JVM: " +
-                    System.getProperty("java.vm.name") +
-                    ", v. " +
-                    System.getProperty("java.vm.version"));
-                System.err.println(
-                    "JVM vender: " +
-                    System.getProperty("java.vm.vendor"));
-                System.err.println("Exception:\n");
-                e.printStackTrace();
-                System.err.println(
-                    "--------------------------------------------------------------------------------");
+            if (messageList != null)
+            {
+                messageList.addAll(parser.getMessages());
             }
+        }
+
+        if (fsm == null)
+        {
+            retcode = false;
+        }
+        else
+        {
+            SmcSyntaxChecker checker =
+                new SmcSyntaxChecker(
+                    sourceFileName,
+                    _targetLanguage.language());
 
             if (_verbose == true)
             {
-                totalFinishTime = System.currentTimeMillis();
+                out.print("[checking ");
+                out.print(sourceFileName);
+                out.println("]");
+            }
 
-                System.out.print("[total ");
-                System.out.print(
-                    totalFinishTime - totalStartTime);
-                System.out.println("ms]");
+            // Second - do the semantic check.
+            fsm.accept(checker);
+            if (checker.getMessages().size() > 0)
+            {
+                _outputMessages(
+                    sourceFileName,
+                    err,
+                    checker.getMessages());
+
+                if (messageList != null)
+                {
+                    messageList.addAll(checker.getMessages());
+                }
+            }
+            if (checker.isValid() == false)
+            {
+                retcode = false;
+            }
+            else
+            {
+                // Third - do the code generation.
+                files.addAll(
+                    _generateCode(sourceFileName, fsm, out));
             }
         }
 
-        // Need to return the appropriate exit code in case SMC
-        // is called by make. Just doing a return always results
-        // in a zero return code.
-        // v. 4.0.0: But calling exit when SMC is an ANT task is
-        // problematic. ANT is a Java program and calls Smc.main
-        // directly and not as a forked process. So when Smc.main
-        // exits, it exits the JVM for everyone including ANT.
-        if (_return == false)
+        return (retcode);
+    } // end of _compileSource(...)
+
+    // Reports an exception thrown while compiling the named
+    // source file to err and, if not null, to messageList.
+    // Returns false if this is a fatal error.
+    private static boolean _reportException(
+        final String sourceFileName,
+        final Exception jex,
+        final PrintStream err,
+        final List<SmcMessage> messageList)
+    {
+        int lineNumber = 0;
+        String text = jex.getMessage();
+        boolean retcode = true;
+
+        // Report an unknown file exception.
+        if (jex instanceof FileNotFoundException)
         {
-            System.exit(retcode);
+            err.print(sourceFileName);
+            err.print(ERROR_TAG);
+            err.println(jex.getMessage());
+        }
+        // A parse exception may be thrown by generateCode().
+        // This is not a problem.
+        else if (jex instanceof ParseException)
+        {
+            lineNumber = ((ParseException) jex).getErrorOffset();
+
+            err.print(sourceFileName);
+            err.print(":");
+            err.print(lineNumber);
+            err.print(ERROR_TAG);
+            err.println(jex.getMessage());
         }
         else
         {
-            return;
+            retcode = false;
+            text = jex.toString();
+
+            err.println(
+                "SMC has experienced a fatal error. Please e-mail the following error output to rapp@acm.org. Thank you.\n");
+            err.println(
+                "--------------------------------------------------------------------------------");
+            err.println("SMC version: " + _version);
+            err.println(
+                "JRE version: v. " +
+                System.getProperty("java.version"));
+            err.println(
+                "JRE vender: " +
+                System.getProperty("java.vendor") +
+                " (" +
+                System.getProperty("java.vendor.url") +
+                ")");
+            err.println(
+                "JVM: " +
+                System.getProperty("java.vm.name") +
+                ", v. " +
+                System.getProperty("java.vm.version"));
+            err.println(
+                "JVM vender: " +
+                System.getProperty("java.vm.vendor"));
+            err.println("Exception:\n");
+            jex.printStackTrace(err);
+            err.println(
+                "--------------------------------------------------------------------------------");
         }
-    } // end of main(String[])
 
-    //
-    // end of Main method.
-    //-----------------------------------------------------------
+        if (messageList != null && sourceFileName != null)
+        {
+            messageList.add(
+                new SmcMessage(
+                    _getFileName(sourceFileName),
+                    Math.max(0, lineNumber),
+                    SmcMessage.ERROR,
+                    (text == null || text.isEmpty() == true ?
+                     jex.toString() :
+                     text)));
+        }
+
+        return (retcode);
+    } // end of _reportException(...)
+
+    // Reports an error thrown on a -j pool thread while
+    // compiling the named source file.
+    private static void _reportFailure(final String sourceFileName,
+                                       final String text)
+    {
+        _err.print(sourceFileName);
+        _err.print(ERROR_TAG);
+        _err.println(text);
+
+        if (_messages != null)
+        {
+            _messages.add(
+                new SmcMessage(
+                    _getFileName(sourceFileName),
+                    0,
+                    SmcMessage.ERROR,
+                    text));
+        }
+
+        return;
+    } // end of _reportFailure(String, String)
 
     //-----------------------------------------------------------
     // Constructors.
@@ -357,6 +860,7 @@ public final class Smc
         int argsConsumed;
         boolean helpFlag = false;
         boolean retcode = true;
+        String fleetConflict;
 
         // Look for either -help or -verson first. If specified,
         // then output the necessary info and return.
@@ -443,6 +947,17 @@ public final class Smc
                         SYNC_FLAG +
                         ".";
                 }
+                else if (_mailbox == true)
+                {
+                    retcode = false;
+                    _errorMsg =
+                        SYNC_FLAG +
+                        " cannot be used with " +
+                        CONCURRENCY_FLAG +
+                        " " +
+                        SmcCodeGenerator.MAILBOX_CONCURRENCY +
+                        ".";
+                }
                 else
                 {
                     _sync = true;
@@ -501,6 +1016,28 @@ public final class Smc
                     argsConsumed = 2;
                 }
             }
+            else if (args[i].equals(CACHE_FLAG) == true)
+            {
+                // -cache should be followed by a directory.
+                if ((i + 1) == args.length ||
+                    args[i+1].startsWith("-") == true)
+                {
+                    retcode = false;
+                    _errorMsg =
+                        CACHE_FLAG +
+                        " not followed by directory";
+                }
+                else if (_resolveFile(args[i+1]).exists() == true &&
+                         _isValidDirectory(args[i+1]) == false)
+                {
+                    retcode = false;
+                }
+                else
+                {
+                    _cacheDirectory = args[i+1];
+                    argsConsumed = 2;
+                }
+            }
             else if (args[i].startsWith("-ca") == true)
             {
                 // -cast should be followed by a cast type.
@@ -521,18 +1058,196 @@ public final class Smc
                         CAST_FLAG +
                         ".";
                 }
-                else if (_isValidCast(args[i+1]) == false)
+                else if (_isValidCast(args[i+1]) == false)
+                {
+                    retcode = false;
+                    _errorMsg =
+                        "\"" +
+                        args[i+1] +
+                        "\" is an invalid C++ cast type.";
+                }
+                else
+                {
+                    _castType = args[i+1];
+                    argsConsumed = 2;
+                }
+            }
+            else if (args[i].startsWith("-di") == true)
+            {
+                // -dispatch should be followed by a dispatch
+                // mode.
+                if ((i + 1) == args.length ||
+                    args[i+1].startsWith("-") == true)
+                {
+                    retcode = false;
+                    _errorMsg =
+                        DISPATCH_FLAG +
+                        " not followed by a value";
+                }
+                else if (_supportsOption(DISPATCH_FLAG) == false)
+                {
+                    retcode = false;
+                    _errorMsg =
+                        _targetLanguage.name() +
+                        " does not support " +
+                        DISPATCH_FLAG +
+                        ".";
+                }
+                else if (_isValidDispatch(args[i+1]) == false)
+                {
+                    retcode = false;
+                    _errorMsg =
+                        "\"" +
+                        args[i+1] +
+                        "\" is an invalid dispatch mode.";
+                }
+                else
+                {
+                    _dispatch = args[i+1];
+                    argsConsumed = 2;
+                }
+            }
+            else if (args[i].startsWith("-me") == true)
+            {
+                if (_supportsOption(METRICS_FLAG) == false)
+                {
+                    retcode = false;
+                    _errorMsg =
+                        _targetLanguage.name() +
+                        " does not support " +
+                        METRICS_FLAG +
+                        ".";
+                }
+                else
+                {
+                    _metrics = true;
+                    argsConsumed = 1;
+                }
+            }
+            else if (args[i].startsWith("-qu") == true)
+            {
+                if (_supportsOption(QUEUE_FLAG) == false)
+                {
+                    retcode = false;
+                    _errorMsg =
+                        _targetLanguage.name() +
+                        " does not support " +
+                        QUEUE_FLAG +
+                        ".";
+                }
+                else if (_mailbox == true)
+                {
+                    retcode = false;
+                    _errorMsg =
+                        QUEUE_FLAG +
+                        " cannot be used with " +
+                        CONCURRENCY_FLAG +
+                        " " +
+                        SmcCodeGenerator.MAILBOX_CONCURRENCY +
+                        ".";
+                }
+                else
+                {
+                    _queue = true;
+                    argsConsumed = 1;
+                }
+            }
+            else if (args[i].startsWith("-ke") == true)
+            {
+                _keepUnchanged = true;
+                argsConsumed = 1;
+            }
+            else if (args[i].startsWith("-fl") == true)
+            {
+                if (_supportsOption(FLEET_FLAG) == false)
+                {
+                    retcode = false;
+                    _errorMsg =
+                        _targetLanguage.name() +
+                        " does not support " +
+                        FLEET_FLAG +
+                        ".";
+                }
+                else
+                {
+                    _fleet = true;
+                    argsConsumed = 1;
+                }
+            }
+            else if (args[i].startsWith("-co") == true)
+            {
+                // -concurrency should be followed by a
+                // concurrency mode.
+                if ((i + 1) == args.length ||
+                    args[i+1].startsWith("-") == true)
+                {
+                    retcode = false;
+                    _errorMsg =
+                        CONCURRENCY_FLAG +
+                        " not followed by a value";
+                }
+                else if (_supportsOption(CONCURRENCY_FLAG) == false)
+                {
+                    retcode = false;
+                    _errorMsg =
+                        _targetLanguage.name() +
+                        " does not support " +
+                        CONCURRENCY_FLAG +
+                        ".";
+                }
+                else if (args[i+1].equals(
+                             SmcCodeGenerator.SYNC_CONCURRENCY) == true)
+                {
+                    if (_mailbox == true)
+                    {
+                        retcode = false;
+                        _errorMsg =
+                            CONCURRENCY_FLAG + " already set.";
+                    }
+                    else
+                    {
+                        _sync = true;
+                        argsConsumed = 2;
+                    }
+                }
+                else if (args[i+1].equals(
+                             SmcCodeGenerator.MAILBOX_CONCURRENCY) == true)
+                {
+                    if (_sync == true)
+                    {
+                        retcode = false;
+                        _errorMsg =
+                            CONCURRENCY_FLAG +
+                            " " +
+                            SmcCodeGenerator.MAILBOX_CONCURRENCY +
+                            " cannot be used with " +
+                            SYNC_FLAG +
+                            ".";
+                    }
+                    else if (_queue == true)
+                    {
+                        retcode = false;
+                        _errorMsg =
+                            CONCURRENCY_FLAG +
+                            " " +
+                            SmcCodeGenerator.MAILBOX_CONCURRENCY +
+                            " cannot be used with " +
+                            QUEUE_FLAG +
+                            ".";
+                    }
+                    else
+                    {
+                        _mailbox = true;
+                        argsConsumed = 2;
+                    }
+                }
+                else
                 {
                     retcode = false;
                     _errorMsg =
                         "\"" +
                         args[i+1] +
-                        "\" is an invalid C++ cast type.";
-                }
-                else
-                {
-                    _castType = args[i+1];
-                    argsConsumed = 2;
+                        "\" is an invalid concurrency mode.";
                 }
             }
             else if (args[i].startsWith("-crtp") == true)
@@ -591,6 +1306,43 @@ public final class Smc
                         _isValidDirectory(_outputDirectory);
                 }
             }
+            else if (args[i].equals(JOBS_FLAG) == true)
+            {
+                if ((i + 1) == args.length ||
+                    args[i+1].startsWith("-") == true)
+                {
+                    retcode = false;
+                    _errorMsg =
+                        JOBS_FLAG +
+                        " not followed by an integer value.";
+                }
+                else
+                {
+                    try
+                    {
+                        _jobCount = Integer.parseInt(args[i+1]);
+
+                        if (_jobCount <= 0)
+                        {
+                            retcode = false;
+                            _errorMsg =
+                                JOBS_FLAG +
+                                " not followed by an integer value > 0.";
+                        }
+                        else
+                        {
+                            argsConsumed = 2;
+                        }
+                    }
+                    catch (NumberFormatException numberex)
+                    {
+                        retcode = false;
+                        _errorMsg =
+                            JOBS_FLAG +
+                            " not followed by a valid integer.";
+                    }
+                }
+            }
             else if (args[i].startsWith("-hea") == true)
             {
                 // -headerd should be followed by a directory.
@@ -781,7 +1533,7 @@ public final class Smc
                     argsConsumed = 1;
                 }
             }
-            else if (args[i].startsWith("-stac") == true)
+            else if (args[i].startsWith("-sta") == true)
             {
                 if (_supportsOption(STACK_FLAG) == false)
                 {
@@ -925,6 +1677,15 @@ public final class Smc
                     argsConsumed = 1;
                 }
             }
+            // -server starts the compile daemon and is recognized
+            // by main() only as the first argument. Anywhere
+            // else it would be taken as -serial.
+            else if (args[i].startsWith("-serv") == true)
+            {
+                retcode = false;
+                _errorMsg =
+                    SERVER_FLAG + " must be the first argument.";
+            }
             else if (args[i].startsWith("-se") == true)
             {
                 if (_supportsOption(SERIAL_FLAG) == false)
@@ -961,6 +1722,24 @@ public final class Smc
             }
         }
 
+        // The -fleet class ignores the options which change how
+        // a transition is issued or reported. Reject them rather
+        // than generate a fleet which silently differs from the
+        // context class.
+        if (helpFlag == false && retcode == true && _fleet == true)
+        {
+            fleetConflict = _fleetConflict();
+            if (fleetConflict != null)
+            {
+                retcode = false;
+                _errorMsg =
+                    FLEET_FLAG +
+                    " cannot be used with " +
+                    fleetConflict +
+                    ".";
+            }
+        }
+
         // Was a state map source file given? It must be the
         // last argument in the list.
         if (helpFlag == false && retcode == true)
@@ -990,7 +1769,7 @@ public final class Smc
                     }
                     else
                     {
-                        sourceFile = new File(args[i]);
+                        sourceFile = _resolveFile(args[i]);
                         if (sourceFile.exists() == false)
                         {
                             retcode = false;
@@ -1033,6 +1812,51 @@ public final class Smc
         return (retcode);
     } // end of parseArgs(String[])
 
+    // Returns the first option set which -fleet does not
+    // support or null if there is none.
+    private static String _fleetConflict()
+    {
+        String retval = null;
+
+        if (_sync == true)
+        {
+            retval = SYNC_FLAG;
+        }
+        else if (_mailbox == true)
+        {
+            retval =
+                CONCURRENCY_FLAG +
+                " " +
+                SmcCodeGenerator.MAILBOX_CONCURRENCY;
+        }
+        else if (_debugLevel != SmcCodeGenerator.NO_DEBUG_OUTPUT)
+        {
+            retval = DEBUG_FLAG;
+        }
+        else if (_metrics == true)
+        {
+            retval = METRICS_FLAG;
+        }
+        else if (_queue == true)
+        {
+            retval = QUEUE_FLAG;
+        }
+        else if (_nocatch == true)
+        {
+            retval = NO_CATCH_FLAG;
+        }
+        else if (_serial == true)
+        {
+            retval = SERIAL_FLAG;
+        }
+        else if (_reflection == true)
+        {
+            retval = REFLECT_FLAG;
+        }
+
+        return (retval);
+    } // end of _fleetConflict()
+
     // Process the -help and -version flags separately.
     private static boolean _needHelp(final String[] args)
     {
@@ -1044,12 +1868,12 @@ public final class Smc
             if (args[i].startsWith("-hel") == true)
             {
                 retval = true;
-                _usage(System.out);
+                _usage(_out);
             }
             else if (args[i].startsWith("-vers") == true)
             {
                 retval = true;
-                System.out.println(APP_NAME + " " + _version);
+                _out.println(APP_NAME + " " + _version);
             }
         }
 
@@ -1148,6 +1972,16 @@ public final class Smc
                 castType.equals("reinterpret_cast") == true);
     } // end of _isValidCast(String)
 
+    // Returns true if the string is a valid transition dispatch
+    // mode.
+    private static boolean _isValidDispatch(final String mode)
+    {
+        return (
+            mode.equals(SmcCodeGenerator.TABLE_DISPATCH) == true ||
+            mode.equals(SmcCodeGenerator.STATIC_DISPATCH) == true ||
+            mode.equals(SmcCodeGenerator.SWITCH_DISPATCH) == true);
+    } // end of _isValidDispatch(String)
+
     // Returns true if the path is a valid destination directory.
     private static boolean _isValidDirectory(final String path)
     {
@@ -1155,7 +1989,7 @@ public final class Smc
 
         try
         {
-            File pathObj = new File(path);
+            File pathObj = _resolveFile(path);
 
             if (pathObj.isDirectory() == false)
             {
@@ -1194,6 +2028,7 @@ public final class Smc
         stream.print(" [-vverbose]");
         stream.print(" [-help]");
         stream.print(" [-sync]");
+        stream.print(" [-concurrency mode]");
         stream.print(" [-noex]");
         stream.print(" [-nocatch]");
         stream.print(" [-stack max-stack-depth]");
@@ -1204,7 +2039,14 @@ public final class Smc
         stream.print(" [-generic]");
         stream.print(" [-generic7]");
         stream.print(" [-cast cast_type]");
+        stream.print(" [-dispatch mode]");
+        stream.print(" [-fleet]");
+        stream.print(" [-metrics]");
+        stream.print(" [-queue]");
         stream.print(" [-d directory]");
+        stream.print(" [-j jobs]");
+        stream.print(" [-cache directory]");
+        stream.print(" [-keep]");
         stream.print(" [-headerd directory]");
         stream.print(" [-hsuffix suffix]");
         stream.print(" [-glevel int]");
@@ -1214,6 +2056,9 @@ public final class Smc
             "-java7 | -js -lua | -objc | -perl | -php | -python | ");
         stream.print("-ruby | -scala | -table |-tcl | -vb}");
         stream.println(" statemap_file");
+        stream.print("       ");
+        stream.print(APP_NAME);
+        stream.println(" -server port");
         stream.println("    where:");
         stream.println(
             "\t-access   Use this access keyword for the generated classes");
@@ -1246,6 +2091,15 @@ public final class Smc
             "\t-sync     Synchronize access to transition methods");
         stream.print("\t          ");
         stream.println("(use with -csharp, -java, -java7, -groovy, -scala and -vb only)");
+        stream.println(
+            "\t-concurrency Use this transition concurrency mode:");
+        stream.print("\t          ");
+        stream.println("sync (same as -sync) or");
+        stream.print("\t          ");
+        stream.println(
+            "mailbox (post transitions to a lock-free queue)");
+        stream.print("\t          ");
+        stream.println("(use with -java and -java7 only)");
         stream.println(
             "\t-noex     Do not generate C++ exception throws ");
         stream.print("\t          ");
@@ -1253,11 +2107,14 @@ public final class Smc
         stream.print(
             "\t-nocatch  Do not generate try/catch/rethrow ");
         stream.println("code (not recommended)");
+        stream.print("\t          ");
+        stream.println(
+            "(-java7: propagate action exceptions to the caller)");
         stream.println("\t-stack    Specifies a fixed-size state stack");
         stream.print("\t          ");
         stream.println("using no dynamic memory allocation.");
         stream.print("\t          ");
-        stream.println("(use with -c++ only)");
+        stream.println("(use with -c++, -java and -java7 only)");
         stream.println(
             "\t-protocol FSM context extends a @protocol and referenced via protocol");
         stream.print("\t          ");
@@ -1282,8 +2139,55 @@ public final class Smc
         stream.println("\t-cast     Use this C++ cast type ");
         stream.print("\t          ");
         stream.println("(use with -c++ only)");
+        stream.println(
+            "\t-dispatch Use this transition dispatch mode:");
+        stream.print("\t          ");
+        stream.println(
+            "table (State7 transition table, the default) or");
+        stream.print("\t          ");
+        stream.println(
+            "static (static final method handle fields) or");
+        stream.print("\t          ");
+        stream.println(
+            "switch (switch on the state identifier)");
+        stream.print("\t          ");
+        stream.println("(use with -java7 only)");
+        stream.println(
+            "\t-fleet    Also generate a <context>Fleet class which");
+        stream.print("\t          ");
+        stream.println(
+            "runs many state machines stored in parallel arrays");
+        stream.print("\t          ");
+        stream.println("(use with -java7 only)");
+        stream.println(
+            "\t-metrics  Count transitions per state in a statemap.FsmMetrics");
+        stream.print("\t          ");
+        stream.println("(use with -java and -java7 only)");
+        stream.println(
+            "\t-queue    Queue transitions issued by actions until the");
+        stream.print("\t          ");
+        stream.println(
+            "running transition completes (use with -java and -java7 only)");
         stream.println(
             "\t-d        Place generated files in directory");
+        stream.println(
+            "\t-j        Compile this many source files in parallel");
+        stream.print("\t          ");
+        stream.println(
+            "(messages are still output in source file order)");
+        stream.println(
+            "\t-cache    Reuse files generated from unchanged source files");
+        stream.print("\t          ");
+        stream.println("stored in this directory");
+        stream.println(
+            "\t-keep     Do not rewrite generated files whose contents");
+        stream.print("\t          ");
+        stream.println("are unchanged");
+        stream.println(
+            "\t-server   Run as a compile daemon on this port");
+        stream.print("\t          ");
+        stream.println(
+            "(must be the only option, see net.sf.smc.SmcClient)");
         stream.print(
             "\t-headerd  Place generated header files in ");
         stream.println("directory");
@@ -1341,27 +2245,47 @@ public final class Smc
                 0, fileName.toLowerCase().indexOf(".sm")));
     } // end of _getFileName(String)
 
+    // Returns the named file. A relative name is resolved
+    // against the base directory, if set.
+    private static File _resolveFile(final String name)
+    {
+        File retval = new File(name);
+
+        if (_baseDirectory != null && retval.isAbsolute() == false)
+        {
+            retval = new File(_baseDirectory, name);
+        }
+
+        return (retval);
+    } // end of _resolveFile(String)
+
     // Generates the State pattern in the target language.
-    private static void _generateCode(final SmcFSM fsm)
+    // Returns the names of the generated files.
+    private static List<String> _generateCode(
+        final String sourceFileName,
+        final SmcFSM fsm,
+        final PrintStream out)
         throws FileNotFoundException,
                IOException,
                ParseException
     {
         final int endIndex =
-            _sourceFileName.lastIndexOf(File.separatorChar);
+            sourceFileName.lastIndexOf(File.separatorChar);
         String srcFilePath =
             "." + System.getProperty("file.separator");
         String srcFileBase = fsm.getTargetFileName();
         String headerPath;
         String headerFileName = "";
-        FileOutputStream headerFileStream = null;
-        PrintStream headerStream = null;
+        SmcGeneratedFile headerFile = null;
         SmcCodeGenerator headerGenerator = null;
+        String fleetFileName = "";
+        SmcGeneratedFile fleetFile = null;
+        SmcCodeGenerator fleetGenerator = null;
         String srcFileName = "";
-        FileOutputStream sourceFileStream = null;
-        PrintStream sourceStream = null;
+        SmcGeneratedFile sourceFile = null;
         SmcOptions options = null;
         SmcCodeGenerator generator = null;
+        List<String> retval = new ArrayList<>();
 
         // For some strange reason I get the wrong
         // line separator character when I use Java
@@ -1383,7 +2307,7 @@ public final class Smc
             // at the end because endIndex points to that
             // character.
             srcFilePath =
-                _sourceFileName.substring(
+                sourceFileName.substring(
                     0, (endIndex + 1));
         }
         // If there are no preceeding directories, then put the
@@ -1404,20 +2328,6 @@ public final class Smc
             headerPath = srcFilePath;
         }
 
-        if (_accessLevel == null)
-        {
-            _accessLevel = "public";
-        }
-        else if (_accessLevel.equals(PACKAGE_LEVEL) == true)
-        {
-            _accessLevel = "/* package */";
-        }
-
-        // If the target language is Java7, then turn on
-        // the java7 flag.
-        _java7Flag =
-            (_targetLanguage.language() == TargetLanguage.JAVA7);
-
         options = new SmcOptions(APP_NAME,
                                  VERSION,
                                  fsm.getSourceFileName(),
@@ -1439,7 +2349,11 @@ public final class Smc
                                  _generic,
                                  _java7Flag,
                                  _accessLevel,
-                                 _protocol);
+                                 _protocol,
+                                 _dispatch,
+                                 _mailbox,
+                                 _metrics,
+                                 _queue);
 
         // Create the header file name and generator -
         // if the language uses a header file.
@@ -1450,11 +2364,12 @@ public final class Smc
             headerFileName =
                 headerGenerator.sourceFile(
                     headerPath, srcFileBase, _hsuffix);
-            headerFileStream =
-                new FileOutputStream(headerFileName);
-            headerStream =
-                new PrintStream(headerFileStream);
-            headerGenerator.setSource(headerStream);
+            headerFile =
+                new SmcGeneratedFile(
+                    _resolveFile(headerFileName),
+                    OUTPUT_ENCODING,
+                    _keepUnchanged);
+            headerGenerator.setSource(headerFile.stream());
         }
 
         // Create the language-specific source code generator.
@@ -1462,44 +2377,100 @@ public final class Smc
         srcFileName =
             generator.sourceFile(
                 srcFilePath, srcFileBase, _suffix);
-        sourceFileStream =
-            new FileOutputStream(srcFileName);
-        sourceStream =
-            new PrintStream(sourceFileStream);
-        generator.setSource(sourceStream);
+        sourceFile =
+            new SmcGeneratedFile(
+                _resolveFile(srcFileName),
+                OUTPUT_ENCODING,
+                _keepUnchanged);
+        generator.setSource(sourceFile.stream());
+
+        // Create the fleet class file name and generator - if
+        // -fleet was specified.
+        if (_fleet == true)
+        {
+            fleetGenerator = new SmcJava7FleetGenerator(options);
+            fleetFileName =
+                fleetGenerator.sourceFile(
+                    srcFilePath,
+                    SmcJava7FleetGenerator.fleetClassName(fsm),
+                    _suffix);
+            fleetFile =
+                new SmcGeneratedFile(
+                    _resolveFile(fleetFileName),
+                    OUTPUT_ENCODING,
+                    _keepUnchanged);
+            fleetGenerator.setSource(fleetFile.stream());
+        }
 
-        // Generate the header file first.
-        if (headerGenerator != null)
+        try
         {
-            fsm.accept(headerGenerator);
-            headerFileStream.flush();
-            headerFileStream.close();
+            // Generate the header file first.
+            if (headerGenerator != null)
+            {
+                fsm.accept(headerGenerator);
+                _closeFile(headerFile, headerFileName, out);
+                headerFile = null;
 
-            if (_verbose == true)
+                retval.add(headerFileName);
+            }
+
+            // Now output the FSM in the target language.
+            if (generator != null)
+            {
+                fsm.accept(generator);
+                _closeFile(sourceFile, srcFileName, out);
+                sourceFile = null;
+
+                retval.add(srcFileName);
+            }
+
+            // Output the fleet class last.
+            if (fleetGenerator != null)
             {
-                System.out.print("[wrote ");
-                System.out.print(headerFileName);
-                System.out.println("]");
+                fsm.accept(fleetGenerator);
+                _closeFile(fleetFile, fleetFileName, out);
+                fleetFile = null;
+
+                retval.add(fleetFileName);
             }
         }
-
-        // Now output the FSM in the target language.
-        if (generator != null)
+        finally
         {
-            fsm.accept(generator);
-            sourceFileStream.flush();
-            sourceFileStream.close();
-
-            if (_verbose == true)
+            // Close the files left open by a failed generator.
+            for (SmcGeneratedFile file:
+                     new SmcGeneratedFile[]
+                     {
+                         headerFile, sourceFile, fleetFile
+                     })
             {
-                System.out.print("[wrote ");
-                System.out.print(srcFileName);
-                System.out.println("]");
+                if (file != null)
+                {
+                    file.discard();
+                }
             }
         }
 
+        return (retval);
+    } // end of _generateCode(String, SmcFSM, PrintStream)
+
+    // Closes the named generated file and reports whether it
+    // was written or kept unchanged.
+    private static void _closeFile(final SmcGeneratedFile file,
+                                   final String fileName,
+                                   final PrintStream out)
+        throws IOException
+    {
+        final boolean written = file.close();
+
+        if (_verbose == true)
+        {
+            out.print(written == true ? "[wrote " : "[unchanged ");
+            out.print(fileName);
+            out.println("]");
+        }
+
         return;
-    } // end of _generateCode(SmcFSM)
+    } // end of _closeFile(SmcGeneratedFile, String, PrintStream)
 
     // Outputs parser warning and error messages concerning the
     // named .sm file to the provided stream.
@@ -1516,11 +2487,11 @@ public final class Smc
 
             if (message.getLevel() == SmcMessage.WARNING)
             {
-                stream.print(": warning - ");
+                stream.print(WARNING_TAG);
             }
             else
             {
-                stream.print(": error - ");
+                stream.print(ERROR_TAG);
             }
 
             stream.println(message.getText());
@@ -1629,11 +2600,11 @@ public final class Smc
             }
             catch (Exception jex)
             {
-                System.err.print(options.srcfileBase());
-                System.err.print(".sm: failed to create ");
-                System.err.print(_language);
-                System.err.println(" generator:");
-                jex.printStackTrace();
+                _err.print(options.srcfileBase());
+                _err.print(".sm: failed to create ");
+                _err.print(_language);
+                _err.println(" generator:");
+                jex.printStackTrace(_err);
             }
 
             return (retval);
@@ -1704,6 +2675,118 @@ public final class Smc
         private final Constructor _headerGenerator;
     } // end of class Language
 
+    // Compiles one source file on a -j pool thread. The file's
+    // -verbose output and compiler messages are collected here
+    // and written out after all the files are compiled.
+
+    private static final class CompileTask
+        implements Callable<Boolean>
+    {
+    //-----------------------------------------------------------
+    // Member methods.
+    //
+
+        //-------------------------------------------------------
+        // Constructors.
+        //
+
+        public CompileTask(final String sourceFileName)
+        {
+            _sourceFileName = sourceFileName;
+            _outBytes = new ByteArrayOutputStream();
+            _errBytes = new ByteArrayOutputStream();
+            _messageList = new ArrayList<>();
+            _compileTime = 0L;
+        } // end of CompileTask(String)
+
+        //
+        // end of Constructors.
+        //-------------------------------------------------------
+
+        //-------------------------------------------------------
+        // Callable Interface Implementation.
+        //
+
+        // Returns true if the source file is successfully
+        // compiled.
+        @Override
+        public Boolean call()
+        {
+            final PrintStream out = new PrintStream(_outBytes);
+            final PrintStream err = new PrintStream(_errBytes);
+            final long startTime = System.currentTimeMillis();
+            boolean retcode;
+
+            try
+            {
+                retcode =
+                    _compile(_sourceFileName, out, err, _messageList);
+            }
+            catch (Exception jex)
+            {
+                retcode =
+                    _reportException(
+                        _sourceFileName, jex, err, _messageList);
+            }
+
+            _compileTime = System.currentTimeMillis() - startTime;
+
+            out.close();
+            err.close();
+
+            return (retcode);
+        } // end of call()
+
+        //
+        // end of Callable Interface Implementation.
+        //-------------------------------------------------------
+
+        //-------------------------------------------------------
+        // Get methods.
+        //
+
+        public String sourceFileName()
+        {
+            return (_sourceFileName);
+        } // end of sourceFileName()
+
+        // Returns the time in milliseconds spent compiling the
+        // source file.
+        public long compileTime()
+        {
+            return (_compileTime);
+        } // end of compileTime()
+
+        //
+        // end of Get methods.
+        //-------------------------------------------------------
+
+        // Writes the collected output to the -verbose and
+        // compiler message streams.
+        public void writeOutput()
+        {
+            _out.print(_outBytes.toString());
+            _err.print(_errBytes.toString());
+
+            if (_messages != null)
+            {
+                _messages.addAll(_messageList);
+            }
+
+            return;
+        } // end of writeOutput()
+
+    //-----------------------------------------------------------
+    // Member data.
+    //
+
+        private final String _sourceFileName;
+        private final ByteArrayOutputStream _outBytes;
+        private final ByteArrayOutputStream _errBytes;
+        private final List<SmcMessage> _messageList;
+        private long _compileTime;
+    } // end of class CompileTask
+
 //---------------------------------------------------------------
 // Member Data
 //
@@ -1712,9 +2795,6 @@ public final class Smc
     // Statics.
     //
 
-    // The source file currently being compiled.
-    private static String _sourceFileName;
-
     // The state map source code to be compiled.
     private static List<String> _sourceFileList;
 
@@ -1793,6 +2873,56 @@ public final class Smc
     // protocol.
     private static boolean _protocol;
 
+    // Generate this transition dispatch (-java7 only).
+    private static String _dispatch;
+
+    // If true, then also generate the <context>Fleet class
+    // (-java7 only).
+    private static boolean _fleet;
+
+    // If true, then post transitions to a statemap.Mailbox
+    // rather than synchronize them (-java and -java7 only).
+    private static boolean _mailbox;
+
+    // If true, then count transitions in a statemap.FsmMetrics
+    // (-java and -java7 only).
+    private static boolean _metrics;
+
+    // If true, then transitions issued while a transition is
+    // running are queued in a statemap.TransitionQueue (-java
+    // and -java7 only).
+    private static boolean _queue;
+
+    // If true, then generated files whose contents are unchanged
+    // are not rewritten. Set by -keep.
+    private static boolean _keepUnchanged;
+
+    // Compile this many source files at a time. Set by -j.
+    private static int _jobCount;
+
+    // Resolve relative file names against this directory. May
+    // be null.
+    private static File _baseDirectory;
+
+    // -verbose output and compiler messages are written to these
+    // streams.
+    private static PrintStream _out;
+    private static PrintStream _err;
+
+    // If not null, then compiler messages are also added to this
+    // list.
+    private static List<SmcMessage> _messages;
+
+    // Store generated files in this cache directory. May be
+    // null. Set by -cache.
+    private static String _cacheDirectory;
+
+    // The build cache in _cacheDirectory and the option string
+    // used in its keys. Set before compiling when -cache is
+    // specified.
+    private static SmcBuildCache _cache;
+    private static String _cacheOptions;
+
     // Store command line error messages here.
     private static String _errorMsg;
 
@@ -1821,10 +2951,23 @@ public final class Smc
     private static final String APP_NAME = "smc";
     private static final String VERSION = "v. 6.6.0";
 
+    // SMC source files are read as UTF-8 and the generated files
+    // are written the same way.
+    private static final String OUTPUT_ENCODING = "UTF-8";
+
+    // Compiler messages are output as
+    // "<file>:<line>: warning - <text>" or
+    // "<file>:<line>: error - <text>".
+    private static final String WARNING_TAG = ": warning - ";
+    private static final String ERROR_TAG = ": error - ";
+
     // Command line option flags.
     private static final String ACCESS_FLAG = "-access";
+    private static final String CACHE_FLAG = "-cache";
     private static final String CAST_FLAG = "-cast";
     private static final String DIRECTORY_FLAG = "-d";
+    private static final String DISPATCH_FLAG = "-dispatch";
+    private static final String FLEET_FLAG = "-fleet";
     private static final String DEBUG_FLAG = "-g";
     private static final String DEBUG_LEVEL0_FLAG = "-g0";
     private static final String DEBUG_LEVEL1_FLAG = "-g1";
@@ -1834,14 +2977,20 @@ public final class Smc
     private static final String HEADER_FLAG = "-headerd";
     private static final String HEADER_SUFFIX_FLAG = "-hsuffix";
     private static final String HELP_FLAG = "-help";
+    private static final String JOBS_FLAG = "-j";
+    private static final String KEEP_FLAG = "-keep";
+    private static final String METRICS_FLAG = "-metrics";
     private static final String NO_CATCH_FLAG = "-nocatch";
     private static final String NO_EXCEPTIONS_FLAG = "-noex";
     private static final String NO_STREAMS_FLAG = "-nostreams";
+    private static final String QUEUE_FLAG = "-queue";
     private static final String CRTP_FLAG = "-crtp";
-    private static final String STACK_FLAG = "-static";
+    private static final String CONCURRENCY_FLAG = "-concurrency";
+    private static final String STACK_FLAG = "-stack";
     private static final String REFLECT_FLAG = "-reflect";
     private static final String RETURN_FLAG = "-return";
     private static final String SERIAL_FLAG = "-serial";
+    private static final String SERVER_FLAG = "-server";
     private static final String SILENT_FLAG = "-silent";
     private static final String SUFFIX_FLAG = "-suffix";
     private static final String SYNC_FLAG = "-sync";
@@ -1996,7 +3145,10 @@ public final class Smc
         // Languages supporting each option:
         // +    -access:  Java
         // +      -cast:  C++
+        // + -concurrency: Java, Java7
         // +         -d:  all
+        // +  -dispatch:  Java7
+        // +     -fleet:  Java7
         // +         -g:  all
         // +        -g0:  all
         // +        -g1:  all
@@ -2004,10 +3156,12 @@ public final class Smc
         // +    -header:  C, C++, Objective-C
         // +    -hsuffix: C, C++, Objective-C
         // +      -help:  all
+        // +   -metrics:  Java, Java7
         // +   -nocatch:  all
         // +      -noex:  C++
         // + -nostreams:  C++
         // +  -protocol:  Objective-C
+        // +     -queue:  Java, Java7
         // +   -reflect:  C#, Java, JavaScript, TCL, VB, Lua, Perl,
         //                PHP, Python, Ruby, Groovy, Scala
         // +    -return:  all
@@ -2031,6 +3185,7 @@ public final class Smc
         _optionMap.put(DEBUG_LEVEL0_FLAG, languages);
         _optionMap.put(DEBUG_LEVEL1_FLAG, languages);
         _optionMap.put(HELP_FLAG, languages);
+        _optionMap.put(KEEP_FLAG, languages);
         _optionMap.put(NO_CATCH_FLAG, languages);
         _optionMap.put(RETURN_FLAG, languages);
         _optionMap.put(SUFFIX_FLAG, languages);
@@ -2045,6 +3200,12 @@ public final class Smc
         _optionMap.put(NO_EXCEPTIONS_FLAG, languages);
         _optionMap.put(NO_STREAMS_FLAG, languages);
         _optionMap.put(CRTP_FLAG, languages);
+
+        // The -stack option.
+        languages = new ArrayList<Language>();
+        languages.add(_languages[TargetLanguage.C_PLUS_PLUS.ordinal()]);
+        languages.add(_languages[TargetLanguage.JAVA.ordinal()]);
+        languages.add(_languages[TargetLanguage.JAVA7.ordinal()]);
         _optionMap.put(STACK_FLAG, languages);
 
         // The -access option.
@@ -2053,6 +3214,30 @@ public final class Smc
         languages.add(_languages[TargetLanguage.JAVA7.ordinal()]);
         _optionMap.put(ACCESS_FLAG, languages);
 
+        // The -dispatch option.
+        languages = new ArrayList<Language>();
+        languages.add(_languages[TargetLanguage.JAVA7.ordinal()]);
+        _optionMap.put(DISPATCH_FLAG, languages);
+        _optionMap.put(FLEET_FLAG, languages);
+
+        // The -concurrency option.
+        languages = new ArrayList<Language>();
+        languages.add(_languages[TargetLanguage.JAVA.ordinal()]);
+        languages.add(_languages[TargetLanguage.JAVA7.ordinal()]);
+        _optionMap.put(CONCURRENCY_FLAG, languages);
+
+        // The -metrics option.
+        languages = new ArrayList<Language>();
+        languages.add(_languages[TargetLanguage.JAVA.ordinal()]);
+        languages.add(_languages[TargetLanguage.JAVA7.ordinal()]);
+        _optionMap.put(METRICS_FLAG, languages);
+
+        // The -queue option.
+        languages = new ArrayList<Language>();
+        languages.add(_languages[TargetLanguage.JAVA.ordinal()]);
+        languages.add(_languages[TargetLanguage.JAVA7.ordinal()]);
+        _optionMap.put(QUEUE_FLAG, languages);
+
         // Languages using a header file.
         languages = new ArrayList<Language>();
         languages.add(_languages[TargetLanguage.C_PLUS_PLUS.ordinal()]);
@@ -0,0 +1,532 @@
+//
+// The contents of this file are subject to the Mozilla Public
+// License Version 1.1 (the "License"); you may not use this file
+// except in compliance with the License. You may obtain a copy
+// of the License at http://www.mozilla.org/MPL/
+//
+// Software distributed under the License is distributed on an
+// "AS IS" basis, WITHOUT WARRANTY OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// rights and limitations under the License.
+//
+// The Original Code is State Machine Compiler (SMC).
+//
+// The Initial Developer of the Original Code is Charles W. Rapp.
+// Portions created by Charles W. Rapp are
+// Copyright (C) 2014. Charles W. Rapp.
+// All Rights Reserved.
+//
+// Contributor(s):
+//
+// RCS ID
+// $Id$
+//
+
+package net.sf.smc;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import net.sf.smc.parser.SmcMessage;
+
+/**
+ * Stores the files generated from an .sm file in a cache
+ * directory. Each cache entry is keyed by a hash of the .sm
+ * file's name and contents, the target language and the code
+ * generation options. When an .sm file is compiled again with
+ * the same options, the generated files are restored from the
+ * cache and the .sm file is not parsed, checked or generated.
+ * The key does not use file time stamps, and file names in the
+ * key and manifest are relative to the base directory. So the
+ * cache may be shared by clean checkouts of the same source in
+ * different directories.
+ * <p>
+ * A cache entry is a directory named by its key. It contains
+ * the generated files, the compiler messages reported for the
+ * .sm file and a manifest listing where each generated file was
+ * written. An entry is filled in a temporary directory and then
+ * renamed. So concurrent compiles never see a partial entry.
+ * </p>
+ *
+ * @see Smc
+ *
+ * @author <a href="mailto:rapp@acm.org">Charles Rapp</a>
+ */
+
+/* package */ final class SmcBuildCache
+{
+//---------------------------------------------------------------
+// Member methods
+//
+
+    //-----------------------------------------------------------
+    // Constructors.
+    //
+
+    /**
+     * Creates a build cache stored in the given directory. The
+     * directory is created when the first entry is stored.
+     * Relative .sm and generated file names are resolved
+     * against {@code baseDirectory}.
+     * @param directory the cache directory.
+     * @param baseDirectory resolve relative file names against
+     * this directory. If {@code null}, then they are resolved
+     * against the current working directory.
+     */
+    /* package */ SmcBuildCache(final File directory,
+                                final File baseDirectory)
+    {
+        _directory = directory.toPath();
+        _baseDirectory =
+            (baseDirectory == null ?
+             Paths.get("") :
+             baseDirectory.toPath());
+        _hitCount = new AtomicInteger(0);
+        _missCount = new AtomicInteger(0);
+        _savedTime = new AtomicLong(0L);
+    } // end of SmcBuildCache(File, File)
+
+    //
+    // end of Constructors.
+    //-----------------------------------------------------------
+
+    //-----------------------------------------------------------
+    // Get methods.
+    //
+
+    /**
+     * Returns the number of .sm files restored from the cache.
+     * @return the number of .sm files restored from the cache.
+     */
+    /* package */ int hitCount()
+    {
+        return (_hitCount.get());
+    } // end of hitCount()
+
+    /**
+     * Returns the number of .sm files not found in the cache.
+     * @return the number of .sm files not found in the cache.
+     */
+    /* package */ int missCount()
+    {
+        return (_missCount.get());
+    } // end of missCount()
+
+    /**
+     * Returns the time in milliseconds saved by restoring files
+     * from the cache. This is the time it took to compile the
+     * restored .sm files less the time it took to restore them.
+     * @return the time saved in milliseconds.
+     */
+    /* package */ long savedTime()
+    {
+        return (_savedTime.get());
+    } // end of savedTime()
+
+    /**
+     * Returns the cache key for the named .sm file compiled with
+     * the given options. The key uses the file name relative to
+     * the base directory.
+     * @param sourceFileName the .sm file name.
+     * @param options the target language and code generation
+     * options. Directory names should be given by
+     * {@link #relativeName(String)}.
+     * @return the cache key.
+     * @exception IOException
+     * if the .sm file cannot be read.
+     */
+    /* package */ String key(final String sourceFileName,
+                             final String options)
+        throws IOException
+    {
+        final MessageDigest digest = newDigest();
+        final StringBuilder retval = new StringBuilder();
+
+        digest.update(CACHE_VERSION.getBytes(CACHE_CHARSET));
+        digest.update((byte) 0);
+        digest.update(options.getBytes(CACHE_CHARSET));
+        digest.update((byte) 0);
+        digest.update(
+            relativeName(sourceFileName).getBytes(CACHE_CHARSET));
+        digest.update((byte) 0);
+        digest.update(Files.readAllBytes(resolve(sourceFileName)));
+
+        for (byte b: digest.digest())
+        {
+            retval.append(HEX_DIGITS.charAt((b >> 4) & 0x0f));
+            retval.append(HEX_DIGITS.charAt(b & 0x0f));
+        }
+
+        return (retval.toString());
+    } // end of key(String, String)
+
+    /**
+     * Returns the file name relative to the base directory with
+     * '/' separators. A file outside the base directory is
+     * returned as an absolute name.
+     * @param name the file name.
+     * @return the file name relative to the base directory.
+     */
+    /* package */ String relativeName(final String name)
+    {
+        final Path base = _baseDirectory.toAbsolutePath().normalize();
+        final Path path = base.resolve(name).normalize();
+        final String retval =
+            (path.startsWith(base) == true ?
+             base.relativize(path) :
+             path).toString();
+
+        return (retval.replace(File.separatorChar, '/'));
+    } // end of relativeName(String)
+
+    //
+    // end of Get methods.
+    //-----------------------------------------------------------
+
+    /**
+     * Restores the generated files cached under the given key.
+     * Returns the compiler messages reported when the files were
+     * generated. Returns {@code null} if there is no such cache
+     * entry or the entry cannot be restored. A generated file is
+     * not re-written if its contents are unchanged.
+     * @param key the cache key.
+     * @return the cached compiler messages or {@code null}.
+     */
+    /* package */ List<SmcMessage> restore(final String key)
+    {
+        final Path entry = _directory.resolve(key);
+        final long startTime = System.currentTimeMillis();
+        List<String> manifest;
+        long compileTime;
+        int index;
+        List<SmcMessage> retval = null;
+
+        if (Files.isDirectory(entry) == true)
+        {
+            try
+            {
+                manifest =
+                    Files.readAllLines(
+                        entry.resolve(MANIFEST_FILE),
+                        CACHE_CHARSET);
+                compileTime = Long.parseLong(manifest.get(0));
+
+                for (index = 1; index < manifest.size(); ++index)
+                {
+                    restoreFile(
+                        entry.resolve(Integer.toString(index)),
+                        resolve(manifest.get(index)));
+                }
+
+                retval = readMessages(entry.resolve(MESSAGES_FILE));
+
+                _savedTime.addAndGet(
+                    Math.max(
+                        0L,
+                        compileTime -
+                        (System.currentTimeMillis() - startTime)));
+            }
+            // The entry is damaged. Remove it so that it is
+            // replaced when the .sm file is compiled.
+            catch (IOException |
+                   IllegalArgumentException |
+                   IndexOutOfBoundsException |
+                   NullPointerException jex)
+            {
+                retval = null;
+                deleteEntry(entry);
+            }
+        }
+
+        if (retval == null)
+        {
+            _missCount.incrementAndGet();
+        }
+        else
+        {
+            _hitCount.incrementAndGet();
+        }
+
+        return (retval);
+    } // end of restore(String)
+
+    /**
+     * Stores the generated files and compiler messages under the
+     * given key. Failing to store an entry is not an error since
+     * the .sm file is simply compiled again next time.
+     * @param key the cache key.
+     * @param files the generated file names.
+     * @param messages the compiler messages.
+     * @param compileTime the time in milliseconds it took to
+     * compile the .sm file.
+     */
+    /* package */ void store(final String key,
+                             final List<String> files,
+                             final List<SmcMessage> messages,
+                             final long compileTime)
+    {
+        final List<String> manifest = new ArrayList<>();
+        Path tmpEntry = null;
+
+        manifest.add(Long.toString(compileTime));
+
+        try
+        {
+            Files.createDirectories(_directory);
+            tmpEntry = Files.createTempDirectory(_directory, key);
+
+            for (String file: files)
+            {
+                manifest.add(relativeName(file));
+                Files.copy(
+                    resolve(file),
+                    tmpEntry.resolve(
+                        Integer.toString(manifest.size() - 1)));
+            }
+
+            writeMessages(tmpEntry.resolve(MESSAGES_FILE), messages);
+            Files.write(tmpEntry.resolve(MANIFEST_FILE),
+                        manifest,
+                        CACHE_CHARSET);
+
+            // This fails if another compile stored the entry
+            // first. That entry is just as good.
+            Files.move(tmpEntry,
+                       _directory.resolve(key),
+                       StandardCopyOption.ATOMIC_MOVE);
+            tmpEntry = null;
+        }
+        catch (IOException ioex)
+        {}
+        finally
+        {
+            if (tmpEntry != null)
+            {
+                deleteEntry(tmpEntry);
+            }
+        }
+
+        return;
+    } // end of store(String, List<String>, List<>, long)
+
+    // Reads the compiler messages stored by writeMessages().
+    private static List<SmcMessage> readMessages(final Path file)
+        throws IOException
+    {
+        final long size = Files.size(file);
+        final List<SmcMessage> retval = new ArrayList<>();
+        int count;
+        String name;
+        int lineNumber;
+        int level;
+
+        try (DataInputStream in =
+                 new DataInputStream(
+                     new BufferedInputStream(
+                         Files.newInputStream(file))))
+        {
+            for (count = in.readInt(); count > 0; --count)
+            {
+                name = readString(in, size);
+                lineNumber = in.readInt();
+                level = in.readInt();
+                retval.add(
+                    new SmcMessage(
+                        name,
+                        lineNumber,
+                        level,
+                        readString(in, size)));
+            }
+        }
+
+        return (retval);
+    } // end of readMessages(Path)
+
+    // Writes each message's name, line number, level and text
+    // to the file, preceded by the message count.
+    private static void writeMessages(
+        final Path file,
+        final List<SmcMessage> messages)
+        throws IOException
+    {
+        try (DataOutputStream out =
+                 new DataOutputStream(
+                     new BufferedOutputStream(
+                         Files.newOutputStream(file))))
+        {
+            out.writeInt(messages.size());
+
+            for (SmcMessage message: messages)
+            {
+                writeString(out, message.getName());
+                out.writeInt(message.getLineNumber());
+                out.writeInt(message.getLevel());
+                writeString(out, message.getText());
+            }
+        }
+
+        return;
+    } // end of writeMessages(Path, List<>)
+
+    // Reads a string written by writeString(). A length
+    // greater than the file size means the file is damaged.
+    private static String readString(final DataInputStream in,
+                                     final long size)
+        throws IOException
+    {
+        final int length = in.readInt();
+        final byte[] bytes;
+
+        if (length < 0 || length > size)
+        {
+            throw (
+                new IOException(
+                    "invalid string length (" +
+                    Integer.toString(length) +
+                    ")"));
+        }
+
+        bytes = new byte[length];
+        in.readFully(bytes);
+
+        return (new String(bytes, CACHE_CHARSET));
+    } // end of readString(DataInputStream, long)
+
+    // Writes the string's length in bytes followed by its
+    // bytes. Unlike writeUTF() this does not limit the length.
+    private static void writeString(final DataOutputStream out,
+                                    final String s)
+        throws IOException
+    {
+        final byte[] bytes = s.getBytes(CACHE_CHARSET);
+
+        out.writeInt(bytes.length);
+        out.write(bytes);
+
+        return;
+    } // end of writeString(DataOutputStream, String)
+
+    // Copies the cached file to the target file unless the
+    // target file already has the same contents.
+    private static void restoreFile(final Path cachedFile,
+                                    final Path targetFile)
+        throws IOException
+    {
+        final byte[] contents = Files.readAllBytes(cachedFile);
+
+        if (Files.exists(targetFile) == false ||
+            Arrays.equals(
+                contents, Files.readAllBytes(targetFile)) == false)
+        {
+            Files.write(targetFile, contents);
+        }
+
+        return;
+    } // end of restoreFile(Path, Path)
+
+    // Deletes the cache entry directory and its files. Errors
+    // are ignored.
+    private static void deleteEntry(final Path entry)
+    {
+        try
+        {
+            try (DirectoryStream<Path> files =
+                     Files.newDirectoryStream(entry))
+            {
+                for (Path file: files)
+                {
+                    Files.deleteIfExists(file);
+                }
+            }
+
+            Files.deleteIfExists(entry);
+        }
+        catch (IOException ioex)
+        {}
+
+        return;
+    } // end of deleteEntry(Path)
+
+    // Returns the named file resolved against the base
+    // directory.
+    private Path resolve(final String name)
+    {
+        return (_baseDirectory.resolve(name));
+    } // end of resolve(String)
+
+    // Returns a new message digest used to compute cache keys.
+    private static MessageDigest newDigest()
+    {
+        try
+        {
+            return (MessageDigest.getInstance(DIGEST_ALGORITHM));
+        }
+        // Every Java platform is required to support SHA-256.
+        catch (NoSuchAlgorithmException algex)
+        {
+            throw (new IllegalStateException(algex));
+        }
+    } // end of newDigest()
+
+//---------------------------------------------------------------
+// Member data
+//
+
+    // The cache entries are stored in this directory.
+    private final Path _directory;
+
+    // Relative file names are resolved against this directory.
+    private final Path _baseDirectory;
+
+    // The number of cache hits and misses.
+    private final AtomicInteger _hitCount;
+    private final AtomicInteger _missCount;
+
+    // The compile time saved by cache hits.
+    private final AtomicLong _savedTime;
+
+    //-----------------------------------------------------------
+    // Constants.
+    //
+
+    // The cache key is this hash of the .sm file and options.
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+
+    private static final String HEX_DIGITS = "0123456789abcdef";
+
+    // The cache entry format version is part of the key, so
+    // entries in an older format are never restored.
+    private static final String CACHE_VERSION = "2";
+
+    // The manifest's first line is the compile time and the
+    // following lines are the generated file names relative to
+    // the base directory. The
+    // generated files are stored in the entry as "1", "2", ...
+    // matching their manifest line.
+    private static final String MANIFEST_FILE = "manifest";
+
+    // The compiler messages reported for the .sm file. Each
+    // message is stored as its name, line number, level and
+    // text so it is restored exactly as reported.
+    private static final String MESSAGES_FILE = "messages";
+
+    private static final Charset CACHE_CHARSET =
+        StandardCharsets.UTF_8;
+} // end of class SmcBuildCache
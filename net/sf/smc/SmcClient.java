@@ -0,0 +1,208 @@
+//
+// The contents of this file are subject to the Mozilla Public
+// License Version 1.1 (the "License"); you may not use this file
+// except in compliance with the License. You may obtain a copy
+// of the License at http://www.mozilla.org/MPL/
+//
+// Software distributed under the License is distributed on an
+// "AS IS" basis, WITHOUT WARRANTY OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// rights and limitations under the License.
+//
+// The Original Code is State Machine Compiler (SMC).
+//
+// The Initial Developer of the Original Code is Charles W. Rapp.
+// Portions created by Charles W. Rapp are
+// Copyright (C) 2014. Charles W. Rapp.
+// All Rights Reserved.
+//
+// Contributor(s):
+//
+// RCS ID
+// $Id$
+//
+
+package net.sf.smc;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.Arrays;
+
+/**
+ * Sends an SMC command line to the compile daemon started with
+ * {@code java -jar Smc.jar -server port} and exits with the
+ * daemon's exit code. The client is run as
+ * <pre>
+ *   java -cp Smc.jar net.sf.smc.SmcClient port smc-arguments
+ * </pre>
+ * where {@code smc-arguments} are the same as for
+ * {@link Smc#main(String[])}. Relative file names are resolved
+ * against the client's working directory. If no daemon is
+ * listening on the port, then the client compiles the arguments
+ * itself. {@code SmcClient port -shutdown} stops the daemon.
+ * The request carries the shared secret which the daemon
+ * stored in the user's {@code ~/.smc-server-secret} file. If
+ * there is no secret file, then no daemon was started by this
+ * user and the client compiles the arguments itself.
+ *
+ * @see SmcServer
+ *
+ * @author <a href="mailto:rapp@acm.org">Charles Rapp</a>
+ */
+
+public final class SmcClient
+{
+//---------------------------------------------------------------
+// Member methods
+//
+
+    //-----------------------------------------------------------
+    // Main method.
+    //
+
+    /**
+     * The SMC daemon client main method.
+     * @param args the daemon port followed by the SMC command
+     * line arguments.
+     */
+    public static void main(final String[] args)
+    {
+        int port = -1;
+        String[] smcArgs;
+        int retcode;
+
+        if (args.length > 1)
+        {
+            try
+            {
+                port = Integer.parseInt(args[0]);
+            }
+            catch (NumberFormatException numberex)
+            {}
+        }
+
+        if (port <= 0)
+        {
+            retcode = 1;
+            System.err.println(
+                "usage: SmcClient port {-shutdown | smc-arguments}");
+        }
+        else
+        {
+            smcArgs = Arrays.copyOfRange(args, 1, args.length);
+
+            try
+            {
+                retcode = sendRequest(port, smcArgs);
+            }
+            // There is no daemon on this port or no secret to
+            // send it. Compile here unless this is a shutdown
+            // request.
+            catch (ConnectException connex)
+            {
+                if (smcArgs.length == 1 &&
+                    smcArgs[0].equals(
+                        SmcServer.SHUTDOWN_FLAG) == true)
+                {
+                    retcode = 1;
+                    System.err.print("smc: no server on port ");
+                    System.err.println(port);
+                }
+                else
+                {
+                    retcode = Smc.compile(smcArgs, null);
+                }
+            }
+            catch (IOException ioex)
+            {
+                retcode = 1;
+                System.err.print("smc: server request failed - ");
+                System.err.println(ioex.getMessage());
+            }
+        }
+
+        System.exit(retcode);
+    } // end of main(String[])
+
+    //
+    // end of Main method.
+    //-----------------------------------------------------------
+
+    //-----------------------------------------------------------
+    // Constructors.
+    //
+
+    // Private to prevent instantiation.
+    private SmcClient()
+    {}
+
+    //
+    // end of Constructors.
+    //-----------------------------------------------------------
+
+    // Sends the request to the daemon, outputs the reply and
+    // returns the daemon's exit code. Throws ConnectException
+    // if there is no secret file.
+    private static int sendRequest(final int port,
+                                   final String[] args)
+        throws IOException
+    {
+        final byte[] secret = SmcServer.readSecret(false);
+        int retcode;
+
+        if (secret == null)
+        {
+            throw (new ConnectException("no server secret"));
+        }
+
+        try (Socket socket =
+                 new Socket(InetAddress.getLoopbackAddress(), port))
+        {
+            final DataOutputStream output =
+                new DataOutputStream(
+                    new BufferedOutputStream(
+                        socket.getOutputStream()));
+            final DataInputStream input =
+                new DataInputStream(
+                    new BufferedInputStream(
+                        socket.getInputStream()));
+
+            output.writeInt(SmcServer.PROTOCOL_VERSION);
+            output.writeInt(secret.length);
+            output.write(secret);
+            output.writeUTF(System.getProperty("user.dir"));
+            output.writeInt(args.length);
+            for (String arg: args)
+            {
+                output.writeUTF(arg);
+            }
+            output.flush();
+
+            retcode = input.readInt();
+            System.out.print(readOutput(input));
+            System.out.flush();
+            System.err.print(readOutput(input));
+            System.err.flush();
+        }
+
+        return (retcode);
+    } // end of sendRequest(int, String[])
+
+    // Reads the next length-prefixed output block from the
+    // daemon.
+    private static String readOutput(final DataInputStream input)
+        throws IOException
+    {
+        final byte[] bytes = new byte[input.readInt()];
+
+        input.readFully(bytes);
+
+        return (new String(bytes, SmcServer.PROTOCOL_ENCODING));
+    } // end of readOutput(DataInputStream)
+} // end of class SmcClient
@@ -0,0 +1,214 @@
+//
+// The contents of this file are subject to the Mozilla Public
+// License Version 1.1 (the "License"); you may not use this file
+// except in compliance with the License. You may obtain a copy
+// of the License at http://www.mozilla.org/MPL/
+//
+// Software distributed under the License is distributed on an
+// "AS IS" basis, WITHOUT WARRANTY OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// rights and limitations under the License.
+//
+// The Original Code is State Machine Compiler (SMC).
+//
+// The Initial Developer of the Original Code is Charles W. Rapp.
+// Portions created by Charles W. Rapp are
+// Copyright (C) 2014. Charles W. Rapp.
+// All Rights Reserved.
+//
+// Contributor(s):
+//
+// RCS ID
+// $Id$
+//
+
+package net.sf.smc;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import net.sf.smc.parser.SmcMessage;
+
+/**
+ * Compiles .sm files in the calling JVM. This is the
+ * programmatic interface to SMC for build tools which would
+ * otherwise run {@code java -jar Smc.jar} once per .sm file.
+ * The compiler is configured with the same options as the SMC
+ * command line, for example:
+ * <pre>
+ *   SmcCompiler compiler =
+ *       new SmcCompiler("-java7", "-d", "build/gen", "-j", "4");
+ *   List&lt;SmcMessage&gt; messages =
+ *       compiler.compile(sourceFiles, System.out, null);
+ *
+ *   if (SmcCompiler.hasErrors(messages) == true) ...
+ * </pre>
+ * Unlike {@link Smc#main(String[])}, {@code compile} never calls
+ * {@code System.exit} and does not write to {@code System.out}
+ * or {@code System.err}. The parser, syntax checker and
+ * code generation errors are returned as {@link SmcMessage}
+ * instances.
+ * <p>
+ * SMC keeps its options in static fields. So compiles in the
+ * same JVM are serialized. Use the {@code -j} option to compile
+ * a set of .sm files in parallel.
+ * </p>
+ *
+ * @see Smc
+ *
+ * @author <a href="mailto:rapp@acm.org">Charles Rapp</a>
+ */
+
+public final class SmcCompiler
+{
+//---------------------------------------------------------------
+// Member methods
+//
+
+    //-----------------------------------------------------------
+    // Constructors.
+    //
+
+    /**
+     * Creates a compiler using the given SMC command line
+     * options. The options must include the target language.
+     * The options are not checked until {@link #compile} is
+     * called.
+     * @param options SMC command line options.
+     * @exception NullPointerException
+     * if {@code options} is {@code null}.
+     */
+    public SmcCompiler(final String... options)
+    {
+        _options = Arrays.copyOf(options, options.length);
+    } // end of SmcCompiler(String...)
+
+    //
+    // end of Constructors.
+    //-----------------------------------------------------------
+
+    //-----------------------------------------------------------
+    // Get methods.
+    //
+
+    /**
+     * Returns a copy of the SMC command line options.
+     * @return the SMC command line options.
+     */
+    public List<String> getOptions()
+    {
+        return (Arrays.asList(_options.clone()));
+    } // end of getOptions()
+
+    /**
+     * Returns {@code true} if {@code messages} contains at least
+     * one {@link SmcMessage#ERROR} message and {@code false}
+     * otherwise.
+     * @param messages compiler messages.
+     * @return {@code true} if there is an error message.
+     */
+    public static boolean hasErrors(final List<SmcMessage> messages)
+    {
+        boolean retcode = false;
+
+        for (SmcMessage message: messages)
+        {
+            if (message.getLevel() == SmcMessage.ERROR)
+            {
+                retcode = true;
+                break;
+            }
+        }
+
+        return (retcode);
+    } // end of hasErrors(List<SmcMessage>)
+
+    //
+    // end of Get methods.
+    //-----------------------------------------------------------
+
+    /**
+     * Compiles the given .sm files and returns the compiler
+     * messages in source file order. The compile failed if the
+     * returned list contains an {@link SmcMessage#ERROR}
+     * message. Invalid options are reported as an error message
+     * named "smc".
+     * @param sourceFiles compile these .sm files.
+     * @param out -verbose output is written to this stream. May
+     * be {@code null}.
+     * @param err compiler messages are also written to this
+     * stream in the same format as the SMC command line. May be
+     * {@code null}.
+     * @return the compiler messages.
+     */
+    public List<SmcMessage> compile(final Collection<File> sourceFiles,
+                                    final PrintStream out,
+                                    final PrintStream err)
+    {
+        final List<String> args =
+            new ArrayList<>(_options.length + sourceFiles.size());
+        final List<SmcMessage> retval = new ArrayList<>();
+        int retcode;
+
+        Collections.addAll(args, _options);
+        for (File sourceFile: sourceFiles)
+        {
+            args.add(sourceFile.getPath());
+        }
+
+        retcode =
+            Smc.compile(
+                args.toArray(new String[args.size()]),
+                null,
+                (out == null ? NULL_STREAM : out),
+                (err == null ? NULL_STREAM : err),
+                retval);
+
+        // Make sure that a failed compile is reported as such.
+        if (retcode != 0 && hasErrors(retval) == false)
+        {
+            retval.add(
+                new SmcMessage(
+                    APP_NAME,
+                    0,
+                    SmcMessage.ERROR,
+                    "compile failed"));
+        }
+
+        return (retval);
+    } // end of compile(Collection<File>, PrintStream, PrintStream)
+
+//---------------------------------------------------------------
+// Member data
+//
+
+    // The SMC command line options.
+    private final String[] _options;
+
+    //-----------------------------------------------------------
+    // Constants.
+    //
+
+    private static final String APP_NAME = "smc";
+
+    // Output sent to this stream is discarded.
+    private static final PrintStream NULL_STREAM =
+        new PrintStream(
+            new OutputStream()
+            {
+                @Override
+                public void write(final int b)
+                {}
+
+                @Override
+                public void write(final byte[] b,
+                                  final int off,
+                                  final int len)
+                {}
+            });
+} // end of class SmcCompiler
@@ -0,0 +1,255 @@
+//
+// The contents of this file are subject to the Mozilla Public
+// License Version 1.1 (the "License"); you may not use this file
+// except in compliance with the License. You may obtain a copy
+// of the License at http://www.mozilla.org/MPL/
+//
+// Software distributed under the License is distributed on an
+// "AS IS" basis, WITHOUT WARRANTY OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// rights and limitations under the License.
+//
+// The Original Code is State Machine Compiler (SMC).
+//
+// The Initial Developer of the Original Code is Charles W. Rapp.
+// Portions created by Charles W. Rapp are
+// Copyright (C) 2014. Charles W. Rapp.
+// All Rights Reserved.
+//
+// Contributor(s):
+//
+// RCS ID
+// $Id$
+//
+
+package net.sf.smc;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+/**
+ * A file written by a code generator. The generator prints to
+ * {@link #stream()}, which passes the encoded text to the file
+ * through one large buffer. Otherwise every
+ * {@code _source.print} call would be a separate file write.
+ * <p>
+ * If the file is kept when unchanged, then the text is written
+ * to a temporary file in the same directory. When closed, the
+ * temporary file is compared with the existing file a buffer
+ * at a time. If they are the same, then the temporary file is
+ * deleted and the existing file is not touched. Otherwise the
+ * temporary file replaces the existing file. Either way, the
+ * generated text is never held in memory.
+ * </p>
+ *
+ * @see Smc
+ *
+ * @author <a href="mailto:rapp@acm.org">Charles Rapp</a>
+ */
+
+/* package */ final class SmcGeneratedFile
+{
+//---------------------------------------------------------------
+// Member methods
+//
+
+    //-----------------------------------------------------------
+    // Constructors.
+    //
+
+    /**
+     * Opens the generated file for writing.
+     * @param file the generated file.
+     * @param encoding the generated text encoding.
+     * @param keepUnchanged if {@code true} and {@code file}
+     * exists, then do not rewrite {@code file} if its contents
+     * do not change.
+     * @exception IOException
+     * if the file cannot be opened.
+     */
+    /* package */ SmcGeneratedFile(final File file,
+                                   final String encoding,
+                                   final boolean keepUnchanged)
+        throws IOException
+    {
+        File parent = file.getAbsoluteFile().getParentFile();
+
+        _file = file;
+        _tmpFile =
+            (keepUnchanged == true && file.isFile() == true ?
+             File.createTempFile(file.getName(), TMP_SUFFIX, parent) :
+             null);
+        _stream =
+            new PrintStream(
+                new BufferedOutputStream(
+                    new FileOutputStream(
+                        _tmpFile == null ? _file : _tmpFile),
+                    BUFFER_SIZE),
+                false,
+                encoding);
+    } // end of SmcGeneratedFile(File, String, boolean)
+
+    //
+    // end of Constructors.
+    //-----------------------------------------------------------
+
+    //-----------------------------------------------------------
+    // Get methods.
+    //
+
+    /**
+     * Returns the stream to which the generated text is
+     * written.
+     * @return the generated text stream.
+     */
+    /* package */ PrintStream stream()
+    {
+        return (_stream);
+    } // end of stream()
+
+    //
+    // end of Get methods.
+    //-----------------------------------------------------------
+
+    /**
+     * Flushes and closes the generated file. Returns
+     * {@code false} if the existing file was kept because it
+     * did not change and {@code true} if the file was written.
+     * @return {@code true} if the file was written.
+     * @exception IOException
+     * if writing the file failed.
+     */
+    /* package */ boolean close()
+        throws IOException
+    {
+        boolean retcode = true;
+
+        _stream.close();
+
+        // PrintStream does not throw IOExceptions.
+        if (_stream.checkError() == true)
+        {
+            discard();
+
+            throw (
+                new IOException(
+                    "failed to write " + _file.getPath()));
+        }
+
+        if (_tmpFile != null)
+        {
+            if (sameContents(_tmpFile, _file) == true)
+            {
+                retcode = false;
+                Files.delete(_tmpFile.toPath());
+            }
+            else
+            {
+                Files.move(_tmpFile.toPath(),
+                           _file.toPath(),
+                           StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+
+        return (retcode);
+    } // end of close()
+
+    /**
+     * Closes the generated file after a failure. A partially
+     * written temporary file is deleted. Errors are ignored.
+     */
+    /* package */ void discard()
+    {
+        _stream.close();
+
+        if (_tmpFile != null)
+        {
+            _tmpFile.delete();
+        }
+
+        return;
+    } // end of discard()
+
+    // Returns true if the two files have the same contents.
+    private static boolean sameContents(final File file1,
+                                        final File file2)
+        throws IOException
+    {
+        boolean retcode = (file1.length() == file2.length());
+
+        if (retcode == true)
+        {
+            try (InputStream in1 = new FileInputStream(file1);
+                 InputStream in2 = new FileInputStream(file2))
+            {
+                final byte[] buffer1 = new byte[BUFFER_SIZE];
+                final byte[] buffer2 = new byte[BUFFER_SIZE];
+                int size;
+
+                while (retcode == true &&
+                       (size = readFully(in1, buffer1)) > 0)
+                {
+                    retcode =
+                        (readFully(in2, buffer2) == size &&
+                         Arrays.equals(buffer1, buffer2) == true);
+                }
+            }
+        }
+
+        return (retcode);
+    } // end of sameContents(File, File)
+
+    // Fills the buffer from the input stream and returns the
+    // number of bytes read. Returns less than the buffer size
+    // only at the end of the stream. The unused portion of the
+    // buffer is zeroed.
+    private static int readFully(final InputStream in,
+                                 final byte[] buffer)
+        throws IOException
+    {
+        int retval = 0;
+        int size;
+
+        while (retval < buffer.length &&
+               (size = in.read(
+                    buffer, retval, buffer.length - retval)) > 0)
+        {
+            retval += size;
+        }
+
+        Arrays.fill(buffer, retval, buffer.length, (byte) 0);
+
+        return (retval);
+    } // end of readFully(InputStream, byte[])
+
+//---------------------------------------------------------------
+// Member data
+//
+
+    // The generated file.
+    private final File _file;
+
+    // When keeping an unchanged file, the text is first written
+    // to this file. Otherwise null.
+    private final File _tmpFile;
+
+    // The generators print to this stream.
+    private final PrintStream _stream;
+
+    //-----------------------------------------------------------
+    // Constants.
+    //
+
+    // The output and compare buffer size.
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final String TMP_SUFFIX = ".tmp";
+} // end of class SmcGeneratedFile
@@ -0,0 +1,440 @@
+//
+// The contents of this file are subject to the Mozilla Public
+// License Version 1.1 (the "License"); you may not use this file
+// except in compliance with the License. You may obtain a copy
+// of the License at http://www.mozilla.org/MPL/
+//
+// Software distributed under the License is distributed on an
+// "AS IS" basis, WITHOUT WARRANTY OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// rights and limitations under the License.
+//
+// The Original Code is State Machine Compiler (SMC).
+//
+// The Initial Developer of the Original Code is Charles W. Rapp.
+// Portions created by Charles W. Rapp are
+// Copyright (C) 2014. Charles W. Rapp.
+// All Rights Reserved.
+//
+// Contributor(s):
+//
+// RCS ID
+// $Id$
+//
+
+package net.sf.smc;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Runs SMC as a long-lived compile daemon. The daemon is
+ * started with
+ * <pre>
+ *   java -jar Smc.jar -server port
+ * </pre>
+ * and accepts compile requests from {@link SmcClient} on the
+ * given loopback port. A request contains the client's working
+ * directory and the same arguments as the SMC command line.
+ * The daemon compiles the request in its own JVM, so the
+ * lexer, parser and generator code is loaded and compiled by
+ * the JIT once rather than by a new JVM for every .sm file.
+ * <p>
+ * Requests are compiled one at a time in the order they are
+ * accepted since the SMC options are kept in static fields.
+ * Use {@code -j} to compile a request's .sm files in parallel.
+ * A request's standard output and standard error are collected
+ * and returned to the client with the exit code.
+ * </p>
+ * <p>
+ * The daemon only listens on the loopback interface and runs
+ * until a client sends the {@code -shutdown} request. Every
+ * request must carry the shared secret stored in
+ * {@code ~/.smc-server-secret}. The daemon creates the file
+ * with a random secret if it does not exist and refuses to
+ * start if the file may be read or written by anyone but its
+ * owner (mode 0600). So only the user running the daemon can
+ * submit compile requests. A client which does not send a
+ * request within {@link #REQUEST_TIMEOUT} milliseconds is
+ * disconnected.
+ * </p>
+ *
+ * @see Smc
+ * @see SmcClient
+ *
+ * @author <a href="mailto:rapp@acm.org">Charles Rapp</a>
+ */
+
+/* package */ final class SmcServer
+{
+//---------------------------------------------------------------
+// Member methods
+//
+
+    //-----------------------------------------------------------
+    // Constructors.
+    //
+
+    // Private to prevent instantiation.
+    private SmcServer()
+    {}
+
+    //
+    // end of Constructors.
+    //-----------------------------------------------------------
+
+    /**
+     * Runs the compile daemon on the port given in
+     * {@code args}. Returns the exit code when the daemon is
+     * shut down: 0 on a normal shutdown and 1 if the port is
+     * invalid or cannot be opened or the shared secret cannot
+     * be read.
+     * @param args {@code -server} followed by the port number.
+     * @return the exit code.
+     */
+    /* package */ static int serve(final String[] args)
+    {
+        int port = -1;
+        byte[] secret = null;
+        boolean runFlag = true;
+        int retcode = 0;
+
+        if (args.length == 2)
+        {
+            try
+            {
+                port = Integer.parseInt(args[1]);
+            }
+            catch (NumberFormatException numberex)
+            {}
+        }
+
+        if (port < 0 || port > MAX_PORT)
+        {
+            retcode = 1;
+            System.err.println(
+                APP_NAME + ": -server not followed by a port number.");
+        }
+        else
+        {
+            try
+            {
+                secret = readSecret(true);
+            }
+            catch (IOException ioex)
+            {
+                retcode = 1;
+                System.err.print(APP_NAME);
+                System.err.print(": unable to read ");
+                System.err.print(secretFile());
+                System.err.print(" - ");
+                System.err.println(ioex.getMessage());
+            }
+        }
+
+        if (secret != null)
+        {
+            try (ServerSocket server =
+                     new ServerSocket(
+                         port,
+                         0,
+                         InetAddress.getLoopbackAddress()))
+            {
+                System.out.print("[server listening on port ");
+                System.out.print(server.getLocalPort());
+                System.out.println("]");
+
+                while (runFlag == true)
+                {
+                    try (Socket socket = server.accept())
+                    {
+                        socket.setSoTimeout(REQUEST_TIMEOUT);
+                        runFlag = handleRequest(socket, secret);
+                    }
+                    // Failing to serve one client does not stop
+                    // the daemon.
+                    catch (IOException ioex)
+                    {
+                        System.err.print(APP_NAME);
+                        System.err.print(": request failed - ");
+                        System.err.println(ioex.getMessage());
+                    }
+                }
+            }
+            catch (IOException ioex)
+            {
+                retcode = 1;
+                System.err.print(APP_NAME);
+                System.err.print(": unable to open port ");
+                System.err.print(port);
+                System.err.print(" - ");
+                System.err.println(ioex.getMessage());
+            }
+        }
+
+        return (retcode);
+    } // end of serve(String[])
+
+    /**
+     * Returns the shared secret stored in the user's secret
+     * file. If the file does not exist and {@code create} is
+     * {@code true}, then the file is created with a random
+     * secret and mode 0600. Otherwise returns {@code null}.
+     * @param create if {@code true}, create a missing secret
+     * file.
+     * @return the shared secret or {@code null}.
+     * @exception IOException
+     * if the secret file cannot be read or created, or may be
+     * accessed by anyone but its owner.
+     */
+    /* package */ static byte[] readSecret(final boolean create)
+        throws IOException
+    {
+        final Path file = secretFile();
+        final boolean posixFlag =
+            FileSystems.getDefault()
+                .supportedFileAttributeViews()
+                .contains("posix");
+        final byte[] bytes;
+        byte[] retval = null;
+
+        if (Files.exists(file) == false && create == true)
+        {
+            bytes = new byte[SECRET_LENGTH];
+            (new SecureRandom()).nextBytes(bytes);
+
+            try
+            {
+                if (posixFlag == true)
+                {
+                    Files.createFile(
+                        file,
+                        PosixFilePermissions.asFileAttribute(
+                            SECRET_PERMISSIONS));
+                }
+                else
+                {
+                    Files.createFile(file);
+                }
+
+                Files.write(
+                    file,
+                    toHex(bytes).getBytes(StandardCharsets.US_ASCII));
+            }
+            // Another daemon created the file first. Use its
+            // secret.
+            catch (FileAlreadyExistsException existsex)
+            {}
+        }
+
+        if (Files.exists(file) == true)
+        {
+            if (posixFlag == true &&
+                (Files.getPosixFilePermissions(file)).equals(
+                    SECRET_PERMISSIONS) == false)
+            {
+                throw (
+                    new IOException(
+                        file + " must have mode 0600"));
+            }
+
+            retval = Files.readAllBytes(file);
+            if (retval.length == 0)
+            {
+                throw (new IOException(file + " is empty"));
+            }
+        }
+
+        return (retval);
+    } // end of readSecret(boolean)
+
+    // Returns the secret file in the user's home directory.
+    private static Path secretFile()
+    {
+        return (
+            Paths.get(System.getProperty("user.home"), SECRET_FILE));
+    } // end of secretFile()
+
+    // Returns the bytes as lower case hexadecimal digits.
+    private static String toHex(final byte[] bytes)
+    {
+        final StringBuilder retval = new StringBuilder();
+
+        for (byte b: bytes)
+        {
+            retval.append(HEX_DIGITS.charAt((b >> 4) & 0x0f));
+            retval.append(HEX_DIGITS.charAt(b & 0x0f));
+        }
+
+        return (retval.toString());
+    } // end of toHex(byte[])
+
+    // Reads one compile request from the socket, compiles it and
+    // writes back the exit code and output. Returns false if
+    // this is a shutdown request. A request without the shared
+    // secret is rejected without a reply.
+    private static boolean handleRequest(final Socket socket,
+                                         final byte[] secret)
+        throws IOException
+    {
+        final DataInputStream input =
+            new DataInputStream(
+                new BufferedInputStream(socket.getInputStream()));
+        final DataOutputStream output =
+            new DataOutputStream(
+                new BufferedOutputStream(
+                    socket.getOutputStream()));
+        final ByteArrayOutputStream outBytes =
+            new ByteArrayOutputStream();
+        final ByteArrayOutputStream errBytes =
+            new ByteArrayOutputStream();
+        final PrintStream stdout = System.out;
+        final PrintStream stderr = System.err;
+        byte[] requestSecret;
+        File baseDirectory;
+        String[] args;
+        int index;
+        int retcode = 0;
+        boolean retval = true;
+
+        if (input.readInt() != PROTOCOL_VERSION)
+        {
+            throw (
+                new IOException(
+                    "unsupported SMC client protocol version"));
+        }
+
+        if (input.readInt() != secret.length)
+        {
+            throw (new IOException("invalid client secret"));
+        }
+        requestSecret = new byte[secret.length];
+        input.readFully(requestSecret);
+        if (MessageDigest.isEqual(requestSecret, secret) == false)
+        {
+            throw (new IOException("invalid client secret"));
+        }
+
+        baseDirectory = new File(input.readUTF());
+        args = new String[input.readInt()];
+        for (index = 0; index < args.length; ++index)
+        {
+            args[index] = input.readUTF();
+        }
+
+        if (args.length == 1 &&
+            args[0].equals(SHUTDOWN_FLAG) == true)
+        {
+            retval = false;
+        }
+        else
+        {
+            // Smc.compile() writes to System.out and System.err.
+            // Collect that output for the client.
+            System.setOut(
+                new PrintStream(outBytes, true, PROTOCOL_ENCODING));
+            System.setErr(
+                new PrintStream(errBytes, true, PROTOCOL_ENCODING));
+
+            try
+            {
+                retcode = Smc.compile(args, baseDirectory);
+            }
+            catch (RuntimeException jex)
+            {
+                retcode = 1;
+                jex.printStackTrace();
+            }
+            finally
+            {
+                System.out.flush();
+                System.err.flush();
+                System.setOut(stdout);
+                System.setErr(stderr);
+            }
+        }
+
+        output.writeInt(retcode);
+        output.writeInt(outBytes.size());
+        outBytes.writeTo(output);
+        output.writeInt(errBytes.size());
+        errBytes.writeTo(output);
+        output.flush();
+
+        return (retval);
+    } // end of handleRequest(Socket, byte[])
+
+//---------------------------------------------------------------
+// Member data
+//
+
+    //-----------------------------------------------------------
+    // Constants.
+    //
+
+    /**
+     * The client and daemon must use the same protocol version.
+     * A request is the version, the shared secret preceded by
+     * its length, the client's working directory, the argument
+     * count and the arguments. A reply is the exit code followed
+     * by the standard output bytes and standard error bytes,
+     * each preceded by its length.
+     */
+    /* package */ static final int PROTOCOL_VERSION = 2;
+
+    /**
+     * A client must send its request within this many
+     * milliseconds of connecting.
+     */
+    /* package */ static final int REQUEST_TIMEOUT = 30000;
+
+    /**
+     * Output is returned to the client in this encoding.
+     */
+    /* package */ static final String PROTOCOL_ENCODING = "UTF-8";
+
+    /**
+     * A request containing only this argument stops the daemon.
+     */
+    /* package */ static final String SHUTDOWN_FLAG = "-shutdown";
+
+    private static final String APP_NAME = "smc";
+    private static final int MAX_PORT = 65535;
+
+    // The shared secret is stored in this file in the user's
+    // home directory.
+    private static final String SECRET_FILE = ".smc-server-secret";
+
+    // The number of random bytes in a new secret.
+    private static final int SECRET_LENGTH = 32;
+
+    // The secret file is readable and writable by its owner
+    // only.
+    private static final Set<PosixFilePermission>
+        SECRET_PERMISSIONS =
+            EnumSet.of(PosixFilePermission.OWNER_READ,
+                       PosixFilePermission.OWNER_WRITE);
+
+    private static final String HEX_DIGITS = "0123456789abcdef";
+} // end of class SmcServer
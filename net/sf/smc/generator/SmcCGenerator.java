@@ -573,7 +573,7 @@ public final class SmcCGenerator
             _source.print(stateName);
             _source.println("_Default,");
             _source.print("    ");
-            _source.print(SmcMap.getNextStateId());
+            _source.print(map.getNextStateId());
             if (_debugLevel >= DEBUG_LEVEL_0)
             {
                 _source.print(", \"");
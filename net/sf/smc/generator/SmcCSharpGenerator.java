@@ -1061,7 +1061,7 @@ public final class SmcCSharpGenerator
             _source.print(".");
             _source.print(state.getClassName());
             _source.print("\", ");
-            _source.print(SmcMap.getNextStateId());
+            _source.print(map.getNextStateId());
             _source.println(");");
         }
 
@@ -110,6 +110,10 @@ public abstract class SmcCodeGenerator
         _java7Flag = options.java7Flag();
         _accessLevel = options.accessLevel();
         _useProtocolFlag = options.useProtocolFlag();
+        _dispatchMode = options.dispatchMode();
+        _mailboxFlag = options.mailboxFlag();
+        _metricsFlag = options.metricsFlag();
+        _queueFlag = options.queueFlag();
         _suffix = suffix;
         _source = null;
         _indent = "";
@@ -601,12 +605,35 @@ public abstract class SmcCodeGenerator
      */
     protected final boolean _useProtocolFlag;
 
-    //-----------------------------------------------------------
-    // Statics.
-    //
+    /**
+     * Generate this transition dispatch. Used with -java7 only.
+     */
+    protected final String _dispatchMode;
+
+    /**
+     * This flag is {@code true} when transitions are posted to a
+     * {@code statemap.Mailbox} rather than synchronized. Used
+     * with -java and -java7 only.
+     */
+    protected final boolean _mailboxFlag;
+
+    /**
+     * This flag is {@code true} when transitions are counted in
+     * a {@code statemap.FsmMetrics} instance. Used with -java
+     * and -java7 only.
+     */
+    protected final boolean _metricsFlag;
+
+    /**
+     * This flag is {@code true} when transitions issued while a
+     * transition is running are queued in a
+     * {@code statemap.TransitionQueue}. Used with -java and
+     * -java7 only.
+     */
+    protected final boolean _queueFlag;
 
     // Append this suffix to the end of the output file.
-    private static String _suffix;
+    private final String _suffix;
 
     //-----------------------------------------------------------
     // Constants.
@@ -660,6 +687,41 @@ public abstract class SmcCodeGenerator
      */
     public static final int GRAPH_LEVEL_2 = 2;
 
+    // Java 7 transition dispatch modes.
+
+    /**
+     * Dispatch through the {@code State7} transition table.
+     * This is the default.
+     */
+    public static final String TABLE_DISPATCH = "table";
+
+    /**
+     * Dispatch through a {@code switch} on the current state
+     * identifier which invokes a {@code static final} method
+     * handle field per state and transition.
+     */
+    public static final String STATIC_DISPATCH = "static";
+
+    /**
+     * Dispatch through a {@code switch} on the current state
+     * identifier which calls the transition method directly.
+     * No method handles are used.
+     */
+    public static final String SWITCH_DISPATCH = "switch";
+
+    // Java concurrency modes.
+
+    /**
+     * Synchronize the transition methods. Same as {@code -sync}.
+     */
+    public static final String SYNC_CONCURRENCY = "sync";
+
+    /**
+     * Post transitions to a lock-free {@code statemap.Mailbox}
+     * which runs them one at a time.
+     */
+    public static final String MAILBOX_CONCURRENCY = "mailbox";
+
     /**
      * The source file name path format.
      */
@@ -520,7 +520,7 @@ public final class SmcGroovyGenerator
             _source.print('.');
             _source.print(state.getClassName());
             _source.print("', id:");
-            _source.print(SmcMap.getNextStateId());
+            _source.print(map.getNextStateId());
             _source.println(")");
         }
 
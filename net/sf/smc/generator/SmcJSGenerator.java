@@ -414,7 +414,7 @@ public final class SmcJSGenerator
         _source.print("('");
         _source.print(mapName);
         _source.print("::DefaultState', ");
-        _source.print(SmcMap.getNextStateId());
+        _source.print(map.getNextStateId());
         _source.println(");");
 
 
@@ -524,7 +524,7 @@ public final class SmcJSGenerator
         _source.print("::");
         _source.print(stateName);
         _source.print("', ");
-        _source.print(SmcMap.getNextStateId());
+        _source.print(map.getNextStateId());
         _source.println(");");
 
         // Add the entry() and exit() member functions if this
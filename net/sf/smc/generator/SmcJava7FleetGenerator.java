@@ -0,0 +1,1616 @@
+//
+// The contents of this file are subject to the Mozilla Public
+// License Version 1.1 (the "License"); you may not use this file
+// except in compliance with the License. You may obtain a copy
+// of the License at http://www.mozilla.org/MPL/
+//
+// Software distributed under the License is distributed on an
+// "AS IS" basis, WITHOUT WARRANTY OF ANY KIND, either express or
+// implied. See the License for the specific language governing
+// rights and limitations under the License.
+//
+// The Original Code is State Machine Compiler (SMC).
+//
+// The Initial Developer of the Original Code is Charles W. Rapp.
+// Portions created by Charles W. Rapp are
+// Copyright (C) 2014. Charles W. Rapp.
+// All Rights Reserved.
+//
+// Contributor(s):
+//
+// RCS ID
+// $Id$
+//
+
+package net.sf.smc.generator;
+
+import java.util.ArrayList;
+import java.util.List;
+import net.sf.smc.model.SmcAction;
+import net.sf.smc.model.SmcElement;
+import net.sf.smc.model.SmcElement.TransType;
+import net.sf.smc.model.SmcFSM;
+import net.sf.smc.model.SmcGuard;
+import net.sf.smc.model.SmcMap;
+import net.sf.smc.model.SmcParameter;
+import net.sf.smc.model.SmcState;
+import net.sf.smc.model.SmcTransition;
+import net.sf.smc.model.SmcVisitor;
+
+/**
+ * Visits the abstract syntax tree, emitting a Java "fleet"
+ * class which runs many instances of the same finite state
+ * machine. Rather than one {@code FSMContext7} object per
+ * machine, the fleet stores each machine's owner, current state
+ * identifier, previous state identifier, state stack and
+ * in-progress transition name in parallel arrays indexed by an
+ * integer machine identifier. Different machines may therefore
+ * be driven by different threads, but each machine must be used
+ * by one thread at a time.
+ * Transitions are issued as
+ * {@code fleet.transition(machineId, args...)} and are
+ * dispatched with a {@code switch} on the machine's current
+ * state identifier.
+ * <p>
+ * The fleet class is named &lt;context&gt;Fleet and is
+ * generated in addition to the &lt;context&gt;Context class
+ * when {@code -java7 -fleet} is specified. The fleet uses the
+ * context class' state identifier constants. Transition
+ * guards, actions, entry and exit actions, push and pop
+ * transitions have the same semantics as the context class.
+ * The fleet does not support debug output, serialization,
+ * reflection, state change listeners or {@code -sync}.
+ * </p>
+ *
+ * @see SmcJava7Generator
+ * @see SmcElement
+ * @see SmcCodeGenerator
+ * @see SmcVisitor
+ * @see SmcOptions
+ *
+ * @author <a href="mailto:rapp@acm.org">Charles Rapp</a>
+ */
+
+public final class SmcJava7FleetGenerator
+    extends SmcCodeGenerator
+{
+//---------------------------------------------------------------
+// Member methods
+//
+
+    //-----------------------------------------------------------
+    // Constructors.
+    //
+
+    /**
+     * Creates a Java 7 fleet code generator for the given
+     * options.
+     * @param options The target code generator options.
+     */
+    public SmcJava7FleetGenerator(final SmcOptions options)
+    {
+        super (options, "java");
+    } // end of SmcJava7FleetGenerator(SmcOptions)
+
+    //
+    // end of Constructors.
+    //-----------------------------------------------------------
+
+    //-----------------------------------------------------------
+    // Get methods.
+    //
+
+    /**
+     * Returns the fleet class name for the given FSM:
+     * the FSM context class name followed by "Fleet".
+     * @param fsm the FSM model.
+     * @return the fleet class name.
+     */
+    public static String fleetClassName(final SmcFSM fsm)
+    {
+        return (fsm.getContext() + FLEET_SUFFIX);
+    } // end of fleetClassName(SmcFSM)
+
+    //
+    // end of Get methods.
+    //-----------------------------------------------------------
+
+    //-----------------------------------------------------------
+    // SmcVisitor Abstract Method Impelementation.
+    //
+
+    /**
+     * Emits Java code for the finite state machine fleet
+     * class.
+     * @param fsm emit Java code for this finite state machine.
+     */
+    @Override
+    public void visit(final SmcFSM fsm)
+    {
+        final String fleetClassName = fleetClassName(fsm);
+
+        // 1. Output the read-only opening comments and package.
+        outputHeader(fsm);
+
+        // 2. Output the class import statements.
+        outputImports(fsm);
+
+        // 3. Output the class declaration and opening brace.
+        _source.print(_accessLevel);
+        _source.print(" final class ");
+        _source.println(fleetClassName);
+        _source.println("{");
+        _source.println(
+            "//---------------------------------------------------------------");
+        _source.println("// Member methods.");
+        _source.println("//");
+        _source.println();
+
+        // 4. Output the constructor, get and set methods, the
+        //    transition API, the state management methods and
+        //    the transition implementations.
+        outputConstructor(fsm);
+        outputGet(fsm);
+        outputSet(fsm);
+        outputTransitionApi(fsm);
+        outputStateMethods(fsm);
+
+        for (SmcMap map: fsm.getMaps())
+        {
+            map.accept(this);
+        }
+
+        // 5. Output the class data members.
+        outputData(fsm);
+
+        // 6. Output the class closing brace and the read-only
+        //    ending comments.
+        _source.print("} // end of class ");
+        _source.println(fleetClassName);
+        _source.println();
+        _source.println("/*");
+        _source.println(" * Local variables:");
+        _source.println(" *  buffer-read-only: t");
+        _source.println(" * End:");
+        _source.println(" */");
+
+        return;
+    } // end of visit(SmcFSM)
+
+    /**
+     * Emits Java code for the FSM map.
+     * @param map emit Java code for this map.
+     */
+    @Override
+    public void visit(final SmcMap map)
+    {
+        final SmcState defaultState = map.getDefaultState();
+
+        // 1. Output the map default state transitions - if the
+        //    map has a default state.
+        if (defaultState != null)
+        {
+            defaultState.accept(this);
+        }
+
+        // 2. Output the map state transitions.
+        for (SmcState state: map.getStates())
+        {
+            state.accept(this);
+        }
+
+        return;
+    } // end of visit(SmcMap)
+
+    /**
+     * Emits Java code for this FSM state.
+     * @param state emits Java code for this state.
+     */
+    @Override
+    public void visit(final SmcState state)
+    {
+        final SmcMap map = state.getMap();
+        final String context = (map.getFSM()).getContext();
+        final String mapName = map.getName();
+        final String stateName = state.getClassName();
+        final List<SmcAction> entryActions =
+            state.getEntryActions();
+        final List<SmcAction> exitActions =
+            state.getExitActions();
+        final List<SmcTransition> transitions =
+            state.getTransitions();
+
+        // Reset the default indentation to 4 spaces in case
+        // there are state entry or exit actions.
+        _indent = "    ";
+
+        if ((entryActions != null &&
+             entryActions.isEmpty() == false) ||
+            (exitActions != null &&
+             exitActions.isEmpty() == false))
+        {
+            _source.println(
+                "    //-----------------------------------------------------------");
+            _source.print("    // ");
+            _source.print(mapName);
+            _source.print(".");
+            _source.print(stateName);
+            _source.println(" State Entry/Exit Actions.");
+            _source.println("    //");
+
+            if (entryActions != null &&
+                entryActions.isEmpty() == false)
+            {
+                outputStateActions(context,
+                                   mapName,
+                                   stateName,
+                                   ENTRY_NAME,
+                                   entryActions);
+            }
+
+            if (exitActions != null &&
+                exitActions.isEmpty() == false)
+            {
+                outputStateActions(context,
+                                   mapName,
+                                   stateName,
+                                   EXIT_NAME,
+                                   exitActions);
+            }
+
+            _source.println();
+            _source.println("    //");
+            _source.print("    // end of ");
+            _source.print(mapName);
+            _source.print(".");
+            _source.print(stateName);
+            _source.println(" State Entry/Exit Actions.");
+            _source.println(
+                "    //-----------------------------------------------------------");
+            _source.println();
+        }
+
+        if (transitions.isEmpty() == false)
+        {
+            _source.println(
+                "    //-----------------------------------------------------------");
+            _source.print("    // ");
+            _source.print(mapName);
+            _source.print(".");
+            _source.print(stateName);
+            _source.println(" State Transitions.");
+            _source.println("    //");
+
+            for (SmcTransition transition: transitions)
+            {
+                transition.accept(this);
+            }
+
+            _source.println();
+            _source.println("    //");
+            _source.print("    // end of ");
+            _source.print(mapName);
+            _source.print(".");
+            _source.print(stateName);
+            _source.println(" State Transitions.");
+            _source.println(
+                "    //-----------------------------------------------------------");
+            _source.println();
+        }
+
+        return;
+    } // end of visit(SmcState)
+
+    /**
+     * Emits Java code for this FSM state transition.
+     * @param transition emits Java code for this state
+     * transition.
+     */
+    @Override
+    public void visit(final SmcTransition transition)
+    {
+        final SmcState state = transition.getState();
+        final SmcMap map = state.getMap();
+        final String mapName = map.getName();
+        final String stateName = state.getClassName();
+        final String context = (map.getFSM()).getContext();
+
+        // 1. Output transtion method declaration and opening
+        //    brace.
+        _source.println();
+        _source.print("    private void ");
+        _source.print(mapName);
+        _source.print("_");
+        _source.print(stateName);
+        _source.print("_");
+        _source.print(transition.getName());
+        _source.print("(final int machineId");
+
+        // 1.1. Output user-defined parameters.
+        for (SmcParameter parameter: transition.getParameters())
+        {
+            _source.print(", ");
+            parameter.accept(this);
+        }
+        _source.println(")");
+        _source.println("    {");
+
+        // 1.2. Output the owner and state identifier locals
+        //      used by the guards and actions.
+        _source.print("        final ");
+        _source.print(context);
+        _source.println(" ctxt = _owners[machineId];");
+        _source.println(
+            "        final int stateId = _stateIds[machineId];");
+        _source.println();
+
+        // 2. Output the transition guards.
+        outputTransitionGuards(transition, mapName);
+
+        // 3. Output the return and closing brace.
+        _source.println();
+        _source.println("        return;");
+        _source.println("    }");
+        _source.println();
+
+        return;
+    } // end of visit(SmcTransition)
+
+    /**
+     * Emits Java code for this FSM transition guard.
+     * @param guard emits Java code for this transition guard.
+     */
+    @Override
+    public void visit(final SmcGuard guard)
+    {
+        final TransType transType = guard.getTransType();
+        final boolean hasActions =
+            !(guard.getActions().isEmpty());
+        final SmcTransition transition = guard.getTransition();
+        final String mapName =
+            ((transition.getState()).getMap()).getName();
+        final String endStateName = guard.getEndState();
+        final boolean loopbackFlag =
+            isLoopback(transType, endStateName);
+        String endStateId = "";
+        String pushStateId = "";
+
+        // 1. Set the end state identifier used in the setState
+        //    or push state call.
+        if (transType == TransType.TRANS_SET)
+        {
+            endStateId =
+                (loopbackFlag == true ?
+                 "stateId" :
+                 scopeStateName(endStateName, mapName, "_") +
+                 STATE_ID_SUFFIX);
+        }
+        else if (transType == TransType.TRANS_PUSH)
+        {
+            endStateId =
+                (endStateName.endsWith(DEFAULT_NAME) == true ||
+                 endStateName.endsWith(NIL_STATE) == true ?
+                 "stateId" :
+                 scopeStateName(endStateName, mapName, "_") +
+                 STATE_ID_SUFFIX);
+            pushStateId =
+                scopeStateName(
+                    guard.getPushState(), mapName, "_") +
+                STATE_ID_SUFFIX;
+        }
+
+        // 2. Output either "if", "else if", "else", or nothing.
+        outputGuardCondition(guard.getCondition());
+
+        // 3. Output state exit - if this is *not* a push
+        //    transition or an internal loopback.
+        if (transType != TransType.TRANS_PUSH &&
+            loopbackFlag == false)
+        {
+            _source.print(_indent);
+            _source.println("exitState(machineId);");
+            _source.println();
+        }
+
+        // 4. Output the guard actions inside a try/finally
+        //    block.
+        _source.print(_indent);
+        _source.println("try");
+        _source.print(_indent);
+        _source.println('{');
+
+        if (hasActions == false)
+        {
+            if ((guard.getCondition()).isEmpty() == false)
+            {
+                _source.print(_indent);
+                _source.println("    // No actions.");
+            }
+        }
+        else
+        {
+            _source.print(_indent);
+            _source.println("    clearState(machineId);");
+
+            for (SmcAction action: guard.getActions())
+            {
+                action.accept(this);
+            }
+        }
+
+        _source.print(_indent);
+        _source.println('}');
+        _source.print(_indent);
+        _source.println("finally");
+        _source.print(_indent);
+        _source.println('{');
+
+        // 5. Output setting the next state.
+        if (transType == TransType.TRANS_SET &&
+            (hasActions == true || loopbackFlag == false))
+        {
+            _source.print(_indent);
+            _source.print("    setState(machineId, ");
+            _source.print(endStateId);
+            _source.println(");");
+        }
+        else if (transType == TransType.TRANS_PUSH)
+        {
+            if (loopbackFlag == false || hasActions == true)
+            {
+                _source.print(_indent);
+                _source.print("    setState(machineId, ");
+                _source.print(endStateId);
+                _source.println(");");
+            }
+
+            if (loopbackFlag == false)
+            {
+                _source.print(_indent);
+                _source.println("    enterState(machineId);");
+            }
+
+            _source.print(_indent);
+            _source.print("    pushState(machineId, ");
+            _source.print(pushStateId);
+            _source.println(");");
+        }
+        else if (transType == TransType.TRANS_POP)
+        {
+            _source.print(_indent);
+            _source.println("    popState(machineId);");
+        }
+
+        _source.print(_indent);
+        _source.println('}');
+        _source.println();
+
+        // 6. Output state entry - if this is *not* a pop
+        //    transition or an internal loopback.
+        if ((transType == TransType.TRANS_SET &&
+             loopbackFlag == false) ||
+            transType == TransType.TRANS_PUSH)
+        {
+            _source.print(_indent);
+            _source.println("enterState(machineId);");
+        }
+
+        // 7. Output the pop transition.
+        if (transType == TransType.TRANS_POP &&
+            endStateName.isEmpty() == false &&
+            endStateName.equals(SmcElement.NIL_STATE) == false)
+        {
+            final String popArgs = guard.getPopArgs();
+
+            _source.println();
+            _source.print(_indent);
+            _source.print(endStateName);
+            _source.print("(machineId");
+            if (popArgs != null && popArgs.isEmpty() == false)
+            {
+                _source.print(", ");
+                _source.print(popArgs);
+            }
+            _source.println(");");
+        }
+
+        // 8. If this is a guarded transition, close off the "if"
+        //    body. An "else" may follow.
+        if (_guardCount > 1 ||
+            (guard.getCondition()).isEmpty() == false)
+        {
+            _source.print("        }");
+        }
+
+        return;
+    } // end of visit(SmcGuard)
+
+    /**
+     * Emits Java code for this FSM action.
+     * @param action emits Java code for this action.
+     */
+    @Override
+    public void visit(final SmcAction action)
+    {
+        String sep = "";
+
+        _source.print(_indent);
+        if (action.isEmptyStateStack() == true)
+        {
+            _source.println("    emptyStateStack(machineId);");
+        }
+        else
+        {
+            if (action.isStatic() == false)
+            {
+                _source.print("    ctxt.");
+            }
+            _source.print(action.getName());
+            _source.print("(");
+
+            for (String arg: action.getArguments())
+            {
+                _source.print(sep);
+                _source.print(arg);
+
+                sep = ", ";
+            }
+
+            _source.println(");");
+        }
+
+        return;
+    } // end of visit(SmcAction)
+
+    /**
+     * Emits Java code for this transition parameter.
+     * @param parameter emits Java code for this transition
+     * parameter.
+     */
+    @Override
+    public void visit(final SmcParameter parameter)
+    {
+        _source.print(parameter.getType());
+        _source.print(' ');
+        _source.print(parameter.getName());
+
+        return;
+    } // end of visit(SmcParameter)
+
+    //
+    // end of SmcVisitor Abstract Method Impelementation.
+    //-----------------------------------------------------------
+
+    /**
+     * Writes the unmodifiable comment and the package name.
+     * The user raw source is written to the context class
+     * only.
+     * @param fsm the parsed FSM model.
+     */
+    private void outputHeader(final SmcFSM fsm)
+    {
+        final String packageName = fsm.getPackage();
+
+        _source.println("/*");
+        _source.println(" * ex: set ro:");
+        _source.println(" * DO NOT EDIT.");
+        _source.println(" * generated by smc (http://smc.sourceforge.net/)");
+        _source.print(" * from file : ");
+        _source.print(_srcfileBase);
+        _source.println(".sm");
+        _source.println(" */");
+        _source.println();
+
+        if (packageName != null && packageName.length() > 0)
+        {
+            _source.print("package ");
+            _source.print(packageName);
+            _source.println(";");
+            _source.println();
+        }
+
+        return;
+    } // end of outputHeader(SmcFSM)
+
+    /**
+     * Writes the user-defined and required import statements.
+     * @param fsm the FSM model.
+     */
+    private void outputImports(final SmcFSM fsm)
+    {
+        for (String imp: fsm.getImports())
+        {
+            _source.print("import ");
+            _source.print(imp);
+            _source.println(";");
+        }
+
+        _source.println("import java.util.Arrays;");
+        _source.println("import java.util.EmptyStackException;");
+        if (_stateStackSize > 0)
+        {
+            _source.println(
+                "import statemap.PushOnFullStateStackException;");
+        }
+        _source.println("import statemap.StateUndefinedException;");
+        _source.println(
+            "import statemap.TransitionUndefinedException;");
+        _source.println();
+
+        return;
+    } // end of outputImports(SmcFSM)
+
+    /**
+     * Writes the fleet constructor which creates the per-machine
+     * arrays. Every machine is initially stopped.
+     * @param fsm the FSM model.
+     */
+    private void outputConstructor(final SmcFSM fsm)
+    {
+        _source.println(
+            "    //-----------------------------------------------------------");
+        _source.println("    // Constructors.");
+        _source.println("    //");
+        _source.println();
+        _source.print("    ");
+        _source.print(_accessLevel);
+        _source.print(" ");
+        _source.print(fleetClassName(fsm));
+        _source.println("(final int size)");
+        _source.println("    {");
+        _source.print("        _owners = new ");
+        _source.print(fsm.getContext());
+        _source.println("[size];");
+        _source.println("        _stateIds = new int[size];");
+        _source.println("        _previousStateIds = new int[size];");
+        _source.println("        _stackDepths = new int[size];");
+        _source.println("        _stateStacks = new int[size][];");
+        _source.println("        _transitions = new String[size];");
+        _source.println();
+        _source.println("        Arrays.fill(_stateIds, NO_STATE_ID);");
+        _source.println(
+            "        Arrays.fill(_previousStateIds, NO_STATE_ID);");
+        _source.println("        Arrays.fill(_transitions, \"\");");
+        _source.println("    }");
+        _source.println();
+        _source.println("    //");
+        _source.println("    // end of Constructors.");
+        _source.println(
+            "    //-----------------------------------------------------------");
+        _source.println();
+
+        return;
+    } // end of outputConstructor(SmcFSM)
+
+    /**
+     * Writes the per-machine get methods.
+     * @param fsm the FSM model.
+     */
+    private void outputGet(final SmcFSM fsm)
+    {
+        _source.println(
+            "    //-----------------------------------------------------------");
+        _source.println("    // Get Methods.");
+        _source.println("    //");
+        _source.println();
+
+        _source.println("    public int size()");
+        _source.println("    {");
+        _source.println("        return (_owners.length);");
+        _source.println("    }");
+        _source.println();
+
+        _source.print("    public ");
+        _source.print(fsm.getContext());
+        _source.println(" getOwner(final int machineId)");
+        _source.println("    {");
+        _source.println("        return (_owners[machineId]);");
+        _source.println("    }");
+        _source.println();
+
+        _source.println("    public int getStateId(final int machineId)");
+        _source.println("        throws StateUndefinedException");
+        _source.println("    {");
+        _source.println(
+            "        final int stateId = _stateIds[machineId];");
+        _source.println();
+        _source.println("        if (stateId == NO_STATE_ID)");
+        _source.println("        {");
+        _source.println(
+            "            throw (new StateUndefinedException());");
+        _source.println("        }");
+        _source.println();
+        _source.println("        return (stateId);");
+        _source.println("    }");
+        _source.println();
+
+        _source.println(
+            "    public int getPreviousStateId(final int machineId)");
+        _source.println("    {");
+        _source.println(
+            "        return (_previousStateIds[machineId]);");
+        _source.println("    }");
+        _source.println();
+
+        _source.println(
+            "    public boolean isInState(final int machineId, final int stateId)");
+        _source.println("    {");
+        _source.println(
+            "        return (stateId != NO_STATE_ID && _stateIds[machineId] == stateId);");
+        _source.println("    }");
+        _source.println();
+
+        _source.println(
+            "    public String getStateName(final int machineId)");
+        _source.println("        throws StateUndefinedException");
+        _source.println("    {");
+        _source.println(
+            "        return (STATE_NAMES[getStateId(machineId)]);");
+        _source.println("    }");
+        _source.println();
+
+        _source.println(
+            "    public int getStateStackDepth(final int machineId)");
+        _source.println("    {");
+        _source.println("        return (_stackDepths[machineId]);");
+        _source.println("    }");
+        _source.println();
+
+        _source.println(
+            "    public String getTransition(final int machineId)");
+        _source.println("    {");
+        _source.println("        return (_transitions[machineId]);");
+        _source.println("    }");
+        _source.println();
+
+        _source.println("    //");
+        _source.println("    // end of Get Methods.");
+        _source.println(
+            "    //-----------------------------------------------------------");
+        _source.println();
+
+        return;
+    } // end of outputGet(SmcFSM)
+
+    /**
+     * Writes the methods which start and stop a machine and
+     * set its state.
+     * @param fsm the FSM model.
+     */
+    private void outputSet(final SmcFSM fsm)
+    {
+        final String context = fsm.getContext();
+        final String startState = fsm.getStartState();
+        final int index = startState.indexOf("::");
+        final String startStateId =
+            startState.substring(0, index) +
+            "_" +
+            startState.substring(index + 2) +
+            STATE_ID_SUFFIX;
+
+        _source.println(
+            "    //-----------------------------------------------------------");
+        _source.println("    // Set Methods.");
+        _source.println("    //");
+        _source.println();
+
+        _source.print("    public void start(final int machineId, final ");
+        _source.print(context);
+        _source.println(" owner)");
+        _source.println("    {");
+        _source.print("        start(machineId, owner, ");
+        _source.print(startStateId);
+        _source.println(");");
+        _source.println("        return;");
+        _source.println("    }");
+        _source.println();
+
+        _source.print("    public void start(final int machineId, final ");
+        _source.print(context);
+        _source.println(" owner, final int initStateId)");
+        _source.println("    {");
+        _source.println("        _owners[machineId] = owner;");
+        _source.println(
+            "        _previousStateIds[machineId] = NO_STATE_ID;");
+        _source.println("        _stateIds[machineId] = initStateId;");
+        _source.println("        emptyStateStack(machineId);");
+        _source.println();
+        _source.println("        enterState(machineId);");
+        _source.println("        return;");
+        _source.println("    }");
+        _source.println();
+
+        _source.println("    public void stop(final int machineId)");
+        _source.println("    {");
+        _source.println("        _owners[machineId] = null;");
+        _source.println(
+            "        _previousStateIds[machineId] = NO_STATE_ID;");
+        _source.println("        _stateIds[machineId] = NO_STATE_ID;");
+        _source.println("        emptyStateStack(machineId);");
+        _source.println("        return;");
+        _source.println("    }");
+        _source.println();
+
+        _source.println(
+            "    public void setStateId(final int machineId, final int stateId)");
+        _source.println(
+            "        throws ArrayIndexOutOfBoundsException");
+        _source.println("    {");
+        _source.println("        if (stateId < 0 || stateId >= STATE_NAMES.length)");
+        _source.println("        {");
+        _source.println("            throw (");
+        _source.println(
+            "                new ArrayIndexOutOfBoundsException(stateId));");
+        _source.println("        }");
+        _source.println();
+        _source.println("        setState(machineId, stateId);");
+        _source.println("        return;");
+        _source.println("    }");
+        _source.println();
+
+        _source.println("    //");
+        _source.println("    // end of Set Methods.");
+        _source.println(
+            "    //-----------------------------------------------------------");
+        _source.println();
+
+        return;
+    } // end of outputSet(SmcFSM)
+
+    /**
+     * Writes the transition API methods. Each method takes the
+     * machine identifier followed by the transition arguments
+     * and dispatches on the machine's current state.
+     * @param fsm the FSM model.
+     */
+    private void outputTransitionApi(final SmcFSM fsm)
+    {
+        String transName;
+        String call;
+
+        _source.println(
+            "    //-----------------------------------------------------------");
+        _source.println("    // Transitions.");
+        _source.println("    //");
+        _source.println();
+
+        for (SmcTransition trans: fsm.getTransitions())
+        {
+            transName = trans.getName();
+
+            if (transName.equals(DEFAULT_NAME) == true)
+            {
+                continue;
+            }
+
+            _source.print("    public void ");
+            _source.print(transName);
+            _source.print("(final int machineId");
+
+            for (SmcParameter param: trans.getParameters())
+            {
+                _source.print(", ");
+                param.accept(this);
+            }
+            _source.println(")");
+            _source.println("    {");
+
+            // The in-progress transition name is kept per machine
+            // so that different machines may be driven by
+            // different threads. A transition action may issue
+            // another transition to the same machine, so save
+            // and restore the name.
+            _source.println(
+                "        final String transition = _transitions[machineId];");
+            _source.println();
+            _source.print("        _transitions[machineId] = \"");
+            _source.print(transName);
+            _source.println("\";");
+            _source.println("        switch (_stateIds[machineId])");
+            _source.println("        {");
+
+            for (SmcMap map: fsm.getMaps())
+            {
+                for (SmcState state: map.getStates())
+                {
+                    call = transitionCall(state, trans);
+
+                    if (call != null)
+                    {
+                        _source.print("            case ");
+                        _source.print(map.getName());
+                        _source.print("_");
+                        _source.print(state.getClassName());
+                        _source.print(STATE_ID_SUFFIX);
+                        _source.println(":");
+                        _source.print("                ");
+                        _source.print(call);
+                        _source.println(";");
+                        _source.println("                break;");
+                        _source.println();
+                    }
+                }
+            }
+
+            _source.println("            default:");
+            _source.print("                ");
+            _source.print(SYSTEM_DEFAULT);
+            _source.println("(machineId);");
+            _source.println("                break;");
+            _source.println("        }");
+            _source.println(
+                "        _transitions[machineId] = transition;");
+            _source.println();
+            _source.println("        return;");
+            _source.println("    }");
+            _source.println();
+        }
+
+        _source.println("    //");
+        _source.println("    // end of Transitions.");
+        _source.println(
+            "    //-----------------------------------------------------------");
+        _source.println();
+
+        return;
+    } // end of outputTransitionApi(SmcFSM)
+
+    /**
+     * Writes the private methods which update a machine's
+     * current state, previous state and state stack, and which
+     * execute state entry and exit actions.
+     * @param fsm the FSM model.
+     */
+    private void outputStateMethods(final SmcFSM fsm)
+    {
+        _source.println(
+            "    //-----------------------------------------------------------");
+        _source.println("    // State Methods.");
+        _source.println("    //");
+        _source.println();
+
+        // setState(int, int)
+        _source.println(
+            "    private void setState(final int machineId, final int stateId)");
+        _source.println("    {");
+        _source.println("        // clearState() is not called when a transition has");
+        _source.println("        // no actions.");
+        _source.println(
+            "        if (_stateIds[machineId] != NO_STATE_ID)");
+        _source.println("        {");
+        _source.println(
+            "            _previousStateIds[machineId] = _stateIds[machineId];");
+        _source.println("        }");
+        _source.println();
+        _source.println("        _stateIds[machineId] = stateId;");
+        _source.println("        return;");
+        _source.println("    }");
+        _source.println();
+
+        // clearState(int)
+        _source.println("    private void clearState(final int machineId)");
+        _source.println("    {");
+        _source.println(
+            "        _previousStateIds[machineId] = _stateIds[machineId];");
+        _source.println("        _stateIds[machineId] = NO_STATE_ID;");
+        _source.println("        return;");
+        _source.println("    }");
+        _source.println();
+
+        // pushState(int, int)
+        _source.println(
+            "    private void pushState(final int machineId, final int stateId)");
+        _source.println("    {");
+        _source.println(
+            "        final int depth = _stackDepths[machineId];");
+        _source.println("        int[] stack = _stateStacks[machineId];");
+        _source.println();
+        _source.println(
+            "        if (_stateIds[machineId] == NO_STATE_ID)");
+        _source.println("        {");
+        _source.println(
+            "            throw (new StateUndefinedException());");
+        _source.println("        }");
+        _source.println();
+        _source.println("        if (stack == null)");
+        _source.println("        {");
+        _source.println("            stack = new int[STACK_SIZE];");
+        _source.println("            _stateStacks[machineId] = stack;");
+        _source.println("        }");
+        _source.println("        else if (depth == stack.length)");
+        _source.println("        {");
+        if (_stateStackSize > 0)
+        {
+            _source.println("            throw (");
+            _source.println(
+                "                new PushOnFullStateStackException(STACK_SIZE));");
+        }
+        else
+        {
+            _source.println(
+                "            stack = Arrays.copyOf(stack, (2 * depth));");
+            _source.println(
+                "            _stateStacks[machineId] = stack;");
+        }
+        _source.println("        }");
+        _source.println();
+        _source.println("        stack[depth] = _stateIds[machineId];");
+        _source.println("        _stackDepths[machineId] = (depth + 1);");
+        _source.println(
+            "        _previousStateIds[machineId] = _stateIds[machineId];");
+        _source.println("        _stateIds[machineId] = stateId;");
+        _source.println("        return;");
+        _source.println("    }");
+        _source.println();
+
+        // popState(int)
+        _source.println("    private void popState(final int machineId)");
+        _source.println("        throws EmptyStackException");
+        _source.println("    {");
+        _source.println(
+            "        final int depth = _stackDepths[machineId];");
+        _source.println();
+        _source.println("        if (depth == 0)");
+        _source.println("        {");
+        _source.println(
+            "            throw (new EmptyStackException());");
+        _source.println("        }");
+        _source.println();
+        _source.println(
+            "        if (_stateIds[machineId] != NO_STATE_ID)");
+        _source.println("        {");
+        _source.println(
+            "            _previousStateIds[machineId] = _stateIds[machineId];");
+        _source.println("        }");
+        _source.println();
+        _source.println(
+            "        _stateIds[machineId] = _stateStacks[machineId][depth - 1];");
+        _source.println("        _stackDepths[machineId] = (depth - 1);");
+        _source.println("        return;");
+        _source.println("    }");
+        _source.println();
+
+        // emptyStateStack(int)
+        _source.println(
+            "    private void emptyStateStack(final int machineId)");
+        _source.println("    {");
+        _source.println("        _stackDepths[machineId] = 0;");
+        _source.println("        return;");
+        _source.println("    }");
+        _source.println();
+
+        // enterState(int) and exitState(int)
+        outputStateActionSwitch(fsm, "enterState", ENTRY_NAME);
+        outputStateActionSwitch(fsm, "exitState", EXIT_NAME);
+
+        // defaultTransition(int)
+        _source.print("    private void ");
+        _source.print(SYSTEM_DEFAULT);
+        _source.println("(final int machineId)");
+        _source.println("    {");
+        _source.println(
+            "        if (_stateIds[machineId] == NO_STATE_ID)");
+        _source.println("        {");
+        _source.println(
+            "            throw (new StateUndefinedException());");
+        _source.println("        }");
+        _source.println();
+        _source.println("        throw (");
+        _source.println("            new TransitionUndefinedException(");
+        _source.println("                \"State: \" +");
+        _source.println(
+            "                STATE_NAMES[_stateIds[machineId]] +");
+        _source.println("                \", Transition: \" +");
+        _source.println("                _transitions[machineId]));");
+        _source.println("    }");
+        _source.println();
+
+        _source.println("    //");
+        _source.println("    // end of State Methods.");
+        _source.println(
+            "    //-----------------------------------------------------------");
+        _source.println();
+
+        return;
+    } // end of outputStateMethods(SmcFSM)
+
+    /**
+     * Writes either the {@code enterState} or {@code exitState}
+     * method as a {@code switch} on the machine's current state
+     * identifier.
+     * @param fsm the FSM model.
+     * @param name the method name.
+     * @param nameFormat the entry or exit method name format.
+     */
+    private void outputStateActionSwitch(final SmcFSM fsm,
+                                         final String name,
+                                         final String nameFormat)
+    {
+        final boolean entryFlag = nameFormat.equals(ENTRY_NAME);
+        final List<String> stateIds = new ArrayList<>();
+        final List<String> methodNames = new ArrayList<>();
+        List<SmcAction> actions;
+        int index;
+
+        for (SmcMap map: fsm.getMaps())
+        {
+            for (SmcState state: map.getStates())
+            {
+                actions = (entryFlag == true ?
+                           state.getEntryActions() :
+                           state.getExitActions());
+
+                if (actions != null && actions.isEmpty() == false)
+                {
+                    stateIds.add(
+                        map.getName() +
+                        "_" +
+                        state.getClassName() +
+                        STATE_ID_SUFFIX);
+                    methodNames.add(
+                        String.format(nameFormat,
+                                      map.getName(),
+                                      state.getClassName()));
+                }
+            }
+        }
+
+        _source.print("    private void ");
+        _source.print(name);
+        _source.println("(final int machineId)");
+        _source.println("    {");
+
+        if (stateIds.isEmpty() == false)
+        {
+            _source.println("        switch (_stateIds[machineId])");
+            _source.println("        {");
+
+            for (index = 0; index < stateIds.size(); ++index)
+            {
+                _source.print("            case ");
+                _source.print(stateIds.get(index));
+                _source.println(":");
+                _source.print("                ");
+                _source.print(methodNames.get(index));
+                _source.println("(machineId);");
+                _source.println("                break;");
+                _source.println();
+            }
+
+            _source.println("            default:");
+            _source.println("                break;");
+            _source.println("        }");
+            _source.println();
+        }
+
+        _source.println("        return;");
+        _source.println("    }");
+        _source.println();
+
+        return;
+    } // end of outputStateActionSwitch(SmcFSM, String, String)
+
+    /**
+     * Writes a state's entry or exit actions method.
+     * @param context the FSM context class name.
+     * @param mapName the state resides in this map.
+     * @param stateName the actions belong to this state.
+     * @param nameFormat the method name format.
+     * @param actions either entry or exit actions.
+     */
+    private void outputStateActions(final String context,
+                                    final String mapName,
+                                    final String stateName,
+                                    final String nameFormat,
+                                    final List<SmcAction> actions)
+    {
+        _source.println();
+        _source.print("    private void ");
+        _source.print(String.format(nameFormat, mapName, stateName));
+        _source.println("(final int machineId)");
+        _source.println("    {");
+        _source.print("        final ");
+        _source.print(context);
+        _source.println(" ctxt = _owners[machineId];");
+        _source.println();
+
+        for (SmcAction action: actions)
+        {
+            action.accept(this);
+        }
+
+        _source.println("    }");
+
+        return;
+    } // end of outputStateActions(String, String, String, ...)
+
+    /**
+     * Writes the transition's guarded implementations. Sets the
+     * code indentation appropriately based on the number of
+     * guards and conditions.
+     * @param transition output this transitions guarded
+     * implementations.
+     * @param mapName the transition resides in this map.
+     */
+    private void outputTransitionGuards(
+        final SmcTransition transition,
+        final String mapName)
+    {
+        final List<SmcGuard> guards = transition.getGuards();
+        boolean nullCondition = false;
+
+        _guardCount = guards.size();
+
+        // If there is either more than one guard or one guard
+        // with a condition, then indent the guard code one more
+        // time because the guard code is inside an if-then body.
+        _indent = "        ";
+        if (_guardCount > 1 ||
+            (_guardCount == 1 &&
+             ((guards.get(0)).getCondition()).isEmpty() == false))
+        {
+            _indent += "    ";
+        }
+
+        for (_guardIndex = 0;
+             _guardIndex < _guardCount;
+             ++_guardIndex)
+        {
+            final SmcGuard guard = guards.get(_guardIndex);
+
+            nullCondition = (guard.getCondition()).isEmpty();
+            guard.accept(this);
+        }
+
+        // If all guards have a condition, then create a final
+        // "else" clause which passes control to the default
+        // state implementation of this transition.
+        if (_guardIndex > 0 && nullCondition == false)
+        {
+            outputElseGuard(transition, mapName);
+        }
+        else if (_guardCount > 1)
+        {
+            _source.println();
+        }
+
+        return;
+    } // end of outputTransitionGuards(SmcTransition, String)
+
+    /**
+     * Writes the final unguarded "else" clause which calls the
+     * default state's definition of this transition, the
+     * current state's default transition, the default state's
+     * default transition or the system default transition, in
+     * that order.
+     * @param transition default unguarded "else" clause is for
+     * this transition.
+     * @param mapName the transition resides in this map.
+     */
+    private void outputElseGuard(final SmcTransition transition,
+                                 final String mapName)
+    {
+        final SmcState currState = transition.getState();
+        final SmcState defaultState =
+            (currState.getMap()).getDefaultState();
+        List<SmcParameter> params = transition.getParameters();
+        String methodName;
+
+        if (defaultState != null &&
+            defaultState.findTransition(
+                transition.getName(), params) != null)
+        {
+            methodName = mapName +
+                         "_" +
+                         DEFAULT_NAME +
+                         "_" +
+                         transition.getName();
+        }
+        else if (currState.findTransition(
+                     DEFAULT_NAME, DEFAULT_PARAMETERS) != null)
+        {
+            methodName = mapName +
+                         "_" +
+                         currState.getClassName() +
+                         "_" +
+                         DEFAULT_NAME;
+            params = DEFAULT_PARAMETERS;
+        }
+        else if (defaultState != null &&
+                 defaultState.findTransition(
+                     DEFAULT_NAME, DEFAULT_PARAMETERS) != null)
+        {
+            methodName = mapName +
+                         "_" +
+                         DEFAULT_NAME +
+                         "_" +
+                         DEFAULT_NAME;
+            params = DEFAULT_PARAMETERS;
+        }
+        else
+        {
+            methodName = SYSTEM_DEFAULT;
+            params = DEFAULT_PARAMETERS;
+        }
+
+        _source.println();
+        _source.println("        else");
+        _source.println("        {");
+        _source.print("            ");
+        _source.print(methodName);
+        _source.print("(machineId");
+
+        for (SmcParameter param: params)
+        {
+            _source.print(", ");
+            _source.print(param.getName());
+        }
+
+        _source.println(");");
+        _source.println("        }");
+        _source.println();
+
+        return;
+    } // end of outputElseGuard(SmcTransition, String)
+
+    /**
+     * Writes the guard condition, using an "if", "else if",
+     * "else", or nothing depending on the number of guards,
+     * this guard's index, and whether this guard has a condition
+     * or not.
+     * @param condition guard condition code.
+     */
+    private void outputGuardCondition(final String condition)
+    {
+        if (_guardCount > 1)
+        {
+            if (_guardIndex == 0 && condition.length() > 0)
+            {
+                _source.print("        if (");
+                _source.print(condition);
+                _source.println(")");
+            }
+            else if (condition.length() > 0)
+            {
+                _source.println();
+                _source.print("        else if (");
+                _source.print(condition);
+                _source.println(")");
+            }
+            else
+            {
+                _source.println();
+                _source.println("        else");
+            }
+
+            _source.println("        {");
+        }
+        else if (condition.length() > 0)
+        {
+            _source.print("        if (");
+            _source.print(condition);
+            _source.println(")");
+            _source.println("        {");
+        }
+
+        return;
+    } // end of outputGuardCondition(String)
+
+    /**
+     * Returns the fleet transition method call which implements
+     * {@code trans} in {@code state}, using the same search
+     * order as the -java7 generated context class. Returns
+     * {@code null} if the system default transition is used.
+     * @param state the current state.
+     * @param trans the transition being dispatched.
+     * @return the transition method call or {@code null}.
+     */
+    private String transitionCall(final SmcState state,
+                                  final SmcTransition trans)
+    {
+        final SmcMap map = state.getMap();
+        final SmcState defaultState = map.getDefaultState();
+        final String transName = trans.getName();
+        List<SmcParameter> params = trans.getParameters();
+        String stateName = null;
+        String methodName = transName;
+        String retval = null;
+
+        if (state.findTransition(transName, params) != null)
+        {
+            stateName = state.getClassName();
+        }
+        else if (defaultState != null &&
+                 defaultState.findTransition(
+                     transName, params) != null)
+        {
+            stateName = DEFAULT_NAME;
+        }
+        else
+        {
+            methodName = DEFAULT_NAME;
+            params = DEFAULT_PARAMETERS;
+
+            if (state.findTransition(
+                    DEFAULT_NAME, DEFAULT_PARAMETERS) != null)
+            {
+                stateName = state.getClassName();
+            }
+            else if (defaultState != null &&
+                     defaultState.findTransition(
+                         DEFAULT_NAME, DEFAULT_PARAMETERS) != null)
+            {
+                stateName = DEFAULT_NAME;
+            }
+        }
+
+        if (stateName != null)
+        {
+            final StringBuilder buffer = new StringBuilder();
+
+            buffer.append(map.getName())
+                  .append('_')
+                  .append(stateName)
+                  .append('_')
+                  .append(methodName)
+                  .append("(machineId");
+
+            for (SmcParameter param: params)
+            {
+                buffer.append(", ").append(param.getName());
+            }
+
+            retval = buffer.append(')').toString();
+        }
+
+        return (retval);
+    } // end of transitionCall(SmcState, SmcTransition)
+
+    /**
+     * Writes the per-machine arrays and the constants. The
+     * state identifiers are taken from the context class so
+     * that the fleet and context always agree.
+     * @param fsm the FSM model.
+     */
+    private void outputData(final SmcFSM fsm)
+    {
+        final String fsmClassName = fsm.getFsmClassName();
+        String sep = "";
+
+        _source.println(
+            "//---------------------------------------------------------------");
+        _source.println("// Member data.");
+        _source.println("//");
+        _source.println();
+        _source.print("    private final ");
+        _source.print(fsm.getContext());
+        _source.println("[] _owners;");
+        _source.println("    private final int[] _stateIds;");
+        _source.println("    private final int[] _previousStateIds;");
+        _source.println("    private final int[] _stackDepths;");
+        _source.println("    private final int[][] _stateStacks;");
+        _source.println("    private final String[] _transitions;");
+        _source.println();
+        _source.println(
+            "    //-----------------------------------------------------------");
+        _source.println("    // Constants.");
+        _source.println("    //");
+        _source.println();
+        _source.println("    private static final int NO_STATE_ID = -1;");
+        _source.println();
+
+        for (SmcMap map: fsm.getMaps())
+        {
+            for (SmcState state: map.getStates())
+            {
+                final String stateId =
+                    map.getName() +
+                    "_" +
+                    state.getClassName() +
+                    STATE_ID_SUFFIX;
+
+                _source.print("    private static final int ");
+                _source.print(stateId);
+                _source.print(" = ");
+                _source.print(fsmClassName);
+                _source.print(".");
+                _source.print(stateId);
+                _source.println(";");
+            }
+        }
+
+        _source.println();
+        _source.print("    private static final int STACK_SIZE = ");
+        _source.print(
+            _stateStackSize > 0 ?
+            _stateStackSize :
+            DEFAULT_STACK_SIZE);
+        _source.println(";");
+        _source.println();
+
+        // The state names indexed by state identifier.
+        _source.println("    private static final String[] STATE_NAMES =");
+        _source.println("    {");
+        for (SmcMap map: fsm.getMaps())
+        {
+            for (SmcState state: map.getStates())
+            {
+                _source.print(sep);
+                _source.print("        \"");
+                _source.print(map.getName());
+                _source.print("_");
+                _source.print(state.getClassName());
+                _source.print("\"");
+
+                sep = ",\n";
+            }
+        }
+        _source.println();
+        _source.println("    };");
+
+        return;
+    } // end of outputData(SmcFSM)
+
+//---------------------------------------------------------------
+// Member data
+//
+
+    //-----------------------------------------------------------
+    // Constants.
+    //
+
+    /**
+     * The fleet class name is the context class name followed
+     * by "Fleet".
+     */
+    private static final String FLEET_SUFFIX = "Fleet";
+
+    /**
+     * The default state and transition name is "Default".
+     */
+    private static final String DEFAULT_NAME = "Default";
+
+    /**
+     * The ultimate system default transition method is
+     * "defaultTransition".
+     */
+    private static final String SYSTEM_DEFAULT =
+        "defaultTransition";
+
+    /**
+     * The default transition has no parameters.
+     */
+    private static final List<SmcParameter> DEFAULT_PARAMETERS =
+        new ArrayList<>();
+
+    /**
+     * Loop back transitions use a "nil" end state.
+     */
+    private static final String NIL_STATE = "nil";
+
+    /**
+     * The constant integer state identifier suffix is
+     * "_STATE_ID".
+     */
+    private static final String STATE_ID_SUFFIX = "_STATE_ID";
+
+    /**
+     * The state entry method name is:
+     * "&lt;map&gt;_&lt;state&gt;__Entry_".
+     */
+    private static final String ENTRY_NAME =
+        "%s_%s__Entry_";
+
+    /**
+     * The state exit method name is:
+     * "&lt;map&gt;_&lt;state&gt;__Exit_".
+     */
+    private static final String EXIT_NAME =
+        "%s_%s__Exit_";
+
+    /**
+     * A growable state stack's initial size when -stack is not
+     * specified.
+     */
+    private static final int DEFAULT_STACK_SIZE = 4;
+} // end of class SmcJava7FleetGenerator
@@ -33,6 +33,7 @@ package net.sf.smc.generator;
 
 import java.io.PrintStream;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.SortedSet;
@@ -378,7 +379,7 @@ public final class SmcJava7Generator
         if (transType != TransType.TRANS_PUSH &&
             loopbackFlag == false)
         {
-            outputStateExit(mapName, stateName);
+            outputStateExit(transition, mapName, stateName);
         }
 
         // 4. Output the guard body inside a try/finally block.
@@ -612,22 +613,60 @@ public final class SmcJava7Generator
         }
 
         _source.println("import java.lang.invoke.MethodHandle;");
-        _source.println("import java.lang.invoke.MethodHandles;");
-        _source.println("import java.lang.invoke.MethodHandles.Lookup;");
-        _source.println("import java.lang.invoke.MethodType;");
 
-        // The following two imports are only used for
-        // serializing/deserializing.
-        if (_serialFlag == true)
+        // Switch dispatch calls the transition methods directly
+        // and so does not look up any method handles.
+        if (_dispatchMode.equals(SWITCH_DISPATCH) == false)
+        {
+            _source.println("import java.lang.invoke.MethodHandles;");
+            _source.println("import java.lang.invoke.MethodHandles.Lookup;");
+            _source.println("import java.lang.invoke.MethodType;");
+        }
+
+        // -concurrency mailbox batches copy the caller's arrays.
+        if (_mailboxFlag == true)
         {
-            _source.println("import java.util.ArrayDeque;");
-            _source.println("import java.util.Iterator;");
+            _source.println("import java.util.Arrays;");
+        }
+
+        // -nocatch batch dispatch failures are thrown as a
+        // BatchDispatchException.
+        if (_noCatchFlag == true)
+        {
+            _source.println("import statemap.BatchDispatchException;");
         }
 
         // Import the required FSMContext7 and State7 classes.
         _source.println("import statemap.FSMContext7;");
+
+        if (_metricsFlag == true)
+        {
+            _source.println("import statemap.FsmMetrics;");
+        }
+
+        // -g transitions are also recorded by the context's
+        // FsmTracer, if set.
+        if (_debugLevel >= DEBUG_LEVEL_0)
+        {
+            _source.println("import statemap.FsmTracer;");
+        }
+
+        if (_mailboxFlag == true)
+        {
+            _source.println("import statemap.Mailbox;");
+        }
+
         _source.println("import statemap.State7;");
-        _source.println("import statemap.TransitionHandle;");
+
+        if (_dispatchMode.equals(SWITCH_DISPATCH) == false)
+        {
+            _source.println("import statemap.TransitionHandle;");
+        }
+
+        if (_queueFlag == true)
+        {
+            _source.println("import statemap.TransitionQueue;");
+        }
 
         _source.println();
 
@@ -677,6 +716,9 @@ public final class SmcJava7Generator
         // 4.1. Output the class constructors.
         outputConstructors(fsm);
 
+        // 4.1.1. Output the reset methods.
+        outputResetMethods(fsm);
+
         // 4.2. Output get/set methods.
         if (_serialFlag == true || _reflectFlag == true)
         {
@@ -684,10 +726,26 @@ public final class SmcJava7Generator
         }
         outputSet(fsm);
 
+        // 4.2.1. If -metrics is set, then output the static
+        //        getMetrics() method.
+        if (_metricsFlag == true)
+        {
+            outputMetricsGet();
+        }
+
         // 4.3. Output the required executeAction(MethodHandle)
         //      method override.
         outputExecuteAction();
 
+        // 4.3.1. Switch dispatch states have no entry and exit
+        //        method handles, so output the enterState()
+        //        and exitState() overrides which call the entry
+        //        and exit methods directly.
+        if (_dispatchMode.equals(SWITCH_DISPATCH) == true)
+        {
+            outputStateActionOverrides(fsm);
+        }
+
         // Note: the enterStartState() method is now defined in FSMContext7
         // since State7 is now final.
 
@@ -797,10 +855,24 @@ public final class SmcJava7Generator
         _source.print(context);
         _source.println(" owner, final State7 initState)");
         _source.println("    {");
-        _source.println("        super (initState);");
+        if (_stateStackSize > 0)
+        {
+            _source.print("        super (initState, ");
+            _source.print(_stateStackSize);
+            _source.println(");");
+        }
+        else
+        {
+            _source.println("        super (initState);");
+        }
         _source.println();
         _source.println("        ctxt = owner;");
 
+        if (_queueFlag == true)
+        {
+            outputQueueInit(fsm);
+        }
+
         _source.println("    }");
         _source.println();
 
@@ -813,6 +885,82 @@ public final class SmcJava7Generator
         return;
     } // end of outputConstructors(SmcFSM)
 
+    /**
+     * Outputs the three FSM reset methods which mirror the
+     * constructors: reset to the default start state, to the
+     * start state by ID and to the start state by instance.
+     * These methods allow an FSM context to be reused for a
+     * new owner rather than constructed anew.
+     * @param fsm the FSM model.
+     */
+    private void outputResetMethods(final SmcFSM fsm)
+    {
+        final String context = fsm.getContext();
+        final String startState = fsm.getStartState();
+        final int index = startState.indexOf("::");
+        final String javaState =
+            startState.substring(0, index) + // The map name.
+            "_" +
+            startState.substring(index + 2) + // The state name.
+            STATE_ID_SUFFIX;
+        final String syncKeyword =
+            (_syncFlag == true ? " synchronized " : " ");
+
+        _source.println(
+            "    //-----------------------------------------------------------");
+        _source.println("    // Reset Methods.");
+        _source.println("    //");
+        _source.println();
+
+        _source.print("    ");
+        _source.print(_accessLevel);
+        _source.print(syncKeyword);
+        _source.print("void reset(final ");
+        _source.print(context);
+        _source.println(" owner)");
+        _source.println("    {");
+        _source.print("        reset(owner, _States[");
+        _source.print(javaState);
+        _source.println("]);");
+        _source.println("        return;");
+        _source.println("    }");
+        _source.println();
+
+        _source.print("    ");
+        _source.print(_accessLevel);
+        _source.print(syncKeyword);
+        _source.print("void reset(final ");
+        _source.print(context);
+        _source.println(" owner, final int initStateId)");
+        _source.println("    {");
+        _source.println("        reset(owner, _States[initStateId]);");
+        _source.println("        return;");
+        _source.println("    }");
+        _source.println();
+
+        _source.print("    ");
+        _source.print(_accessLevel);
+        _source.print(syncKeyword);
+        _source.print("void reset(final ");
+        _source.print(context);
+        _source.println(" owner, final State7 initState)");
+        _source.println("    {");
+        _source.println("        super.reset(initState);");
+        _source.println();
+        _source.println("        ctxt = owner;");
+        _source.println("        return;");
+        _source.println("    }");
+        _source.println();
+
+        _source.println("    //");
+        _source.println("    // end of Reset Methods.");
+        _source.println(
+            "    //-----------------------------------------------------------");
+        _source.println();
+
+        return;
+    } // end of outputResetMethods(SmcFSM)
+
     /**
      * Writes the get emthods requested by the -serial and/or
      * -reflect flags.
@@ -878,20 +1026,51 @@ public final class SmcJava7Generator
     } // end of outputGet(String)
 
     /**
-     * Writes the owner set methods requested by the -serial
-     * flag.
+     * Writes the static {@code getMetrics} method which returns
+     * the -metrics {@code FsmMetrics} instance shared by all
+     * instances of the generated class.
+     */
+    private void outputMetricsGet()
+    {
+        _source.println("    public static FsmMetrics getMetrics()");
+        _source.println("    {");
+        _source.println("        return (_metrics);");
+        _source.println("    }");
+        _source.println();
+
+        return;
+    } // end of outputMetricsGet()
+
+    /**
+     * Writes the {@code setStateId} method and the owner set
+     * method requested by the -serial flag.
      * @param fsm the FSM model.
      */
     private void outputSet(final SmcFSM fsm)
     {
-        if (_serialFlag == true)
+        _source.println(
+            "    //-----------------------------------------------------------");
+        _source.println("    // Set Methods.");
+        _source.println("    //");
+        _source.println();
+
+        // setStateId() method.
+        _source.print("    public ");
+        if (_syncFlag == true)
         {
-            _source.println(
-                "    //-----------------------------------------------------------");
-            _source.println("    // Set Methods.");
-            _source.println("    //");
-            _source.println();
+            _source.print("synchronized ");
+        }
+        _source.println("void setStateId(final int stateId)");
+        _source.println(
+            "        throws ArrayIndexOutOfBoundsException");
+        _source.println("    {");
+        _source.println("        setState(_States[stateId]);");
+        _source.println("        return;");
+        _source.println("    }");
+        _source.println();
 
+        if (_serialFlag == true)
+        {
             // setOwner() method.
             _source.print("    public void setOwner(");
             _source.print(fsm.getContext());
@@ -909,14 +1088,14 @@ public final class SmcJava7Generator
             _source.println("        return;");
             _source.println("    }");
             _source.println();
-
-            _source.println("    //");
-            _source.println("    // end of Set Methods.");
-            _source.println(
-                "    //-----------------------------------------------------------");
-            _source.println();
         }
 
+        _source.println("    //");
+        _source.println("    // end of Set Methods.");
+        _source.println(
+            "    //-----------------------------------------------------------");
+        _source.println();
+
         return;
     } // end of outputSet(SmcFSM)
 
@@ -939,13 +1118,7 @@ public final class SmcJava7Generator
         _source.println("        {");
         _source.println("            mh.invokeExact(this);");
         _source.println("        }");
-        _source.println("        catch (Throwable tex)");
-        _source.println("        {");
-        _source.println("            if (_debugFlag == true)");
-        _source.println("            {");
-        _source.println("                tex.printStackTrace(_debugStream);");
-        _source.println("            }");
-        _source.println("        }");
+        outputActionCatch();
         _source.println();
         _source.println("        return;");
         _source.println("    }");
@@ -960,6 +1133,149 @@ public final class SmcJava7Generator
         return;
     } // end of outputExecuteAction()
 
+    /**
+     * Writes the {@code catch} clause following a method handle
+     * invocation. If {@code -nocatch} is set, then the action
+     * exception is propagated via
+     * {@code FSMContext7.transitionFailed}. Otherwise the
+     * exception is written to the debug stream and dropped.
+     */
+    private void outputActionCatch()
+    {
+        _source.println("        catch (Throwable tex)");
+        _source.println("        {");
+
+        if (_noCatchFlag == true)
+        {
+            _source.println(
+                "            throw (transitionFailed(tex));");
+        }
+        else
+        {
+            _source.println("            if (_debugFlag == true)");
+            _source.println("            {");
+            _source.println(
+                "                tex.printStackTrace(_debugStream);");
+            _source.println("            }");
+        }
+
+        _source.println("        }");
+
+        return;
+    } // end of outputActionCatch()
+
+    /**
+     * Writes the {@code enterState} and {@code exitState}
+     * overrides used by switch dispatch. The switch dispatch
+     * {@code State7} instances have no entry and exit method
+     * handles, so these methods call the state entry and exit
+     * methods directly. {@code exitState} also stops the state
+     * timer as the overridden method does.
+     * @param fsm the FSM model.
+     */
+    private void outputStateActionOverrides(final SmcFSM fsm)
+    {
+        _source.println(
+            "    //-----------------------------------------------------------");
+        _source.println("    // FSMContext7 Method Overrides.");
+        _source.println("    //");
+        _source.println();
+
+        outputStateActionSwitch(fsm, "enterState", ENTRY_NAME);
+        outputStateActionSwitch(fsm, "exitState", EXIT_NAME);
+
+        _source.println("    //");
+        _source.println("    // end of FSMContext7 Method Overrides.");
+        _source.println(
+            "    //-----------------------------------------------------------");
+        _source.println();
+
+        return;
+    } // end of outputStateActionOverrides(SmcFSM)
+
+    /**
+     * Writes either the {@code enterState} or {@code exitState}
+     * override as a {@code switch} on the current state
+     * identifier.
+     * @param fsm the FSM model.
+     * @param name the overridden method name.
+     * @param nameFormat the entry or exit method name format.
+     */
+    private void outputStateActionSwitch(final SmcFSM fsm,
+                                         final String name,
+                                         final String nameFormat)
+    {
+        final boolean entryFlag = nameFormat.equals(ENTRY_NAME);
+        final List<String> stateIds = new ArrayList<>();
+        final List<String> methodNames = new ArrayList<>();
+        List<SmcAction> actions;
+        int index;
+
+        for (SmcMap map : fsm.getMaps())
+        {
+            for (SmcState state : map.getStates())
+            {
+                actions = (entryFlag == true ?
+                           state.getEntryActions() :
+                           state.getExitActions());
+
+                if (actions != null && actions.isEmpty() == false)
+                {
+                    stateIds.add(
+                        map.getName() +
+                        "_" +
+                        state.getClassName() +
+                        STATE_ID_SUFFIX);
+                    methodNames.add(
+                        String.format(nameFormat,
+                                      map.getName(),
+                                      state.getClassName()));
+                }
+            }
+        }
+
+        _source.println("    @Override");
+        _source.print("    protected void ");
+        _source.print(name);
+        _source.println("()");
+        _source.println("    {");
+
+        if (entryFlag == false)
+        {
+            _source.println("        stopStateTimer();");
+            _source.println();
+        }
+
+        if (stateIds.isEmpty() == false)
+        {
+            _source.println("        switch (_state.getId())");
+            _source.println("        {");
+
+            for (index = 0; index < stateIds.size(); ++index)
+            {
+                _source.print("            case ");
+                _source.print(stateIds.get(index));
+                _source.println(":");
+                _source.print("                ");
+                _source.print(methodNames.get(index));
+                _source.println("();");
+                _source.println("                break;");
+                _source.println();
+            }
+
+            _source.println("            default:");
+            _source.println("                break;");
+            _source.println("        }");
+            _source.println();
+        }
+
+        _source.println("        return;");
+        _source.println("    }");
+        _source.println();
+
+        return;
+    } // end of outputStateActionSwitch(SmcFSM, String, String)
+
     /**
      * Writes the transition API methods. The owner context
      * instance calls these methods to issue transitions.
@@ -969,6 +1285,7 @@ public final class SmcJava7Generator
     {
         String transName;
         List<SmcParameter> params;
+        List<String> args;
         Iterator<SmcParameter> pit;
         String separator;
 
@@ -986,20 +1303,95 @@ public final class SmcJava7Generator
             // Handle the default transition separately.
             if (transName.equals(DEFAULT_NAME) == false)
             {
-                _source.print("    public ");
+                params = trans.getParameters();
+                args = new ArrayList<>();
+                for (SmcParameter param : params)
+                {
+                    args.add(param.getName());
+                }
+
+                // If -concurrency mailbox was specified, then the
+                // public transition method posts a task which
+                // calls the private method implementing the
+                // transition.
+                if (_mailboxFlag == true)
+                {
+                    _source.print("    public void ");
+                    _source.print(transName);
+                    _source.print("(");
 
-                // If the -sync flag was specified, then output
-                // the "synchronized" keyword.
-                if (_syncFlag == true)
+                    for (pit = params.iterator(), separator = "";
+                         pit.hasNext() == true;
+                         separator = ", ")
+                    {
+                        _source.print(separator);
+                        _source.print("final ");
+                        (pit.next()).accept(this);
+                    }
+                    _source.println(")");
+                    _source.println("    {");
+                    outputMailboxPost(
+                        String.format(RUN_NAME, transName),
+                        args);
+                    _source.println("        return;");
+                    _source.println("    }");
+                    _source.println();
+
+                    _source.print("    private void ");
+                    _source.print(
+                        String.format(RUN_NAME, transName));
+                }
+                // If -queue was specified, then the public
+                // transition method queues the transition if the
+                // context is running a transition. Otherwise it
+                // calls the private method implementing the
+                // transition and then runs the queued
+                // transitions.
+                else if (_queueFlag == true)
                 {
-                    _source.print("synchronized ");
+                    _source.print("    public ");
+                    if (_syncFlag == true)
+                    {
+                        _source.print("synchronized ");
+                    }
+                    _source.print("void ");
+                    _source.print(transName);
+                    _source.print("(");
+
+                    for (pit = params.iterator(), separator = "";
+                         pit.hasNext() == true;
+                         separator = ", ")
+                    {
+                        _source.print(separator);
+                        (pit.next()).accept(this);
+                    }
+                    _source.println(")");
+                    _source.println("    {");
+                    outputQueueAdd(trans, args);
+                    _source.println("        return;");
+                    _source.println("    }");
+                    _source.println();
+
+                    _source.print("    private void ");
+                    _source.print(
+                        String.format(RUN_NAME, transName));
                 }
+                else
+                {
+                    _source.print("    public ");
 
-                _source.print("void ");
-                _source.print(transName);
+                    // If the -sync flag was specified, then
+                    // output the "synchronized" keyword.
+                    if (_syncFlag == true)
+                    {
+                        _source.print("synchronized ");
+                    }
+
+                    _source.print("void ");
+                    _source.print(transName);
+                }
                 _source.print("(");
 
-                params = trans.getParameters();
                 for (pit = params.iterator(), separator = "";
                      pit.hasNext() == true;
                      separator = ", ")
@@ -1016,86 +1408,975 @@ public final class SmcJava7Generator
                 _source.print(transName);
                 _source.println("\";");
 
-                _source.println("        try");
-                _source.println("        {");
-                _source.println(
-                    "            final TransitionHandle th =");
-                _source.print(
-                    "                getState().transition(");
-                _source.print(transName);
-                _source.print(trans.getIdentifier());
-                _source.print(TRANSITION_ID_SUFFIX);
-                _source.println(");");
-                _source.println();
-
-                // If the transition takes no parameters, then it
-                // has the same signature as a default
-                // transition.
-                if (params.isEmpty() == true)
+                // If -metrics is set, then note the current state
+                // and start time before issuing the transition.
+                // The state is read directly since it is null
+                // while a transition runs and metrics must not
+                // change the transition's behavior.
+                if (_metricsFlag == true)
                 {
                     _source.println(
-                        "            (th.handle()).invokeExact(this);");
+                        "        final State7 metricsState = _state;");
+                    _source.println(
+                        "        final long metricsStart = _metrics.start();");
+                }
+
+                // Switch dispatch calls the transition method
+                // directly, so the actions may only throw
+                // unchecked exceptions. With -nocatch these are
+                // propagated as is and no try block is needed.
+                // Otherwise the actions are guarded the same way
+                // in every dispatch mode.
+                if (_dispatchMode.equals(SWITCH_DISPATCH) == true &&
+                    _noCatchFlag == true)
+                {
+                    outputSwitchDispatch(fsm, trans, "        ", args);
                 }
-                // Otherwise, there is a need to distinguish
-                // between actual and default transitions.
                 else
                 {
-                    _source.println(
-                        "            if (th.isDefault() == true)");
-                    _source.println(
-                        "            {");
-                    _source.println(
-                        "                (th.handle()).invokeExact(this);");
-                    _source.println(
-                        "            }");
-                    _source.println(
-                        "            else");
-                    _source.println(
-                        "            {");
+                    _source.println("        try");
+                    _source.println("        {");
+                    if (_dispatchMode.equals(SWITCH_DISPATCH) == true)
+                    {
+                        outputSwitchDispatch(
+                            fsm, trans, "            ", args);
+                    }
+                    else
+                    {
+                        outputHandleDispatch(
+                            fsm, trans, "            ", args);
+                    }
+                    _source.println("        }");
+                    outputActionCatch();
+                }
+
+                if (_metricsFlag == true)
+                {
+                    _source.println("        if (metricsState != null)");
+                    _source.println("        {");
                     _source.print(
-                        "                (th.handle()).invokeExact(this");
+                        "            _metrics.record(metricsState.getId(), ");
+                    _source.print(transName);
+                    _source.print(trans.getIdentifier());
+                    _source.print(TRANSITION_ID_SUFFIX);
+                    _source.println(", metricsStart);");
+                    _source.println("        }");
+                }
 
-                    for (pit = params.iterator();
-                         pit.hasNext() == true;
-                        )
+                // Clear the in-progress transition name before
+                // returning.
+                _source.println("        _transition = \"\";");
+
+                _source.println("        return;");
+                _source.println("    }");
+                _source.println();
+            }
+        }
+
+        // Output the batch dispatch method.
+        outputBatchDispatch(fsm);
+
+        if (_queueFlag == true)
+        {
+            outputRunQueue(fsm);
+        }
+
+        _source.println("    //");
+        _source.println("    // end of Transitions.");
+        _source.println(
+            "    //-----------------------------------------------------------");
+        _source.println();
+
+        return;
+    } // end of outputTransitionApi(SmcFSM)
+
+    /**
+     * Writes the batch {@code dispatch} method which issues
+     * {@code count} transitions given by transition identifier
+     * and arguments array. The {@code synchronized} lock (if
+     * {@code -sync}) is taken once per batch. Each transition is
+     * issued by calling its transition method, so the batch
+     * method's size does not grow with the number of states.
+     * <p>
+     * A failed transition is handled by its transition method.
+     * If {@code -nocatch} is set, the failure stops the batch
+     * and is thrown as a {@code BatchDispatchException}
+     * containing the number of transitions completed. Otherwise
+     * the failure is written to the debug stream and the batch
+     * continues. An invalid transition identifier always stops
+     * the batch. The method returns the number of transitions
+     * dispatched.
+     * </p>
+     * <p>
+     * If {@code -concurrency mailbox} is set, then the batch is
+     * posted to the mailbox as one task and may run later on
+     * another thread. The transition identifiers and arguments
+     * are copied before the task is posted, so the caller may
+     * reuse its arrays. The method returns the number of
+     * transitions queued, not the number completed.
+     * </p>
+     * @param fsm the FSM model.
+     */
+    private void outputBatchDispatch(final SmcFSM fsm)
+    {
+        final List<String> batchArgs = new ArrayList<>();
+        List<SmcParameter> params;
+        String sep;
+        int index;
+
+        // -queue batches run through the transition queue.
+        if (_queueFlag == true)
+        {
+            outputQueueBatchDispatch(fsm);
+            return;
+        }
+
+        // If -concurrency mailbox was specified, then the public
+        // dispatch method posts the entire batch as one task.
+        // The task may run after this method returns, so it
+        // works on copies of the caller's arrays and the
+        // returned count is the number of transitions queued.
+        if (_mailboxFlag == true)
+        {
+            batchArgs.add("batchIds");
+            batchArgs.add("batchArgs");
+            batchArgs.add("count");
+
+            _source.print("    public int dispatch(");
+            _source.print("final int[] transitionIds, ");
+            _source.println("final Object[][] args, final int count)");
+            _source.println("    {");
+            outputBatchCountCheck();
+            _source.println(
+                "        final int[] batchIds = Arrays.copyOf(transitionIds, count);");
+            _source.println(
+                "        final Object[][] batchArgs = Arrays.copyOf(args, count);");
+            _source.println();
+            _source.println(
+                "        for (int index = 0; index < count; ++index)");
+            _source.println("        {");
+            _source.println("            if (batchArgs[index] != null)");
+            _source.println("            {");
+            _source.println(
+                "                batchArgs[index] = batchArgs[index].clone();");
+            _source.println("            }");
+            _source.println("        }");
+            _source.println();
+            outputMailboxPost(
+                String.format(RUN_NAME, "dispatch"),
+                batchArgs);
+            _source.println("        return (count);");
+            _source.println("    }");
+            _source.println();
+
+            _source.println("    @SuppressWarnings(\"unchecked\")");
+            _source.print("    private int ");
+            _source.print(String.format(RUN_NAME, "dispatch"));
+        }
+        else
+        {
+            _source.println("    @SuppressWarnings(\"unchecked\")");
+            _source.print("    public ");
+            if (_syncFlag == true)
+            {
+                _source.print("synchronized ");
+            }
+            _source.print("int dispatch");
+        }
+        _source.print("(final int[] transitionIds, ");
+        _source.println("final Object[][] args, final int count)");
+        _source.println("    {");
+        _source.println("        int index = 0;");
+        _source.println();
+
+        if (_mailboxFlag == false)
+        {
+            outputBatchCountCheck();
+        }
+        _source.println("        try");
+        _source.println("        {");
+        _source.println(
+            "            for (index = 0; index < count; ++index)");
+        _source.println("            {");
+        _source.println(
+            "                switch (transitionIds[index])");
+        _source.println("                {");
+
+        for (SmcTransition trans: fsm.getTransitions())
+        {
+            if ((trans.getName()).equals(DEFAULT_NAME) == true)
+            {
+                continue;
+            }
+
+            // The transition arguments are cast from the event's
+            // arguments array. The transition is issued by the
+            // method implementing it: the public transition
+            // method or, with -concurrency mailbox, the private
+            // method the mailbox task calls.
+            params = trans.getParameters();
+
+            _source.print("                    case ");
+            _source.print(trans.getName());
+            _source.print(trans.getIdentifier());
+            _source.print(TRANSITION_ID_SUFFIX);
+            _source.println(":");
+            _source.print("                        ");
+            if (_mailboxFlag == true)
+            {
+                _source.print(
+                    String.format(RUN_NAME, trans.getName()));
+            }
+            else
+            {
+                _source.print(trans.getName());
+            }
+            _source.print("(");
+            for (index = 0, sep = "";
+                 index < params.size();
+                 ++index, sep = ", ")
+            {
+                _source.print(sep);
+                _source.print(
+                    String.format(
+                        "(%s) args[index][%d]",
+                        (params.get(index)).getType(),
+                        index));
+            }
+            _source.println(");");
+            _source.println("                        break;");
+            _source.println();
+        }
+
+        _source.println("                    default:");
+        _source.println("                        throw (");
+        _source.println(
+            "                            new IllegalArgumentException(");
+        _source.println(
+            "                                \"invalid transition identifier \" +");
+        _source.println(
+            "                                transitionIds[index]));");
+        _source.println("                }");
+        _source.println("            }");
+        _source.println("        }");
+        outputBatchCatch();
+        _source.println();
+        _source.println("        return (index);");
+        _source.println("    }");
+        _source.println();
+
+        return;
+    } // end of outputBatchDispatch(SmcFSM)
+
+    /**
+     * Writes the {@code -queue} batch {@code dispatch} method.
+     * If the context is running a transition, then the entire
+     * batch is added to the transition queue and the method
+     * returns {@code count}. Otherwise each transition is run
+     * by its {@code <transition>__Run_} method followed by the
+     * transitions it queued, so every transition runs to
+     * completion before the next one starts.
+     * @param fsm the FSM model.
+     */
+    private void outputQueueBatchDispatch(final SmcFSM fsm)
+    {
+        List<SmcParameter> params;
+        String sep;
+        int index;
+
+        _source.println("    @SuppressWarnings(\"unchecked\")");
+        _source.print("    public ");
+        if (_syncFlag == true)
+        {
+            _source.print("synchronized ");
+        }
+        _source.print("int dispatch(final int[] transitionIds, ");
+        _source.println("final Object[][] args, final int count)");
+        _source.println("    {");
+        _source.println("        int index = 0;");
+        _source.println("        int argIndex;");
+        _source.println("        int argument;");
+        _source.println();
+        outputBatchCountCheck();
+
+        // Check every identifier before queuing any of them.
+        _source.println(
+            "        if (_transitionQueue.isRunning() == true)");
+        _source.println("        {");
+        _source.println(
+            "            for (index = 0; index < count; ++index)");
+        _source.println("            {");
+        _source.println(
+            "                if (transitionIds[index] <= DEFAULT_TRANSITION_ID ||");
+        _source.println(
+            "                    transitionIds[index] >= TRANSITION_COUNT)");
+        _source.println("                {");
+        _source.println("                    throw (");
+        _source.println(
+            "                        new IllegalArgumentException(");
+        _source.println(
+            "                            \"invalid transition identifier \" +");
+        _source.println(
+            "                            transitionIds[index]));");
+        _source.println("                }");
+        _source.println("            }");
+        _source.println();
+        _source.println(
+            "            for (index = 0; index < count; ++index)");
+        _source.println("            {");
+        _source.println(
+            "                argIndex = _transitionQueue.add(transitionIds[index]);");
+        _source.println("                for (argument = 0;");
+        _source.println("                     args[index] != null &&");
+        _source.println(
+            "                         argument < args[index].length &&");
+        _source.println(
+            "                         argument < _transitionQueue.getArgumentCount();");
+        _source.println("                     ++argument)");
+        _source.println("                {");
+        _source.println(
+            "                    _transitionQueue.setArgument(");
+        _source.println(
+            "                        argIndex + argument, args[index][argument]);");
+        _source.println("                }");
+        _source.println("            }");
+        _source.println();
+        _source.println("            return (count);");
+        _source.println("        }");
+        _source.println();
+        _source.println("        _transitionQueue.start();");
+        _source.println("        try");
+        _source.println("        {");
+        _source.println(
+            "            for (index = 0; index < count; ++index)");
+        _source.println("            {");
+        _source.println(
+            "                switch (transitionIds[index])");
+        _source.println("                {");
+
+        for (SmcTransition trans: fsm.getTransitions())
+        {
+            if ((trans.getName()).equals(DEFAULT_NAME) == true)
+            {
+                continue;
+            }
+
+            params = trans.getParameters();
+
+            _source.print("                    case ");
+            _source.print(trans.getName());
+            _source.print(trans.getIdentifier());
+            _source.print(TRANSITION_ID_SUFFIX);
+            _source.println(":");
+            _source.print("                        ");
+            _source.print(String.format(RUN_NAME, trans.getName()));
+            _source.print("(");
+            for (index = 0, sep = "";
+                 index < params.size();
+                 ++index, sep = ", ")
+            {
+                _source.print(sep);
+                _source.print(
+                    String.format(
+                        "(%s) args[index][%d]",
+                        (params.get(index)).getType(),
+                        index));
+            }
+            _source.println(");");
+            _source.println("                        break;");
+            _source.println();
+        }
+
+        _source.println("                    default:");
+        _source.println("                        throw (");
+        _source.println(
+            "                            new IllegalArgumentException(");
+        _source.println(
+            "                                \"invalid transition identifier \" +");
+        _source.println(
+            "                                transitionIds[index]));");
+        _source.println("                }");
+        _source.println();
+        _source.println("                runTransitionQueue();");
+        _source.println("            }");
+        _source.println("        }");
+        outputBatchCatch();
+        _source.println("        finally");
+        _source.println("        {");
+        _source.println("            _transitionQueue.stop();");
+        _source.println("        }");
+        _source.println();
+        _source.println("        return (index);");
+        _source.println("    }");
+        _source.println();
+
+        return;
+    } // end of outputQueueBatchDispatch(SmcFSM)
+
+    /**
+     * Writes the batch {@code dispatch} catch block. If
+     * {@code -nocatch} is set, the failure is thrown as a
+     * {@code BatchDispatchException}. Otherwise it is written
+     * to the debug stream if debugging is on.
+     */
+    private void outputBatchCatch()
+    {
+        _source.println("        catch (Throwable tex)");
+        _source.println("        {");
+
+        if (_noCatchFlag == true)
+        {
+            _source.println(
+                "            throw (new BatchDispatchException(index, tex));");
+        }
+        else
+        {
+            _source.println("            if (_debugFlag == true)");
+            _source.println("            {");
+            _source.println(
+                "                tex.printStackTrace(_debugStream);");
+            _source.println("            }");
+        }
+
+        _source.println("        }");
+
+        return;
+    } // end of outputBatchCatch()
+
+    /**
+     * Writes the batch {@code dispatch} count argument check.
+     */
+    private void outputBatchCountCheck()
+    {
+        _source.println(
+            "        if (count < 0 || count > transitionIds.length)");
+        _source.println("        {");
+        _source.println("            throw (");
+        _source.println("                new IllegalArgumentException(");
+        _source.println(
+            "                    \"invalid count (\" + count + \")\"));");
+        _source.println("        }");
+        _source.println();
+
+        return;
+    } // end of outputBatchCountCheck()
+
+    /**
+     * Writes the {@code -queue} transition method body. If the
+     * context is running a transition, then the transition and
+     * its arguments are added to the transition queue.
+     * Otherwise the transition is run followed by the
+     * transitions queued while it ran.
+     * @param trans the transition.
+     * @param args the transition argument expressions.
+     */
+    private void outputQueueAdd(final SmcTransition trans,
+                                final List<String> args)
+    {
+        final String transName = trans.getName();
+        String sep = "";
+        int index;
+
+        _source.println(
+            "        if (_transitionQueue.isRunning() == true)");
+        _source.println("        {");
+        if (args.isEmpty() == true)
+        {
+            _source.print("            _transitionQueue.add(");
+        }
+        else
+        {
+            _source.print("            final int argIndex = ");
+            _source.print("_transitionQueue.add(");
+        }
+        _source.print(transName);
+        _source.print(trans.getIdentifier());
+        _source.print(TRANSITION_ID_SUFFIX);
+        _source.println(");");
+
+        for (index = 0; index < args.size(); ++index)
+        {
+            _source.print("            _transitionQueue.setArgument(");
+            _source.print(
+                index == 0 ? "argIndex" : "argIndex + " + index);
+            _source.print(", ");
+            _source.print(args.get(index));
+            _source.println(");");
+        }
+
+        _source.println("        }");
+        _source.println("        else");
+        _source.println("        {");
+        _source.println("            _transitionQueue.start();");
+        _source.println("            try");
+        _source.println("            {");
+        _source.print("                ");
+        _source.print(String.format(RUN_NAME, transName));
+        _source.print("(");
+        for (String arg : args)
+        {
+            _source.print(sep);
+            _source.print(arg);
+            sep = ", ";
+        }
+        _source.println(");");
+        _source.println("                runTransitionQueue();");
+        _source.println("            }");
+        _source.println("            finally");
+        _source.println("            {");
+        _source.println("                _transitionQueue.stop();");
+        _source.println("            }");
+        _source.println("        }");
+
+        return;
+    } // end of outputQueueAdd(SmcTransition, List<>)
+
+    /**
+     * Writes the {@code -queue} method which runs the queued
+     * transitions in order until the queue is empty. Each
+     * transition's arguments are cast from the queue's argument
+     * slots.
+     * @param fsm the FSM model.
+     */
+    private void outputRunQueue(final SmcFSM fsm)
+    {
+        List<SmcParameter> params;
+        String sep;
+        int index;
+
+        _source.println("    @SuppressWarnings(\"unchecked\")");
+        _source.println("    private void runTransitionQueue()");
+        _source.println("    {");
+        _source.println(
+            "        while (_transitionQueue.isEmpty() == false)");
+        _source.println("        {");
+        _source.println("            switch (_transitionQueue.next())");
+        _source.println("            {");
+
+        for (SmcTransition trans: fsm.getTransitions())
+        {
+            if ((trans.getName()).equals(DEFAULT_NAME) == true)
+            {
+                continue;
+            }
+
+            params = trans.getParameters();
+
+            _source.print("                case ");
+            _source.print(trans.getName());
+            _source.print(trans.getIdentifier());
+            _source.print(TRANSITION_ID_SUFFIX);
+            _source.println(":");
+            _source.print("                    ");
+            _source.print(String.format(RUN_NAME, trans.getName()));
+            _source.print("(");
+            for (index = 0, sep = "";
+                 index < params.size();
+                 ++index, sep = ", ")
+            {
+                _source.print(sep);
+                _source.print(
+                    String.format(
+                        "(%s) _transitionQueue.getArgument(%d)",
+                        (params.get(index)).getType(),
+                        index));
+            }
+            _source.println(");");
+            _source.println("                    break;");
+            _source.println();
+        }
+
+        _source.println("                default:");
+        _source.println("                    break;");
+        _source.println("            }");
+        _source.println("        }");
+        _source.println();
+        _source.println("        return;");
+        _source.println("    }");
+        _source.println();
+
+        return;
+    } // end of outputRunQueue(SmcFSM)
+
+    /**
+     * Writes the {@code -queue} transition queue creation. The
+     * queue has an argument slot for each parameter of the
+     * transition with the most parameters.
+     * @param fsm the FSM model.
+     */
+    private void outputQueueInit(final SmcFSM fsm)
+    {
+        int argumentCount = 0;
+
+        for (SmcTransition trans: fsm.getTransitions())
+        {
+            argumentCount =
+                Math.max(argumentCount,
+                         (trans.getParameters()).size());
+        }
+
+        _source.println("        _transitionQueue =");
+        _source.print("            new TransitionQueue(");
+        _source.print("TransitionQueue.DEFAULT_CAPACITY, ");
+        _source.print(argumentCount);
+        _source.println(");");
+
+        return;
+    } // end of outputQueueInit(SmcFSM)
+
+    /**
+     * Writes the {@code -concurrency mailbox} code which posts
+     * a task calling {@code methodName} to the context's
+     * mailbox. The task is run either now by the calling thread
+     * or later by the thread currently running the mailbox.
+     * @param methodName the task calls this method.
+     * @param args the method argument expressions.
+     */
+    private void outputMailboxPost(final String methodName,
+                                   final List<String> args)
+    {
+        String sep = "";
+
+        _source.println("        _mailbox.post(");
+        _source.println("            new Runnable()");
+        _source.println("            {");
+        _source.println("                @Override");
+        _source.println("                public void run()");
+        _source.println("                {");
+        _source.print("                    ");
+        _source.print(methodName);
+        _source.print("(");
+        for (String arg : args)
+        {
+            _source.print(sep);
+            _source.print(arg);
+
+            sep = ", ";
+        }
+        _source.println(");");
+        _source.println("                    return;");
+        _source.println("                }");
+        _source.println("            });");
+        _source.println();
+
+        return;
+    } // end of outputMailboxPost(String, List<>)
+
+    /**
+     * Writes the method handle transition dispatch used by the
+     * table and static dispatch modes. Static dispatch is a
+     * {@code switch} on the current state identifier which
+     * invokes the state's {@code static final} transition
+     * handle. The handle already drops the arguments for a
+     * default transition. Table dispatch goes through the
+     * current state's {@code State7} transition table.
+     * @param fsm the FSM model.
+     * @param trans the transition being dispatched.
+     * @param indent the code indentation.
+     * @param args the transition argument expressions.
+     */
+    private void outputHandleDispatch(final SmcFSM fsm,
+                                      final SmcTransition trans,
+                                      final String indent,
+                                      final List<String> args)
+    {
+        if (_dispatchMode.equals(STATIC_DISPATCH) == true)
+        {
+            final int holderStates = holderStateCount(fsm);
+            int stateId = 0;
+
+            _source.print(indent);
+            _source.println("switch (getState().getId())");
+            _source.print(indent);
+            _source.println("{");
+
+            for (SmcMap map : fsm.getMaps())
+            {
+                for (SmcState state : map.getStates())
+                {
+                    _source.print(indent);
+                    _source.print("    case ");
+                    _source.print(map.getName());
+                    _source.print("_");
+                    _source.print(state.getClassName());
+                    _source.print(STATE_ID_SUFFIX);
+                    _source.println(":");
+                    _source.print(indent);
+                    _source.print("        ");
+                    _source.print(
+                        String.format(
+                            HANDLE_CLASS_NAME,
+                            stateId / holderStates));
+                    _source.print(".");
+                    _source.print(
+                        transitionHandleName(map, state, trans));
+                    _source.print(".invokeExact(this");
+
+                    for (String arg : args)
                     {
                         _source.print(", ");
-                        _source.print((pit.next()).getName());
+                        _source.print(arg);
                     }
                     _source.println(");");
-                    _source.println(
-                        "            }");
+                    _source.print(indent);
+                    _source.println("        break;");
+                    _source.println();
+
+                    ++stateId;
+                }
+            }
+
+            _source.print(indent);
+            _source.println("    default:");
+            _source.print(indent);
+            _source.println("        break;");
+            _source.print(indent);
+            _source.println("}");
+        }
+        else
+        {
+            outputTableDispatch(trans, indent, args);
+        }
+
+        return;
+    } // end of outputHandleDispatch(SmcFSM, SmcTransition, ...)
+
+    /**
+     * Returns the name of the {@code static final} field
+     * holding {@code state}'s {@code trans} method handle.
+     * @param map the state's map.
+     * @param state the state.
+     * @param trans the transition.
+     * @return the transition handle field name.
+     */
+    private static String transitionHandleName(final SmcMap map,
+                                               final SmcState state,
+                                               final SmcTransition trans)
+    {
+        return (
+            String.format(
+                HANDLE_NAME,
+                map.getName(),
+                state.getClassName(),
+                trans.getName(),
+                trans.getIdentifier()));
+    } // end of transitionHandleName(SmcMap, SmcState, SmcTransition)
+
+    /**
+     * Writes the transition dispatch through the current
+     * state's {@code State7} transition table.
+     * @param trans the transition being dispatched.
+     * @param indent the code indentation.
+     * @param args the transition argument expressions.
+     */
+    private void outputTableDispatch(final SmcTransition trans,
+                                     final String indent,
+                                     final List<String> args)
+    {
+        _source.print(indent);
+        _source.println("final TransitionHandle th =");
+        _source.print(indent);
+        _source.print("    getState().transition(");
+        _source.print(trans.getName());
+        _source.print(trans.getIdentifier());
+        _source.print(TRANSITION_ID_SUFFIX);
+        _source.println(");");
+        _source.println();
+
+        // If the transition takes no parameters, then it
+        // has the same signature as a default
+        // transition.
+        if (args.isEmpty() == true)
+        {
+            _source.print(indent);
+            _source.println("(th.handle()).invokeExact(this);");
+        }
+        // Otherwise, there is a need to distinguish
+        // between actual and default transitions.
+        else
+        {
+            _source.print(indent);
+            _source.println("if (th.isDefault() == true)");
+            _source.print(indent);
+            _source.println("{");
+            _source.print(indent);
+            _source.println("    (th.handle()).invokeExact(this);");
+            _source.print(indent);
+            _source.println("}");
+            _source.print(indent);
+            _source.println("else");
+            _source.print(indent);
+            _source.println("{");
+            _source.print(indent);
+            _source.print("    (th.handle()).invokeExact(this");
+
+            for (String arg : args)
+            {
+                _source.print(", ");
+                _source.print(arg);
+            }
+            _source.println(");");
+            _source.print(indent);
+            _source.println("}");
+        }
+
+        return;
+    } // end of outputTableDispatch(SmcTransition, String, List<>)
+
+    /**
+     * Writes the transition dispatch as a {@code switch} on the
+     * current state identifier. Each state's case calls the
+     * transition method selected by the same search order as
+     * {@code FSMContext7.lookupTransition}. States using the
+     * system default transition fall through to the
+     * {@code default} case.
+     * @param fsm the FSM model.
+     * @param trans the transition being dispatched.
+     * @param indent the code indentation.
+     * @param args the transition argument expressions.
+     */
+    private void outputSwitchDispatch(final SmcFSM fsm,
+                                      final SmcTransition trans,
+                                      final String indent,
+                                      final List<String> args)
+    {
+        String call;
+
+        _source.print(indent);
+        _source.println("switch (getState().getId())");
+        _source.print(indent);
+        _source.println("{");
+
+        for (SmcMap map : fsm.getMaps())
+        {
+            for (SmcState state : map.getStates())
+            {
+                call = transitionCall(state, trans, args);
+
+                if (call != null)
+                {
+                    _source.print(indent);
+                    _source.print("    case ");
+                    _source.print(map.getName());
+                    _source.print("_");
+                    _source.print(state.getClassName());
+                    _source.print(STATE_ID_SUFFIX);
+                    _source.println(":");
+                    _source.print(indent);
+                    _source.print("        ");
+                    _source.print(call);
+                    _source.println(";");
+                    _source.print(indent);
+                    _source.println("        break;");
+                    _source.println();
                 }
+            }
+        }
 
-                _source.println("        }");
-                _source.println("        catch (Throwable tex)");
-                _source.println("        {");
-                _source.println(
-                    "            if (_debugFlag == true)");
-                _source.println("            {");
-                _source.println(
-                    "                tex.printStackTrace(_debugStream);");
-                _source.println("            }");
-                _source.println("        }");
+        _source.print(indent);
+        _source.println("    default:");
+        _source.print(indent);
+        _source.print("        ");
+        _source.print(SYSTEM_DEFAULT);
+        _source.println("();");
+        _source.print(indent);
+        _source.println("        break;");
+        _source.print(indent);
+        _source.println("}");
 
-                // Clear the in-progress transition name before
-                // returning.
-                _source.println("        _transition = \"\";");
+        return;
+    } // end of outputSwitchDispatch(SmcFSM, SmcTransition, ...)
 
-                _source.println("        return;");
-                _source.println("    }");
-                _source.println();
+    /**
+     * Returns the transition method call which implements
+     * {@code trans} in {@code state}. The search order is:
+     * <ol>
+     *   <li>
+     *     the state's definition of the transition,
+     *   </li>
+     *   <li>
+     *     the default state's definition of the transition,
+     *   </li>
+     *   <li>
+     *     the state's default transition, and
+     *   </li>
+     *   <li>
+     *     the default state's default transition.
+     *   </li>
+     * </ol>
+     * Returns {@code null} if none of these are defined, which
+     * means that the system default transition is used.
+     * @param state the current state.
+     * @param trans the transition being dispatched.
+     * @param args the transition argument expressions.
+     * @return the transition method call or {@code null}.
+     */
+    private String transitionCall(final SmcState state,
+                                  final SmcTransition trans,
+                                  final List<String> args)
+    {
+        final SmcMap map = state.getMap();
+        final SmcState defaultState = map.getDefaultState();
+        final String transName = trans.getName();
+        final List<SmcParameter> params = trans.getParameters();
+        List<String> callArgs = args;
+        String stateName = null;
+        String methodName = transName;
+        String retval = null;
+
+        if (state.findTransition(transName, params) != null)
+        {
+            stateName = state.getClassName();
+        }
+        else if (defaultState != null &&
+                 defaultState.findTransition(
+                     transName, params) != null)
+        {
+            stateName = DEFAULT_NAME;
+        }
+        else
+        {
+            // A default transition takes no arguments.
+            methodName = DEFAULT_NAME;
+            callArgs = new ArrayList<>();
+
+            if (state.findTransition(
+                    DEFAULT_NAME, DEFAULT_PARAMETERS) != null)
+            {
+                stateName = state.getClassName();
+            }
+            else if (defaultState != null &&
+                     defaultState.findTransition(
+                         DEFAULT_NAME, DEFAULT_PARAMETERS) != null)
+            {
+                stateName = DEFAULT_NAME;
             }
         }
 
-        _source.println("    //");
-        _source.println("    // end of Transitions.");
-        _source.println(
-            "    //-----------------------------------------------------------");
-        _source.println();
+        if (stateName != null)
+        {
+            final StringBuilder buffer = new StringBuilder();
+            String sep = "";
 
-        return;
-    } // end of outputTransitionApi(SmcFSM)
+            buffer.append(map.getName())
+                  .append('_')
+                  .append(stateName)
+                  .append('_')
+                  .append(methodName)
+                  .append('(');
+
+            for (String arg : callArgs)
+            {
+                buffer.append(sep).append(arg);
+
+                sep = ", ";
+            }
+
+            retval = buffer.append(')').toString();
+        }
+
+        return (retval);
+    } // end of transitionCall(SmcState, SmcTransition, List<>)
 
     /**
      * Writes the writeObject() and readObject() methods.
@@ -1109,32 +2390,21 @@ public final class SmcJava7Generator
         _source.println("    //");
         _source.println();
 
+        // The state stack is written top first.
         _source.println(
             "    private void writeObject(final ObjectOutputStream ostream)");
         _source.println("        throws IOException");
         _source.println("    {");
-        _source.println(
-            "        final int size =");
-        _source.println(
-            "            (_stateStack == null ? 0 : _stateStack.size());");
         _source.println("        int i;");
         _source.println();
         _source.println(
-            "        ostream.writeInt(size);");
-        _source.println();
-        _source.println("        if (size > 0)");
-        _source.println("        {");
-        _source.println(
-            "            final Iterator<State7> sit =");
-        _source.println(
-            "                _stateStack.iterator();");
+            "        ostream.writeInt(_stateStackDepth);");
         _source.println();
         _source.println(
-            "            while (sit.hasNext())");
-        _source.println("            {");
+            "        for (i = (_stateStackDepth - 1); i >= 0; --i)");
+        _source.println("        {");
         _source.println(
-            "                ostream.writeInt((sit.next()).getId());");
-        _source.println("            }");
+            "            ostream.writeInt(_stateStack[i].getId());");
         _source.println("        }");
         _source.println();
         _source.println(
@@ -1149,27 +2419,30 @@ public final class SmcJava7Generator
         _source.println("    {");
         _source.println(
             "        final int size = istream.readInt();");
+        _source.println("        int i;");
         _source.println();
-        _source.println("        if (size == 0)");
-        _source.println("        {");
-        _source.println("            _stateStack = null;");
-        _source.println("        }");
-        _source.println("        else");
-        _source.println("        {");
-        _source.println("            int i;");
-        _source.println();
-        _source.println("            _stateStack = new ArrayDeque<>();");
+        _source.println("        initStateStack(size);");
         _source.println();
         _source.println(
-            "            for (i = 0; i < size; ++i)");
-        _source.println("            {");
+            "        for (i = (size - 1); i >= 0; --i)");
+        _source.println("        {");
         _source.println(
-            "                _stateStack.addLast(_States[istream.readInt()]);");
-        _source.println("            }");
+            "            _stateStack[i] = _States[istream.readInt()];");
         _source.println("        }");
         _source.println();
         _source.println(
             "        _state = _States[istream.readInt()];");
+
+        if (_mailboxFlag == true)
+        {
+            _source.println("        _mailbox = new Mailbox();");
+        }
+
+        if (_queueFlag == true)
+        {
+            outputQueueInit(fsm);
+        }
+
         _source.println();
         _source.println("        return;");
         _source.println("    }");
@@ -1202,6 +2475,14 @@ public final class SmcJava7Generator
         _source.print(context);
         _source.println(" ctxt;");
 
+        // -concurrency mailbox transitions are posted to this
+        // mailbox.
+        if (_mailboxFlag == true)
+        {
+            _source.println(
+                "    transient private Mailbox _mailbox = new Mailbox();");
+        }
+
         // 5.2. Declare the class constants.
         _source.println();
         _source.println(
@@ -1220,11 +2501,24 @@ public final class SmcJava7Generator
         outputTransitionIds(fsm);
 
         // 5.2.3. Output the transition method signatures.
-        outputTransitionSignatures(fsm);
+        //        Switch dispatch does not look up transition
+        //        methods and so does not need the signatures.
+        if (_dispatchMode.equals(SWITCH_DISPATCH) == false)
+        {
+            outputTransitionSignatures(fsm);
+        }
 
         // 5.2.4. Output the map, state and transition name arrays.
         outputNames(fsm);
 
+        // 5.2.4.5. If -metrics is set, then output the
+        //          FsmMetrics instance. This must follow the
+        //          transition names array.
+        if (_metricsFlag == true)
+        {
+            outputMetrics(fsm);
+        }
+
         // 5.2.5. Output the states array.
         //        Note: the array is filled in in the class init.
         _source.println(
@@ -1232,7 +2526,23 @@ public final class SmcJava7Generator
         _source.println();
 
         // 5.2.6. Output the class static initialization block.
-        outputClassInit(fsm);
+        if (_dispatchMode.equals(SWITCH_DISPATCH) == true)
+        {
+            outputSwitchClassInit();
+        }
+        else
+        {
+            outputClassInit(fsm);
+        }
+
+        // 5.2.6.1. If static dispatch is used, then output each
+        //          state's transition method handles. These
+        //          follow the class init since they are taken
+        //          from the states it creates.
+        if (_dispatchMode.equals(STATIC_DISPATCH) == true)
+        {
+            outputTransitionHandles(fsm);
+        }
 
         // 5.2.7 If -reflection is set, then output the map
         //       classes containing the state instances.
@@ -1283,8 +2593,9 @@ public final class SmcJava7Generator
         }
 
         // Now output the total number of states.
-        _source.print(
-            "    private static final int STATE_COUNT = ");
+        _source.print("    ");
+        _source.print(_accessLevel);
+        _source.print(" static final int STATE_COUNT = ");
         _source.print(stateId);
         _source.println(";");
         _source.println();
@@ -1293,7 +2604,9 @@ public final class SmcJava7Generator
     } // end of outputStateIds(SmcFSM)
 
     /**
-     * Writes the transition identifier constants.
+     * Writes the transition identifier constants. These are
+     * visible at the "-access" level so that applications may
+     * pass them to the batch {@code dispatch} method.
      * @param fsm the FSM model.
      */
     private void outputTransitionIds(final SmcFSM fsm)
@@ -1319,7 +2632,9 @@ public final class SmcJava7Generator
                         trans.getIdentifier(),
                         TRANSITION_ID_SUFFIX);
 
-                _source.print("    private static final int ");
+                _source.print("    ");
+                _source.print(_accessLevel);
+                _source.print(" static final int ");
                 _source.print(transIdName);
                 _source.print(" = ");
                 _source.print(transId);
@@ -1331,8 +2646,9 @@ public final class SmcJava7Generator
 
         // Now output the total number of transitions.
         _source.println();
-        _source.print(
-            "    private static final int TRANSITION_COUNT = ");
+        _source.print("    ");
+        _source.print(_accessLevel);
+        _source.print(" static final int TRANSITION_COUNT = ");
         _source.print(transId);
         _source.println(";");
         _source.println();
@@ -1581,6 +2897,51 @@ public final class SmcJava7Generator
         return;
     } // end of outputTransitionNames(SmcFSM)
 
+    /**
+     * Writes the -metrics {@code FsmMetrics} instance. The
+     * state names are in state identifier order. The
+     * transition names are {@code TRANSITION_NAMES}, which are
+     * in transition identifier order.
+     * @param fsm the FSM model.
+     */
+    private void outputMetrics(final SmcFSM fsm)
+    {
+        String sep = "";
+
+        _source.println(
+            "    private static final FsmMetrics _metrics =");
+        _source.println("        new FsmMetrics(");
+        _source.print("            \"");
+        _source.print(fsm.getFsmClassName());
+        _source.println("\",");
+        _source.println("            new String[]");
+        _source.print("            {");
+
+        for (SmcMap map : fsm.getMaps())
+        {
+            for (SmcState state : map.getStates())
+            {
+                _source.println(sep);
+                _source.print("                \"");
+                _source.print(
+                    String.format(
+                        "%s_%s",
+                        map.getName(),
+                        state.getInstanceName()));
+                _source.print("\"");
+
+                sep = ",";
+            }
+        }
+
+        _source.println();
+        _source.println("            },");
+        _source.println("            TRANSITION_NAMES);");
+        _source.println();
+
+        return;
+    } // end of outputMetrics(SmcFSM)
+
     /**
      * Writes the class initialization block which fills in the
      * States array with State instances.
@@ -1708,12 +3069,167 @@ public final class SmcJava7Generator
             "                    transitions[transIndex] =");
         _source.println(
             "                        lookupTransition(lookup, clazz, mapName, stateName, transName, transType);");
+
         _source.println("                }");
         _source.println();
 
         return;
     } // end of outputClassInitTransitions()
 
+    /**
+     * Writes a {@code static final} method handle field for
+     * each state and transition, used by static dispatch. Each
+     * field is a constant to the JIT compiler, so the transition
+     * method may be inlined at the call site. Default
+     * transitions are adapted to the transition signature.
+     * <p>
+     * The fields are placed in nested holder classes of at most
+     * {@link #HOLDER_HANDLE_COUNT} fields each, so no class
+     * initializer exceeds the class file's method size limit
+     * however many states and transitions the FSM has. A holder
+     * class is initialized when a transition is first issued in
+     * one of its states.
+     * </p>
+     * @param fsm the FSM model.
+     */
+    private void outputTransitionHandles(final SmcFSM fsm)
+    {
+        final int holderStates = holderStateCount(fsm);
+        String transIdName;
+        int stateId = 0;
+
+        for (SmcMap map : fsm.getMaps())
+        {
+            for (SmcState state : map.getStates())
+            {
+                // Start the next holder class.
+                if ((stateId % holderStates) == 0)
+                {
+                    if (stateId > 0)
+                    {
+                        _source.println("    }");
+                    }
+
+                    _source.println();
+                    _source.print("    private static final class ");
+                    _source.println(
+                        String.format(
+                            HANDLE_CLASS_NAME,
+                            stateId / holderStates));
+                    _source.println("    {");
+                }
+                else
+                {
+                    _source.println();
+                }
+
+                for (SmcTransition trans : fsm.getTransitions())
+                {
+                    if ((trans.getName()).equals(DEFAULT_NAME) == true)
+                    {
+                        continue;
+                    }
+
+                    transIdName =
+                        String.format(
+                            "%s%d%s",
+                            trans.getName(),
+                            trans.getIdentifier(),
+                            TRANSITION_ID_SUFFIX);
+
+                    _source.print(
+                        "        static final MethodHandle ");
+                    _source.print(
+                        transitionHandleName(map, state, trans));
+                    _source.println(" =");
+                    _source.println("            transitionHandle(");
+                    _source.print("                _States[");
+                    _source.print(map.getName());
+                    _source.print("_");
+                    _source.print(state.getClassName());
+                    _source.print(STATE_ID_SUFFIX);
+                    _source.print("].transition(");
+                    _source.print(transIdName);
+                    _source.println("),");
+                    _source.print("                TRANSITION_TYPES[");
+                    _source.print(transIdName);
+                    _source.println("]);");
+                }
+
+                ++stateId;
+            }
+        }
+
+        if (stateId > 0)
+        {
+            _source.println("    }");
+        }
+
+        return;
+    } // end of outputTransitionHandles(SmcFSM)
+
+    /**
+     * Returns the number of states whose transition handles are
+     * placed in one static dispatch holder class. This is at
+     * least one.
+     * @param fsm the FSM model.
+     * @return the number of states per holder class.
+     */
+    private static int holderStateCount(final SmcFSM fsm)
+    {
+        final int transitionCount = (fsm.getTransitions()).size();
+
+        return (
+            Math.max(
+                1,
+                HOLDER_HANDLE_COUNT / Math.max(1, transitionCount)));
+    } // end of holderStateCount(SmcFSM)
+
+    /**
+     * Writes the class initialization block used by switch
+     * dispatch. The {@code State7} instances are created
+     * without method handles since the transition, entry and
+     * exit methods are called directly.
+     */
+    private void outputSwitchClassInit()
+    {
+        _source.println("    static");
+        _source.println("    {");
+        _source.println(
+            "        final int mapSize = MAP_NAMES.length;");
+        _source.println("        int stateSize;");
+        _source.println("        int mapIndex;");
+        _source.println("        int stateIndex;");
+        _source.println("        int stateId = 0;");
+        _source.println("        String mapName;");
+        _source.println();
+        _source.println(
+            "        for (mapIndex = 0; mapIndex < mapSize; ++mapIndex)");
+        _source.println("        {");
+        _source.println(
+            "            mapName = MAP_NAMES[mapIndex];");
+        _source.println(
+            "            stateSize = STATE_NAMES[mapIndex].length;");
+        _source.println();
+        _source.println(
+            "            for (stateIndex = 0; stateIndex < stateSize; ++stateIndex, ++stateId)");
+        _source.println("            {");
+        _source.println("                _States[stateId] =");
+        _source.println("                    new State7(");
+        _source.println(
+            "                        String.format(STATE_NAME_FORMAT, mapName, STATE_NAMES[mapIndex][stateIndex]),");
+        _source.println("                        stateId,");
+        _source.println("                        null,");
+        _source.println("                        null,");
+        _source.println("                        null,");
+        _source.println("                        STATE_TRANSITIONS[stateId]);");
+        _source.println("            }");
+        _source.println("        }");
+        _source.println("    }");
+
+        return;
+    } // end of outputSwitchClassInit()
+
     /**
      * Writes the map classes containing a public static field
      * named for each map's states.
@@ -2052,9 +3568,12 @@ public final class SmcJava7Generator
     /**
      * Outputs the state exit code, surrounded by option debug
      * logging statements.
+     * @param trans the transition leaving the state.
+     * @param mapName the state resides in this map.
      * @param stateName exiting this state.
      */
-    private void outputStateExit(final String mapName,
+    private void outputStateExit(final SmcTransition trans,
+                                 final String mapName,
                                  final String stateName)
     {
         if (_debugLevel >= DEBUG_LEVEL_0)
@@ -2073,6 +3592,8 @@ public final class SmcJava7Generator
             _source.print(_indent);
             _source.println("}");
             _source.println();
+            outputTrace(_indent, trans, "STATE_EXIT");
+            _source.println();
         }
 
         if (_debugLevel >= DEBUG_LEVEL_1)
@@ -2114,7 +3635,7 @@ public final class SmcJava7Generator
         }
 
         return;
-    } // end of outputStateExit(String, String)
+    } // end of outputStateExit(SmcTransition, String, String)
 
     /**
      * Writes the guard actions, adding the transition enter and
@@ -2189,6 +3710,8 @@ public final class SmcJava7Generator
             _source.print(_indent);
             _source.println("    }");
             _source.println();
+            outputTrace(_indent + "    ", trans, "TRANSITION_ENTER");
+            _source.println();
         }
 
         return;
@@ -2275,11 +3798,70 @@ public final class SmcJava7Generator
             _source.println("\");");
             _source.print(_indent);
             _source.println("    }");
+            _source.println();
+            outputTrace(_indent + "    ", trans, "TRANSITION_EXIT");
         }
 
         return;
     } // end of outputTransitionExit(SmcTransition,String,String)
 
+    /**
+     * Writes the {@code FsmTracer} record made alongside the
+     * -g debug output, if the context has a tracer.
+     * @param indent the code indentation.
+     * @param trans the transition being traced.
+     * @param kind the {@code FsmTracer} event kind constant.
+     */
+    private void outputTrace(final String indent,
+                             final SmcTransition trans,
+                             final String kind)
+    {
+        _source.print(indent);
+        _source.println("if (_tracer != null)");
+        _source.print(indent);
+        _source.println("{");
+        _source.print(indent);
+        _source.print("    trace(");
+        _source.print(transitionIdName(trans));
+        _source.print(", FsmTracer.");
+        _source.print(kind);
+        _source.println(");");
+        _source.print(indent);
+        _source.println("}");
+
+        return;
+    } // end of outputTrace(String, SmcTransition, String)
+
+    /**
+     * Returns the transition identifier constant for the given
+     * state transition. A state transition's identifier is not
+     * necessarily the FSM transition's identifier used in the
+     * constant name, so the FSM transition is looked up by name
+     * and parameters.
+     * @param trans a state transition.
+     * @return the transition identifier constant name.
+     */
+    private static String transitionIdName(final SmcTransition trans)
+    {
+        final List<SmcTransition> transitions =
+            trans.getState().getMap().getFSM().getTransitions();
+        String retval = "DEFAULT_TRANSITION_ID";
+        int index;
+
+        if ((trans.getName()).equals(DEFAULT_NAME) == false &&
+            (index = Collections.binarySearch(transitions, trans)) >= 0)
+        {
+            retval =
+                String.format(
+                    "%s%d%s",
+                    trans.getName(),
+                    (transitions.get(index)).getIdentifier(),
+                    TRANSITION_ID_SUFFIX);
+        }
+
+        return (retval);
+    } // end of transitionIdName(SmcTransition)
+
     /**
      * Outputs the state exit code, surrounded by option debug
      * logging statements.
@@ -2401,12 +3983,40 @@ public final class SmcJava7Generator
      */
     private static final String STATE_ID_SUFFIX = "_STATE_ID";
 
+    /**
+     * The static dispatch transition handle field name is:
+     * "&lt;map&gt;_&lt;state&gt;_&lt;transition&gt;&lt;id&gt;_HANDLE".
+     */
+    private static final String HANDLE_NAME = "%s_%s_%s%d_HANDLE";
+
+    /**
+     * The static dispatch transition handle holder class name
+     * is: "TransitionHandles&lt;n&gt;".
+     */
+    private static final String HANDLE_CLASS_NAME =
+        "TransitionHandles%d";
+
+    /**
+     * A static dispatch holder class has at most this many
+     * transition handle fields. Each field takes about 30 bytes
+     * of the holder's class initializer.
+     */
+    private static final int HOLDER_HANDLE_COUNT = 1024;
+
     /**
      * The constant integer transition identifier suffix is
      * "_TRANSITION_ID".
      */
     private static final String TRANSITION_ID_SUFFIX =
         "_TRANSITION_ID";
+
+    /**
+     * The {@code -concurrency mailbox} and {@code -queue}
+     * private method which implements a posted or queued
+     * transition is named "&lt;transition&gt;__Run_".
+     */
+    private static final String RUN_NAME = "%s__Run_";
+
     /**
      * The state entry method name is:
      * "&lt;map&gt;_&lt;state&gt;__Entry_".
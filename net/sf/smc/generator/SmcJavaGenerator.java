@@ -36,6 +36,7 @@ package net.sf.smc.generator;
 
 import java.io.PrintStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import net.sf.smc.model.SmcAction;
@@ -105,6 +106,7 @@ public final class SmcJavaGenerator
         String transName;
         String javaState;
         String separator;
+        String indent;
         int index;
         List<SmcParameter> params;
 
@@ -224,10 +226,24 @@ public final class SmcJavaGenerator
         _source.print(context);
         _source.println("State initState)");
         _source.println("    {");
-        _source.println("        super (initState);");
+        if (_stateStackSize > 0)
+        {
+            _source.print("        super (initState, ");
+            _source.print(_stateStackSize);
+            _source.println(");");
+        }
+        else
+        {
+            _source.println("        super (initState);");
+        }
         _source.println();
         _source.println("        _owner = owner;");
 
+        if (_queueFlag == true)
+        {
+            outputQueueInit(transitions);
+        }
+
         // If reflection code is added, then instantiate the
         // state and transition sets and fill them in.
         if (_reflectFlag == true)
@@ -238,6 +254,46 @@ public final class SmcJavaGenerator
         _source.println("    }");
         _source.println();
 
+        // Generate the reset methods which allow a context to
+        // be reused for a new owner rather than discarded.
+        _source.print("    ");
+        _source.print(_accessLevel);
+        _source.print(" ");
+        if (_syncFlag == true)
+        {
+            _source.print("synchronized ");
+        }
+        _source.print("void reset(");
+        _source.print(context);
+        _source.println(" owner)");
+        _source.println("    {");
+        _source.print("        reset(owner, ");
+        _source.print(javaState);
+        _source.println(");");
+        _source.println("        return;");
+        _source.println("    }");
+        _source.println();
+
+        _source.print("    ");
+        _source.print(_accessLevel);
+        _source.print(" ");
+        if (_syncFlag == true)
+        {
+            _source.print("synchronized ");
+        }
+        _source.print("void reset(");
+        _source.print(context);
+        _source.print(" owner, ");
+        _source.print(context);
+        _source.println("State initState)");
+        _source.println("    {");
+        _source.println("        super.reset(initState);");
+        _source.println();
+        _source.println("        _owner = owner;");
+        _source.println("        return;");
+        _source.println("    }");
+        _source.println();
+
         // Generate the start abstract method which requires
         // executes the initial state's entry actions.
         _source.println("    @Override");
@@ -258,39 +314,103 @@ public final class SmcJavaGenerator
         {
             if (trans.getName().equals("Default") == false)
             {
-                _source.print("    public ");
+                params = trans.getParameters();
 
-                // If the -sync flag was specified, then output
-                // the "synchronized" keyword.
-                if (_syncFlag == true)
+                // If -queue was specified, then the public
+                // transition method queues the transition or
+                // calls the private method implementing it.
+                if (_queueFlag == true)
                 {
-                    _source.print("synchronized ");
+                    outputQueueMethod(trans);
+
+                    _source.print("    private void ");
+                    _source.print(
+                        String.format(QUEUE_RUN_NAME, trans.getName()));
                 }
+                else
+                {
+                    _source.print("    public ");
 
-                _source.print("void ");
-                _source.print(trans.getName());
+                    // If the -sync flag was specified, then
+                    // output the "synchronized" keyword.
+                    if (_syncFlag == true)
+                    {
+                        _source.print("synchronized ");
+                    }
+
+                    _source.print("void ");
+                    _source.print(trans.getName());
+                }
                 _source.print("(");
 
-                params = trans.getParameters();
                 for (pit = params.iterator(), separator = "";
                      pit.hasNext() == true;
                      separator = ", ")
                 {
                     _source.print(separator);
+
+                    // The mailbox task references the parameters,
+                    // so they must be final.
+                    if (_mailboxFlag == true)
+                    {
+                        _source.print("final ");
+                    }
                     (pit.next()).accept(this);
                 }
                 _source.println(")");
                 _source.println("    {");
 
+                // If -concurrency mailbox was specified, then
+                // post the transition to the mailbox. The
+                // transition is run either now by this thread or
+                // later by the thread currently running the
+                // mailbox.
+                if (_mailboxFlag == true)
+                {
+                    _source.println("        _mailbox.post(");
+                    _source.println("            new Runnable()");
+                    _source.println("            {");
+                    _source.println("                @Override");
+                    _source.println("                public void run()");
+                    _source.println("                {");
+                    indent = "                    ";
+                }
+                else
+                {
+                    indent = "        ";
+                }
+
                 // Save away the transition name in case it is
                 // need in an UndefinedTransitionException.
-                _source.print("        _transition = \"");
+                _source.print(indent);
+                _source.print("_transition = \"");
                 _source.print(trans.getName());
                 _source.println("\";");
 
-                _source.print("        getState().");
+                // If -metrics was specified, then note the
+                // current state and start time before issuing
+                // the transition. The state is read directly
+                // since it is null while a transition runs and
+                // metrics must not change the transition's
+                // behavior.
+                if (_metricsFlag == true)
+                {
+                    _source.print(indent);
+                    _source.println(
+                        "final statemap.State metricsState = _state;");
+                    _source.print(indent);
+                    _source.println(
+                        "final long metricsStart = _metrics.start();");
+                }
+
+                _source.print(indent);
+                _source.print("getState().");
                 _source.print(trans.getName());
-                _source.print("(this");
+                _source.print("(");
+                _source.print(
+                    _mailboxFlag == true ?
+                    fsmClassName + ".this" :
+                    "this");
 
                 for (pit = params.iterator();
                      pit.hasNext() == true;
@@ -300,7 +420,32 @@ public final class SmcJavaGenerator
                     _source.print((pit.next()).getName());
                 }
                 _source.println(");");
-                _source.println("        _transition = \"\";");
+
+                if (_metricsFlag == true)
+                {
+                    _source.print(indent);
+                    _source.println("if (metricsState != null)");
+                    _source.print(indent);
+                    _source.println("{");
+                    _source.print(indent);
+                    _source.print("    _metrics.record(metricsState.getId(), ");
+                    _source.print(transitionIdName(trans));
+                    _source.println(", metricsStart);");
+                    _source.print(indent);
+                    _source.println("}");
+                }
+
+                _source.print(indent);
+                _source.println("_transition = \"\";");
+
+                if (_mailboxFlag == true)
+                {
+                    _source.print(indent);
+                    _source.println("return;");
+                    _source.println("                }");
+                    _source.println("            });");
+                    _source.println();
+                }
 
                 _source.println("        return;");
                 _source.println("    }");
@@ -308,6 +453,11 @@ public final class SmcJavaGenerator
             }
         }
 
+        if (_queueFlag == true)
+        {
+            outputRunQueue(transitions);
+        }
+
         // If serialization is turned on, then generate a
         // setOwner method which allows the application class
         // to restore its ownership of the FSM.
@@ -377,6 +527,17 @@ public final class SmcJavaGenerator
         _source.println("    }");
         _source.println();
 
+        // getMetrics() method.
+        if (_metricsFlag == true)
+        {
+            _source.println(
+                "    public static statemap.FsmMetrics getMetrics()");
+            _source.println("    {");
+            _source.println("        return (_metrics);");
+            _source.println("    }");
+            _source.println();
+        }
+
         if (_reflectFlag == true)
         {
             // getStates() method.
@@ -412,24 +573,16 @@ public final class SmcJavaGenerator
             _source.println(
                 "        throws java.io.IOException");
             _source.println("    {");
-            _source.println(
-                "        int size =");
-            _source.print("            ");
-            _source.println(
-                "(_stateStack == null ? 0 : _stateStack.size());");
             _source.println("        int i;");
             _source.println();
             _source.println(
-                "        ostream.writeInt(size);");
+                "        ostream.writeInt(_stateStackDepth);");
             _source.println();
             _source.println(
-                "        for (i = 0; i < size; ++i)");
+                "        for (i = 0; i < _stateStackDepth; ++i)");
             _source.println("        {");
-            _source.println("            ostream.writeInt(");
-            _source.print("                ((");
-            _source.print(context);
             _source.println(
-                "State) _stateStack.get(i)).getId());");
+                "            ostream.writeInt(_stateStack[i].getId());");
             _source.println("        }");
             _source.println();
             _source.println(
@@ -445,41 +598,33 @@ public final class SmcJavaGenerator
                 "        throws java.io.IOException");
             _source.println("    {");
             _source.println("        int size;");
+            _source.println("        int i;");
             _source.println();
             _source.println("        size = istream.readInt();");
+            _source.println("        initStateStack(size);");
             _source.println();
-            _source.println("        if (size == 0)");
+            _source.println(
+                "        for (i = 0; i < size; ++i)");
             _source.println("        {");
-            _source.println("            _stateStack = null;");
+            _source.print(
+                "            _stateStack[i] = _States[");
+            _source.println("istream.readInt()];");
             _source.println("        }");
-            _source.println("        else");
-            _source.println("        {");
-            _source.println("            int i;");
             _source.println();
-            _source.println("            _stateStack =");
-            _source.print(
-                "                new java.util.Stack");
-            if (_java7Flag == true)
+            _source.println(
+                "        _state = _States[istream.readInt()];");
+
+            if (_mailboxFlag == true)
             {
-                _source.print("<>");
+                _source.println(
+                    "        _mailbox = new statemap.Mailbox();");
             }
-            else
+
+            if (_queueFlag == true)
             {
-                _source.print("<statemap.State>");
+                outputQueueInit(transitions);
             }
-            _source.println("();");
-            _source.println();
-            _source.println(
-                "            for (i = 0; i < size; ++i)");
-            _source.println("            {");
-            _source.print(
-                "                _stateStack.add(i, _States[");
-            _source.println("istream.readInt()]);");
-            _source.println("            }");
-            _source.println("        }");
-            _source.println();
-            _source.println(
-                "        _state = _States[istream.readInt()];");
+
             _source.println();
             _source.println("        return;");
             _source.println("    }");
@@ -496,6 +641,29 @@ public final class SmcJavaGenerator
         _source.print(context);
         _source.println(" _owner;");
 
+        // -concurrency mailbox transitions are posted to this
+        // mailbox.
+        if (_mailboxFlag == true)
+        {
+            _source.println(
+                "    transient private statemap.Mailbox _mailbox =");
+            _source.println("        new statemap.Mailbox();");
+        }
+
+        // -metrics and -queue identify transitions by these
+        // constants.
+        if (_metricsFlag == true || _queueFlag == true)
+        {
+            outputTransitionIds(transitions);
+        }
+
+        // -metrics transitions are counted by this class-level
+        // FsmMetrics.
+        if (_metricsFlag == true)
+        {
+            outputMetrics(fsm);
+        }
+
         // If reflection is turned on then declare the transition set.
         if (_reflectFlag == true)
         {
@@ -782,7 +950,7 @@ public final class SmcJavaGenerator
             _source.print('.');
             _source.print(state.getClassName());
             _source.print("\", ");
-            _source.print(SmcMap.getNextStateId());
+            _source.print(map.getNextStateId());
             _source.println(");");
         }
 
@@ -1951,9 +2119,298 @@ public final class SmcJavaGenerator
         return;
     } // end of reflectionSets(List<String>, List<SmcMap>)
 
+    // Generates the -metrics FsmMetrics declaration. The state
+    // names are in state identifier order and the transition
+    // names in transition identifier order, Default first.
+    private void outputMetrics(final SmcFSM fsm)
+    {
+        String separator;
+
+        _source.println();
+        _source.println(
+            "    private static final statemap.FsmMetrics _metrics =");
+        _source.println("        new statemap.FsmMetrics(");
+        _source.print("            \"");
+        _source.print(fsm.getFsmClassName());
+        _source.println("\",");
+        _source.println("            new String[]");
+        _source.print("            {");
+
+        separator = "";
+        for (SmcMap map: fsm.getMaps())
+        {
+            for (SmcState state: map.getStates())
+            {
+                _source.println(separator);
+                _source.print("                \"");
+                _source.print(map.getName());
+                _source.print(".");
+                _source.print(state.getClassName());
+                _source.print("\"");
+
+                separator = ",";
+            }
+        }
+
+        _source.println();
+        _source.println("            },");
+        _source.println("            new String[]");
+        _source.println("            {");
+        _source.print("                \"Default\"");
+
+        for (SmcTransition trans: fsm.getTransitions())
+        {
+            if (trans.getName().equals("Default") == false)
+            {
+                _source.println(",");
+                _source.print("                \"");
+                _source.print(trans.getName());
+                _source.print("\"");
+            }
+        }
+
+        _source.println();
+        _source.println("            });");
+
+        return;
+    } // end of outputMetrics(SmcFSM)
+
+    // Generates the transition identifier constants. Default is
+    // zero and the other transitions are one and up in
+    // transition order.
+    private void outputTransitionIds(
+        final List<SmcTransition> transitions)
+    {
+        int transId;
+
+        _source.println();
+        transId = 1;
+        for (SmcTransition trans: transitions)
+        {
+            if (trans.getName().equals("Default") == false)
+            {
+                _source.print("    private static final int ");
+                _source.print(transitionIdName(trans));
+                _source.print(" = ");
+                _source.print(transId);
+                _source.println(";");
+
+                ++transId;
+            }
+        }
+
+        return;
+    } // end of outputTransitionIds(List<SmcTransition>)
+
+    // Generates the -queue public transition method. If the
+    // context is running a transition, then the transition and
+    // its arguments are queued. Otherwise the transition is run
+    // followed by the transitions queued while it ran.
+    private void outputQueueMethod(final SmcTransition trans)
+    {
+        final List<SmcParameter> params = trans.getParameters();
+        String separator;
+        int index;
+
+        _source.print("    public ");
+        if (_syncFlag == true)
+        {
+            _source.print("synchronized ");
+        }
+        _source.print("void ");
+        _source.print(trans.getName());
+        _source.print("(");
+        for (index = 0, separator = "";
+             index < params.size();
+             ++index, separator = ", ")
+        {
+            _source.print(separator);
+            (params.get(index)).accept(this);
+        }
+        _source.println(")");
+        _source.println("    {");
+        _source.println(
+            "        if (_transitionQueue.isRunning() == true)");
+        _source.println("        {");
+        _source.print(
+            params.isEmpty() == true ?
+            "            _transitionQueue.add(" :
+            "            final int argIndex = _transitionQueue.add(");
+        _source.print(transitionIdName(trans));
+        _source.println(");");
+
+        for (index = 0; index < params.size(); ++index)
+        {
+            _source.print("            _transitionQueue.setArgument(");
+            _source.print(
+                index == 0 ? "argIndex" : "argIndex + " + index);
+            _source.print(", ");
+            _source.print((params.get(index)).getName());
+            _source.println(");");
+        }
+
+        _source.println("        }");
+        _source.println("        else");
+        _source.println("        {");
+        _source.println("            _transitionQueue.start();");
+        _source.println("            try");
+        _source.println("            {");
+        _source.print("                ");
+        _source.print(String.format(QUEUE_RUN_NAME, trans.getName()));
+        _source.print("(");
+        for (index = 0, separator = "";
+             index < params.size();
+             ++index, separator = ", ")
+        {
+            _source.print(separator);
+            _source.print((params.get(index)).getName());
+        }
+        _source.println(");");
+        _source.println("                runTransitionQueue();");
+        _source.println("            }");
+        _source.println("            finally");
+        _source.println("            {");
+        _source.println("                _transitionQueue.stop();");
+        _source.println("            }");
+        _source.println("        }");
+        _source.println("        return;");
+        _source.println("    }");
+        _source.println();
+
+        return;
+    } // end of outputQueueMethod(SmcTransition)
+
+    // Generates the -queue method which runs the queued
+    // transitions until the queue is empty. Primitive arguments
+    // are cast to their wrapper class and unboxed.
+    private void outputRunQueue(final List<SmcTransition> transitions)
+    {
+        List<SmcParameter> params;
+        String separator;
+        int index;
+
+        _source.println("    @SuppressWarnings(\"unchecked\")");
+        _source.println("    private void runTransitionQueue()");
+        _source.println("    {");
+        _source.println(
+            "        while (_transitionQueue.isEmpty() == false)");
+        _source.println("        {");
+        _source.println("            switch (_transitionQueue.next())");
+        _source.println("            {");
+
+        for (SmcTransition trans: transitions)
+        {
+            if (trans.getName().equals("Default") == false)
+            {
+                params = trans.getParameters();
+
+                _source.print("                case ");
+                _source.print(transitionIdName(trans));
+                _source.println(":");
+                _source.print("                    ");
+                _source.print(
+                    String.format(QUEUE_RUN_NAME, trans.getName()));
+                _source.print("(");
+                for (index = 0, separator = "";
+                     index < params.size();
+                     ++index, separator = ", ")
+                {
+                    _source.print(separator);
+                    _source.print("(");
+                    _source.print(
+                        objectType((params.get(index)).getType()));
+                    _source.print(") _transitionQueue.getArgument(");
+                    _source.print(index);
+                    _source.print(")");
+                }
+                _source.println(");");
+                _source.println("                    break;");
+                _source.println();
+            }
+        }
+
+        _source.println("                default:");
+        _source.println("                    break;");
+        _source.println("            }");
+        _source.println("        }");
+        _source.println();
+        _source.println("        return;");
+        _source.println("    }");
+        _source.println();
+
+        return;
+    } // end of outputRunQueue(List<SmcTransition>)
+
+    // Generates the -queue transition queue creation. The queue
+    // has an argument slot for each parameter of the transition
+    // with the most parameters.
+    private void outputQueueInit(final List<SmcTransition> transitions)
+    {
+        int argumentCount = 0;
+
+        for (SmcTransition trans: transitions)
+        {
+            argumentCount =
+                Math.max(argumentCount,
+                         (trans.getParameters()).size());
+        }
+
+        _source.println("        _transitionQueue =");
+        _source.println("            new statemap.TransitionQueue(");
+        _source.println(
+            "                statemap.TransitionQueue.DEFAULT_CAPACITY,");
+        _source.print("                ");
+        _source.print(argumentCount);
+        _source.println(");");
+
+        return;
+    } // end of outputQueueInit(List<SmcTransition>)
+
+    // Returns the transition identifier constant name.
+    private static String transitionIdName(final SmcTransition trans)
+    {
+        return (
+            String.format(
+                "%s%d%s",
+                trans.getName(),
+                trans.getIdentifier(),
+                TRANSITION_ID_SUFFIX));
+    } // end of transitionIdName(SmcTransition)
+
+    // Returns the wrapper class for a primitive type and the
+    // type itself otherwise.
+    private static String objectType(final String type)
+    {
+        final int index = PRIMITIVE_TYPES.indexOf(type);
+
+        return (index < 0 ? type : WRAPPER_TYPES.get(index));
+    } // end of objectType(String)
+
 //---------------------------------------------------------------
 // Member data
 //
+
+    //-----------------------------------------------------------
+    // Constants.
+    //
+
+    // The -queue private method which implements a queued
+    // transition is named "<transition>__Run_".
+    private static final String QUEUE_RUN_NAME = "%s__Run_";
+
+    // The transition identifier constant is named
+    // "<transition><identifier>_TRANSITION_ID".
+    private static final String TRANSITION_ID_SUFFIX =
+        "_TRANSITION_ID";
+
+    // The primitive types and their wrapper classes, in the
+    // same order.
+    private static final List<String> PRIMITIVE_TYPES =
+        Arrays.asList("boolean", "byte", "char", "short",
+                      "int", "long", "float", "double");
+    private static final List<String> WRAPPER_TYPES =
+        Arrays.asList("Boolean", "Byte", "Character", "Short",
+                      "Integer", "Long", "Float", "Double");
 } // end of class SmcJavaGenerator
 
 //
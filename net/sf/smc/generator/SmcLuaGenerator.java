@@ -492,7 +492,7 @@ public final class SmcLuaGenerator
         _source.print('.');
         _source.print(stateName);
         _source.print("', ");
-        _source.print(SmcMap.getNextStateId());
+        _source.print(map.getNextStateId());
         _source.println(")");
 
         // Add the Entry() and Exit() member functions if this
@@ -94,6 +94,15 @@ public final class SmcOptions
      * generated classes.
      * @param useProtocolFlag use "@protocol" instead of "@class"
      * in generated Objective-C code.
+     * @param dispatchMode generate this transition dispatch
+     * (Java 7 only).
+     * @param mailboxFlag if {@code true} then post transitions
+     * to a lock-free mailbox (Java and Java 7 only).
+     * @param metricsFlag if {@code true} then count transitions
+     * in a {@code statemap.FsmMetrics} (Java and Java 7 only).
+     * @param queueFlag if {@code true} then queue transitions
+     * issued while a transition is running in a
+     * {@code statemap.TransitionQueue} (Java and Java 7 only).
      */
     public SmcOptions(final String appName,
                       final String appVersion,
@@ -116,7 +125,11 @@ public final class SmcOptions
                       final boolean genericFlag,
                       final boolean java7Flag,
                       final String accessLevel,
-                      final boolean useProtocolFlag)
+                      final boolean useProtocolFlag,
+                      final String dispatchMode,
+                      final boolean mailboxFlag,
+                      final boolean metricsFlag,
+                      final boolean queueFlag)
     {
         _appName = appName;
         _appVersion = appVersion;
@@ -140,6 +153,10 @@ public final class SmcOptions
         _java7Flag = java7Flag;
         _accessLevel = accessLevel;
         _useProtocolFlag = useProtocolFlag;
+        _dispatchMode = dispatchMode;
+        _mailboxFlag = mailboxFlag;
+        _metricsFlag = metricsFlag;
+        _queueFlag = queueFlag;
     } // end f SmcOptions(...)
 
     //
@@ -352,6 +369,42 @@ public final class SmcOptions
         return (_useProtocolFlag);
     } // end of useProtocolFlag()
 
+    /**
+     * Returns the transition dispatch mode.
+     * @return the transition dispatch mode.
+     */
+    public String dispatchMode()
+    {
+        return (_dispatchMode);
+    } // end of dispatchMode()
+
+    /**
+     * Returns the mailbox concurrency flag.
+     * @return the mailbox concurrency flag.
+     */
+    public boolean mailboxFlag()
+    {
+        return (_mailboxFlag);
+    } // end of mailboxFlag()
+
+    /**
+     * Returns the transition metrics flag.
+     * @return the transition metrics flag.
+     */
+    public boolean metricsFlag()
+    {
+        return (_metricsFlag);
+    } // end of metricsFlag()
+
+    /**
+     * Returns the transition queue flag.
+     * @return the transition queue flag.
+     */
+    public boolean queueFlag()
+    {
+        return (_queueFlag);
+    } // end of queueFlag()
+
     //
     // end of Get methods.
     //-----------------------------------------------------------
@@ -435,6 +488,24 @@ public final class SmcOptions
 
     // Use "@protocol" instead of "@class". Used with -objc only.
     private final boolean _useProtocolFlag;
+
+    // Generate this transition dispatch. Used with -java7 only.
+    private final String _dispatchMode;
+
+    // This flag is true when transitions are posted to a
+    // lock-free mailbox rather than synchronized. Used with
+    // -java and -java7 only.
+    private final boolean _mailboxFlag;
+
+    // This flag is true when transitions are counted in a
+    // statemap.FsmMetrics instance. Used with -java and -java7
+    // only.
+    private final boolean _metricsFlag;
+
+    // This flag is true when transitions issued while a
+    // transition is running are queued in a
+    // statemap.TransitionQueue. Used with -java and -java7 only.
+    private final boolean _queueFlag;
 } // end of class SmcOptions
 
 //
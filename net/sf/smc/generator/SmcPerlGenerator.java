@@ -461,7 +461,7 @@ public final class SmcPerlGenerator
             _source.print('.');
             _source.print(state.getClassName());
             _source.print("', ");
-            _source.print(SmcMap.getNextStateId());
+            _source.print(map.getNextStateId());
             _source.println(");");
         }
 
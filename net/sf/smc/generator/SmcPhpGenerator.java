@@ -494,7 +494,7 @@ public final class SmcPhpGenerator
             _source.print('.');
             _source.print(state.getClassName());
             _source.print("', ");
-            _source.print(SmcMap.getNextStateId());
+            _source.print(map.getNextStateId());
             _source.println(");");
         }
 
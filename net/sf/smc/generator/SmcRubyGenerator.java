@@ -484,7 +484,7 @@ public final class SmcRubyGenerator
             _source.print('.');
             _source.print(state.getClassName());
             _source.print("', ");
-            _source.print(SmcMap.getNextStateId());
+            _source.print(map.getNextStateId());
             _source.println(").freeze");
         }
 
@@ -511,7 +511,7 @@ public final class SmcScalaGenerator
             _source.print('.');
             _source.print(state.getClassName());
             _source.print("\", ");
-            _source.print(SmcMap.getNextStateId());
+            _source.print(map.getNextStateId());
             _source.println(")");
         }
 
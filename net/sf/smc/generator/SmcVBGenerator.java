@@ -858,7 +858,7 @@ public final class SmcVBGenerator
             _source.print('.');
             _source.print(stateName);
             _source.print("\", ");
-            _source.print(SmcMap.getNextStateId());
+            _source.print(map.getNextStateId());
             _source.println(")");
         }
 
@@ -270,6 +270,22 @@ public abstract class SmcElement
      */
     public static final String NIL_STATE = "nil";
 
+    /**
+     * Orders transitions by name and then by parameters. Used
+     * to merge transition lists.
+     */
+    /* package */ static final Comparator<SmcTransition>
+        TRANSITION_COMPARATOR =
+            new Comparator<SmcTransition>()
+            {
+                @Override
+                public int compare(SmcTransition o1,
+                                   SmcTransition o2)
+                {
+                    return(o1.compareTo(o2));
+                }
+            };
+
     /**
      * The SMC transitions fall into four types.
      */
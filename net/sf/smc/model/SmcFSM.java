@@ -37,9 +37,10 @@ package net.sf.smc.model;
 import java.io.PrintStream;
 import java.text.ParseException;
 import java.util.ArrayList;
-import java.util.Comparator;
-import java.util.Iterator;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * The top-level element for a finite state machine model.
@@ -118,6 +119,9 @@ public final class SmcFSM
         _accessLevel = "";
         _headerLine = -1;
         _maps = new ArrayList<SmcMap>();
+        _mapIndex = new HashMap<String, SmcMap>();
+        _mergedTransitions = null;
+        _nextStateId = 0;
     } // end of SmcFSM(String)
 
     //
@@ -291,22 +295,7 @@ public final class SmcFSM
      */
     public SmcMap findMap(final String name)
     {
-        Iterator<SmcMap> mapIt;
-        SmcMap map;
-        SmcMap retval = null;
-
-        for (mapIt = _maps.iterator(), retval = null;
-             mapIt.hasNext() == true && retval == null;
-            )
-        {
-            map = mapIt.next();
-            if (map.getName().compareTo(name) == 0)
-            {
-                retval = map;
-            }
-        }
-
-        return (retval);
+        return (_mapIndex.get(name));
     } // end of findMap(String)
 
     /**
@@ -319,31 +308,37 @@ public final class SmcFSM
     } // end of getMaps()
 
     /**
-     * Returns the list of all known transitions for all maps.
+     * Returns the list of all known transitions for all maps,
+     * ordered by name and parameters. The list is computed once
+     * and then re-used until a map, state or transition is
+     * added. The returned list may not be modified.
      * @return the list of all known transitions for all maps.
      */
     public List<SmcTransition> getTransitions()
     {
-        final Comparator<SmcTransition> comparator =
-            new Comparator<SmcTransition>()
-            {
-                public int compare(SmcTransition o1,
-                                   SmcTransition o2)
-                {
-                    return(o1.compareTo(o2));
-                }
-            };
-        List<SmcTransition> retval =
-            new ArrayList<SmcTransition>();
+        List<SmcTransition> transitions;
 
-        for (SmcMap map: _maps)
+        if (_mergedTransitions == null)
         {
-            // Merge the new transitions into the current set.
-            retval =
-                merge(map.getTransitions(), retval, comparator);
+            transitions = new ArrayList<SmcTransition>();
+
+            for (SmcMap map: _maps)
+            {
+                // Merge the new transitions into the current
+                // set. merge() sorts its arguments, so pass it
+                // a copy of the map's unmodifiable list.
+                transitions =
+                    merge(new ArrayList<SmcTransition>(
+                              map.getTransitions()),
+                          transitions,
+                          TRANSITION_COMPARATOR);
+            }
+
+            _mergedTransitions =
+                Collections.unmodifiableList(transitions);
         }
 
-        return (retval);
+        return (_mergedTransitions);
     } // end of getTransitions()
 
     public boolean hasEntryActions()
@@ -378,6 +373,18 @@ public final class SmcFSM
         return false;
     } // end of hasExitActions()
 
+    /**
+     * Returns the next unique state identifier. Identifiers are
+     * unique across this FSM's maps and start at zero for each
+     * FSM. So the identifiers do not depend on what other FSMs
+     * were compiled before this one or at the same time.
+     * @return the next unique state identifier.
+     */
+    public int getNextStateId()
+    {
+        return (_nextStateId++);
+    } // end of getNextStateId()
+
     //
     // end of Get methods.
     //-----------------------------------------------------------
@@ -546,9 +553,29 @@ public final class SmcFSM
     public void addMap(SmcMap map)
     {
         _maps.add(map);
+        _mergedTransitions = null;
+
+        // If a map name is repeated, then the first map is
+        // found.
+        if (_mapIndex.containsKey(map.getName()) == false)
+        {
+            _mapIndex.put(map.getName(), map);
+        }
+
         return;
     } // end of addMap(SmcMap)
 
+    /**
+     * Discards the merged transition list returned by
+     * {@link #getTransitions()}. Called when a state or
+     * transition is added to one of the FSM's maps.
+     */
+    /* package */ void clearTransitions()
+    {
+        _mergedTransitions = null;
+        return;
+    } // end of clearTransitions()
+
     //
     // end of Set methods.
     //-----------------------------------------------------------
@@ -641,6 +668,17 @@ public final class SmcFSM
 
     // The state maps.
     private List<SmcMap> _maps;
+
+    // The state maps indexed by name. Maintained by addMap().
+    private final Map<String, SmcMap> _mapIndex;
+
+    // The merged transition list returned by getTransitions().
+    // Set to null when the list must be re-computed.
+    private List<SmcTransition> _mergedTransitions;
+
+    // Use this to generate unique state IDs across this FSM's
+    // maps.
+    private int _nextStateId;
 } // end of class SmcFSM
 
 //
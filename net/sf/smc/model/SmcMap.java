@@ -36,9 +36,9 @@ package net.sf.smc.model;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Comparator;
-import java.util.Iterator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * SMC has states grouped into maps. This class contains
@@ -78,6 +78,8 @@ public final class SmcMap
         _fsm = fsm;
         _defaultState = null;
         _states = new ArrayList<SmcState>();
+        _stateIndex = new HashMap<String, SmcState>();
+        _mergedTransitions = null;
     } // end of SmcMap(String, int, SmcFSM)
 
     //
@@ -136,23 +138,7 @@ public final class SmcMap
      */
     public boolean findState(final SmcState state)
     {
-        SmcState state2;
-        Iterator<SmcState> it;
-        boolean retval;
-
-        for (it = _states.iterator(), retval = false;
-             it.hasNext() == true && retval == false;
-            )
-        {
-            state2 = it.next();
-            if (state.getInstanceName().equals(
-                    state2.getInstanceName()) == true)
-            {
-                retval = true;
-            }
-        }
-
-        return(retval);
+        return (_stateIndex.containsKey(state.getInstanceName()));
     } // end of findState(SmcState)
 
     /**
@@ -164,8 +150,6 @@ public final class SmcMap
      */
     public boolean isKnownState(final String stateName)
     {
-        SmcState state;
-        Iterator<SmcState> it;
         boolean retval;
 
         if (stateName.compareToIgnoreCase("default" ) == 0 )
@@ -174,16 +158,9 @@ public final class SmcMap
         }
         else
         {
-            for (it = _states.iterator(), retval = false;
-                 it.hasNext() == true && retval == false;
-                )
-            {
-                state = it.next();
-                retval =
-                    stateName.equals(state.getInstanceName());
-            }
+            retval = _stateIndex.containsKey(stateName);
         }
-        
+
         return (retval);
     } // end of isKnownState(String)
 
@@ -227,11 +204,26 @@ public final class SmcMap
 
     /**
      * Returns all the transitions from all the states in this
-     * map.
+     * map, ordered by name and parameters. The list is computed
+     * once and then re-used until a state or transition is
+     * added to this map. The returned list may not be modified.
      * @return all the transitions from all the states in this
      * map.
      */
     public List<SmcTransition> getTransitions()
+    {
+        if (_mergedTransitions == null)
+        {
+            _mergedTransitions =
+                Collections.unmodifiableList(mergeTransitions());
+        }
+
+        return (_mergedTransitions);
+    } // end of getTransitions()
+
+    // Merges the states' transition lists into one list.
+    // Note: this sorts each state's transition list in place.
+    private List<SmcTransition> mergeTransitions()
     {
         List<SmcTransition> transList;
         List<SmcTransition> retval;
@@ -256,20 +248,11 @@ public final class SmcMap
         {
             transList = state.getTransitions();
             retval =
-                merge(transList,
-                      retval,
-                      new Comparator<SmcTransition>()
-                      {
-                          public int compare(SmcTransition o1,
-                                             SmcTransition o2)
-                          {
-                              return(o1.compareTo(o2));
-                          }
-                      });
+                merge(transList, retval, TRANSITION_COMPARATOR);
         }
 
         return(retval);
-    } // end of getTransitions()
+    } // end of mergeTransitions()
 
     /**
      * Returns the list of transitions that do not appear in the
@@ -293,15 +276,7 @@ public final class SmcMap
             definedDefaultTransitions =
                     _defaultState.getTransitions();
             Collections.sort(
-                definedDefaultTransitions,
-                new Comparator<SmcTransition>()
-                {
-                    public int compare(SmcTransition o1,
-                                       SmcTransition o2)
-                    {
-                        return(o1.compareTo(o2));
-                    }
-                });
+                definedDefaultTransitions, TRANSITION_COMPARATOR);
         }
 
         // Make a transitions list in all the states.
@@ -373,12 +348,14 @@ public final class SmcMap
     } // end of hasExitActions()
 
     /**
-     * Returns the next unique state identifier.
+     * Returns the next unique state identifier. The identifier
+     * is unique within this map's FSM.
      * @return the next unique state identifier.
+     * @see SmcFSM#getNextStateId()
      */
-    public static int getNextStateId()
+    public int getNextStateId()
     {
-        return (_stateId++);
+        return (_fsm.getNextStateId());
     } // end of getNextStateId()
 
     //
@@ -395,6 +372,8 @@ public final class SmcMap
      */
     public void addState(SmcState state)
     {
+        clearTransitions();
+
         if (state.isDefaultState() == true)
         {
             _defaultState = state;
@@ -402,11 +381,37 @@ public final class SmcMap
         else
         {
             _states.add(state);
+
+            // If a state name is repeated, then the first state
+            // is found.
+            if (_stateIndex.containsKey(
+                    state.getInstanceName()) == false)
+            {
+                _stateIndex.put(state.getInstanceName(), state);
+            }
         }
 
         return;
     } // end of addState(SmcStatus)
 
+    /**
+     * Discards the merged transition list returned by
+     * {@link #getTransitions()} and the FSM's merged list.
+     * Called when a transition is added to one of this map's
+     * states.
+     */
+    /* package */ void clearTransitions()
+    {
+        _mergedTransitions = null;
+
+        if (_fsm != null)
+        {
+            _fsm.clearTransitions();
+        }
+
+        return;
+    } // end of clearTransitions()
+
     //
     // end of Set methods.
     //-----------------------------------------------------------
@@ -442,13 +447,13 @@ public final class SmcMap
     private List<SmcState> _states;
     private SmcState _defaultState;
 
-    //-----------------------------------------------------------
-    // Statics.
-    //
+    // The states indexed by instance name. Maintained by
+    // addState().
+    private final Map<String, SmcState> _stateIndex;
 
-    // Use this to generate unique state IDs. Must use a static
-    // integer to guarantee uniqueness across multiple maps.
-    private static int _stateId = 0;
+    // The merged transition list returned by getTransitions().
+    // Set to null when the list must be re-computed.
+    private List<SmcTransition> _mergedTransitions;
 } // end of class SmcMap
 
 //
@@ -37,8 +37,9 @@ package net.sf.smc.model;
 import java.io.PrintStream;
 import java.text.ParseException;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Contains the entry action, exit action and transition lists.
@@ -90,6 +91,8 @@ public final class SmcState
         _entryActions = null;
         _exitActions = null;
         _transitions = new ArrayList<SmcTransition>();
+        _transitionIndex =
+            new HashMap<String, List<SmcTransition>>();
     } // end of SmcState(String, int, SmcMap)
 
     //
@@ -206,19 +209,19 @@ public final class SmcState
         findTransition(String name,
                        List<SmcParameter> parameters)
     {
-        Iterator<SmcTransition> transIt;
-        SmcTransition transition;
-        SmcTransition retval;
+        final List<SmcTransition> transitions =
+            _transitionIndex.get(name);
+        SmcTransition retval = null;
 
-        for (transIt = _transitions.iterator(), retval = null;
-             transIt.hasNext() == true && retval == null;
-            )
+        if (transitions != null)
         {
-            transition = transIt.next();
-            if (name.equals(transition.getName()) == true &&
-                transition.compareTo(name, parameters) == 0)
+            for (SmcTransition transition: transitions)
             {
-                retval = transition;
+                if (transition.compareTo(name, parameters) == 0)
+                {
+                    retval = transition;
+                    break;
+                }
             }
         }
 
@@ -237,9 +240,12 @@ public final class SmcState
         findGuard(String name,
                   String condition)
     {
-        for (SmcTransition transition: _transitions)
+        final List<SmcTransition> transitions =
+            _transitionIndex.get(name);
+
+        if (transitions != null)
         {
-            if (name.equals(transition.getName()) == true)
+            for (SmcTransition transition: transitions)
             {
                 for (SmcGuard guard: transition.getGuards())
                 {
@@ -259,26 +265,24 @@ public final class SmcState
      */
     public boolean callDefault(String name)
     {
-        for (SmcTransition transition: _transitions)
+        final List<SmcTransition> transitions =
+            _transitionIndex.get(name);
+
+        // Only the first transition with this name is checked.
+        if (transitions != null)
         {
-            if (name.equals(transition.getName()) == true)
+            for (SmcGuard guard: transitions.get(0).getGuards())
             {
-                for (SmcGuard guard: transition.getGuards())
+                if (guard.getCondition().equals("") == true)
                 {
-                    if (guard.getCondition().equals("") == true)
-                    {
-                        return false;
-                    }
+                    return false;
                 }
-                return true;
             }
+            return true;
         }
-        for (SmcTransition transition: _transitions)
+        if (_transitionIndex.containsKey("Default") == true)
         {
-            if (transition.getName().equals("Default") == true)
-            {
-                return false;
-            }
+            return false;
         }
         return true;
     } // end of callDefault(String)
@@ -317,11 +321,26 @@ public final class SmcState
      */
     public void addTransition(SmcTransition transition)
     {
+        List<SmcTransition> transitions =
+            _transitionIndex.get(transition.getName());
+
+        if (transitions == null)
+        {
+            transitions = new ArrayList<SmcTransition>(1);
+            _transitionIndex.put(transition.getName(), transitions);
+        }
+
         // Add the transition only if it is not already in the
         // list.
-        if (_transitions.contains(transition) == false)
+        if (transitions.contains(transition) == false)
         {
+            transitions.add(transition);
             _transitions.add(transition);
+
+            if (_map != null)
+            {
+                _map.clearTransitions();
+            }
         }
 
         return;
@@ -384,6 +403,10 @@ public final class SmcState
     private List<SmcAction> _exitActions;
     private List<SmcTransition> _transitions;
 
+    // The transitions indexed by name. Each list is in
+    // _transitions order. Maintained by addTransition().
+    private final Map<String, List<SmcTransition>> _transitionIndex;
+
     //-----------------------------------------------------------
     // Constants.
     //
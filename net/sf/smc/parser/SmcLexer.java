@@ -35,10 +35,18 @@
 package net.sf.smc.parser;
 
 import java.io.EOFException;
+import java.io.FileInputStream;
 import java.io.InputStream;
 import java.io.IOException;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
 import java.util.Deque;
 import java.util.HashMap;
 import java.util.LinkedList;
@@ -58,7 +66,6 @@ import java.util.Map;
     /* package */ SmcLexer(final InputStream stream,
                            final boolean debugFlag)
     {
-        _stream = stream;
         _token = new Token();
         _tokenBuffer = new StringBuilder();
         _lineNumber = 1;
@@ -66,6 +73,38 @@ import java.util.Map;
         _bufferSize = 0;
         _readIndex = 0;
 
+        // SMC source files are UTF-8 encoded. Malformed input is
+        // reported to decodeChars() which reads those bytes as
+        // ISO-8859-1, so that a Latin-1 file still parses as it
+        // did when each byte was cast to a character.
+        _decoder =
+            StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+        _endOfInput = false;
+        _endOfDecode = false;
+
+        // A file is mapped into memory in its entirety and
+        // decoded from there. Any other stream is read in bulk
+        // through a channel.
+        _channel = null;
+        _bytes = null;
+        if (stream instanceof FileInputStream)
+        {
+            _bytes = mapFile((FileInputStream) stream);
+        }
+
+        if (_bytes != null)
+        {
+            _endOfInput = true;
+        }
+        else
+        {
+            _channel = Channels.newChannel(stream);
+            _bytes = ByteBuffer.allocate(MAX_BUFFER_LEN);
+            _bytes.flip();
+        }
+
         _lexerFSM = new SmcLexerContext(this);
         _lexerFSM.setDebugFlag(debugFlag);
     } // end of SmcLexer(InputStream, boolean)
@@ -86,9 +125,7 @@ import java.util.Map;
 
     // Return the next token and its token name.
     /* package */ Token nextToken()
-        throws IOException,
-               IllegalAccessException,
-               InvocationTargetException
+        throws IOException
     {
         Token retval;
 
@@ -194,16 +231,15 @@ import java.util.Map;
         return;
     } // end of addToToken()
 
-    // DEBUG
-    /* package */ void outputChar()
+    // An unknown character has been detected. The character
+    // code is reported since the character may not print.
+    /* package */ void badCharacter()
     {
-        System.out.println();
-        System.out.print("Unknown character: 0x");
-        System.out.println(
+        badToken(
+            "Unknown character 0x" +
             Integer.toHexString((int) _currentChar));
-
         return;
-    } // end of outputChar()
+    } // end of badCharacter()
 
     /* package */ void addToToken(final String s)
     {
@@ -299,8 +335,6 @@ import java.util.Map;
         // end-of-file is reached.
         try
         {
-            Object[] args = new Object[0];
-
             _stopFlag = false;
             while (_stopFlag == false)
             {
@@ -310,7 +344,7 @@ import java.util.Map;
                 // than 127, then issue a unicode transition
                 // and let the lexer FSM decide whether it is
                 // acceptable or not.
-                if (_currentChar >= _TransMethod.length)
+                if (_currentChar >= MAX_ASCII_CHAR)
                 {
                     _lexerFSM.unicode();
                 }
@@ -325,8 +359,7 @@ import java.util.Map;
                     }
 
                     // Translate character into a transition.
-                    _TransMethod[_currentChar].invoke(_lexerFSM,
-                                                      args);
+                    charTransition(_CharTransition[_currentChar]);
                 }
             }
         }
@@ -337,21 +370,121 @@ import java.util.Map;
             _token.setType(DONE_SUCCESS);
             _token.setValue("");
         }
-        catch (InvocationTargetException invokex)
+        catch (IOException ioex)
         {
-            badToken("Unknown token");
-        }
-        catch (Exception jex)
-        {
-            badToken(jex.getMessage() +
+            badToken(ioex.getMessage() +
                      " (token: " +
                      _tokenBuffer.toString() +
                      ")");
         }
+        // The lexer FSM throws a runtime exception when the
+        // character is not valid in the current state.
+        catch (RuntimeException jex)
+        {
+            badToken("Unknown token");
+        }
 
         return(_token);
     } // end of nextCookedToken()
 
+    // Issues the lexer FSM transition for the given character
+    // transition.
+    private void charTransition(final int transition)
+    {
+        switch (transition)
+        {
+            case WHITESPACE_TRANS:
+                _lexerFSM.whitespace();
+                break;
+
+            case EOL_TRANS:
+                _lexerFSM.EOL();
+                break;
+
+            case ALPHA_TRANS:
+                _lexerFSM.alpha();
+                break;
+
+            case DIGIT_TRANS:
+                _lexerFSM.digit();
+                break;
+
+            case PERCENT_TRANS:
+                _lexerFSM.percent();
+                break;
+
+            case LEFT_PAREN_TRANS:
+                _lexerFSM.left_paren();
+                break;
+
+            case RIGHT_PAREN_TRANS:
+                _lexerFSM.right_paren();
+                break;
+
+            case ASTERISK_TRANS:
+                _lexerFSM.asterisk();
+                break;
+
+            case COMMA_TRANS:
+                _lexerFSM.comma();
+                break;
+
+            case PERIOD_TRANS:
+                _lexerFSM.period();
+                break;
+
+            case SLASH_TRANS:
+                _lexerFSM.slash();
+                break;
+
+            case COLON_TRANS:
+                _lexerFSM.colon();
+                break;
+
+            case SEMICOLON_TRANS:
+                _lexerFSM.semicolon();
+                break;
+
+            case LEFT_BRACKET_TRANS:
+                _lexerFSM.left_bracket();
+                break;
+
+            case UNDERSCORE_TRANS:
+                _lexerFSM.underscore();
+                break;
+
+            case LEFT_BRACE_TRANS:
+                _lexerFSM.left_brace();
+                break;
+
+            case RIGHT_BRACE_TRANS:
+                _lexerFSM.right_brace();
+                break;
+
+            case EQUAL_TRANS:
+                _lexerFSM.equal();
+                break;
+
+            case LT_TRANS:
+                _lexerFSM.lt();
+                break;
+
+            case GT_TRANS:
+                _lexerFSM.gt();
+                break;
+
+            case DOLLAR_TRANS:
+                _lexerFSM.dollar();
+                break;
+
+            default:
+                _lexerFSM.unicode();
+                break;
+        }
+
+        return;
+    } // end of charTransition(int)
+
     // Keep reading in characters until the close character is
     // found.
     private Token nextRawToken()
@@ -671,70 +804,56 @@ import java.util.Map;
         return (_token);
     } // end of nextParamTypeToken()
 
-    // Read the next character. Actually, this routine reads in
-    // a large buffer and data returns the next character from
+    // Read the next character. Actually, this routine decodes
+    // a large buffer and returns the next character from
     // there. The idea is to do a few large, efficient reads and
     // make single character reads to be array retrievals.
     // NOTE: this lexer backs up at most two characters. So
-    // when reading in a new buffer, copy the last two characters
-    // to the first two bytes and read in the next maximum number
-    // of bytes.
+    // when decoding a new buffer, copy the last two characters
+    // to the first two characters and decode the next maximum
+    // number of characters after them.
     private char readChar()
         throws IOException,
                EOFException
     {
         char retval;
 
-        // If we are at the end of the buffer, read the
+        // If we are at the end of the buffer, decode the
         // next buffer-full.
         if (_readIndex == _bufferSize)
         {
-            int index;
             int size;
             int offset = 0;
-            int c = 0;
 
-            // Copy the last two bytes to the first two bytes.
-            // Why? Because the lexer can back up to two bytes.
-            if (_bufferSize > 2)
+            // Copy the last two characters to the first two
+            // characters. Why? Because the lexer can back up
+            // two characters.
+            if (_bufferSize > 1)
             {
                 offset = 2;
 
                 _readBuffer[0] = _readBuffer[_bufferSize - 2];
                 _readBuffer[1] = _readBuffer[_bufferSize - 1];
             }
-            else if (_bufferSize > 1)
+            else if (_bufferSize > 0)
             {
                 offset = 1;
 
                 _readBuffer[0] = _readBuffer[_bufferSize - 1];
             }
 
-            for (index = offset, size = 0;
-                 size <  MAX_BUFFER_LEN;
-                 ++index, ++size)
-            {
-                c = _stream.read();
-                if (c < 0)
-                {
-                    break;
-                }
-                else
-                {
-                    _readBuffer[index] = (char) c;
-                }
-            }
+            size = decodeChars(offset);
 
             // End of file has been reached.
-            if (size == 0 && c < 0)
+            if (size == 0)
             {
                 _bufferSize = 0;
                 throw (new EOFException("end-of-file reached"));
             }
             else
             {
-                // The buffer's true size is the number of bytes
-                // read plus the offset.
+                // The buffer's true size is the number of
+                // characters decoded plus the offset.
                 _bufferSize = size + offset;
                 _readIndex = offset;
             }
@@ -746,6 +865,92 @@ import java.util.Map;
         return(retval);
     } // end of readChar()
 
+    // Decodes up to MAX_BUFFER_LEN characters into the read
+    // buffer starting at the given offset. Returns the number
+    // of characters decoded. Returns zero only when the input
+    // is exhausted. Bytes which are not valid UTF-8 are decoded
+    // as ISO-8859-1 characters.
+    private int decodeChars(final int offset)
+        throws IOException
+    {
+        CharBuffer chars =
+            CharBuffer.wrap(_readBuffer, offset, MAX_BUFFER_LEN);
+        CoderResult result;
+        int index;
+
+        // Keep going until at least one character is decoded.
+        // A multi-byte character may be split across two reads.
+        while (chars.position() == offset &&
+               _endOfDecode == false)
+        {
+            if (_endOfInput == false)
+            {
+                // Keep the undecoded bytes and read in more
+                // after them.
+                _bytes.compact();
+                if (_channel.read(_bytes) < 0)
+                {
+                    _endOfInput = true;
+                }
+                _bytes.flip();
+            }
+
+            // Decoding stops when the bytes run out (underflow),
+            // the characters fill up (overflow) or the bytes are
+            // not valid UTF-8. Each such byte becomes the
+            // ISO-8859-1 character with the same value and
+            // decoding resumes after it. If there is no room for
+            // those characters, then they are decoded by the next
+            // call.
+            result = _decoder.decode(_bytes, chars, _endOfInput);
+            while (result.isError() == true &&
+                   chars.remaining() >= result.length())
+            {
+                for (index = 0; index < result.length(); ++index)
+                {
+                    chars.put((char) (_bytes.get() & 0xff));
+                }
+
+                result =
+                    _decoder.decode(_bytes, chars, _endOfInput);
+            }
+
+            if (result.isUnderflow() == true &&
+                _endOfInput == true)
+            {
+                _decoder.flush(chars);
+                _endOfDecode = true;
+            }
+        }
+
+        return (chars.position() - offset);
+    } // end of decodeChars(int)
+
+    // Returns the file's remaining contents mapped into memory.
+    // Returns null if the file cannot be mapped, in which case
+    // the file is read through a channel instead.
+    private static ByteBuffer mapFile(final FileInputStream stream)
+    {
+        FileChannel channel = stream.getChannel();
+        ByteBuffer retval;
+
+        try
+        {
+            long position = channel.position();
+
+            retval =
+                channel.map(FileChannel.MapMode.READ_ONLY,
+                            position,
+                            channel.size() - position);
+        }
+        catch (IOException ioex)
+        {
+            retval = null;
+        }
+
+        return (retval);
+    } // end of mapFile(FileInputStream)
+
 //---------------------------------------------------------------
 // Member Data
 //
@@ -753,8 +958,22 @@ import java.util.Map;
     // The lexer's state map.
     private SmcLexerContext _lexerFSM;
 
-    // The file being parsed.
-    private InputStream _stream;
+    // Read the file being parsed through this channel. Set to
+    // null when the file is mapped into memory.
+    private ReadableByteChannel _channel;
+
+    // The file bytes not yet decoded. Either the entire mapped
+    // file or the last block read from _channel.
+    private ByteBuffer _bytes;
+
+    // Decodes _bytes into _readBuffer.
+    private final CharsetDecoder _decoder;
+
+    // Set to true when all the file bytes are in _bytes.
+    private boolean _endOfInput;
+
+    // Set to true when all the file bytes are decoded.
+    private boolean _endOfDecode;
 
     // Specifies whether this lexer is in raw or cooked mode.
     private int _mode;
@@ -823,19 +1042,19 @@ import java.util.Map;
 
     // Create an array which maps ASCII characters to
     // transitions.
-    private static Method[] _TransMethod;
+    private static int[] _CharTransition;
 
     //-----------------------------------------------------------
     // Constants.
     //
 
-    // Read in this many bytes at a time into the buffer.
+    // Decode this many characters at a time into the buffer.
     private static final int MAX_BUFFER_LEN = 4096;
 
     // Read into the input buffer starting at this offset.
     private static final int BUFFER_OFFSET = 2;
 
-    // The read buffer's allocated size in bytes.
+    // The read buffer's allocated size in characters.
     private static final int READ_BUFFER_LEN =
         MAX_BUFFER_LEN + BUFFER_OFFSET;
 
@@ -910,6 +1129,31 @@ import java.util.Map;
     private static final int MIN_ASCII_CHAR = 0;
     private static final int MAX_ASCII_CHAR = 128;
 
+    // The lexer FSM character transitions. _CharTransition maps
+    // each ASCII character to one of these values.
+    private static final int UNICODE_TRANS      = 0;
+    private static final int WHITESPACE_TRANS   = 1;
+    private static final int EOL_TRANS          = 2;
+    private static final int ALPHA_TRANS        = 3;
+    private static final int DIGIT_TRANS        = 4;
+    private static final int PERCENT_TRANS      = 5;
+    private static final int LEFT_PAREN_TRANS   = 6;
+    private static final int RIGHT_PAREN_TRANS  = 7;
+    private static final int ASTERISK_TRANS     = 8;
+    private static final int COMMA_TRANS        = 9;
+    private static final int PERIOD_TRANS       = 10;
+    private static final int SLASH_TRANS        = 11;
+    private static final int COLON_TRANS        = 12;
+    private static final int SEMICOLON_TRANS    = 13;
+    private static final int LEFT_BRACKET_TRANS = 14;
+    private static final int UNDERSCORE_TRANS   = 15;
+    private static final int LEFT_BRACE_TRANS   = 16;
+    private static final int RIGHT_BRACE_TRANS  = 17;
+    private static final int EQUAL_TRANS        = 18;
+    private static final int LT_TRANS           = 19;
+    private static final int GT_TRANS           = 20;
+    private static final int DOLLAR_TRANS       = 21;
+
     // New line character.
     private static final int NEW_LINE = 10;
 
@@ -918,7 +1162,7 @@ import java.util.Map;
 
     static
     {
-        String transName = "<not set>";
+        int i;
 
         _TypeName = new String[TOKEN_COUNT];
         _TypeName[SmcLexer.TOKEN_NOT_SET] = "TOKEN_NOT_SET";
@@ -985,173 +1229,62 @@ import java.util.Map;
         _PercentKeywordMap.put("%declare", SmcLexer.DECLARE);
         _PercentKeywordMap.put("%access", SmcLexer.ACCESS);
 
-        // Set up the transition map.
-        _TransMethod = new Method[SmcLexer.MAX_ASCII_CHAR];
-
-        try
+        // Set up the character |-> transition map. All
+        // characters are initially set to the unicode transition
+        // (zero).
+        _CharTransition = new int[SmcLexer.MAX_ASCII_CHAR];
+
+        // Whitespace characters.
+        _CharTransition[ 9] = WHITESPACE_TRANS;
+        _CharTransition[11] = WHITESPACE_TRANS;
+        _CharTransition[12] = WHITESPACE_TRANS;
+        _CharTransition[28] = WHITESPACE_TRANS;
+        _CharTransition[29] = WHITESPACE_TRANS;
+        _CharTransition[30] = WHITESPACE_TRANS;
+        _CharTransition[31] = WHITESPACE_TRANS;
+        _CharTransition[32] = WHITESPACE_TRANS;
+
+        // New line characters.
+        _CharTransition[10] = EOL_TRANS;
+        _CharTransition[13] = EOL_TRANS;
+
+        // Alphabetic characters.
+        for (i = 'a'; i <= 'z'; ++i)
         {
-            int i;
-            Class<SmcLexerContext> fsmClass =
-                SmcLexerContext.class;
-            Class[] paramTypes = new Class[0];
-            Method unicode;
-            Method whitespace;
-            Method alpha;
-            Method digit;
-
-            transName = "unicode";
-            unicode =
-                fsmClass.getDeclaredMethod(transName,
-                                           paramTypes);
-
-            transName = "whitespace";
-            whitespace =
-                fsmClass.getDeclaredMethod(transName,
-                                           paramTypes);
-
-            transName = "alpha";
-            alpha =
-                fsmClass.getDeclaredMethod(transName,
-                                           paramTypes);
-
-            transName = "digit";
-            digit =
-                fsmClass.getDeclaredMethod(transName,
-                                           paramTypes);
-
-            // Set all transitions to unicode and then set known
-            // characters to other transitions.
-            for (i = MIN_ASCII_CHAR; i < MAX_ASCII_CHAR; ++i)
-            {
-                _TransMethod[i] = unicode;
-            }
-
-            // Whitespace characters.
-            _TransMethod[ 9] = whitespace;
-            _TransMethod[11] = whitespace;
-            _TransMethod[12] = whitespace;
-            _TransMethod[28] = whitespace;
-            _TransMethod[29] = whitespace;
-            _TransMethod[30] = whitespace;
-            _TransMethod[31] = whitespace;
-            _TransMethod[32] = whitespace;
-
-            // New line characters.
-            _TransMethod[10] =
-                fsmClass.getDeclaredMethod("EOL", paramTypes);
-            _TransMethod[13] = _TransMethod[10];
-
-            // Alphabetic characters.
-            for (i = 'a'; i <= 'z'; ++i)
-            {
-                _TransMethod[i] = alpha;
-            }
-
-            for (i = 'A'; i <= 'Z'; ++i)
-            {
-                _TransMethod[i] = alpha;
-            }
-
-            // Digits
-            for (i = '0'; i <= '9'; ++i)
-            {
-                _TransMethod[i] = digit;
-            }
-
-            // Visible characters.
-            transName = "percent";
-            _TransMethod['%'] =
-                fsmClass.getDeclaredMethod(transName,
-                                           paramTypes);
-            transName = "left_paren";
-            _TransMethod['('] =
-                fsmClass.getDeclaredMethod(transName,
-                                           paramTypes);
-            transName = "right_paren";
-            _TransMethod[')'] =
-                fsmClass.getDeclaredMethod(transName,
-                                           paramTypes);
-            transName = "asterisk";
-            _TransMethod['*'] =
-                fsmClass.getDeclaredMethod(transName,
-                                           paramTypes);
-            transName = "comma";
-            _TransMethod[','] =
-                fsmClass.getDeclaredMethod(transName,
-                                           paramTypes);
-            transName = "period";
-            _TransMethod['.'] =
-                fsmClass.getDeclaredMethod(transName,
-                                           paramTypes);
-            transName = "slash";
-            _TransMethod['/'] =
-                fsmClass.getDeclaredMethod(transName,
-                                           paramTypes);
-            transName = "colon";
-            _TransMethod[':'] =
-                fsmClass.getDeclaredMethod(transName,
-                                           paramTypes);
-            transName = "semicolon";
-            _TransMethod[';'] =
-                fsmClass.getDeclaredMethod(transName,
-                                           paramTypes);
-            transName = "left_bracket";
-            _TransMethod['['] =
-                fsmClass.getDeclaredMethod(transName,
-                                           paramTypes);
-            // Right bracket is not needed as it is consumed by
-            // raw text processing.
-            transName = "underscore";
-            _TransMethod['_'] =
-                fsmClass.getDeclaredMethod(transName,
-                                           paramTypes);
-            transName = "left_brace";
-            _TransMethod['{'] =
-                fsmClass.getDeclaredMethod(transName,
-                                           paramTypes);
-            transName = "right_brace";
-            _TransMethod['}'] =
-                fsmClass.getDeclaredMethod(transName,
-                                           paramTypes);
-
-            transName = "equal";
-            _TransMethod['='] =
-                fsmClass.getDeclaredMethod(transName,
-                                           paramTypes);
-
-            transName = "lt";
-            _TransMethod['<'] =
-                fsmClass.getDeclaredMethod(transName,
-                                           paramTypes);
-
-            transName = "gt";
-            _TransMethod['>'] =
-                fsmClass.getDeclaredMethod(transName,
-                                           paramTypes);
-
-            transName = "dollar";
-            _TransMethod['$'] =
-                fsmClass.getDeclaredMethod(transName,
-                                           paramTypes);
+            _CharTransition[i] = ALPHA_TRANS;
         }
-        catch (NoSuchMethodException ex1)
+
+        for (i = 'A'; i <= 'Z'; ++i)
         {
-            System.err.println(
-                "INITIALIZATION ERROR! No such method as " +
-                "SmcLexerContext." +
-                transName +
-                ".");
-            System.exit(1);
+            _CharTransition[i] = ALPHA_TRANS;
         }
-        catch (SecurityException ex2)
+
+        // Digits
+        for (i = '0'; i <= '9'; ++i)
         {
-            System.err.println(
-                "INITIALIZATION ERROR! Not allowed to access " +
-                "SmcLexerContext." +
-                transName +
-                ".");
-            System.exit(1);
+            _CharTransition[i] = DIGIT_TRANS;
         }
+
+        // Visible characters.
+        _CharTransition['%'] = PERCENT_TRANS;
+        _CharTransition['('] = LEFT_PAREN_TRANS;
+        _CharTransition[')'] = RIGHT_PAREN_TRANS;
+        _CharTransition['*'] = ASTERISK_TRANS;
+        _CharTransition[','] = COMMA_TRANS;
+        _CharTransition['.'] = PERIOD_TRANS;
+        _CharTransition['/'] = SLASH_TRANS;
+        _CharTransition[':'] = COLON_TRANS;
+        _CharTransition[';'] = SEMICOLON_TRANS;
+        _CharTransition['['] = LEFT_BRACKET_TRANS;
+        // Right bracket is not needed as it is consumed by
+        // raw text processing.
+        _CharTransition['_'] = UNDERSCORE_TRANS;
+        _CharTransition['{'] = LEFT_BRACE_TRANS;
+        _CharTransition['}'] = RIGHT_BRACE_TRANS;
+        _CharTransition['='] = EQUAL_TRANS;
+        _CharTransition['<'] = LT_TRANS;
+        _CharTransition['>'] = GT_TRANS;
+        _CharTransition['$'] = DOLLAR_TRANS;
     } // end of static
 
 //---------------------------------------------------------------
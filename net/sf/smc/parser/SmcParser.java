@@ -38,7 +38,6 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.PrintStream;
 import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -119,7 +118,7 @@ public final class SmcParser
      * @exception IOException
      * if there is a problem reading the input stream.
      * @exception IllegalAccessException
-     * if there is a problem accessing the input stream.
+     * no longer thrown; retained for source compatibility.
      * @exception InvocationTargetException
      * if there is a parse error.
      */
@@ -130,7 +129,6 @@ public final class SmcParser
     {
         SmcLexer.Token token = null;
         int tokenType;
-        Object[] params = new Object[1];
 
         _mapInProgress = null;
         _stateInProgress = null;
@@ -156,45 +154,52 @@ public final class SmcParser
 
         // Read all the tokens into a list.
         tokenType = SmcLexer.TOKEN_NOT_SET;
-        while (_quitFlag == false &&
-               (token = _lexer.nextToken()) != null)
+        try
         {
-            tokenType = token.getType();
-            _lineNumber = token.getLineNumber();
-
-            // Is the token type valid?
-            if (tokenType <= SmcLexer.TOKEN_NOT_SET &&
-                tokenType >= SmcLexer.TOKEN_COUNT)
+            while (_quitFlag == false &&
+                   (token = _lexer.nextToken()) != null)
             {
-                // No.
-                error("Undefined token type (" +
-                      Integer.toString(tokenType) +
-                      ")",
-                      token.getLineNumber());
+                tokenType = token.getType();
+                _lineNumber = token.getLineNumber();
 
-                _quitFlag = true;
-                _parseStatus = false;
-            }
-            // If the last token is a failure, don't go on.
-            else if (tokenType == SmcLexer.DONE_FAILED)
-            {
-                _quitFlag = true;
-                _parseStatus = false;
-                error(token.getValue(), token.getLineNumber());
-            }
-            // If the last token is success, don't go on either.
-            else if (tokenType == SmcLexer.DONE_SUCCESS)
-            {
-                _quitFlag = true;
-            }
-            else
-            {
-                // Issue a transition for this token.
-                params[0] = token;
-                _TransMethod[tokenType].invoke(_parserFSM,
-                                                params);
+                // Is the token type valid?
+                if (tokenType <= SmcLexer.TOKEN_NOT_SET &&
+                    tokenType >= SmcLexer.TOKEN_COUNT)
+                {
+                    // No.
+                    error("Undefined token type (" +
+                          Integer.toString(tokenType) +
+                          ")",
+                          token.getLineNumber());
+
+                    _quitFlag = true;
+                    _parseStatus = false;
+                }
+                // If the last token is a failure, don't go on.
+                else if (tokenType == SmcLexer.DONE_FAILED)
+                {
+                    _quitFlag = true;
+                    _parseStatus = false;
+                    error(token.getValue(), token.getLineNumber());
+                }
+                // If the last token is success, don't go on either.
+                else if (tokenType == SmcLexer.DONE_SUCCESS)
+                {
+                    _quitFlag = true;
+                }
+                else
+                {
+                    // Issue a transition for this token.
+                    tokenTransition(tokenType, token);
+                }
             }
         }
+        // The parser FSM throws a runtime exception on a parse
+        // error it cannot recover from.
+        catch (RuntimeException jex)
+        {
+            throw (new InvocationTargetException(jex));
+        }
 
         // If the parse failed, delete the tree.
         if (_parseStatus == false)
@@ -205,6 +210,147 @@ public final class SmcParser
         return (_fsm);
     } // end of parse()
 
+    // Issues the parser FSM transition for the given token
+    // type.
+    private void tokenTransition(final int tokenType,
+                                 final SmcLexer.Token token)
+    {
+        switch (tokenType)
+        {
+            case SmcLexer.ENTRY:
+                _parserFSM.ENTRY(token);
+                break;
+
+            case SmcLexer.EXIT:
+                _parserFSM.EXIT(token);
+                break;
+
+            case SmcLexer.JUMP:
+                _parserFSM.JUMP(token);
+                break;
+
+            case SmcLexer.POP:
+                _parserFSM.POP(token);
+                break;
+
+            case SmcLexer.PUSH:
+                _parserFSM.PUSH(token);
+                break;
+
+            case SmcLexer.WORD:
+                _parserFSM.WORD(token);
+                break;
+
+            case SmcLexer.START_STATE:
+                _parserFSM.START_STATE(token);
+                break;
+
+            case SmcLexer.MAP_NAME:
+                _parserFSM.MAP_NAME(token);
+                break;
+
+            case SmcLexer.CLASS_NAME:
+                _parserFSM.CLASS_NAME(token);
+                break;
+
+            case SmcLexer.HEADER_FILE:
+                _parserFSM.HEADER_FILE(token);
+                break;
+
+            case SmcLexer.INCLUDE_FILE:
+                _parserFSM.INCLUDE_FILE(token);
+                break;
+
+            case SmcLexer.PACKAGE_NAME:
+                _parserFSM.PACKAGE_NAME(token);
+                break;
+
+            case SmcLexer.FSM_CLASS_NAME:
+                _parserFSM.FSM_CLASS_NAME(token);
+                break;
+
+            case SmcLexer.FSM_FILE_NAME:
+                _parserFSM.FSM_FILE_NAME(token);
+                break;
+
+            case SmcLexer.IMPORT:
+                _parserFSM.IMPORT(token);
+                break;
+
+            case SmcLexer.DECLARE:
+                _parserFSM.DECLARE(token);
+                break;
+
+            case SmcLexer.LEFT_BRACE:
+                _parserFSM.LEFT_BRACE(token);
+                break;
+
+            case SmcLexer.RIGHT_BRACE:
+                _parserFSM.RIGHT_BRACE(token);
+                break;
+
+            case SmcLexer.LEFT_BRACKET:
+                _parserFSM.LEFT_BRACKET(token);
+                break;
+
+            case SmcLexer.LEFT_PAREN:
+                _parserFSM.LEFT_PAREN(token);
+                break;
+
+            case SmcLexer.RIGHT_PAREN:
+                _parserFSM.RIGHT_PAREN(token);
+                break;
+
+            case SmcLexer.COMMA:
+                _parserFSM.COMMA(token);
+                break;
+
+            case SmcLexer.COLON:
+                _parserFSM.COLON(token);
+                break;
+
+            case SmcLexer.SEMICOLON:
+                _parserFSM.SEMICOLON(token);
+                break;
+
+            case SmcLexer.SOURCE:
+                _parserFSM.SOURCE(token);
+                break;
+
+            case SmcLexer.EOD:
+                _parserFSM.EOD(token);
+                break;
+
+            case SmcLexer.SLASH:
+                _parserFSM.SLASH(token);
+                break;
+
+            case SmcLexer.EQUAL:
+                _parserFSM.EQUAL(token);
+                break;
+
+            case SmcLexer.ACCESS:
+                _parserFSM.ACCESS(token);
+                break;
+
+            case SmcLexer.DOLLAR:
+                _parserFSM.DOLLAR(token);
+                break;
+
+            default:
+                error("Undefined token type (" +
+                      Integer.toString(tokenType) +
+                      ")",
+                      token.getLineNumber());
+
+                _quitFlag = true;
+                _parseStatus = false;
+                break;
+        }
+
+        return;
+    } // end of tokenTransition(int, SmcLexer.Token)
+
     //-----------------------------------------------------------
     // Get methods.
     //
@@ -1770,12 +1916,6 @@ public final class SmcParser
     private static List<Character> CLOSE_CLAUSE_LIST;
     private static List<Character> QUOTE_LIST;
 
-    // Create a hashmap which associates token names with
-    // parser transitions. When a token is received, use this
-    // table to get the appropriate transition method and
-    // invoke that method.
-    private static Method[] _TransMethod;
-
     //-----------------------------------------------------------
     // Constants.
     //
@@ -1788,8 +1928,6 @@ public final class SmcParser
 
     static
     {
-        String transName = "<not set>";
-
         OPEN_CLAUSE_LIST = new ArrayList<Character>();
         CLOSE_CLAUSE_LIST = new ArrayList<Character>();
         QUOTE_LIST = new ArrayList<Character>();
@@ -1806,155 +1944,6 @@ public final class SmcParser
 
         QUOTE_LIST.add(new Character('"'));
         QUOTE_LIST.add(new Character('\''));
-
-        _TransMethod = new Method[SmcLexer.TOKEN_COUNT];
-
-        try
-        {
-            Class<SmcParserContext> fsmClass =
-                SmcParserContext.class;
-            Class[] paramTypes = new Class[1];
-
-            paramTypes[0] = SmcLexer.Token.class;
-
-            transName = "ENTRY";
-            _TransMethod[SmcLexer.ENTRY] =
-                fsmClass.getDeclaredMethod("ENTRY",
-                                           paramTypes);
-            transName = "EXIT";
-            _TransMethod[SmcLexer.EXIT] =
-                fsmClass.getDeclaredMethod("EXIT",
-                                           paramTypes);
-            transName = "JUMP";
-            _TransMethod[SmcLexer.JUMP] =
-                fsmClass.getDeclaredMethod("JUMP",
-                                           paramTypes);
-            transName = "POP";
-            _TransMethod[SmcLexer.POP] =
-                fsmClass.getDeclaredMethod("POP",
-                                           paramTypes);
-            transName = "PUSH";
-            _TransMethod[SmcLexer.PUSH] =
-                fsmClass.getDeclaredMethod("PUSH",
-                                           paramTypes);
-            transName = "WORD";
-            _TransMethod[SmcLexer.WORD] =
-                fsmClass.getDeclaredMethod("WORD",
-                                           paramTypes);
-            transName = "START_STATE";
-            _TransMethod[SmcLexer.START_STATE] =
-                fsmClass.getDeclaredMethod("START_STATE",
-                                           paramTypes);
-            transName = "MAP_NAME";
-            _TransMethod[SmcLexer.MAP_NAME] =
-                fsmClass.getDeclaredMethod("MAP_NAME",
-                                           paramTypes);
-            transName = "CLASS_NAME";
-            _TransMethod[SmcLexer.CLASS_NAME] =
-                fsmClass.getDeclaredMethod("CLASS_NAME",
-                                           paramTypes);
-            transName = "HEADER_FILE";
-            _TransMethod[SmcLexer.HEADER_FILE] =
-                fsmClass.getDeclaredMethod("HEADER_FILE",
-                                           paramTypes);
-            transName = "INCLUDE_FILE";
-            _TransMethod[SmcLexer.INCLUDE_FILE] =
-                fsmClass.getDeclaredMethod("INCLUDE_FILE",
-                                           paramTypes);
-            transName = "PACKAGE_NAME";
-            _TransMethod[SmcLexer.PACKAGE_NAME] =
-                fsmClass.getDeclaredMethod("PACKAGE_NAME",
-                                           paramTypes);
-            transName = "FSM_CLASS_NAME";
-            _TransMethod[SmcLexer.FSM_CLASS_NAME] =
-                fsmClass.getDeclaredMethod("FSM_CLASS_NAME",
-                                           paramTypes);
-            transName = "FSM_FILE_NAME";
-            _TransMethod[SmcLexer.FSM_FILE_NAME] =
-                fsmClass.getDeclaredMethod("FSM_FILE_NAME",
-                                           paramTypes);
-            transName = "IMPORT";
-            _TransMethod[SmcLexer.IMPORT] =
-                fsmClass.getDeclaredMethod("IMPORT",
-                                           paramTypes);
-            transName = "DECLARE";
-            _TransMethod[SmcLexer.DECLARE] =
-                fsmClass.getDeclaredMethod("DECLARE",
-                                           paramTypes);
-            transName = "LEFT_BRACE";
-            _TransMethod[SmcLexer.LEFT_BRACE] =
-                fsmClass.getDeclaredMethod("LEFT_BRACE",
-                                           paramTypes);
-            transName = "RIGHT_BRACE";
-            _TransMethod[SmcLexer.RIGHT_BRACE] =
-                fsmClass.getDeclaredMethod("RIGHT_BRACE",
-                                           paramTypes);
-            transName = "LEFT_BRACKET";
-            _TransMethod[SmcLexer.LEFT_BRACKET] =
-                fsmClass.getDeclaredMethod("LEFT_BRACKET",
-                                           paramTypes);
-            transName = "LEFT_PAREN";
-            _TransMethod[SmcLexer.LEFT_PAREN] =
-                fsmClass.getDeclaredMethod("LEFT_PAREN",
-                                           paramTypes);
-            transName = "RIGHT_PAREN";
-            _TransMethod[SmcLexer.RIGHT_PAREN] =
-                fsmClass.getDeclaredMethod("RIGHT_PAREN",
-                                           paramTypes);
-            transName = "COMMA";
-            _TransMethod[SmcLexer.COMMA] =
-                fsmClass.getDeclaredMethod("COMMA",
-                                           paramTypes);
-            transName = "COLON";
-            _TransMethod[SmcLexer.COLON] =
-                fsmClass.getDeclaredMethod("COLON",
-                                           paramTypes);
-            transName = "SEMICOLON";
-            _TransMethod[SmcLexer.SEMICOLON] =
-                fsmClass.getDeclaredMethod("SEMICOLON",
-                                           paramTypes);
-            transName = "SOURCE";
-            _TransMethod[SmcLexer.SOURCE] =
-                fsmClass.getDeclaredMethod("SOURCE",
-                                           paramTypes);
-            transName = "EOD";
-            _TransMethod[SmcLexer.EOD] =
-                fsmClass.getDeclaredMethod("EOD",
-                                           paramTypes);
-            transName = "SLASH";
-            _TransMethod[SmcLexer.SLASH] =
-                fsmClass.getDeclaredMethod("SLASH",
-                                           paramTypes);
-            transName = "EQUAL";
-            _TransMethod[SmcLexer.EQUAL] =
-                fsmClass.getDeclaredMethod("EQUAL",
-                                           paramTypes);
-            transName = "ACCESS";
-            _TransMethod[SmcLexer.ACCESS] =
-                fsmClass.getDeclaredMethod("ACCESS",
-                                           paramTypes);
-            transName = "DOLLAR";
-            _TransMethod[SmcLexer.DOLLAR] =
-                fsmClass.getDeclaredMethod("DOLLAR",
-                                           paramTypes);
-        }
-        catch (NoSuchMethodException ex1)
-        {
-            System.err.println("INITIALIZATION ERROR! No such " +
-                               "method as SmcParserContext." +
-                               transName +
-                               ".");
-            System.exit(2);
-        }
-        catch (SecurityException ex2)
-        {
-            System.err.println("INITIALIZATION ERROR! Not " +
-                               "allowed to access " +
-                               "SmcParserContext." +
-                               transName +
-                               ".");
-            System.exit(2);
-        }
     } // end of static
 } // end of class SmcParser
 
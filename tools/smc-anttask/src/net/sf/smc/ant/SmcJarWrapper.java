@@ -40,7 +40,7 @@ public class SmcJarWrapper extends Task
    private boolean _reflect, _sync, _serial, _g;
    private String _glevel;
    
-   private static Map<String, String> DEFAULT_SUFFIXES =
+   static Map<String, String> DEFAULT_SUFFIXES =
        new HashMap<String, String>();
    static
    {
@@ -0,0 +1,246 @@
+package net.sf.smc.ant;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.util.*;
+import net.sf.smc.SmcCompiler;
+import net.sf.smc.parser.SmcMessage;
+import org.apache.tools.ant.BuildException;
+import org.apache.tools.ant.DirectoryScanner;
+import org.apache.tools.ant.Project;
+import org.apache.tools.ant.Task;
+import org.apache.tools.ant.taskdefs.LogOutputStream;
+import org.apache.tools.ant.types.FileSet;
+
+/**
+ * Compiles every .sm file in the nested filesets in Ant's own
+ * JVM using {@link SmcCompiler}, rather than forking
+ * <code>java -jar Smc.jar</code> per file as
+ * {@link SmcJarWrapper} does. Smc.jar must be on the taskdef
+ * classpath.
+ *
+ * <pre>
+ * &lt;taskdef name="smcc" classname="net.sf.smc.ant.SmcTask"
+ *          classpath="smc-ant.jar:bin/Smc.jar" /&gt;
+ *
+ * &lt;smcc
+ *   target="java|graph|table.."
+ *   destdir="${build.gen.dir}"
+ *   jobs="4"
+ *   cache="${build.dir}/smc-cache"
+ *   reflect="true|false"
+ *   suffix="jav"
+ *   sync="true|false"
+ *   serial="true|false"
+ *   g="true|false"
+ *   glevel="0|1|2"
+ *   failonerror="true|false"&gt;
+ *   &lt;fileset dir="src" includes="**&#47;*.sm" /&gt;
+ * &lt;/smcc&gt;
+ * </pre>
+ *
+ * Up to date .sm files are skipped the same way as
+ * {@link SmcJarWrapper}. The remaining files are compiled in
+ * one call, <code>jobs</code> files at a time. <code>jobs</code>
+ * defaults to the number of available processors.
+ */
+public class SmcTask extends Task
+{
+   private final List<FileSet> _filesets = new ArrayList<FileSet>();
+   private File _destdir;
+   private String _target;
+   private String _suffix;
+   private boolean _reflect, _sync, _serial, _g;
+   private String _glevel;
+   private int _jobs = Runtime.getRuntime().availableProcessors();
+   private File _cache;
+   private boolean _failonerror = true;
+
+   public void addFileset(FileSet fileset)
+   {
+      _filesets.add(fileset);
+   }
+
+   public void setDestdir(File destdir)
+   {
+      _destdir = destdir;
+   }
+   public void setTarget(SmcJarWrapper.TargetEnum target)
+   {
+      _target = target.getValue();
+   }
+
+   public void setReflect(boolean reflect) { _reflect = reflect; }
+   public void setSync(boolean sync) { _sync = sync; }
+   public void setSerial(boolean serial) { _serial = serial; }
+   public void setG(boolean g) { _g = g; }
+
+   public void setGlevel(String glevel) { _glevel = glevel; }
+
+   public void setSuffix(String suffix) { _suffix = suffix; }
+
+   public void setJobs(int jobs) { _jobs = jobs; }
+   public void setCache(File cache) { _cache = cache; }
+   public void setFailonerror(boolean failonerror)
+   {
+      _failonerror = failonerror;
+   }
+
+   public void execute()
+   {
+      validateParameters();
+
+      List<File> smfiles = findOutOfDateFiles();
+      if (smfiles.isEmpty())
+      {
+         log("All .sm files are up to date.", Project.MSG_VERBOSE);
+         return;
+      }
+
+      log("Compiling " + smfiles.size() + " .sm file" +
+          (smfiles.size() == 1 ? "" : "s") +
+          (_destdir == null ? "" : " to " + _destdir));
+
+      PrintStream out =
+         new PrintStream(new LogOutputStream(this, Project.MSG_VERBOSE), true);
+      PrintStream err =
+         new PrintStream(new LogOutputStream(this, Project.MSG_DEBUG), true);
+      List<SmcMessage> messages;
+      try
+      {
+         messages = new SmcCompiler(buildOptions()).compile(smfiles, out, err);
+      }
+      finally
+      {
+         out.close();
+         err.close();
+      }
+
+      for (SmcMessage message : messages)
+      {
+         boolean warning = (message.getLevel() == SmcMessage.WARNING);
+         log(message.getName() + ":" + message.getLineNumber() +
+             (warning ? ": warning - " : ": error - ") + message.getText(),
+             (warning ? Project.MSG_WARN : Project.MSG_ERR));
+      }
+
+      if (SmcCompiler.hasErrors(messages))
+      {
+         if (_failonerror)
+            throw new BuildException("SMC compile failed", getLocation());
+         log("SMC compile failed", Project.MSG_ERR);
+      }
+   }
+
+   // Returns the fileset .sm files whose generated file is
+   // missing or older than the .sm file.
+   private List<File> findOutOfDateFiles()
+   {
+      String suffix = (_suffix == null) ?
+            SmcJarWrapper.DEFAULT_SUFFIXES.get(_target) : _suffix;
+      List<File> retval = new ArrayList<File>();
+
+      for (FileSet fileset : _filesets)
+      {
+         DirectoryScanner scanner = fileset.getDirectoryScanner(getProject());
+         File basedir = scanner.getBasedir();
+
+         for (String name : scanner.getIncludedFiles())
+         {
+            File smfile = new File(basedir, name);
+            String smfilename = smfile.getName();
+            int idx = smfilename.lastIndexOf(".sm");
+            if (idx < 0)
+            {
+               log("Skipping " + smfile + ": not an .sm file", Project.MSG_VERBOSE);
+               continue;
+            }
+
+            File parent = (_destdir == null) ?
+                  smfile.getParentFile() : _destdir;
+            File destfile = new File(parent,
+                  smfilename.substring(0, idx) + "Context." + suffix);
+
+            if (destfile.exists() && smfile.lastModified() <= destfile.lastModified())
+            {
+               log("Generation omitted as " + destfile + " is up to date.", Project.MSG_VERBOSE);
+            }
+            else
+            {
+               retval.add(smfile);
+            }
+         }
+      }
+      return retval;
+   }
+
+   private String[] buildOptions()
+   {
+      List<String> options = new ArrayList<String>();
+
+      options.add("-" + _target);
+
+      if (_destdir != null)
+      {
+         options.add("-d");
+         options.add(_destdir.getPath());
+      }
+
+      if (_suffix != null)
+      {
+         options.add("-suffix");
+         options.add(_suffix);
+      }
+
+      if (_reflect) { options.add("-reflect"); }
+      if (_sync) { options.add("-sync"); }
+      if (_serial) { options.add("-serial"); }
+      if (_g) { options.add("-g"); }
+
+      if (_glevel != null)
+      {
+         options.add("-glevel");
+         options.add(_glevel);
+      }
+
+      if (_jobs > 1)
+      {
+         options.add("-j");
+         options.add(Integer.toString(_jobs));
+      }
+
+      if (_cache != null)
+      {
+         options.add("-cache");
+         options.add(_cache.getPath());
+      }
+
+      return options.toArray(new String[options.size()]);
+   }
+
+   private void validateParameters()
+   {
+      if (_target == null)
+      {
+         throw new BuildException("target attribute is required");
+      }
+      if (_filesets.isEmpty())
+      {
+         throw new BuildException("at least one nested fileset is required");
+      }
+      if (_destdir != null && !_destdir.isDirectory())
+      {
+         throw new BuildException(_destdir + " is not a valid directory");
+      }
+      if (_glevel != null &&
+            !"0".equals(_glevel) && !"1".equals(_glevel) && !"2".equals(_glevel) )
+      {
+         throw new BuildException("Invalid value for glevel, should be 0, 1 or 2");
+      }
+      if (_jobs < 1)
+      {
+         throw new BuildException("jobs must be at least 1");
+      }
+   }
+
+}